@@ -0,0 +1,219 @@
+package prv.maciejewski.fxpricefeed.efxcodetest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxPriceStoreService;
+
+/**
+ * Load test of request handling on platform and on virtual threads. Application
+ * is started twice in this JVM - with fx.threads.virtual off and on - and every
+ * time:
+ *
+ * - slow feed clients open PUT /fx/price/stream connections and send one CSV
+ *   line every TICK_MILLIS, keeping connections open for whole test
+ * - probe clients call GET /fx/price/EUR/USD in loop and measure latency
+ *
+ * Connection capacity is number of slow connections whose first line has been
+ * stored - each of them uses own pair symbol. Probes which don't get response in
+ * PROBE_TIMEOUT_MILLIS are counted as timeouts.
+ *
+ * Virtual threads need Java 21 runtime:
+ *
+ * mvn -Pbenchmark test-compile exec:exec
+ * -Dbenchmark.main=prv.maciejewski.fxpricefeed.efxcodetest.FxThreadsLoadTest
+ * -Dbenchmark.java=/path/to/jdk-21/bin/java
+ * -Djmh.args="[slow connections] [probe clients] [seconds]"
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public final class FxThreadsLoadTest {
+
+	final static int DEFAULT_SLOW_CONNECTIONS = 400;
+	final static int DEFAULT_PROBE_CLIENTS = 8;
+	final static int DEFAULT_SECONDS = 10;
+
+	final static long TICK_MILLIS = 500;
+	final static int PROBE_TIMEOUT_MILLIS = 2000;
+	final static long RAMP_UP_MILLIS = 3000;
+	final static String FEED_DATE_TIME = "01-06-2020 12:01:01:001";
+
+	record Result(boolean virtual, int slowConnections, int servedConnections, long probes, long timeouts,
+			long p50Micros, long p99Micros, long maxMicros) {
+	}
+
+	private FxThreadsLoadTest() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int slowConnections = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SLOW_CONNECTIONS;
+		int probeClients = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PROBE_CLIENTS;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECONDS;
+		// devtools restarter would start application again in other class loader
+		System.setProperty("spring.devtools.restart.enabled", "false");
+
+		List<Result> results = new ArrayList<>();
+		results.add(run(false, slowConnections, probeClients, seconds));
+		results.add(run(true, slowConnections, probeClients, seconds));
+
+		System.out.println();
+		System.out.println("Java " + Runtime.version());
+		System.out.printf("%-9s %8s %8s %9s %9s %10s %10s %10s%n", "threads", "slow", "served", "probes", "timeouts",
+				"p50 [us]", "p99 [us]", "max [us]");
+		for (Result result : results) {
+			System.out.printf("%-9s %8d %8d %9d %9d %10d %10d %10d%n", result.virtual() ? "virtual" : "platform",
+					result.slowConnections(), result.servedConnections(), result.probes(), result.timeouts(),
+					result.p50Micros(), result.p99Micros(), result.maxMicros());
+		}
+		System.exit(0);
+	}
+
+	static Result run(boolean virtual, int slowConnections, int probeClients, int seconds) throws Exception {
+		// given as command line arguments - they override application.yaml
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(EfxCodeTestApplication.class)
+				.run("--server.port=0", "--fx.threads.virtual=" + virtual, "--fx.journal.enabled=false",
+						"--fx.binary-feed.enabled=false", "--logging.level.root=WARN");
+		List<Socket> sockets = new ArrayList<>();
+		ExecutorService probes = Executors.newFixedThreadPool(probeClients);
+		try {
+			int port = context.getEnvironment().getProperty("local.server.port", Integer.class);
+			FxPriceStoreService storeService = context.getBean(FxPriceStoreService.class);
+			storeService.removeAll();
+			send(port, "PUT", "/fx/price", "1, EUR/USD, 1.1000,1.2000," + FEED_DATE_TIME);
+
+			for (int i = 0; i < slowConnections; i++) {
+				Socket socket = new Socket("127.0.0.1", port);
+				socket.getOutputStream().write(("PUT /fx/price/stream HTTP/1.1\r\nHost: localhost\r\n"
+						+ "Content-Type: text/plain\r\nTransfer-Encoding: chunked\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+				sockets.add(socket);
+			}
+			// slow clients send next line of own pair every tick until test ends
+			Thread ticker = new Thread(() -> {
+				long tick = 0;
+				while (!Thread.currentThread().isInterrupted()) {
+					for (int i = 0; i < sockets.size(); i++) {
+						String line = tick + ", L" + i + "/USD, 1.1000,1.2000," + FEED_DATE_TIME + "\n";
+						try {
+							writeChunk(sockets.get(i).getOutputStream(), line);
+						} catch (IOException exc) {
+							// connection closed by server - not served any more
+						}
+					}
+					tick++;
+					try {
+						Thread.sleep(TICK_MILLIS);
+					} catch (InterruptedException ie) {
+						return;
+					}
+				}
+			}, "fx-load-ticker");
+			ticker.setDaemon(true);
+			ticker.start();
+			Thread.sleep(RAMP_UP_MILLIS);
+
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+			List<Future<long[]>> probeResults = new ArrayList<>();
+			for (int c = 0; c < probeClients; c++) {
+				probeResults.add(probes.submit(() -> probe(port, deadline)));
+			}
+			long timeouts = 0;
+			List<long[]> latencies = new ArrayList<>();
+			for (Future<long[]> probeResult : probeResults) {
+				long[] clientResult = probeResult.get();
+				timeouts += clientResult[0];
+				latencies.add(Arrays.copyOfRange(clientResult, 1, clientResult.length));
+			}
+			int servedConnections = 0;
+			for (int i = 0; i < slowConnections; i++) {
+				if (storeService.getFxPrice("L" + i + "/USD") != null) {
+					servedConnections++;
+				}
+			}
+			ticker.interrupt();
+
+			long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+			return new Result(virtual, slowConnections, servedConnections, all.length + timeouts, timeouts,
+					percentileMicros(all, 0.50), percentileMicros(all, 0.99), percentileMicros(all, 1.0));
+		} finally {
+			probes.shutdownNow();
+			for (Socket socket : sockets) {
+				try {
+					// last chunk - served requests complete before application is closed
+					socket.getOutputStream().write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+					socket.close();
+				} catch (IOException exc) {
+					// closing anyway
+				}
+			}
+			context.close();
+		}
+	}
+
+	// result[0] - number of timeouts, rest - latencies in nanos of successful calls
+	private static long[] probe(int port, long deadline) {
+		long[] latencies = new long[1024];
+		int count = 1;
+		while (System.nanoTime() < deadline) {
+			long start = System.nanoTime();
+			try {
+				send(port, "GET", "/fx/price/EUR/USD", null);
+				if (count == latencies.length) {
+					latencies = Arrays.copyOf(latencies, count * 2);
+				}
+				latencies[count++] = System.nanoTime() - start;
+			} catch (IOException exc) {
+				latencies[0]++; // timeout or connection refused
+			}
+		}
+		return Arrays.copyOf(latencies, count);
+	}
+
+	private static void send(int port, String method, String path, String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+		connection.setRequestMethod(method);
+		connection.setConnectTimeout(PROBE_TIMEOUT_MILLIS);
+		connection.setReadTimeout(PROBE_TIMEOUT_MILLIS);
+		if (body != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "text/plain");
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		try (InputStream in = connection.getInputStream()) {
+			in.readAllBytes();
+		}
+	}
+
+	private static void writeChunk(OutputStream out, String data) throws IOException {
+		byte[] bytes = data.getBytes(StandardCharsets.US_ASCII);
+		out.write((Integer.toHexString(bytes.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+		out.write(bytes);
+		out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+	}
+
+	private static long percentileMicros(long[] sortedNanos, double percentile) {
+		if (sortedNanos.length == 0) {
+			return -1;
+		}
+		int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+		return TimeUnit.NANOSECONDS.toMicros(sortedNanos[Math.max(index, 0)]);
+	}
+}
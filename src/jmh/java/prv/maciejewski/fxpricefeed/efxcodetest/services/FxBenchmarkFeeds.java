@@ -0,0 +1,169 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxFeedProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxMarginProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxMetricsProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxPipelineProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxPriceProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxRejectionSink;
+
+/**
+ * Generated market feeds and service wiring for benchmarks - services are
+ * created without Spring context, so only measured code is run.
+ *
+ * All ticks of generated feed share one date time - the same feed can be
+ * replayed against price store many times and every tick is accepted (store
+ * rejects only strictly older prices), so stale path is not measured by mistake.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+final class FxBenchmarkFeeds {
+
+	final static String FEED_DATE_TIME = "01-06-2020 12:01:01:001";
+
+	final static String[] CURRENCIES = { "EUR", "USD", "GBP", "JPY", "CHF", "AUD", "CAD", "NZD", "SEK", "NOK",
+			"DKK", "PLN", "CZK", "HUF", "SGD", "HKD", "MXN", "ZAR", "TRY", "CNH" };
+
+	// fixed seed - every run measures the same feed
+	final static long SEED = 20200601L;
+
+	private FxBenchmarkFeeds() {
+	}
+
+	/**
+	 * Creates pair symbols - cross of currency list in order, e.g. EUR/USD, EUR/GBP...
+	 *
+	 * @param pairCount - number of pairs, max CURRENCIES.length * (CURRENCIES.length - 1)
+	 * @return pair symbols
+	 */
+	static List<String> pairSymbols(int pairCount) {
+		List<String> pairs = new ArrayList<>(pairCount);
+		for (int base = 0; base < CURRENCIES.length && pairs.size() < pairCount; base++) {
+			for (int quote = 0; quote < CURRENCIES.length && pairs.size() < pairCount; quote++) {
+				if (base != quote) {
+					pairs.add(CURRENCIES[base] + "/" + CURRENCIES[quote]);
+				}
+			}
+		}
+		return pairs;
+	}
+
+	/**
+	 * Creates CSV feed lines - pairs are picked randomly, prices move randomly
+	 * around pair level with 5 decimals (3 for JPY quote currency)
+	 *
+	 * @param tickCount - number of lines
+	 * @param pairCount - number of distinct pairs in feed
+	 * @return CSV lines without EOL
+	 */
+	static String[] csvLines(int tickCount, int pairCount) {
+		Random random = new Random(SEED);
+		List<String> pairs = pairSymbols(pairCount);
+		double[] levels = new double[pairs.size()];
+		for (int i = 0; i < levels.length; i++) {
+			levels[i] = pairs.get(i).endsWith("JPY") ? 80 + random.nextDouble() * 80 : 0.5 + random.nextDouble() * 1.5;
+		}
+		String[] lines = new String[tickCount];
+		for (int i = 0; i < tickCount; i++) {
+			int pair = random.nextInt(pairs.size());
+			String pairSymbol = pairs.get(pair);
+			int scale = pairSymbol.endsWith("JPY") ? 3 : 5;
+			levels[pair] *= 1 + (random.nextDouble() - 0.5) / 1000;
+			BigDecimal bid = BigDecimal.valueOf(levels[pair]).setScale(scale, RoundingMode.HALF_UP);
+			BigDecimal ask = bid.add(BigDecimal.valueOf(1 + random.nextInt(20), scale));
+			lines[i] = (1000 + i) + ", " + pairSymbol + ", " + bid.toPlainString() + "," + ask.toPlainString() + ","
+					+ FEED_DATE_TIME;
+		}
+		return lines;
+	}
+
+	/**
+	 * @param lines - CSV lines
+	 * @return one feed message with lines separated by LF
+	 */
+	static String message(String[] lines) {
+		return String.join("\n", lines);
+	}
+
+	/**
+	 * @param lines - CSV lines
+	 * @return prices parsed from lines
+	 */
+	static FxPrice[] prices(String[] lines) {
+		FxDataFeedService feedService = newDataFeedService(false, false);
+		FxPrice[] prices = new FxPrice[lines.length];
+		for (int i = 0; i < lines.length; i++) {
+			prices[i] = feedService.parseCsvRecord(lines[i]);
+		}
+		return prices;
+	}
+
+	/**
+	 * @return rejection sink with default limits and started logging thread
+	 */
+	static FxRejectionSink newRejectionSink() {
+		FxRejectionSink rejectionSink = new FxRejectionSink();
+		rejectionSink.start();
+		return rejectionSink;
+	}
+
+	/**
+	 * @return margin calculator with default margins
+	 */
+	static FxPriceMarginCalculatorService newMarginCalculatorService() {
+		FxPriceMarginCalculatorService marginCalculatorService = new FxPriceMarginCalculatorService();
+		marginCalculatorService.fxMarginProperties = new FxMarginProperties();
+		marginCalculatorService.init();
+		return marginCalculatorService;
+	}
+
+	/**
+	 * @param storeService - price store to record age of accepted prices
+	 * @return tick metrics with default configuration in simple meter registry
+	 */
+	static FxTickMetrics newTickMetrics(FxPriceStoreService storeService) {
+		FxTickMetrics tickMetrics = new FxTickMetrics();
+		tickMetrics.meterRegistry = new SimpleMeterRegistry();
+		tickMetrics.fxMetricsProperties = new FxMetricsProperties();
+		tickMetrics.fxPriceStoreService = storeService;
+		tickMetrics.start();
+		return tickMetrics;
+	}
+
+	/**
+	 * Creates data feed service processing on caller thread
+	 *
+	 * @param fixedPoint - true to parse prices to fixed-point form
+	 * @param conflation - true to conflate ticks per pair in every message
+	 * @return data feed service with its own margin calculator and price store
+	 */
+	static FxDataFeedService newDataFeedService(boolean fixedPoint, boolean conflation) {
+		FxPriceProperties priceProperties = new FxPriceProperties();
+		priceProperties.getFixedPoint().setEnabled(fixedPoint);
+		FxPricePrecisionService precisionService = new FxPricePrecisionService();
+		precisionService.fxPriceProperties = priceProperties;
+
+		FxFeedProperties feedProperties = new FxFeedProperties();
+		feedProperties.setConflationEnabled(conflation);
+
+		FxDataFeedService feedService = new FxDataFeedService();
+		feedService.fxPriceStoreService = new FxPriceStoreService();
+		feedService.fxTickMetrics = newTickMetrics(feedService.fxPriceStoreService);
+		feedService.fxPriceMarginCalculatorService = newMarginCalculatorService();
+		feedService.fxPricePrecisionService = precisionService;
+		feedService.fxPipelineProperties = new FxPipelineProperties();
+		feedService.fxFeedProperties = feedProperties;
+		feedService.fxRejectionSink = newRejectionSink();
+		feedService.fxPriceStoreService.fxRejectionSink = feedService.fxRejectionSink;
+		return feedService;
+	}
+}
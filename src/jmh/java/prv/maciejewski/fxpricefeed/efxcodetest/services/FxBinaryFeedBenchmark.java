@@ -0,0 +1,93 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.binary.FxBinaryTickFrame;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxBinaryFeedProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FixedPointDecimal;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Throughput comparison of CSV and binary ingestion of the same ticks - from
+ * message / direct buffer to price store, without transport.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FxBinaryFeedBenchmark {
+
+	final static int TICKS = 1000;
+	final static long FEED_EPOCH_NANOS = 1_591_012_861_001_000_000L; // 01-06-2020 12:01:01:001 UTC
+
+	@Param({ "10", "100" })
+	int pairCount;
+
+	@Param({ "false", "true" })
+	boolean fixedPoint;
+
+	String message;
+	ByteBuffer frames;
+
+	FxDataFeedService feedService;
+	FxBinaryFeedService binaryFeedService;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		String[] lines = FxBenchmarkFeeds.csvLines(TICKS, pairCount);
+		message = FxBenchmarkFeeds.message(lines);
+		feedService = FxBenchmarkFeeds.newDataFeedService(fixedPoint, false);
+		feedService.fxPriceStoreService.removeAll();
+
+		List<String> pairs = FxBenchmarkFeeds.pairSymbols(pairCount);
+		binaryFeedService = new FxBinaryFeedService();
+		binaryFeedService.fxBinaryFeedProperties = new FxBinaryFeedProperties();
+		binaryFeedService.fxDataFeedService = feedService;
+		binaryFeedService.fxPricePrecisionService = feedService.fxPricePrecisionService;
+		binaryFeedService.fxPriceMarginCalculatorService = feedService.fxPriceMarginCalculatorService;
+		binaryFeedService.setSymbols(pairs);
+
+		frames = ByteBuffer.allocateDirect(TICKS * FxBinaryTickFrame.FRAME_SIZE);
+		for (FxPrice price : FxBenchmarkFeeds.prices(lines)) {
+			int scale = feedService.fxPricePrecisionService.scaleOf(price.getPairSymbol());
+			FxBinaryTickFrame.encode(frames, pairs.indexOf(price.getPairSymbol()),
+					FixedPointDecimal.fromBigDecimal(price.getBidPrice(), scale),
+					FixedPointDecimal.fromBigDecimal(price.getAskPrice(), scale), FEED_EPOCH_NANOS);
+		}
+		frames.flip();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public void csvMessage() {
+		feedService.onMessage(message);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public int binaryFrames() {
+		frames.rewind();
+		return binaryFeedService.onFrames(frames);
+	}
+}
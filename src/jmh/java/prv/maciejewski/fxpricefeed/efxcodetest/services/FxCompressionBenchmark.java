@@ -0,0 +1,106 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.compression.FxContentEncoding;
+
+/**
+ * Cost of compressed feed and responses on server side - ingestion of encoded
+ * feed decoded while read (per tick), compression of GET /fx/prices snapshot
+ * after prices change and reuse of compressed snapshot while they don't. Sizes
+ * of encoded feed and snapshot are printed at setup - transfer time saved
+ * depends on network.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FxCompressionBenchmark {
+
+	final static int TICKS = 10_000;
+	final static int PAIRS = 50;
+
+	@State(Scope.Benchmark)
+	public static class Feed {
+
+		@Param({ "IDENTITY", "GZIP", "LZ4" })
+		FxContentEncoding encoding;
+
+		FxDataFeedService feedService;
+		byte[] encodedFeed;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			feedService = FxBenchmarkFeeds.newDataFeedService(false, false);
+			feedService.fxPriceStoreService.removeAll();
+			byte[] feed = FxBenchmarkFeeds.message(FxBenchmarkFeeds.csvLines(TICKS, PAIRS)).getBytes(StandardCharsets.UTF_8);
+			encodedFeed = encoding.encode(feed);
+			System.out.println(encoding + " feed " + feed.length + " -> " + encodedFeed.length + " bytes");
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Snapshot {
+
+		@Param({ "IDENTITY", "GZIP", "LZ4" })
+		FxContentEncoding encoding;
+
+		FxPriceSnapshotCache snapshotCache;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			FxDataFeedService feedService = FxBenchmarkFeeds.newDataFeedService(false, false);
+			feedService.fxPriceStoreService.removeAll();
+			feedService.onMessage(FxBenchmarkFeeds.message(FxBenchmarkFeeds.csvLines(PAIRS * 50, PAIRS)));
+			snapshotCache = new FxPriceSnapshotCache();
+			snapshotCache.fxPriceStoreService = feedService.fxPriceStoreService;
+			snapshotCache.fxPriceMarginCalculatorService = feedService.fxPriceMarginCalculatorService;
+			snapshotCache.objectMapper = Jackson2ObjectMapperBuilder.json().build();
+			FxPriceSnapshot snapshot = snapshotCache.getSnapshot(null);
+			System.out.println(encoding + " snapshot " + snapshot.json().length + " -> "
+					+ snapshot.json(encoding).length + " bytes");
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public void onEncodedStream(Feed feed) throws IOException {
+		feed.feedService.onStream(new InputStreamReader(
+				feed.encoding.decoding(new ByteArrayInputStream(feed.encodedFeed)), StandardCharsets.UTF_8));
+	}
+
+	// prices have changed - snapshot JSON is ready, its encoded form is not
+	@Benchmark
+	public byte[] encodeChangedSnapshot(Snapshot snapshot) {
+		FxPriceSnapshot cached = snapshot.snapshotCache.getSnapshot(null);
+		return new FxPriceSnapshot(cached.json(), cached.etag()).json(snapshot.encoding);
+	}
+
+	@Benchmark
+	public byte[] cachedSnapshot(Snapshot snapshot) {
+		return snapshot.snapshotCache.getSnapshot(null).json(snapshot.encoding);
+	}
+}
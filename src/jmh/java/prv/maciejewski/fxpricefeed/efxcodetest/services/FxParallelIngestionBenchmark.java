@@ -0,0 +1,77 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of onMessage with one big feed message - sequential processing on
+ * caller thread against parallel mode with given number of shards. Results are
+ * reported per tick (OperationsPerInvocation).
+ *
+ * Parallel mode can't be faster than sequential one with less cores than
+ * shards - number of cores is printed in JMH header.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec
+ * -Djmh.args="FxParallelIngestionBenchmark"
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FxParallelIngestionBenchmark {
+
+	// ticks in one feed message
+	final static int TICKS = 100_000;
+
+	// number of distinct pairs in feed
+	final static int PAIRS = 100;
+
+	// 0 - sequential processing
+	@Param({ "0", "1", "2", "4" })
+	int shards;
+
+	String message;
+	FxDataFeedService feedService;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		message = FxBenchmarkFeeds.message(FxBenchmarkFeeds.csvLines(TICKS, PAIRS));
+		feedService = FxBenchmarkFeeds.newDataFeedService(false, false);
+		feedService.fxPriceStoreService.removeAll();
+		if (shards > 0) {
+			feedService.fxFeedProperties.getParallel().setEnabled(true);
+			feedService.fxFeedProperties.getParallel().setShards(shards);
+			feedService.fxFeedProperties.getParallel().setMinLines(1);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		feedService.stopPipeline();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public void onMessage() {
+		feedService.onMessage(message);
+	}
+}
@@ -0,0 +1,94 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.dto.FxPriceDto;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Benchmark of looking up prices of many pairs - one batch query against the
+ * same number of single pair lookups. Single lookup does what GET
+ * /fx/price/{pairSymbol} does below HTTP layer - store lookup, margins, DTO and
+ * JSON - so HTTP overhead of every single request comes on top of its result.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FxPriceQueryBenchmark {
+
+	@State(Scope.Thread)
+	public static class Query {
+
+		@Param({ "10", "50" })
+		int pairCount;
+
+		List<String> pairSymbols;
+		FxPriceStoreService storeService;
+		FxPriceMarginCalculatorService marginCalculatorService;
+		FxPriceSnapshotCache snapshotCache;
+		ObjectMapper objectMapper;
+		ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+
+		@Setup(Level.Trial)
+		public void setup() {
+			FxDataFeedService feedService = FxBenchmarkFeeds.newDataFeedService(false, false);
+			storeService = feedService.fxPriceStoreService;
+			marginCalculatorService = feedService.fxPriceMarginCalculatorService;
+			storeService.removeAll();
+			// enough ticks to have price of every pair
+			feedService.onMessage(FxBenchmarkFeeds.message(FxBenchmarkFeeds.csvLines(pairCount * 50, pairCount)));
+			pairSymbols = FxBenchmarkFeeds.pairSymbols(pairCount);
+
+			objectMapper = Jackson2ObjectMapperBuilder.json().build();
+			snapshotCache = new FxPriceSnapshotCache();
+			snapshotCache.fxPriceStoreService = storeService;
+			snapshotCache.fxPriceMarginCalculatorService = marginCalculatorService;
+			snapshotCache.objectMapper = objectMapper;
+		}
+	}
+
+	@Benchmark
+	public int batchQuery(Query query) throws IOException {
+		query.out.reset();
+		query.snapshotCache.writePrices(query.pairSymbols, null, query.out);
+		return query.out.size();
+	}
+
+	@Benchmark
+	public int singleLookups(Query query) throws IOException {
+		query.out.reset();
+		for (String pairSymbol : query.pairSymbols) {
+			Optional<FxPrice> fxPrice = query.storeService.getFxPriceByPairSymbol(pairSymbol);
+			FxPriceDto dto = fxPrice.isPresent()
+					? FxPriceDto.fromFxPrice(query.marginCalculatorService.calculatePriceToRead(fxPrice.get(), null))
+					: new FxPriceDto();
+			query.out.write(query.objectMapper.writeValueAsBytes(dto));
+		}
+		return query.out.size();
+	}
+}
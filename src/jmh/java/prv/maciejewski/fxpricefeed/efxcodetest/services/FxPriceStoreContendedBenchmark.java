@@ -0,0 +1,74 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Benchmark of price store updated by many threads at once. Every thread has
+ * its own generated feed, all threads update the same store - the fewer pairs,
+ * the more threads compete on the same pair slot.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class FxPriceStoreContendedBenchmark {
+
+	final static int TICKS = 1000;
+
+	@State(Scope.Benchmark)
+	public static class Store {
+
+		@Param({ "1", "10", "100" })
+		int pairCount;
+
+		FxPriceStoreService storeService;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			storeService = new FxPriceStoreService();
+			storeService.removeAll();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Feed {
+
+		FxPrice[] prices;
+
+		@Setup(Level.Trial)
+		public void setup(Store store) {
+			prices = FxBenchmarkFeeds.prices(FxBenchmarkFeeds.csvLines(TICKS, store.pairCount));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public void updateFxPrice(Store store, Feed feed, Blackhole blackhole) {
+		for (FxPrice price : feed.prices) {
+			blackhole.consume(store.storeService.updateFxPrice(price));
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+
+/**
+ * Ingestion of feed with rejected records - all valid, half of records with bad
+ * bid and half of records older than stored prices (replayed data). Warnings
+ * are written to file like in production, not filtered by benchmark logging
+ * configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FxRejectionBenchmark {
+
+	final static int TICKS = 1000;
+	final static String OLDER_DATE_TIME = "01-06-2020 12:00:01:001";
+
+	@Param({ "VALID", "BAD_HALF", "STALE_HALF" })
+	String feed;
+
+	String message;
+	FxDataFeedService feedService;
+	File logFile;
+	FileAppender<ILoggingEvent> appender;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		String[] lines = FxBenchmarkFeeds.csvLines(TICKS, 10);
+		feedService = FxBenchmarkFeeds.newDataFeedService(false, false);
+		feedService.fxPriceStoreService.removeAll();
+		// every pair has price of feed date time - older lines are stale
+		feedService.onMessage(FxBenchmarkFeeds.message(lines));
+		for (int i = 1; i < lines.length; i += 2) {
+			if (feed.equals("BAD_HALF")) {
+				lines[i] = lines[i].replaceFirst(", (\\d+)\\.", ", $1x");
+			} else if (feed.equals("STALE_HALF")) {
+				lines[i] = lines[i].replace(FxBenchmarkFeeds.FEED_DATE_TIME, OLDER_DATE_TIME);
+			}
+		}
+		message = FxBenchmarkFeeds.message(lines);
+
+		logFile = File.createTempFile("fx-rejections", ".log");
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+		encoder.setContext(context);
+		encoder.setPattern("%d %-5level [%thread] %logger{36} - %msg%n");
+		encoder.start();
+		appender = new FileAppender<>();
+		appender.setContext(context);
+		appender.setFile(logFile.getPath());
+		appender.setEncoder(encoder);
+		appender.start();
+		Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+		root.addAppender(appender);
+		root.setLevel(ch.qos.logback.classic.Level.WARN);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+		root.detachAppender(appender);
+		root.setLevel(ch.qos.logback.classic.Level.ERROR);
+		appender.stop();
+		logFile.delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public void onMessage() {
+		feedService.onMessage(message);
+	}
+}
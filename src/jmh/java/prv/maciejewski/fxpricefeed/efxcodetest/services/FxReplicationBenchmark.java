@@ -0,0 +1,116 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxReplicationProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxFixedPointPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Extra latency of replication per tick - price store update on instance
+ * which accepted tick (queueing for peers) and time until tick is stored by
+ * all peers over loopback TCP.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FxReplicationBenchmark {
+
+	final static LocalDateTime FEED_TIME = LocalDateTime.of(2020, 6, 1, 12, 1, 1);
+	final static String PAIR = "EUR/USD";
+
+	// 0 - replication disabled
+	@Param({ "0", "1", "2" })
+	int peerCount;
+
+	FxPriceStoreService originStore;
+	FxReplicationService origin;
+	FxReplicationService[] peers;
+	long tick;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		originStore = new FxPriceStoreService();
+		peers = new FxReplicationService[peerCount];
+		if (peerCount == 0) {
+			return;
+		}
+		origin = newNode(originStore);
+		for (int i = 0; i < peerCount; i++) {
+			peers[i] = newNode(new FxPriceStoreService());
+			origin.addPeer("127.0.0.1:" + peers[i].getLocalPort());
+		}
+		while (origin.getStats().get().connectedPeers() < peerCount) {
+			Thread.sleep(10);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (origin != null) {
+			origin.stop();
+		}
+		for (FxReplicationService peer : peers) {
+			peer.stop();
+		}
+	}
+
+	@Benchmark
+	public boolean storeUpdate() {
+		return originStore.updateFxPrice(nextPrice());
+	}
+
+	@Benchmark
+	public FxPrice storedByAllPeers() {
+		FxPrice fxPrice = nextPrice();
+		originStore.updateFxPrice(fxPrice);
+		for (FxReplicationService peer : peers) {
+			FxPrice stored;
+			while ((stored = peer.fxPriceStoreService.getFxPrice(PAIR)) == null
+					|| !fxPrice.getPriceId().equals(stored.getPriceId())) {
+				Thread.onSpinWait();
+			}
+		}
+		return fxPrice;
+	}
+
+	private FxPrice nextPrice() {
+		long id = ++tick;
+		return new FxFixedPointPrice(Long.toString(id), PAIR, 110_000, 110_020, 5, FEED_TIME.plusNanos(id));
+	}
+
+	private static FxReplicationService newNode(FxPriceStoreService storeService) throws Exception {
+		FxReplicationProperties properties = new FxReplicationProperties();
+		properties.setEnabled(true);
+		properties.setPort(0);
+		properties.setReconnectInterval(Duration.ofMillis(100));
+		FxReplicationService replicationService = new FxReplicationService();
+		replicationService.fxPriceStoreService = storeService;
+		replicationService.fxReplicationProperties = properties;
+		replicationService.fxPriceMarginCalculatorService = FxBenchmarkFeeds.newMarginCalculatorService();
+		replicationService.start();
+		return replicationService;
+	}
+}
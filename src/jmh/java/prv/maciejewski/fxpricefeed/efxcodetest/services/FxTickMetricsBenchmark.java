@@ -0,0 +1,76 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxMetricsProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxTickCounters;
+
+/**
+ * Benchmark of metrics recorded for every tick - stage timers, age of accepted
+ * price and counters - in Prometheus registry used by application, with every
+ * tick timed and with default sampling. Run with "-prof gc" - gc.alloc.rate.norm
+ * column should be close to 0 bytes.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec
+ * -Djmh.args="FxTickMetricsBenchmark -prof gc"
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FxTickMetricsBenchmark {
+
+	// 1 - every tick timed
+	@Param({ "1", "16" })
+	int sampleRate;
+
+	FxTickMetrics tickMetrics;
+	FxPrice fxPrice;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		tickMetrics = new FxTickMetrics();
+		tickMetrics.meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+		tickMetrics.fxMetricsProperties = new FxMetricsProperties();
+		tickMetrics.fxMetricsProperties.setLatencySampleRate(sampleRate);
+		tickMetrics.fxPriceStoreService = new FxPriceStoreService();
+		tickMetrics.start();
+		fxPrice = FxBenchmarkFeeds.prices(FxBenchmarkFeeds.csvLines(1, 1))[0];
+		// age timer of pair is created with first price
+		tickMetrics.onFxPriceUpdated(fxPrice);
+	}
+
+	@Benchmark
+	public void recordTick() {
+		FxTickCounters.parsed();
+		long startNanos = tickMetrics.startNanos();
+		tickMetrics.recordParse(startNanos);
+		startNanos = tickMetrics.startNanos();
+		tickMetrics.recordMargin(startNanos);
+		startNanos = tickMetrics.startNanos();
+		tickMetrics.recordStore(startNanos);
+		FxTickCounters.accepted();
+		tickMetrics.onFxPriceUpdated(fxPrice);
+	}
+}
@@ -0,0 +1,135 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Benchmarks of every stage of tick processing and of whole onMessage path.
+ *
+ * Every benchmark processes whole generated feed of TICKS lines and results are
+ * reported per tick (OperationsPerInvocation) - with "-prof gc" the
+ * gc.alloc.rate.norm column is allocation in bytes per tick.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FxTickPipelineBenchmark {
+
+	// ticks in one feed message
+	final static int TICKS = 1000;
+
+	// number of distinct pairs in feed
+	@Param({ "10", "100" })
+	int pairCount;
+
+	String[] lines;
+	String message;
+	List<List<String>> columns;
+	FxPrice[] prices;
+
+	FxDataFeedService feedService;
+	FxPriceMarginCalculatorService marginCalculatorService;
+	FxPriceStoreService storeService;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		lines = FxBenchmarkFeeds.csvLines(TICKS, pairCount);
+		message = FxBenchmarkFeeds.message(lines);
+		feedService = FxBenchmarkFeeds.newDataFeedService(false, false);
+		columns = feedService.splitMessage2Lines(message).stream().map(feedService::parseCSVLine).toList();
+		prices = FxBenchmarkFeeds.prices(lines);
+		marginCalculatorService = feedService.fxPriceMarginCalculatorService;
+		storeService = feedService.fxPriceStoreService;
+		storeService.removeAll();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public List<String> splitMessage2Lines() {
+		return feedService.splitMessage2Lines(message);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public void parseCSVLine(Blackhole blackhole) {
+		for (String line : lines) {
+			blackhole.consume(feedService.parseCSVLine(line));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public void transformStrings2FxPrice(Blackhole blackhole) {
+		for (List<String> record : columns) {
+			blackhole.consume(FxPrice.transformStrings2FxPrice.apply(record));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public void calculateNewPrice(Blackhole blackhole) {
+		for (FxPrice price : prices) {
+			blackhole.consume(marginCalculatorService.calculateNewPrice(price));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public void updateFxPrice(Blackhole blackhole) {
+		for (FxPrice price : prices) {
+			blackhole.consume(storeService.updateFxPrice(price));
+		}
+	}
+
+	/**
+	 * End to end path - split, parse, margin and store - for every processing mode
+	 */
+	@State(Scope.Benchmark)
+	public static class OnMessageState {
+
+		@Param({ "false", "true" })
+		boolean fixedPoint;
+
+		@Param({ "false", "true" })
+		boolean conflation;
+
+		FxDataFeedService feedService;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			feedService = FxBenchmarkFeeds.newDataFeedService(fixedPoint, conflation);
+			feedService.fxPriceStoreService.removeAll();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public void onMessage(OnMessageState state) {
+		state.feedService.onMessage(message);
+	}
+}
@@ -2,8 +2,10 @@ package prv.maciejewski.fxpricefeed.efxcodetest;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class EfxCodeTestApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,71 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.binary;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-width binary tick frame - 28 bytes, big endian:
+ *
+ * - int  symbol id - index of pair symbol in configured symbol list
+ * - long bid mantissa - bid with number of decimals configured for the pair
+ * - long ask mantissa - ask with number of decimals configured for the pair
+ * - long timestamp - nanoseconds since epoch, UTC
+ *
+ * Frames are read straight from buffer - no objects are created to decode them.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public final class FxBinaryTickFrame {
+
+	public final static int FRAME_SIZE = Integer.BYTES + 3 * Long.BYTES;
+
+	final static int SYMBOL_ID_OFFSET = 0;
+	final static int BID_OFFSET = 4;
+	final static int ASK_OFFSET = 12;
+	final static int TIMESTAMP_OFFSET = 20;
+
+	/**
+	 * Receiver of decoded frames
+	 */
+	@FunctionalInterface
+	public interface Handler {
+		void onTick(int symbolId, long bidMantissa, long askMantissa, long epochNanos);
+	}
+
+	private FxBinaryTickFrame() {
+	}
+
+	/**
+	 * Writes frame at buffer position - position is moved after frame
+	 *
+	 * @param buffer      - buffer with at least FRAME_SIZE bytes remaining
+	 * @param symbolId    - symbol id
+	 * @param bidMantissa - bid mantissa
+	 * @param askMantissa - ask mantissa
+	 * @param epochNanos  - timestamp in nanoseconds since epoch
+	 */
+	public static void encode(ByteBuffer buffer, int symbolId, long bidMantissa, long askMantissa, long epochNanos) {
+		buffer.putInt(symbolId).putLong(bidMantissa).putLong(askMantissa).putLong(epochNanos);
+	}
+
+	/**
+	 * Decodes all complete frames between buffer position and limit. Position is
+	 * moved after last complete frame - incomplete frame stays in buffer.
+	 *
+	 * @param buffer  - buffer in read mode
+	 * @param handler - receiver of decoded frames
+	 * @return number of decoded frames
+	 */
+	public static int decode(ByteBuffer buffer, Handler handler) {
+		int position = buffer.position();
+		int frames = (buffer.limit() - position) / FRAME_SIZE;
+		for (int i = 0; i < frames; i++, position += FRAME_SIZE) {
+			handler.onTick(buffer.getInt(position + SYMBOL_ID_OFFSET),
+					buffer.getLong(position + BID_OFFSET),
+					buffer.getLong(position + ASK_OFFSET),
+					buffer.getLong(position + TIMESTAMP_OFFSET));
+		}
+		buffer.position(position);
+		return frames;
+	}
+}
@@ -0,0 +1,76 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.book;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of shared price book file - header followed by fixed-size slot per
+ * pair id. All values are little endian.
+ *
+ * Header (HEADER_SIZE bytes):
+ *
+ * - int magic (MAGIC), int version (VERSION), int slot size, int slot count
+ * - long generation - 1 for first book at path, next writer takes generation of
+ *   previous book + 1 and writes it also into header of previous book, so
+ *   reader of replaced book knows that it has to open book again
+ *
+ * Slot (SLOT_SIZE bytes, one cache line):
+ *
+ * - long sequence - 0 for empty slot, odd while slot is written
+ * - long bid mantissa, long ask mantissa, long epoch nanos of price date time (UTC)
+ * - byte bid scale, byte ask scale, byte symbol length, symbol in ASCII
+ *
+ * Sequence is seqlock - writer makes it odd, writes values and makes it even
+ * again. Reader reads sequence, values and sequence again, and uses values
+ * only if both sequences are the same even number.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public final class FxPriceBookLayout {
+
+	public final static int MAGIC = 0x46585042; // "FXPB"
+	public final static int VERSION = 2;
+	public final static ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	public final static int HEADER_SIZE = 64;
+	public final static int MAGIC_OFFSET = 0;
+	public final static int VERSION_OFFSET = 4;
+	public final static int SLOT_SIZE_OFFSET = 8;
+	public final static int SLOT_COUNT_OFFSET = 12;
+	public final static int GENERATION_OFFSET = 16;
+
+	public final static int SLOT_SIZE = 64;
+	public final static int SEQUENCE_OFFSET = 0;
+	public final static int BID_OFFSET = 8;
+	public final static int ASK_OFFSET = 16;
+	public final static int EPOCH_NANOS_OFFSET = 24;
+	public final static int BID_SCALE_OFFSET = 32;
+	public final static int ASK_SCALE_OFFSET = 33;
+	public final static int SYMBOL_LENGTH_OFFSET = 34;
+	public final static int SYMBOL_OFFSET = 35;
+	public final static int MAX_SYMBOL_LENGTH = SLOT_SIZE - SYMBOL_OFFSET;
+
+	// ordered access to slot sequence and header generation - both are 8 byte aligned in page aligned mapping
+	static final VarHandle SEQUENCE = MethodHandles.byteBufferViewVarHandle(long[].class, BYTE_ORDER);
+
+	private FxPriceBookLayout() {
+	}
+
+	/**
+	 * @param slotCount - number of slots
+	 * @return size of book file in bytes
+	 */
+	public static long fileSize(int slotCount) {
+		return HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+	}
+
+	/**
+	 * @param slot - slot index (pair id)
+	 * @return offset of slot in book file
+	 */
+	public static int slotOffset(int slot) {
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	}
+}
@@ -0,0 +1,181 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.book;
+
+import static prv.maciejewski.fxpricefeed.efxcodetest.book.FxPriceBookLayout.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writer of shared price book - memory-mapped file with fixed slot per pair id
+ * (FxPriceBookLayout), which processes on the same machine read with
+ * FxSharedPriceBookReader without copies and without HTTP.
+ *
+ * Book is created again when opened - it holds prices of running writer only.
+ * New book is written to temporary file and moved over previous one, so book
+ * file is never truncated while other processes map it. Previous book is
+ * marked with generation of new one - its readers report slots as stale. Slot
+ * is written under its seqlock: writers take slot by compare-and-set of even
+ * sequence to odd one, so many threads may write. Price older than the one in
+ * slot is not written - the same rule as in price store.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public class FxSharedPriceBook implements Closeable {
+
+	private final Path file;
+	private final int slotCount;
+	private final long generation;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+
+	/**
+	 * Creates new book file in place of previous one and maps it into memory
+	 *
+	 * @param file      - book file, parent directories are created if missing
+	 * @param slotCount - number of slots - max pair id + 1
+	 */
+	public FxSharedPriceBook(Path file, int slotCount) throws IOException {
+		this.file = file;
+		this.slotCount = slotCount;
+		Path parent = file.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		try (FileChannel previous = openPrevious(file)) {
+			ByteBuffer previousHeader = previous == null ? null
+					: previous.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE).order(BYTE_ORDER);
+			generation = previousHeader == null ? 1 : (long) SEQUENCE.getAcquire(previousHeader, GENERATION_OFFSET) + 1;
+
+			// new file has empty slots - header is complete before file is visible under book path
+			Path created = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+			FileChannel createdChannel = FileChannel.open(created, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			try {
+				MappedByteBuffer createdBuffer = createdChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+						fileSize(slotCount));
+				createdBuffer.order(BYTE_ORDER);
+				createdBuffer.putInt(VERSION_OFFSET, VERSION);
+				createdBuffer.putInt(SLOT_SIZE_OFFSET, SLOT_SIZE);
+				createdBuffer.putInt(SLOT_COUNT_OFFSET, slotCount);
+				createdBuffer.putLong(GENERATION_OFFSET, generation);
+				VarHandle.fullFence();
+				createdBuffer.putInt(MAGIC_OFFSET, MAGIC);
+				Files.move(created, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				channel = createdChannel;
+				buffer = createdBuffer;
+			} catch (IOException | RuntimeException exc) {
+				createdChannel.close();
+				Files.deleteIfExists(created);
+				throw exc;
+			}
+			if (previousHeader != null) {
+				// readers of previous book see it replaced
+				SEQUENCE.setRelease(previousHeader, GENERATION_OFFSET, generation);
+			}
+		}
+	}
+
+	/**
+	 * Writes price into slot
+	 *
+	 * @param slot        - slot index - pair id
+	 * @param pairSymbol  - ASCII pair symbol, at most MAX_SYMBOL_LENGTH characters
+	 * @param bidMantissa - bid as mantissa with bidScale decimals
+	 * @param bidScale    - decimals of bid
+	 * @param askMantissa - ask as mantissa with askScale decimals
+	 * @param askScale    - decimals of ask
+	 * @param epochNanos  - price date time as nanos from epoch (UTC)
+	 * @return true if price has been written, false if slot has newer price
+	 */
+	public boolean write(int slot, String pairSymbol, long bidMantissa, int bidScale, long askMantissa, int askScale,
+			long epochNanos) {
+		if (slot < 0 || slot >= slotCount) {
+			throw new IndexOutOfBoundsException("Slot " + slot + " out of " + slotCount);
+		}
+		if (pairSymbol.length() > MAX_SYMBOL_LENGTH) {
+			throw new IllegalArgumentException("Pair symbol too long for price book: " + pairSymbol);
+		}
+		int base = slotOffset(slot);
+		long sequence = lock(base);
+		if (sequence != 0 && buffer.getLong(base + EPOCH_NANOS_OFFSET) > epochNanos) {
+			// nothing changed - readers may keep values read under previous sequence
+			SEQUENCE.setRelease(buffer, base + SEQUENCE_OFFSET, sequence);
+			return false;
+		}
+		buffer.putLong(base + BID_OFFSET, bidMantissa);
+		buffer.putLong(base + ASK_OFFSET, askMantissa);
+		buffer.putLong(base + EPOCH_NANOS_OFFSET, epochNanos);
+		buffer.put(base + BID_SCALE_OFFSET, (byte) bidScale);
+		buffer.put(base + ASK_SCALE_OFFSET, (byte) askScale);
+		if (sequence == 0) {
+			// symbol of slot never changes - written with first price only
+			buffer.put(base + SYMBOL_LENGTH_OFFSET, (byte) pairSymbol.length());
+			buffer.put(base + SYMBOL_OFFSET, pairSymbol.getBytes(StandardCharsets.US_ASCII));
+		}
+		// values are visible before even sequence
+		SEQUENCE.setRelease(buffer, base + SEQUENCE_OFFSET, sequence + 2);
+		return true;
+	}
+
+	/**
+	 * @return number of slots
+	 */
+	public int getSlotCount() {
+		return slotCount;
+	}
+
+	/**
+	 * @return generation of book - previous book at the same path has lower one
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return book file
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// channel of price book at path or null if there is no file or it is not price book
+	private static FileChannel openPrevious(Path file) throws IOException {
+		if (!Files.exists(file)) {
+			return null;
+		}
+		FileChannel previous = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(BYTE_ORDER);
+		if (previous.size() < HEADER_SIZE || previous.read(magic, MAGIC_OFFSET) < Integer.BYTES
+				|| magic.getInt(0) != MAGIC) {
+			previous.close();
+			return null;
+		}
+		return previous;
+	}
+
+	// takes slot for writing - returns even sequence before write, slot sequence is odd after call
+	private long lock(int base) {
+		while (true) {
+			long sequence = (long) SEQUENCE.getVolatile(buffer, base + SEQUENCE_OFFSET);
+			// volatile compare-and-set - values written after it are not visible before odd sequence
+			if ((sequence & 1) == 0 && SEQUENCE.compareAndSet(buffer, base + SEQUENCE_OFFSET, sequence, sequence + 1)) {
+				return sequence;
+			}
+			Thread.onSpinWait();
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.book;
+
+import static prv.maciejewski.fxpricefeed.efxcodetest.book.FxPriceBookLayout.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Reader of shared price book written by FxSharedPriceBook - for processes on
+ * the same machine which need latest prices without HTTP. Depends on JDK only,
+ * so it can be copied to other projects together with FxPriceBookLayout.
+ *
+ * Book file is mapped read only. Price is read straight from mapped memory into
+ * reusable Quote under slot seqlock - read does not allocate and never returns
+ * values of two different prices. Slot left in the middle of write (writer
+ * process died) is reported as stale after read timeout instead of being
+ * retried forever. Book replaced by new writer (see FxSharedPriceBook) is
+ * reported as stale as well - its slots never change again.
+ *
+ * Usage:
+ *
+ * try (FxSharedPriceBookReader reader = FxSharedPriceBookReader.open(path)) {
+ *     int slot = reader.slotOf("EUR/USD");
+ *     FxSharedPriceBookReader.Quote quote = new FxSharedPriceBookReader.Quote();
+ *     if (slot >= 0 && reader.read(slot, quote)) {
+ *         BigDecimal bid = quote.getBidPrice();
+ *     } else if (quote.isStale()) {
+ *         // writer is gone or restarted - book has to be opened again
+ *     }
+ * }
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public class FxSharedPriceBookReader implements Closeable {
+
+	public final static Duration DEFAULT_READ_TIMEOUT = Duration.ofMillis(10);
+
+	/**
+	 * Price read from slot - mutable, to be reused between reads
+	 */
+	public static final class Quote {
+
+		private long sequence;
+		private long bidMantissa;
+		private long askMantissa;
+		private long epochNanos;
+		private int bidScale;
+		private int askScale;
+		private boolean stale;
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		public long getBidMantissa() {
+			return bidMantissa;
+		}
+
+		public int getBidScale() {
+			return bidScale;
+		}
+
+		public long getAskMantissa() {
+			return askMantissa;
+		}
+
+		public int getAskScale() {
+			return askScale;
+		}
+
+		public long getEpochNanos() {
+			return epochNanos;
+		}
+
+		public BigDecimal getBidPrice() {
+			return BigDecimal.valueOf(bidMantissa, bidScale);
+		}
+
+		public BigDecimal getAskPrice() {
+			return BigDecimal.valueOf(askMantissa, askScale);
+		}
+
+		/**
+		 * @return true if last read has not filled quote because slot was being
+		 *         written longer than read timeout or book has been replaced by
+		 *         new writer - values are not valid then
+		 */
+		public boolean isStale() {
+			return stale;
+		}
+
+		/**
+		 * @return price date time in UTC
+		 */
+		public LocalDateTime getDateTime() {
+			return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L),
+					(int) Math.floorMod(epochNanos, 1_000_000_000L), ZoneOffset.UTC);
+		}
+	}
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int slotCount;
+	private final long generation;
+	private final long readTimeoutNanos;
+
+	private FxSharedPriceBookReader(FileChannel channel, MappedByteBuffer buffer, int slotCount, long generation,
+			long readTimeoutNanos) {
+		this.channel = channel;
+		this.buffer = buffer;
+		this.slotCount = slotCount;
+		this.generation = generation;
+		this.readTimeoutNanos = readTimeoutNanos;
+	}
+
+	/**
+	 * Maps book file written by running writer - with default read timeout
+	 *
+	 * @param file - book file
+	 * @return reader of book
+	 * @throws IOException if file can't be read or is not price book
+	 */
+	public static FxSharedPriceBookReader open(Path file) throws IOException {
+		return open(file, DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * Maps book file written by running writer
+	 *
+	 * @param file        - book file
+	 * @param readTimeout - max time slot may stay in the middle of one write
+	 *                    before read reports it as stale
+	 * @return reader of book
+	 * @throws IOException if file can't be read or is not price book
+	 */
+	public static FxSharedPriceBookReader open(Path file, Duration readTimeout) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException("Not a price book: " + file);
+			}
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			header.order(BYTE_ORDER);
+			if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+				throw new IOException("Not a price book or book not initialized: " + file);
+			}
+			VarHandle.acquireFence();
+			if (header.getInt(VERSION_OFFSET) != VERSION || header.getInt(SLOT_SIZE_OFFSET) != SLOT_SIZE) {
+				throw new IOException("Unsupported price book version " + header.getInt(VERSION_OFFSET) + ": " + file);
+			}
+			int slotCount = header.getInt(SLOT_COUNT_OFFSET);
+			if (channel.size() < fileSize(slotCount)) {
+				throw new IOException("Price book truncated: " + file);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize(slotCount));
+			buffer.order(BYTE_ORDER);
+			return new FxSharedPriceBookReader(channel, buffer, slotCount, header.getLong(GENERATION_OFFSET),
+					readTimeout.toNanos());
+		} catch (IOException | RuntimeException exc) {
+			channel.close();
+			throw exc;
+		}
+	}
+
+	/**
+	 * Finds slot of pair - slot of pair never changes while writer runs, so it
+	 * is to be looked up once
+	 *
+	 * @param pairSymbol - currency pair symbol
+	 * @return slot index or -1 if pair has no price yet
+	 */
+	public int slotOf(String pairSymbol) {
+		for (int slot = 0; slot < slotCount; slot++) {
+			if (pairSymbol.equals(symbolOf(slot))) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param slot - slot index
+	 * @return pair symbol of slot or null if slot is empty
+	 */
+	public String symbolOf(int slot) {
+		int base = slotOffset(checkSlot(slot));
+		// symbol is written before first even sequence and never changes
+		if ((long) SEQUENCE.getAcquire(buffer, base + SEQUENCE_OFFSET) < 2) {
+			return null;
+		}
+		byte[] symbol = new byte[buffer.get(base + SYMBOL_LENGTH_OFFSET)];
+		buffer.get(base + SYMBOL_OFFSET, symbol);
+		return new String(symbol, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Reads latest price of slot - retries while slot is being written. Write
+	 * which does not end within read timeout (the same odd sequence) means that
+	 * writer has died - slot is reported as stale (see Quote.isStale). All slots
+	 * of book replaced by new writer are reported as stale.
+	 *
+	 * @param slot  - slot index
+	 * @param quote - quote to fill
+	 * @return true if quote has been filled, false if slot is empty or stale
+	 */
+	public boolean read(int slot, Quote quote) {
+		int base = slotOffset(checkSlot(slot));
+		quote.stale = isReplaced();
+		if (quote.stale) {
+			return false;
+		}
+		// odd sequence seen last and when it has been seen first - nanoTime is read only while slot is written
+		long writtenSequence = 0;
+		long writtenSince = 0;
+		while (true) {
+			long sequence = (long) SEQUENCE.getAcquire(buffer, base + SEQUENCE_OFFSET);
+			if (sequence == 0) {
+				return false;
+			}
+			if ((sequence & 1) != 0) {
+				if (sequence != writtenSequence) {
+					writtenSequence = sequence;
+					writtenSince = System.nanoTime();
+				} else if (System.nanoTime() - writtenSince > readTimeoutNanos) {
+					quote.stale = true;
+					return false;
+				}
+			} else {
+				quote.bidMantissa = buffer.getLong(base + BID_OFFSET);
+				quote.askMantissa = buffer.getLong(base + ASK_OFFSET);
+				quote.epochNanos = buffer.getLong(base + EPOCH_NANOS_OFFSET);
+				quote.bidScale = buffer.get(base + BID_SCALE_OFFSET);
+				quote.askScale = buffer.get(base + ASK_SCALE_OFFSET);
+				// values are read before sequence is checked again
+				VarHandle.loadLoadFence();
+				if ((long) SEQUENCE.getAcquire(buffer, base + SEQUENCE_OFFSET) == sequence) {
+					quote.sequence = sequence;
+					return true;
+				}
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * @return true if new writer has created book in place of this one - book
+	 *         has to be opened again to read its prices
+	 */
+	public boolean isReplaced() {
+		return (long) SEQUENCE.getAcquire(buffer, GENERATION_OFFSET) != generation;
+	}
+
+	/**
+	 * @return number of slots
+	 */
+	public int getSlotCount() {
+		return slotCount;
+	}
+
+	/**
+	 * @return generation of book read - see FxPriceBookLayout
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private int checkSlot(int slot) {
+		if (slot < 0 || slot >= slotCount) {
+			throw new IndexOutOfBoundsException("Slot " + slot + " out of " + slotCount);
+		}
+		return slot;
+	}
+}
@@ -0,0 +1,37 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.candle;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * OHLC bar of bid and ask prices of currency pair
+ *
+ * @param pairSymbol - currency pair symbol
+ * @param interval   - bar interval in ISO-8601 form, e.g. PT1M
+ * @param start      - start of bar interval in GMT
+ * @param openBid    - first bid in interval
+ * @param highBid    - highest bid in interval
+ * @param lowBid     - lowest bid in interval
+ * @param closeBid   - last bid in interval
+ * @param openAsk    - first ask in interval
+ * @param highAsk    - highest ask in interval
+ * @param lowAsk     - lowest ask in interval
+ * @param closeAsk   - last ask in interval
+ * @param tickCount  - number of ticks in interval
+ *
+ * @author Mikolaj Maciejewski
+ */
+public record FxCandle(
+		String pairSymbol,
+		String interval,
+		LocalDateTime start,
+		BigDecimal openBid,
+		BigDecimal highBid,
+		BigDecimal lowBid,
+		BigDecimal closeBid,
+		BigDecimal openAsk,
+		BigDecimal highAsk,
+		BigDecimal lowAsk,
+		BigDecimal closeAsk,
+		int tickCount) {
+}
@@ -0,0 +1,270 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.candle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.history.FxPriceHistoryRing;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FixedPointDecimal;
+
+/**
+ * OHLC bars of one currency pair for set of intervals, updated tick by tick.
+ *
+ * Bars are kept in preallocated primitive columns - ring of latest bars per
+ * interval. Tick updates bar in place and starts next slot on interval
+ * boundary, so adding tick does not allocate. Prices are mantissas with fixed
+ * scale of the series.
+ *
+ * Store listeners may get concurrent updates of a pair out of order, so tick
+ * older than latest added one is put into bar of its timestamp - it becomes
+ * open or close of the bar only if it is the first or last tick of the bar by
+ * timestamp. Bar missing between kept bars is inserted. Tick is ignored only
+ * if it is older than all bars kept by the series.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public class FxCandleSeries {
+
+	private final String pairSymbol;
+	private final Duration[] intervals;
+	private final long[] intervalNanos;
+	private final int capacity;
+	private final int scale;
+
+	// columns indexed by interval * capacity + slot
+	private final long[] barNumbers; // bar start / interval length
+	private final long[] openBids;
+	private final long[] highBids;
+	private final long[] lowBids;
+	private final long[] closeBids;
+	private final long[] openAsks;
+	private final long[] highAsks;
+	private final long[] lowAsks;
+	private final long[] closeAsks;
+	private final int[] tickCounts;
+	private final long[] openNanos; // timestamps of open and close ticks
+	private final long[] closeNanos;
+
+	// slot of newest bar and number of bars per interval
+	private final int[] newest;
+	private final int[] counts;
+
+	private long lastTickNanos = Long.MIN_VALUE;
+	private long ignoredTicks;
+
+	// ticks of the pair may be added by many store threads
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * @param pairSymbol - currency pair
+	 * @param intervals  - bar intervals
+	 * @param capacity   - number of bars kept per interval
+	 * @param scale      - number of decimals of price mantissas
+	 */
+	public FxCandleSeries(String pairSymbol, List<Duration> intervals, int capacity, int scale) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Candle capacity must be positive: " + capacity);
+		}
+		this.pairSymbol = pairSymbol;
+		this.intervals = intervals.toArray(new Duration[0]);
+		this.intervalNanos = new long[this.intervals.length];
+		for (int i = 0; i < this.intervals.length; i++) {
+			intervalNanos[i] = this.intervals[i].toNanos();
+			if (intervalNanos[i] <= 0) {
+				throw new IllegalArgumentException("Candle interval must be positive: " + this.intervals[i]);
+			}
+		}
+		this.capacity = capacity;
+		this.scale = scale;
+
+		int size = this.intervals.length * capacity;
+		barNumbers = new long[size];
+		openBids = new long[size];
+		highBids = new long[size];
+		lowBids = new long[size];
+		closeBids = new long[size];
+		openAsks = new long[size];
+		highAsks = new long[size];
+		lowAsks = new long[size];
+		closeAsks = new long[size];
+		tickCounts = new int[size];
+		openNanos = new long[size];
+		closeNanos = new long[size];
+		newest = new int[this.intervals.length];
+		counts = new int[this.intervals.length];
+	}
+
+	/**
+	 * @return number of decimals of price mantissas
+	 */
+	public int getScale() {
+		return scale;
+	}
+
+	/**
+	 * Adds tick to current bars of all intervals
+	 *
+	 * @param epochNanos  - tick timestamp in nanoseconds since epoch, UTC
+	 * @param bidMantissa - bid with series scale
+	 * @param askMantissa - ask with series scale
+	 * @return true if tick has been added, false if it is older than all kept bars
+	 */
+	public boolean add(long epochNanos, long bidMantissa, long askMantissa) {
+		lock.lock();
+		try {
+			if (epochNanos < lastTickNanos) {
+				return addLate(epochNanos, bidMantissa, askMantissa);
+			}
+			lastTickNanos = epochNanos;
+			for (int interval = 0; interval < intervalNanos.length; interval++) {
+				long barNumber = Math.floorDiv(epochNanos, intervalNanos[interval]);
+				int base = interval * capacity;
+				int slot = base + newest[interval];
+				if (counts[interval] == 0 || barNumber != barNumbers[slot]) {
+					// interval boundary - newest slot is reused for new bar when ring is full
+					newest[interval] = counts[interval] == 0 ? 0 : (newest[interval] + 1) % capacity;
+					counts[interval] = Math.min(counts[interval] + 1, capacity);
+					slot = base + newest[interval];
+					barNumbers[slot] = barNumber;
+					openBids[slot] = highBids[slot] = lowBids[slot] = bidMantissa;
+					openAsks[slot] = highAsks[slot] = lowAsks[slot] = askMantissa;
+					openNanos[slot] = epochNanos;
+					tickCounts[slot] = 0;
+				} else {
+					highBids[slot] = Math.max(highBids[slot], bidMantissa);
+					lowBids[slot] = Math.min(lowBids[slot], bidMantissa);
+					highAsks[slot] = Math.max(highAsks[slot], askMantissa);
+					lowAsks[slot] = Math.min(lowAsks[slot], askMantissa);
+				}
+				closeBids[slot] = bidMantissa;
+				closeAsks[slot] = askMantissa;
+				closeNanos[slot] = epochNanos;
+				tickCounts[slot]++;
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// tick older than latest one - called under lock
+	private boolean addLate(long epochNanos, long bidMantissa, long askMantissa) {
+		boolean added = false;
+		for (int interval = 0; interval < intervalNanos.length; interval++) {
+			long barNumber = Math.floorDiv(epochNanos, intervalNanos[interval]);
+			// age of first bar which is not newer than the tick - bars are sorted, newest first
+			int age = 0;
+			while (age < counts[interval] && barNumbers[slotOf(interval, age)] > barNumber) {
+				age++;
+			}
+			if (age < counts[interval] && barNumbers[slotOf(interval, age)] == barNumber) {
+				int slot = slotOf(interval, age);
+				highBids[slot] = Math.max(highBids[slot], bidMantissa);
+				lowBids[slot] = Math.min(lowBids[slot], bidMantissa);
+				highAsks[slot] = Math.max(highAsks[slot], askMantissa);
+				lowAsks[slot] = Math.min(lowAsks[slot], askMantissa);
+				if (epochNanos < openNanos[slot]) {
+					openBids[slot] = bidMantissa;
+					openAsks[slot] = askMantissa;
+					openNanos[slot] = epochNanos;
+				}
+				if (epochNanos >= closeNanos[slot]) {
+					closeBids[slot] = bidMantissa;
+					closeAsks[slot] = askMantissa;
+					closeNanos[slot] = epochNanos;
+				}
+				tickCounts[slot]++;
+				added = true;
+			} else if (age < capacity) {
+				// no bar of the tick - newer bars are moved by one slot, oldest bar is dropped when ring is full
+				newest[interval] = (newest[interval] + 1) % capacity;
+				counts[interval] = Math.min(counts[interval] + 1, capacity);
+				for (int moved = 0; moved < age; moved++) {
+					copyBar(slotOf(interval, moved + 1), slotOf(interval, moved));
+				}
+				int slot = slotOf(interval, age);
+				barNumbers[slot] = barNumber;
+				openBids[slot] = highBids[slot] = lowBids[slot] = closeBids[slot] = bidMantissa;
+				openAsks[slot] = highAsks[slot] = lowAsks[slot] = closeAsks[slot] = askMantissa;
+				openNanos[slot] = closeNanos[slot] = epochNanos;
+				tickCounts[slot] = 1;
+				added = true;
+			}
+		}
+		if (!added) {
+			ignoredTicks++;
+		}
+		return added;
+	}
+
+	private void copyBar(int from, int to) {
+		barNumbers[to] = barNumbers[from];
+		openBids[to] = openBids[from];
+		highBids[to] = highBids[from];
+		lowBids[to] = lowBids[from];
+		closeBids[to] = closeBids[from];
+		openAsks[to] = openAsks[from];
+		highAsks[to] = highAsks[from];
+		lowAsks[to] = lowAsks[from];
+		closeAsks[to] = closeAsks[from];
+		tickCounts[to] = tickCounts[from];
+		openNanos[to] = openNanos[from];
+		closeNanos[to] = closeNanos[from];
+	}
+
+	// slot of bar of given age - 0 is newest one
+	private int slotOf(int interval, int age) {
+		return interval * capacity + Math.floorMod(newest[interval] - age, capacity);
+	}
+
+	/**
+	 * Returns latest bars of interval, oldest first
+	 *
+	 * @param interval - index of interval in interval list of series
+	 * @param limit    - max number of bars - the newest ones are returned
+	 * @return bars
+	 */
+	public List<FxCandle> candles(int interval, int limit) {
+		lock.lock();
+		try {
+			int size = Math.min(counts[interval], Math.max(limit, 0));
+			List<FxCandle> result = new ArrayList<>(size);
+			for (int age = size - 1; age >= 0; age--) {
+				result.add(candle(interval, age));
+			}
+			return result;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of ticks ignored because they were older than all kept bars
+	 */
+	public long getIgnoredTicks() {
+		lock.lock();
+		try {
+			return ignoredTicks;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// bar of given age - 0 is newest one
+	private FxCandle candle(int interval, int age) {
+		int slot = slotOf(interval, age);
+		return new FxCandle(pairSymbol, intervals[interval].toString(),
+				FxPriceHistoryRing.toDateTime(barNumbers[slot] * intervalNanos[interval]),
+				FixedPointDecimal.toBigDecimal(openBids[slot], scale),
+				FixedPointDecimal.toBigDecimal(highBids[slot], scale),
+				FixedPointDecimal.toBigDecimal(lowBids[slot], scale),
+				FixedPointDecimal.toBigDecimal(closeBids[slot], scale),
+				FixedPointDecimal.toBigDecimal(openAsks[slot], scale),
+				FixedPointDecimal.toBigDecimal(highAsks[slot], scale),
+				FixedPointDecimal.toBigDecimal(lowAsks[slot], scale),
+				FixedPointDecimal.toBigDecimal(closeAsks[slot], scale),
+				tickCounts[slot]);
+	}
+}
@@ -0,0 +1,231 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import net.jpountz.xxhash.XXHashFactory;
+
+/**
+ * HTTP content encodings of feed bodies and price responses.
+ *
+ * - gzip - smallest body, the only one known to browsers and most clients
+ * - lz4 - LZ4 frame format (lz4 command line tool, .lz4 files) - several times
+ *   faster than gzip on both sides for bigger body; token "lz4" is not
+ *   registered at IANA, so it is used only by clients which ask for it
+ *
+ * LZ4 uses Java implementation of lz4-java only - no native library is loaded.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public enum FxContentEncoding {
+
+	IDENTITY("identity") {
+		@Override
+		public InputStream decoding(InputStream encoded) {
+			return encoded;
+		}
+
+		@Override
+		public OutputStream encoding(OutputStream target) {
+			return target;
+		}
+
+		@Override
+		public byte[] encode(byte[] content) {
+			return content;
+		}
+	},
+
+	GZIP("gzip") {
+		@Override
+		public InputStream decoding(InputStream encoded) throws IOException {
+			return new GZIPInputStream(encoded, BUFFER_SIZE);
+		}
+
+		@Override
+		public OutputStream encoding(OutputStream target) throws IOException {
+			return new GZIPOutputStream(target, BUFFER_SIZE);
+		}
+	},
+
+	LZ4("lz4") {
+		@Override
+		public InputStream decoding(InputStream encoded) throws IOException {
+			return new LZ4FrameInputStream(encoded, LZ4_JAVA.safeDecompressor(), XXHASH_JAVA.hash32());
+		}
+
+		@Override
+		public OutputStream encoding(OutputStream target) throws IOException {
+			return new LZ4FrameOutputStream(target, LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB, -1L,
+					LZ4_JAVA.fastCompressor(), XXHASH_JAVA.hash32(), LZ4FrameOutputStream.FLG.Bits.BLOCK_INDEPENDENCE);
+		}
+	};
+
+	private final static int BUFFER_SIZE = 8192;
+
+	// Java only instances - Unsafe based if available, never JNI
+	private final static LZ4Factory LZ4_JAVA = LZ4Factory.fastestJavaInstance();
+	private final static XXHashFactory XXHASH_JAVA = XXHashFactory.fastestJavaInstance();
+
+	private final String token;
+
+	private FxContentEncoding(String token) {
+		this.token = token;
+	}
+
+	/**
+	 * @return token of encoding in Content-Encoding and Accept-Encoding headers
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * Wraps encoded stream - content is decoded while it is read
+	 *
+	 * @param encoded - stream with encoded content
+	 * @return stream of decoded content
+	 * @throws IOException if header of encoded content can't be read
+	 */
+	public abstract InputStream decoding(InputStream encoded) throws IOException;
+
+	/**
+	 * Wraps target stream - content is encoded while it is written, encoded
+	 * content is complete only after returned stream is closed
+	 *
+	 * @param target - stream for encoded content
+	 * @return stream for content to encode
+	 * @throws IOException if header of encoded content can't be written
+	 */
+	public abstract OutputStream encoding(OutputStream target) throws IOException;
+
+	/**
+	 * Encodes whole content
+	 *
+	 * @param content - content to encode
+	 * @return encoded content
+	 */
+	public byte[] encode(byte[] content) {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream(content.length / 2 + 64);
+		try (OutputStream encoding = encoding(encoded)) {
+			encoding.write(content);
+		} catch (IOException ioe) {
+			throw new UncheckedIOException("Content can't be encoded with " + token, ioe);
+		}
+		return encoded.toByteArray();
+	}
+
+	/**
+	 * Finds encoding of token - tokens are case insensitive
+	 *
+	 * @param token - token from Content-Encoding header
+	 * @return encoding or empty if it is not known
+	 */
+	public static Optional<FxContentEncoding> of(String token) {
+		String normalized = token.trim().toLowerCase(Locale.ROOT);
+		for (FxContentEncoding encoding : values()) {
+			if (encoding.token.equals(normalized)) {
+				return Optional.of(encoding);
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Wraps request body by all encodings of Content-Encoding header - the last
+	 * one listed has been applied last, so it is decoded first
+	 *
+	 * @param contentEncoding - value of Content-Encoding header, may be null
+	 * @param allowed         - encodings accepted by server
+	 * @param body            - encoded body
+	 * @return stream of decoded body
+	 * @throws IOException              if header of encoded body can't be read
+	 * @throws IllegalArgumentException if some encoding is not known or not allowed
+	 */
+	public static InputStream decoding(String contentEncoding, List<FxContentEncoding> allowed, InputStream body)
+			throws IOException {
+		if (contentEncoding == null || contentEncoding.isBlank()) {
+			return body;
+		}
+		String[] tokens = contentEncoding.split(",");
+		InputStream decoded = body;
+		for (int i = tokens.length - 1; i >= 0; i--) {
+			Optional<FxContentEncoding> encoding = of(tokens[i]);
+			if (encoding.isEmpty() || (encoding.get() != IDENTITY && !allowed.contains(encoding.get()))) {
+				throw new IllegalArgumentException("Content encoding " + tokens[i].trim() + " is not supported, available: "
+						+ allowed.stream().map(FxContentEncoding::getToken).toList());
+			}
+			decoded = encoding.get().decoding(decoded);
+		}
+		return decoded;
+	}
+
+	/**
+	 * Chooses encoding of response from Accept-Encoding header - encoding with
+	 * highest quality value wins, the one listed first in offered encodings wins
+	 * between equal quality values. Identity is chosen when client accepts none
+	 * of offered encodings.
+	 *
+	 * @param acceptEncoding - value of Accept-Encoding header, may be null
+	 * @param offered        - encodings offered by server, most preferred first
+	 * @return chosen encoding
+	 */
+	public static FxContentEncoding negotiate(String acceptEncoding, List<FxContentEncoding> offered) {
+		if (acceptEncoding == null || acceptEncoding.isBlank() || offered.isEmpty()) {
+			return IDENTITY;
+		}
+		FxContentEncoding chosen = IDENTITY;
+		float chosenQuality = 0;
+		for (FxContentEncoding encoding : offered) {
+			float quality = quality(acceptEncoding, encoding.token);
+			if (quality > chosenQuality) {
+				chosen = encoding;
+				chosenQuality = quality;
+			}
+		}
+		return chosen;
+	}
+
+	// quality of token in Accept-Encoding - exact token before "*", 0 if not accepted
+	private static float quality(String acceptEncoding, String token) {
+		float wildcardQuality = 0;
+		for (String coding : acceptEncoding.split(",")) {
+			int parameters = coding.indexOf(';');
+			String name = (parameters < 0 ? coding : coding.substring(0, parameters)).trim();
+			float quality = parameters < 0 ? 1 : qualityValue(coding.substring(parameters + 1));
+			if (name.equalsIgnoreCase(token)) {
+				return quality;
+			}
+			if (name.equals("*")) {
+				wildcardQuality = quality;
+			}
+		}
+		return wildcardQuality;
+	}
+
+	private static float qualityValue(String parameters) {
+		for (String parameter : parameters.split(";")) {
+			int separator = parameter.indexOf('=');
+			if (separator > 0 && parameter.substring(0, separator).trim().equalsIgnoreCase("q")) {
+				try {
+					return Float.parseFloat(parameter.substring(separator + 1).trim());
+				} catch (NumberFormatException nfe) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+}
@@ -0,0 +1,39 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of binary tick feed listener - values are bound from
+ * "fx.binary-feed" prefix of application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.binary-feed")
+@Getter
+@Setter
+public class FxBinaryFeedProperties {
+
+	// when enabled TCP listener of binary tick frames is started
+	private boolean enabled = false;
+
+	// address to listen on
+	private String bindAddress = "127.0.0.1";
+
+	// port to listen on, 0 - any free port
+	private int port = 9081;
+
+	// size of direct receive buffer of every connection in bytes
+	private int receiveBufferSize = 64 * 1024;
+
+	// pair symbols by symbol id used in frames - id is index in the list
+	private List<String> symbols = new ArrayList<>();
+}
@@ -0,0 +1,37 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of OHLC candles - values are bound from "fx.candle" prefix of
+ * application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.candle")
+@Getter
+@Setter
+public class FxCandleProperties {
+
+	// when enabled candles are built from accepted prices
+	private boolean enabled = true;
+
+	// bar intervals
+	private List<Duration> intervals = new ArrayList<>(List.of(Duration.ofSeconds(1), Duration.ofMinutes(1), Duration.ofMinutes(5)));
+
+	// number of bars kept per pair and interval
+	private int capacity = 120;
+
+	// decimals added to pair scale (fx.price.fixed-point scales) for candle prices - margins add decimals
+	private int extraDecimals = 4;
+}
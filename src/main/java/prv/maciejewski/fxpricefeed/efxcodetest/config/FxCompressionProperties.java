@@ -0,0 +1,31 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+import prv.maciejewski.fxpricefeed.efxcodetest.compression.FxContentEncoding;
+
+/**
+ * Configuration of compressed feed bodies and price responses - values are
+ * bound from "fx.compression" prefix of application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.compression")
+@Getter
+@Setter
+public class FxCompressionProperties {
+
+	// Content-Encoding of feed bodies accepted and encodings offered for responses, most preferred first
+	private List<FxContentEncoding> encodings = new ArrayList<>(List.of(FxContentEncoding.LZ4, FxContentEncoding.GZIP));
+
+	// smaller responses are sent as they are - encoding would not make them much smaller
+	private int minResponseSize = 1024;
+}
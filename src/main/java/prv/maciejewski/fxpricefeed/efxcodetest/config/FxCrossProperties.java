@@ -0,0 +1,31 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of cross rates - values are bound from "fx.cross" prefix of
+ * application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.cross")
+@Getter
+@Setter
+public class FxCrossProperties {
+
+	// when enabled derived pairs are calculated from their legs
+	private boolean enabled = true;
+
+	// two legs by derived pair symbol, e.g. EUR/JPY: EUR/USD, USD/JPY
+	private Map<String, List<String>> pairs = new LinkedHashMap<>();
+}
@@ -0,0 +1,46 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of CSV feed processing - values are bound from "fx.feed"
+ * prefix of application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.feed")
+@Getter
+@Setter
+public class FxFeedProperties {
+
+	// when enabled only newest tick per pair of every message is margined and stored
+	private boolean conflationEnabled = false;
+
+	// longer records of streamed feed are rejected and skipped up to next line
+	private int maxRecordLength = 1024;
+
+	private Parallel parallel = new Parallel();
+
+	/**
+	 * Parallel processing of big messages - lines are parsed on worker threads
+	 * and stored by shards of pairs, so prices of one pair keep their order
+	 */
+	@Getter
+	@Setter
+	public static class Parallel {
+
+		private boolean enabled = false;
+
+		// smaller messages are processed on caller thread
+		private int minLines = 10_000;
+
+		// number of shards and worker threads - 0 for number of processors
+		private int shards = 0;
+	}
+}
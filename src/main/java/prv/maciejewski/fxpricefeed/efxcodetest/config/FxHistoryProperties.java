@@ -0,0 +1,27 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of tick history - values are bound from "fx.history" prefix of
+ * application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.history")
+@Getter
+@Setter
+public class FxHistoryProperties {
+
+	// when enabled latest accepted ticks are kept per pair
+	private boolean enabled = true;
+
+	// number of ticks kept per pair - memory per pair is fixed, about 25 bytes per tick
+	private int capacity = 4096;
+}
@@ -0,0 +1,48 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of journal of accepted prices - values are bound from
+ * "fx.journal" prefix of application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.journal")
+@Getter
+@Setter
+public class FxJournalProperties {
+
+	public enum FsyncPolicy {
+		// pages are written by OS - journal survives crash of application, not of machine
+		NONE,
+		// journal is forced to disk every fsync-interval
+		INTERVAL,
+		// journal is forced to disk after every batch of written prices
+		EVERY_BATCH
+	}
+
+	// when enabled accepted prices are journaled and latest ones are restored on start
+	private boolean enabled = false;
+
+	// directory of journal segments and snapshots
+	private String directory = "journal";
+
+	// size of memory-mapped segment file in bytes
+	private int segmentSize = 64 * 1024 * 1024;
+
+	private FsyncPolicy fsyncPolicy = FsyncPolicy.INTERVAL;
+
+	private Duration fsyncInterval = Duration.ofSeconds(1);
+
+	// how often latest prices are snapshotted and older journal files deleted - bounds recovery time
+	private Duration snapshotInterval = Duration.ofMinutes(1);
+}
@@ -0,0 +1,70 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of margins added to market prices - values are bound from
+ * "fx.margin" prefix of application configuration. The same structure (with
+ * "fx.margin" prefix) may be kept in external YAML file given in "file"
+ * property - the file is reloaded when changed, without restart.
+ *
+ * Margins are given as fraction of price, e.g. -0.001 is -0.1%.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.margin")
+@Getter
+@Setter
+public class FxMarginProperties {
+
+	public enum Mode {
+		// margins are applied when price is stored
+		EAGER,
+		// raw prices are stored and margins are applied when price is read
+		LAZY
+	}
+
+	private Mode mode = Mode.EAGER;
+
+	// margins for pairs without own configuration
+	private Margin defaults = new Margin(new BigDecimal("-0.001"), new BigDecimal("0.001"));
+
+	// margins by pair symbol
+	private Map<String, Margin> pairs = new HashMap<>();
+
+	// additional margins by client tier - applied on top of pair margin when price is read
+	private Map<String, Margin> tiers = new HashMap<>();
+
+	// optional external YAML file with margins - checked for changes every reload interval
+	private String file;
+
+	private Duration reloadInterval = Duration.ofSeconds(10);
+
+	@Getter
+	@Setter
+	public static class Margin {
+
+		private BigDecimal bid = BigDecimal.ZERO;
+
+		private BigDecimal ask = BigDecimal.ZERO;
+
+		public Margin() {
+		}
+
+		public Margin(BigDecimal bid, BigDecimal ask) {
+			this.bid = bid;
+			this.ask = ask;
+		}
+	}
+}
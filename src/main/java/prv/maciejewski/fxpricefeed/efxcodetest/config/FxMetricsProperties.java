@@ -0,0 +1,27 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of feed metrics - values are bound from "fx.metrics" prefix of
+ * application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.metrics")
+@Getter
+@Setter
+public class FxMetricsProperties {
+
+	// when enabled parse, margin and store stages are timed and feed-to-publish age of prices is recorded
+	private boolean latencyEnabled = true;
+
+	// one of given number of ticks is timed - recording to histograms costs more than fast stages themselves
+	private int latencySampleRate = 16;
+}
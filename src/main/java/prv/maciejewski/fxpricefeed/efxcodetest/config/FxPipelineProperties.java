@@ -0,0 +1,33 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+import prv.maciejewski.fxpricefeed.efxcodetest.pipeline.FxIngestionPipeline;
+import prv.maciejewski.fxpricefeed.efxcodetest.pipeline.FxWaitStrategy;
+
+/**
+ * Configuration of asynchronous ingestion pipeline - values are bound from
+ * "fx.pipeline" prefix of application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.pipeline")
+@Getter
+@Setter
+public class FxPipelineProperties {
+
+	// when enabled feed lines are processed by ring buffer pipeline instead of request thread
+	private boolean enabled = false;
+
+	// number of ring buffer slots - power of two
+	private int ringSize = 65536;
+
+	private FxWaitStrategy waitStrategy = FxWaitStrategy.SLEEPING;
+
+	private FxIngestionPipeline.Backpressure backpressure = FxIngestionPipeline.Backpressure.BLOCK;
+}
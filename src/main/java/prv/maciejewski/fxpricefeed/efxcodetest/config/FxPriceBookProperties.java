@@ -0,0 +1,31 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPairSymbolRegistry;
+
+/**
+ * Configuration of shared price book - values are bound from "fx.price-book"
+ * prefix of application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.price-book")
+@Getter
+@Setter
+public class FxPriceBookProperties {
+
+	// when enabled accepted prices are written to memory-mapped book file for local processes
+	private boolean enabled = false;
+
+	// book file - cleared when application starts
+	private String file = "fx-price-book.dat";
+
+	// number of pair slots - pairs with id above it are not written
+	private int slots = FxPairSymbolRegistry.MAX_PAIRS;
+}
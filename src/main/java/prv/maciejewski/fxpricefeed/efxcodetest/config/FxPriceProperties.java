@@ -0,0 +1,44 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of fx price processing - values are bound from "fx.price"
+ * prefix of application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.price")
+@Getter
+@Setter
+public class FxPriceProperties {
+
+	// fixed-point representation of prices
+	private FixedPoint fixedPoint = new FixedPoint();
+
+	@Getter
+	@Setter
+	public static class FixedPoint {
+
+		// when enabled prices are stored as scaled long values instead of BigDecimal
+		private boolean enabled = false;
+
+		// number of decimals for pairs without own configuration
+		private int defaultScale = 5;
+
+		// number of decimals by quote currency (part after "/" in pair symbol)
+		private Map<String, Integer> quoteCurrencyScales = new HashMap<>(Map.of("JPY", 3));
+
+		// number of decimals by pair symbol - has priority over quote currency
+		private Map<String, Integer> pairScales = new HashMap<>();
+	}
+}
@@ -0,0 +1,33 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of rejection sink - values are bound from "fx.rejections"
+ * prefix of application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.rejections")
+@Getter
+@Setter
+public class FxRejectionProperties {
+
+	// rejections of every reason logged per second - others are counted in summary line
+	private int maxLogsPerSecond = 10;
+
+	// one of given number of rejections above limit is logged anyway, 0 - none
+	private int sampleRate = 1000;
+
+	// rejections waiting for logging thread - when exceeded, rejection is not logged
+	private int queueCapacity = 1024;
+
+	// latest rejected records kept for GET /fx/rejections
+	private int deadLetterCapacity = 1000;
+}
@@ -0,0 +1,46 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of price store replication between instances - values are
+ * bound from "fx.replication" prefix of application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.replication")
+@Getter
+@Setter
+public class FxReplicationProperties {
+
+	// when enabled prices accepted by this instance are sent to peers and prices of peers are received
+	private boolean enabled = false;
+
+	// address to receive peer connections on
+	private String bindAddress = "127.0.0.1";
+
+	// port to receive peer connections on, 0 - any free port
+	private int port = 9082;
+
+	// peers to send accepted prices to, as host:port
+	private List<String> peers = new ArrayList<>();
+
+	// size of send and receive buffers in bytes - limit of batch size
+	private int bufferSize = 64 * 1024;
+
+	// prices waiting for slow peer - when exceeded, they are dropped and peer gets snapshot instead
+	private int maxPendingPrices = 65536;
+
+	// wait before connecting to unavailable peer again
+	private Duration reconnectInterval = Duration.ofSeconds(1);
+}
@@ -0,0 +1,30 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of price streaming to subscribers - values are bound from
+ * "fx.stream" prefix of application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.stream")
+@Getter
+@Setter
+public class FxStreamProperties {
+
+	// number of threads sending prices to subscribers
+	private int senderThreads = Runtime.getRuntime().availableProcessors();
+
+	// timeout of subscriber connection in milliseconds, 0 - no timeout
+	private long subscriberTimeout = 0;
+
+	// max time of single send to subscriber in milliseconds - subscriber which does not read is removed, 0 - no limit
+	private long sendTimeout = 5000;
+}
@@ -0,0 +1,24 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of threads used for request handling and feed ingestion -
+ * values are bound from "fx.threads" prefix of application configuration.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@ConfigurationProperties(prefix = "fx.threads")
+@Getter
+@Setter
+public class FxThreadsProperties {
+
+	// when enabled Tomcat requests and ingestion pipeline run on virtual threads - needs Java 21 runtime
+	private boolean virtual = false;
+}
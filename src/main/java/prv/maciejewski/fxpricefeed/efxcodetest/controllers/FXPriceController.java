@@ -1,23 +1,63 @@
 package prv.maciejewski.fxpricefeed.efxcodetest.controllers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.net.URLDecoder;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import prv.maciejewski.fxpricefeed.efxcodetest.candle.FxCandle;
+import prv.maciejewski.fxpricefeed.efxcodetest.compression.FxContentEncoding;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxCompressionProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxStreamProperties;
 import prv.maciejewski.fxpricefeed.efxcodetest.dto.FxPriceDto;
 import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxRejectedRecord;
+import prv.maciejewski.fxpricefeed.efxcodetest.pipeline.FxPipelineStats;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxBinaryFeedService;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxBinaryFeedStats;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxCandleService;
 import prv.maciejewski.fxpricefeed.efxcodetest.services.FxDataFeedService;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxFeedStats;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxPriceHistoryService;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxPriceMarginCalculatorService;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxPriceSnapshot;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxPriceSnapshotCache;
 import prv.maciejewski.fxpricefeed.efxcodetest.services.FxPriceStoreService;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxPriceStreamingService;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxPriceSubscription;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxRejectionService;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxReplicationService;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxReplicationStats;
 
 @RestController
 @RequestMapping(path = "fx")
@@ -29,30 +69,55 @@ public class FXPriceController {
 	@Autowired
 	FxDataFeedService fxDataFeedService;
 	
+	@Autowired
+	FxPriceMarginCalculatorService fxPriceMarginCalculatorService;
+	
+	@Autowired
+	FxPriceStreamingService fxPriceStreamingService;
+
+	@Autowired
+	FxBinaryFeedService fxBinaryFeedService;
+
+	@Autowired
+	FxPriceHistoryService fxPriceHistoryService;
+
+	@Autowired
+	FxCandleService fxCandleService;
+
+	@Autowired
+	FxPriceSnapshotCache fxPriceSnapshotCache;
+
+	@Autowired
+	FxReplicationService fxReplicationService;
+
+	@Autowired
+	FxRejectionService fxRejectionService;
+	
+	@Autowired
+	FxStreamProperties fxStreamProperties;
+
+	@Autowired
+	FxCompressionProperties fxCompressionProperties;
+	
 
     /**
      * Returns fx price for given currancy pair symbols
      * 
      * @param pairSymbol - currncy symbol of pair to get fx price
+     * @param tier - optional client tier with own margins
      * @return fx price for currency
      */
     @GetMapping("/price/{pairSymbol}")
-    public FxPriceDto getFXPrice(@PathVariable String pairSymbol) throws Exception {
-    	String decodedPairSymbol =  URLDecoder.decode(pairSymbol, StandardCharsets.UTF_8.toString());
-    	decodedPairSymbol = decodedPairSymbol.replaceAll("$2F", "/");
+    public FxPriceDto getFXPrice(@PathVariable String pairSymbol, @RequestParam(required = false) String tier) throws Exception {
+    	String decodedPairSymbol = decodePairSymbol(pairSymbol);
     	Optional<FxPrice> fxPrice = fxPriceStoreService.getFxPriceByPairSymbol(decodedPairSymbol);
     	
     	 FxPriceDto result = null;
     	
     	// if fx price found then translate entity to DTO
     	if (fxPrice.isPresent()) {
-    		FxPrice value2send = fxPrice.get();
-    		 result = FxPriceDto.builder()
-						.pairSymbol(value2send.getPairSymbol())
-						.askPrice(value2send.getAskPrice())
-						.bidPrice(value2send.getBidPrice())
-						.dateTime(value2send.getDateTime())
-						.build();		
+    		FxPrice value2send = fxPriceMarginCalculatorService.calculatePriceToRead(fxPrice.get(), tier);
+    		 result = FxPriceDto.fromFxPrice(value2send);
     	} else {
     		result = new FxPriceDto(); // return empty object if not found
     	}
@@ -60,30 +125,197 @@ public class FXPriceController {
     }
     
     @GetMapping("/price/{pairSymbol1}/{pairSymbol2}")
-    public FxPriceDto getFXPrice(@PathVariable String pairSymbol1, @PathVariable String pairSymbol2) throws Exception {
+    public FxPriceDto getFXPrice(@PathVariable String pairSymbol1, @PathVariable String pairSymbol2,
+    		@RequestParam(required = false) String tier) throws Exception {
+    	String pairSymbol = pairSymbol1.concat("/").concat(pairSymbol2);
+    	return this.getFXPrice(pairSymbol, tier);
+    }
+    
+    /**
+     * Returns history of fx prices for given currency pair - kept latest ticks
+     * with date time in given range, oldest first
+     * 
+     * @param pairSymbol - currency symbol of pair
+     * @param from - optional start of range (inclusive), ISO date time in GMT
+     * @param to - optional end of range (inclusive), ISO date time in GMT
+     * @param limit - optional max number of prices - the newest ones are returned
+     * @param tier - optional client tier with own margins
+     * @return fx prices of the pair
+     */
+    @GetMapping("/price/{pairSymbol}/history")
+    public List<FxPriceDto> getFXPriceHistory(@PathVariable String pairSymbol,
+    		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+    		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+    		@RequestParam(required = false, defaultValue = "" + Integer.MAX_VALUE) int limit,
+    		@RequestParam(required = false) String tier)
+    {
+    	String decodedPairSymbol = decodePairSymbol(pairSymbol);
+    	return fxPriceHistoryService.getHistory(decodedPairSymbol, from, to, limit).stream()
+    				.map(storedPrice -> fxPriceMarginCalculatorService.calculatePriceToRead(storedPrice, tier))
+    				.map(FxPriceDto::fromFxPrice)
+    				.collect(Collectors.toList());
+    }
+    
+    @GetMapping("/price/{pairSymbol1}/{pairSymbol2}/history")
+    public List<FxPriceDto> getFXPriceHistory(@PathVariable String pairSymbol1, @PathVariable String pairSymbol2,
+    		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+    		@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+    		@RequestParam(required = false, defaultValue = "" + Integer.MAX_VALUE) int limit,
+    		@RequestParam(required = false) String tier)
+    {
     	String pairSymbol = pairSymbol1.concat("/").concat(pairSymbol2);
-    	return this.getFXPrice(pairSymbol);
+    	return this.getFXPriceHistory(pairSymbol, from, to, limit, tier);
     }
     
     /**
-     * Returns all fx prices
+     * Returns all fx prices. Response is assembled from cached JSON of pairs and has
+     * entity tag - request with matching If-None-Match header gets 304 when prices have not changed.
+     * Response is compressed with encoding negotiated from Accept-Encoding header - compressed JSON
+     * is cached with snapshot, so it is compressed once per change of prices.
      * 
+     * @param tier - optional client tier with own margins
+     * @param acceptEncoding - optional encodings accepted by client, e.g. "gzip" or "lz4"
      * @return fx prices for all currently stored currency pairs 
      */
-    @GetMapping("/prices")
-    public List<FxPriceDto> getFXPrices()
+    @GetMapping(path = "/prices", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getFXPrices(@RequestParam(required = false) String tier,
+    		@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding, WebRequest request)
     {
-    	List<FxPrice> fxPrice = fxPriceStoreService.getAllFxPrices();
-    	
-    	List<FxPriceDto> result = fxPrice.stream()
-    				.map(value2send -> {return FxPriceDto.builder()
-    						.pairSymbol(value2send.getPairSymbol())
-    						.askPrice(value2send.getAskPrice())
-    						.bidPrice(value2send.getBidPrice())
-    						.dateTime(value2send.getDateTime())
-    						.build(); })
-    						.collect(Collectors.toList());
-    	return result;
+    	FxPriceSnapshot snapshot = fxPriceSnapshotCache.getSnapshot(tier);
+    	FxContentEncoding encoding = snapshot.json().length < fxCompressionProperties.getMinResponseSize()
+    			? FxContentEncoding.IDENTITY : FxContentEncoding.negotiate(acceptEncoding, fxCompressionProperties.getEncodings());
+    	String etag = snapshot.etag(encoding);
+    	if (request.checkNotModified(etag)) {
+    		return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT_ENCODING).build();
+    	}
+    	ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT_ENCODING)
+    			.contentType(MediaType.APPLICATION_JSON);
+    	if (encoding != FxContentEncoding.IDENTITY) {
+    		response.header(HttpHeaders.CONTENT_ENCODING, encoding.getToken());
+    	}
+    	return response.body(snapshot.json(encoding));
+    }
+    
+    /**
+     * Returns prices of many pairs at once. Response is JSON object with "prices" - found prices
+     * in order of request - and "missing" - requested pair symbols without price.
+     * Response is written straight from cached JSON of pairs.
+     * Response is compressed while written with encoding negotiated from Accept-Encoding header.
+     * 
+     * @param pairSymbols - JSON array of pair symbols, e.g. ["EUR/USD","GBP/USD"]
+     * @param tier - optional client tier with own margins
+     * @param acceptEncoding - optional encodings accepted by client, e.g. "gzip" or "lz4"
+     * @param response - response to write prices to
+     */
+    @PostMapping(path = "/prices/query", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void queryFXPrices(@RequestBody List<String> pairSymbols, @RequestParam(required = false) String tier,
+    		@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+    		HttpServletResponse response) throws IOException
+    {
+    	FxContentEncoding encoding = FxContentEncoding.negotiate(acceptEncoding, fxCompressionProperties.getEncodings());
+    	response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    	response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    	if (encoding == FxContentEncoding.IDENTITY) {
+    		fxPriceSnapshotCache.writePrices(pairSymbols, tier, response.getOutputStream());
+    		return;
+    	}
+    	response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.getToken());
+    	// encoded content is complete when encoding stream is closed
+    	try (OutputStream out = encoding.encoding(response.getOutputStream())) {
+    		fxPriceSnapshotCache.writePrices(pairSymbols, tier, out);
+    	}
+    }
+    
+    /**
+     * Server-Sent Events stream of price updates. Every accepted price of subscribed pairs
+     * is sent as "price" event, current prices are sent at subscription.
+     * Prices not yet sent to slow client are replaced by newer ones.
+     * If candle intervals are given then current candle of the pair is sent as "candle" event
+     * after every price.
+     * 
+     * @param pairs - list of pair symbols to subscribe, all pairs if not given
+     * @param tier - optional client tier with own margins
+     * @param candles - optional list of candle intervals, e.g. PT1M
+     * @return event stream
+     */
+    @GetMapping(path = "/prices/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamFXPrices(@RequestParam(required = false) List<String> pairs,
+    		@RequestParam(required = false) String tier,
+    		@RequestParam(required = false) List<Duration> candles)
+    {
+    	List<Duration> candleIntervals = candles == null ? List.of() : candles;
+    	checkCandleIntervals(candleIntervals);
+    	SseEmitter emitter = new SseEmitter(fxStreamProperties.getSubscriberTimeout());
+    	FxPriceSubscription subscription = fxPriceStreamingService.subscribe(pairs, tier, price -> {
+    		emitter.send(SseEmitter.event().name("price").data(price, MediaType.APPLICATION_JSON));
+    		for (Duration interval : candleIntervals) {
+    			Optional<FxCandle> candle = fxCandleService.getCurrentCandle(price.getPairSymbol(), interval, tier);
+    			if (candle.isPresent()) {
+    				emitter.send(SseEmitter.event().name("candle").data(candle.get(), MediaType.APPLICATION_JSON));
+    			}
+    		}
+    	}, emitter::completeWithError);
+    	emitter.onCompletion(() -> fxPriceStreamingService.unsubscribe(subscription));
+    	emitter.onTimeout(() -> fxPriceStreamingService.unsubscribe(subscription));
+    	emitter.onError(error -> fxPriceStreamingService.unsubscribe(subscription));
+    	return emitter;
+    }
+    
+    /**
+     * Returns latest OHLC candles of bid and ask for given currency pair, oldest first.
+     * Candles have the same margins as prices read by the client.
+     * 
+     * @param pairSymbol - currency symbol of pair
+     * @param interval - optional candle interval, e.g. PT1M - first configured one if not given
+     * @param limit - optional max number of candles - the newest ones are returned
+     * @param tier - optional client tier with own margins
+     * @return candles of the pair, 400 for interval which is not configured or 404 if no interval is configured
+     */
+    @GetMapping("/candles/{pairSymbol}")
+    public List<FxCandle> getFXCandles(@PathVariable String pairSymbol,
+    		@RequestParam(required = false) Duration interval,
+    		@RequestParam(required = false, defaultValue = "" + Integer.MAX_VALUE) int limit,
+    		@RequestParam(required = false) String tier)
+    {
+    	String decodedPairSymbol = decodePairSymbol(pairSymbol);
+    	Duration candleInterval = interval != null ? interval : fxCandleService.getIntervals().stream().findFirst()
+    			.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No candle interval is configured"));
+    	checkCandleIntervals(List.of(candleInterval));
+    	return fxCandleService.getCandles(decodedPairSymbol, candleInterval, limit, tier);
+    }
+    
+    @GetMapping("/candles/{pairSymbol1}/{pairSymbol2}")
+    public List<FxCandle> getFXCandles(@PathVariable String pairSymbol1, @PathVariable String pairSymbol2,
+    		@RequestParam(required = false) Duration interval,
+    		@RequestParam(required = false, defaultValue = "" + Integer.MAX_VALUE) int limit,
+    		@RequestParam(required = false) String tier)
+    {
+    	String pairSymbol = pairSymbol1.concat("/").concat(pairSymbol2);
+    	return this.getFXCandles(pairSymbol, interval, limit, tier);
+    }
+    
+    /**
+     * Decodes pair symbol from path - usual symbols have nothing to decode and are returned as they are
+     * 
+     * @param pairSymbol - pair symbol from path, e.g. GBP%2FUSD
+     * @return decoded pair symbol
+     */
+    private static String decodePairSymbol(String pairSymbol)
+    {
+    	if (pairSymbol.indexOf('%') < 0 && pairSymbol.indexOf('+') < 0) {
+    		return pairSymbol;
+    	}
+    	return URLDecoder.decode(pairSymbol, StandardCharsets.UTF_8);
+    }
+    
+    private void checkCandleIntervals(List<Duration> intervals)
+    {
+    	for (Duration interval : intervals) {
+    		if (!fxCandleService.getIntervals().contains(interval)) {
+    			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+    					"Candle interval " + interval + " is not configured, available: " + fxCandleService.getIntervals());
+    		}
+    	}
     }
     
     
@@ -96,4 +328,135 @@ public class FXPriceController {
     {
     	fxDataFeedService.onMessage(csvPriceFeed);
     }
+    
+    /**
+     * Put endpoint for compressed csv data feed - body with Content-Encoding header, e.g. gzip or lz4.
+     * Body is decompressed while it is read and records are stored as in streaming put endpoint,
+     * so decompressed feed is never kept in memory as a whole - conflating and parallel modes
+     * of plain put, which need whole message, are not used.
+     * Body which can't be decoded is answered with 400 - records decoded before problem are stored.
+     * 
+     */
+    @PutMapping(path = "/price", headers = HttpHeaders.CONTENT_ENCODING)
+    public void putEncodedFxPrice(HttpServletRequest request) throws IOException
+    {
+    	onDecodedStream(request);
+    }
+    
+    /**
+     * Streaming put endpoint for csv data feed to system.
+     * Body is not read to memory at once - records are parsed and stored while request is read,
+     * so it is meant for big feeds like end of day replays.
+     * Body is decoded with InputStreamReader instead of servlet reader - servlet reader
+     * blocks in synchronized code, which pins virtual thread of request to its carrier.
+     * Body may be compressed - see Content-Encoding in putEncodedFxPrice.
+     * 
+     */
+    @PutMapping("/price/stream")
+    public void putFxPriceStream(HttpServletRequest request) throws IOException
+    {
+    	onDecodedStream(request);
+    }
+    
+    /**
+     * Sends decoded request body to streaming feed - problem while encoded body is read
+     * means that it can't be decoded, so it is answered with 400
+     * 
+     * @param request - request with csv data feed
+     */
+    private void onDecodedStream(HttpServletRequest request) throws IOException
+    {
+    	Reader body = decodedBody(request);
+    	try {
+    		fxDataFeedService.onStream(body);
+    	} catch (IOException ioe) {
+    		String contentEncoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+    		if (contentEncoding == null || contentEncoding.isBlank()) {
+    			throw ioe;
+    		}
+    		throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Body can't be decoded: " + ioe.getMessage());
+    	}
+    }
+    
+    /**
+     * Returns reader of request body - body is decompressed by its Content-Encoding while it is read
+     * 
+     * @param request - request with csv data feed
+     * @return reader of decoded body, or 415 if encoding is not supported, or 400 if header of
+     *         encoded body can't be read
+     */
+    private Reader decodedBody(HttpServletRequest request) throws IOException
+    {
+    	Charset charset = request.getCharacterEncoding() != null ? Charset.forName(request.getCharacterEncoding())
+    			: StandardCharsets.UTF_8;
+    	InputStream body;
+    	try {
+    		body = FxContentEncoding.decoding(request.getHeader(HttpHeaders.CONTENT_ENCODING),
+    				fxCompressionProperties.getEncodings(), request.getInputStream());
+    	} catch (IllegalArgumentException iae) {
+    		throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, iae.getMessage());
+    	} catch (IOException ioe) {
+    		// decoders read header of encoded body at once, e.g. gzip magic number
+    		throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Body can't be decoded: " + ioe.getMessage());
+    	}
+    	return new InputStreamReader(body, charset);
+    }
+    
+    /**
+     * Returns metrics of ingestion pipeline - queue depth, counters and per stage latencies.
+     * 
+     * @return pipeline metrics or 404 if pipeline is not enabled
+     */
+    @GetMapping("/pipeline/stats")
+    public ResponseEntity<FxPipelineStats> getPipelineStats()
+    {
+    	return ResponseEntity.of(fxDataFeedService.getPipelineStats());
+    }
+    
+    /**
+     * Returns counters of conflating feed processing - how many ticks have been dropped
+     * because newer tick of the same pair was in the same message.
+     * 
+     * @return feed counters
+     */
+    @GetMapping("/feed/stats")
+    public FxFeedStats getFeedStats()
+    {
+    	return fxDataFeedService.getFeedStats();
+    }
+    
+    /**
+     * Returns counters of binary tick feed listener - open connections, received and rejected frames.
+     * 
+     * @return listener counters or 404 if binary feed is not enabled
+     */
+    @GetMapping("/feed/binary/stats")
+    public ResponseEntity<FxBinaryFeedStats> getBinaryFeedStats()
+    {
+    	return ResponseEntity.of(fxBinaryFeedService.getStats());
+    }
+    
+    /**
+     * Returns counters of price store replication - connected peers, sent and received prices.
+     * 
+     * @return replication counters or 404 if replication is not enabled
+     */
+    @GetMapping("/replication/stats")
+    public ResponseEntity<FxReplicationStats> getReplicationStats()
+    {
+    	return ResponseEntity.of(fxReplicationService.getStats());
+    }
+    
+    /**
+     * Returns latest rejected feed records and prices ignored as older than stored ones - dead-letter
+     * buffer of rejections which are logged only up to configured rate.
+     * 
+     * @param limit - optional max number of records
+     * @return rejected records, newest first
+     */
+    @GetMapping("/rejections")
+    public List<FxRejectedRecord> getRejections(@RequestParam(required = false, defaultValue = "100") int limit)
+    {
+    	return fxRejectionService.getRejections(limit);
+    }
 }
@@ -0,0 +1,159 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.cross;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.locks.ReentrantLock;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Definition of derived pair calculated from two legs through common vehicle
+ * currency, e.g. EUR/JPY from EUR/USD and USD/JPY.
+ *
+ * Leg may be quoted the other way round (e.g. JPY/USD instead of USD/JPY) - it
+ * is inverted then: bid of inverted leg is 1 / ask and ask is 1 / bid. Cross
+ * bid is product of leg bids and cross ask is product of leg asks, rounded to
+ * scale of derived pair - bid down and ask up, so spread is never narrowed.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public final class FxCrossRate {
+
+	final static char PAIR_SEPARATOR = '/';
+	final static String PRICE_ID_SEPARATOR = "x";
+
+	// precision of intermediate results
+	final static MathContext CROSS_CONTEXT = MathContext.DECIMAL64;
+
+	private final String pairSymbol;
+	private final String baseLeg;
+	private final boolean baseLegInverted;
+	private final String quoteLeg;
+	private final boolean quoteLegInverted;
+
+	// serializes calculations of this cross rate triggered by updates of both legs
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private FxCrossRate(String pairSymbol, String baseLeg, boolean baseLegInverted, String quoteLeg,
+			boolean quoteLegInverted) {
+		this.pairSymbol = pairSymbol;
+		this.baseLeg = baseLeg;
+		this.baseLegInverted = baseLegInverted;
+		this.quoteLeg = quoteLeg;
+		this.quoteLegInverted = quoteLegInverted;
+	}
+
+	/**
+	 * Creates cross rate definition - legs may be given in any order and quoted
+	 * in any direction, they must connect base and quote currency of derived pair
+	 * through one vehicle currency.
+	 *
+	 * @param pairSymbol - derived pair, e.g. EUR/JPY
+	 * @param leg1       - one leg, e.g. EUR/USD
+	 * @param leg2       - other leg, e.g. USD/JPY or JPY/USD
+	 * @return cross rate definition
+	 * @throws IllegalArgumentException if legs don't make given pair
+	 */
+	public static FxCrossRate of(String pairSymbol, String leg1, String leg2) {
+		String[] pair = currencies(pairSymbol);
+		String[] first = currencies(leg1);
+		String[] second = currencies(leg2);
+		// leg with base currency of derived pair is base leg
+		if (!contains(first, pair[0])) {
+			String[] swapped = first;
+			first = second;
+			second = swapped;
+			String swappedLeg = leg1;
+			leg1 = leg2;
+			leg2 = swappedLeg;
+		}
+		if (!contains(first, pair[0]) || !contains(second, pair[1]) || contains(first, pair[1])
+				|| contains(second, pair[0])) {
+			throw new IllegalArgumentException(
+					"Legs " + leg1 + " and " + leg2 + " don't make cross rate " + pairSymbol);
+		}
+		boolean baseLegInverted = first[1].equals(pair[0]);
+		String vehicle = baseLegInverted ? first[0] : first[1];
+		boolean quoteLegInverted = second[0].equals(pair[1]);
+		String quoteLegVehicle = quoteLegInverted ? second[1] : second[0];
+		if (!vehicle.equals(quoteLegVehicle)) {
+			throw new IllegalArgumentException("Legs " + leg1 + " and " + leg2 + " of cross rate " + pairSymbol
+					+ " have no common currency");
+		}
+		return new FxCrossRate(pairSymbol, leg1, baseLegInverted, leg2, quoteLegInverted);
+	}
+
+	/**
+	 * Calculates cross price from market prices of legs. Date time of cross is
+	 * the later of legs date times.
+	 *
+	 * @param baseLegPrice  - price of base leg
+	 * @param quoteLegPrice - price of quote leg
+	 * @param scale         - number of decimals of derived pair
+	 * @return cross price with BigDecimal bid and ask
+	 */
+	public FxPrice calculate(FxPrice baseLegPrice, FxPrice quoteLegPrice, int scale) {
+		BigDecimal bid = bid(baseLegPrice, baseLegInverted).multiply(bid(quoteLegPrice, quoteLegInverted), CROSS_CONTEXT);
+		BigDecimal ask = ask(baseLegPrice, baseLegInverted).multiply(ask(quoteLegPrice, quoteLegInverted), CROSS_CONTEXT);
+		return FxPrice.builder()
+				.priceId(baseLegPrice.getPriceId() + PRICE_ID_SEPARATOR + quoteLegPrice.getPriceId())
+				.pairSymbol(pairSymbol)
+				.bidPrice(bid.setScale(scale, RoundingMode.FLOOR))
+				.askPrice(ask.setScale(scale, RoundingMode.CEILING))
+				.dateTime(baseLegPrice.getDateTime().isAfter(quoteLegPrice.getDateTime()) ? baseLegPrice.getDateTime()
+						: quoteLegPrice.getDateTime())
+				.build();
+	}
+
+	public String getPairSymbol() {
+		return pairSymbol;
+	}
+
+	public String getBaseLeg() {
+		return baseLeg;
+	}
+
+	public boolean isBaseLegInverted() {
+		return baseLegInverted;
+	}
+
+	public String getQuoteLeg() {
+		return quoteLeg;
+	}
+
+	public boolean isQuoteLegInverted() {
+		return quoteLegInverted;
+	}
+
+	public ReentrantLock getLock() {
+		return lock;
+	}
+
+	@Override
+	public String toString() {
+		return pairSymbol + " = " + (baseLegInverted ? "1 / " : "") + baseLeg + " * "
+				+ (quoteLegInverted ? "1 / " : "") + quoteLeg;
+	}
+
+	private static BigDecimal bid(FxPrice legPrice, boolean inverted) {
+		return inverted ? BigDecimal.ONE.divide(legPrice.getAskPrice(), CROSS_CONTEXT) : legPrice.getBidPrice();
+	}
+
+	private static BigDecimal ask(FxPrice legPrice, boolean inverted) {
+		return inverted ? BigDecimal.ONE.divide(legPrice.getBidPrice(), CROSS_CONTEXT) : legPrice.getAskPrice();
+	}
+
+	private static String[] currencies(String pairSymbol) {
+		int separator = pairSymbol == null ? -1 : pairSymbol.indexOf(PAIR_SEPARATOR);
+		if (separator <= 0 || separator == pairSymbol.length() - 1 || pairSymbol.indexOf(PAIR_SEPARATOR, separator + 1) >= 0) {
+			throw new IllegalArgumentException("Not a currency pair: " + pairSymbol);
+		}
+		return new String[] { pairSymbol.substring(0, separator), pairSymbol.substring(separator + 1) };
+	}
+
+	private static boolean contains(String[] currencies, String currency) {
+		return currencies[0].equals(currency) || currencies[1].equals(currency);
+	}
+}
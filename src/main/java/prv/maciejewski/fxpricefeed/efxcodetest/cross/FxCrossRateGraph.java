@@ -0,0 +1,80 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.cross;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPairSymbolRegistry;
+
+/**
+ * Immutable dependency graph from legs to derived pairs. Dependents of leg are
+ * kept in array indexed by pair id from FxPairSymbolRegistry - update of leg
+ * finds its cross rates with one array lookup, independent of number of pairs
+ * in price store.
+ *
+ * Derived pair can't be leg of other cross rate - derived prices are never
+ * calculated from other derived prices, so there are no chains nor cycles.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public final class FxCrossRateGraph {
+
+	private static final FxCrossRate[] NO_DEPENDENTS = new FxCrossRate[0];
+
+	private final List<FxCrossRate> crossRates;
+	// cross rates by pair id of leg
+	private final FxCrossRate[][] dependents;
+
+	/**
+	 * @param crossRates - cross rate definitions
+	 * @throws IllegalArgumentException if derived pair is defined twice or is leg
+	 *                                  of other cross rate
+	 */
+	public FxCrossRateGraph(Collection<FxCrossRate> crossRates) {
+		FxPairSymbolRegistry registry = FxPairSymbolRegistry.shared();
+		Set<String> derivedPairs = new HashSet<>();
+		for (FxCrossRate crossRate : crossRates) {
+			if (!derivedPairs.add(crossRate.getPairSymbol())) {
+				throw new IllegalArgumentException("Cross rate defined twice: " + crossRate.getPairSymbol());
+			}
+		}
+		Map<Integer, List<FxCrossRate>> byLeg = new HashMap<>();
+		for (FxCrossRate crossRate : crossRates) {
+			for (String leg : List.of(crossRate.getBaseLeg(), crossRate.getQuoteLeg())) {
+				if (derivedPairs.contains(leg)) {
+					throw new IllegalArgumentException(
+							"Derived pair " + leg + " can't be leg of cross rate " + crossRate.getPairSymbol());
+				}
+				int legId = registry.resolve(leg);
+				if (legId == FxPairSymbolRegistry.UNKNOWN_ID) {
+					throw new IllegalArgumentException("Pair can't be registered - too many pairs: " + leg);
+				}
+				byLeg.computeIfAbsent(legId, id -> new ArrayList<>()).add(crossRate);
+			}
+		}
+		this.crossRates = List.copyOf(crossRates);
+		this.dependents = new FxCrossRate[byLeg.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1][];
+		byLeg.forEach((legId, legDependents) -> dependents[legId] = legDependents.toArray(NO_DEPENDENTS));
+	}
+
+	/**
+	 * @param legPairId - pair id of updated price
+	 * @return cross rates calculated from the pair, empty array if there are none
+	 */
+	public FxCrossRate[] dependentsOf(int legPairId) {
+		FxCrossRate[] legDependents = (legPairId >= 0 && legPairId < dependents.length) ? dependents[legPairId] : null;
+		return legDependents != null ? legDependents : NO_DEPENDENTS;
+	}
+
+	/**
+	 * @return all cross rates
+	 */
+	public List<FxCrossRate> getCrossRates() {
+		return crossRates;
+	}
+}
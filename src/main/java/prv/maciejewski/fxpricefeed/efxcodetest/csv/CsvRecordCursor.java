@@ -0,0 +1,273 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.csv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reusable cursor over columns of single CSV record.
+ *
+ * Record is parsed using rules defined in RFC 4180 (same as
+ * FxDataFeedService.parseCSVLine) but no String objects are created for
+ * columns. Unescaped record content is copied into cursor's own char buffer and
+ * every column is described by offset and length in that buffer - copy is
+ * needed as escaped quotes are removed from column values. Buffer and column
+ * tables are grown only when record longer than any before is parsed, so in
+ * steady state parsing does not allocate.
+ *
+ * Cursor is not thread safe - use one per thread, e.g. with forCurrentThread().
+ * Column values are valid until next parse or clear call. Cursor of thread
+ * lives as long as the thread, so clear is to be called when record is not
+ * needed anymore - it drops the record and buffers grown by exceptionally
+ * long record.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public class CsvRecordCursor {
+
+	final static char QUOTE_CHARACTER = '"';
+	final static int INITIAL_BUFFER_SIZE = 256;
+	final static int INITIAL_COLUMNS = 8;
+	// buffers grown above these sizes are shrunk by clear
+	final static int MAX_RETAINED_BUFFER_SIZE = 16 * 1024;
+	final static int MAX_RETAINED_COLUMNS = 1024;
+	final static int INITIAL_PREFIXED_BUFFER_SIZE = 32;
+
+	private static final ThreadLocal<CsvRecordCursor> THREAD_CURSOR = ThreadLocal.withInitial(CsvRecordCursor::new);
+
+	private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+	private int[] columnStart = new int[INITIAL_COLUMNS];
+	private int[] columnLength = new int[INITIAL_COLUMNS];
+	private int columnCount = 0;
+	// last parsed record as received
+	private CharSequence record = "";
+	// prefix and column value joined by trimmedAsString
+	private char[] prefixedBuffer = new char[INITIAL_PREFIXED_BUFFER_SIZE];
+
+	/**
+	 * Returns cursor bound to current thread
+	 *
+	 * @return cursor to reuse by current thread
+	 */
+	public static CsvRecordCursor forCurrentThread() {
+		return THREAD_CURSOR.get();
+	}
+
+	/**
+	 * Parses single line with CSV record.
+	 *
+	 * @param csvLine         - string with line containing data record in CSV form
+	 * @param columnSeparator - column separator character
+	 *
+	 * @return this cursor pointing on parsed columns
+	 */
+	public CsvRecordCursor parse(CharSequence csvLine, char columnSeparator) {
+		int length = csvLine.length();
+		ensureBufferCapacity(length);
+		columnCount = 0;
+		record = csvLine;
+
+		boolean inQuotes = false; // flag to determine if we parse string in quote
+		int write = 0;
+		int start = 0;
+
+		for (int i = 0; i < length; i++) {
+			char c = csvLine.charAt(i);
+
+			if (c == QUOTE_CHARACTER) {
+				// quote character found
+				if (i < length - 1 && csvLine.charAt(i + 1) == QUOTE_CHARACTER) {
+					// Found an escaped quote - skip the first quote and keep the second
+					buffer[write++] = QUOTE_CHARACTER;
+					i++; // move to next char
+				} else {
+					// Found a non-escaped quote - toggle the inQuotes flag
+					inQuotes = !inQuotes;
+				}
+			} else if (c == columnSeparator && !inQuotes) {
+				// unquoted column separator found
+				addColumn(start, write - start);
+				start = write;
+			} else {
+				buffer[write++] = c;
+			}
+		}
+		addColumn(start, write - start); // Add last column
+
+		return this;
+	}
+
+	/**
+	 * Forgets last parsed record - reference to record is dropped and buffers
+	 * grown above retained size are shrunk back to initial size. Column values
+	 * are not valid after clear.
+	 */
+	public void clear() {
+		record = "";
+		columnCount = 0;
+		if (buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+			buffer = new char[INITIAL_BUFFER_SIZE];
+		}
+		if (prefixedBuffer.length > MAX_RETAINED_BUFFER_SIZE) {
+			prefixedBuffer = new char[INITIAL_PREFIXED_BUFFER_SIZE];
+		}
+		if (columnStart.length > MAX_RETAINED_COLUMNS) {
+			columnStart = new int[INITIAL_COLUMNS];
+			columnLength = new int[INITIAL_COLUMNS];
+		}
+	}
+
+	/**
+	 * @return number of columns in last parsed record
+	 */
+	public int columnCount() {
+		return columnCount;
+	}
+
+	/**
+	 * @return last parsed record as it has been received - quotes are kept,
+	 *         meant for error reporting
+	 */
+	public CharSequence record() {
+		return record;
+	}
+
+	/**
+	 * @return buffer with unescaped column values - see columnStart and columnLength
+	 */
+	public char[] buffer() {
+		return buffer;
+	}
+
+	/**
+	 * @param column - column index
+	 * @return offset of column value in buffer
+	 */
+	public int columnStart(int column) {
+		return columnStart[checkColumn(column)];
+	}
+
+	/**
+	 * @param column - column index
+	 * @return length of column value
+	 */
+	public int columnLength(int column) {
+		return columnLength[checkColumn(column)];
+	}
+
+	/**
+	 * Returns offset of column value without leading white spaces - rules are the
+	 * same as for String.trim()
+	 *
+	 * @param column - column index
+	 * @return offset of trimmed column value in buffer
+	 */
+	public int trimmedStart(int column) {
+		int start = columnStart(column);
+		int end = start + columnLength[column];
+		while (start < end && buffer[start] <= ' ') {
+			start++;
+		}
+		return start;
+	}
+
+	/**
+	 * Returns length of column value without leading and trailing white spaces -
+	 * rules are the same as for String.trim()
+	 *
+	 * @param column - column index
+	 * @return length of trimmed column value
+	 */
+	public int trimmedLength(int column) {
+		int start = trimmedStart(column);
+		int end = columnStart[column] + columnLength[column];
+		while (end > start && buffer[end - 1] <= ' ') {
+			end--;
+		}
+		return end - start;
+	}
+
+	/**
+	 * Creates String with column value - meant for values which have to be stored
+	 * and for error reporting
+	 *
+	 * @param column - column index
+	 * @return column value
+	 */
+	public String columnAsString(int column) {
+		return new String(buffer, columnStart(column), columnLength[column]);
+	}
+
+	/**
+	 * Creates String with trimmed column value
+	 *
+	 * @param column - column index
+	 * @return trimmed column value
+	 */
+	public String trimmedAsString(int column) {
+		return new String(buffer, trimmedStart(column), trimmedLength(column));
+	}
+
+	/**
+	 * Creates String with prefix followed by trimmed column value - one String
+	 * is created, prefix and value are joined in reused buffer
+	 *
+	 * @param column - column index
+	 * @param prefix - text put before value
+	 * @return prefix and trimmed column value
+	 */
+	public String trimmedAsString(int column, String prefix) {
+		if (prefix.isEmpty()) {
+			return trimmedAsString(column);
+		}
+		int length = prefix.length() + trimmedLength(column);
+		if (prefixedBuffer.length < length) {
+			prefixedBuffer = new char[Math.max(length, prefixedBuffer.length * 2)];
+		}
+		prefix.getChars(0, prefix.length(), prefixedBuffer, 0);
+		System.arraycopy(buffer, trimmedStart(column), prefixedBuffer, prefix.length(), trimmedLength(column));
+		return new String(prefixedBuffer, 0, length);
+	}
+
+	/**
+	 * Materializes all columns as list of Strings
+	 *
+	 * @return List of Strings with record columns
+	 */
+	public List<String> toList() {
+		List<String> result = new ArrayList<>(columnCount);
+		for (int i = 0; i < columnCount; i++) {
+			result.add(columnAsString(i));
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return toList().toString();
+	}
+
+	private void addColumn(int start, int length) {
+		if (columnCount == columnStart.length) {
+			columnStart = Arrays.copyOf(columnStart, columnCount * 2);
+			columnLength = Arrays.copyOf(columnLength, columnCount * 2);
+		}
+		columnStart[columnCount] = start;
+		columnLength[columnCount] = length;
+		columnCount++;
+	}
+
+	private void ensureBufferCapacity(int length) {
+		if (buffer.length < length) {
+			buffer = new char[Math.max(length, buffer.length * 2)];
+		}
+	}
+
+	private int checkColumn(int column) {
+		if (column < 0 || column >= columnCount) {
+			throw new IndexOutOfBoundsException("Column " + column + " out of " + columnCount);
+		}
+		return column;
+	}
+}
@@ -0,0 +1,200 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * Incremental reader of CSV records from character stream.
+ *
+ * Stream is read chunk by chunk into fixed size buffer and records are cut on
+ * CR, LF or CRLF line endings using rules defined in RFC 4180 - line ending
+ * inside quoted column is part of the record. Quoting state and pending CR are
+ * kept between chunks, so record may be split on any chunk boundary.
+ *
+ * Memory used depends only on chunk size and max record length, not on size of
+ * whole stream. Record longer than max length is not kept - its first max
+ * length characters are passed to handler of over-long records, it is counted
+ * and skipped up to next line ending (quotes are not respected then, as
+ * unbalanced quote is the usual cause of such record). Record builder is reused between records.
+ *
+ * Class is not thread safe - one reader per stream.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public class CsvRecordReader {
+
+	public final static int DEFAULT_CHUNK_SIZE = 8192;
+	public final static int DEFAULT_MAX_RECORD_LENGTH = 1024;
+
+	final static char QUOTE_CHARACTER = '"';
+	final static char CR = '\r';
+	final static char LF = '\n';
+
+	private final Reader source;
+	private final char[] chunk;
+	private final StringBuilder recordBuilder = new StringBuilder(128);
+	private final int maxRecordLength;
+	private final Consumer<String> overlongRecordHandler;
+	private long overlongRecordCount = 0;
+
+	private int chunkPosition = 0;
+	private int chunkLength = 0;
+	private boolean endOfStream = false;
+
+	// parser state kept between chunks
+	private boolean inQuotes = false;
+	private boolean skipNextLf = false;
+
+	public CsvRecordReader(Reader source) {
+		this(source, DEFAULT_CHUNK_SIZE);
+	}
+
+	public CsvRecordReader(Reader source, int chunkSize) {
+		this(source, chunkSize, DEFAULT_MAX_RECORD_LENGTH, record -> {
+		});
+	}
+
+	/**
+	 * @param source                - stream of CSV records
+	 * @param chunkSize             - number of characters read at once
+	 * @param maxRecordLength       - longer records are skipped
+	 * @param overlongRecordHandler - gets skipped record cut to max length
+	 */
+	public CsvRecordReader(Reader source, int chunkSize, int maxRecordLength, Consumer<String> overlongRecordHandler) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		if (maxRecordLength <= 0) {
+			throw new IllegalArgumentException("Max record length must be positive: " + maxRecordLength);
+		}
+		this.source = source;
+		this.chunk = new char[chunkSize];
+		this.maxRecordLength = maxRecordLength;
+		this.overlongRecordHandler = overlongRecordHandler;
+	}
+
+	/**
+	 * Reads next record from stream. Line ending characters are not part of
+	 * returned record, quotes are left as they are - record should be parsed
+	 * with CSV line parser. Empty lines are returned as empty strings. Records
+	 * longer than max length are skipped.
+	 *
+	 * @return next record or null if end of stream is reached
+	 *
+	 * @throws IOException - when source stream can't be read
+	 */
+	public String nextRecord() throws IOException {
+		recordBuilder.setLength(0);
+		boolean anyCharacter = false;
+		boolean overlong = false;
+
+		while (true) {
+			if (chunkPosition >= chunkLength) {
+				if (!fillChunk()) {
+					if (overlong) {
+						rejectOverlongRecord();
+						return null;
+					}
+					// last record without line ending at end of stream
+					return anyCharacter ? recordBuilder.toString() : null;
+				}
+			}
+
+			if (overlong) {
+				// rest of over-long record is dropped chunk by chunk
+				if (skipToLineEnd()) {
+					rejectOverlongRecord();
+					recordBuilder.setLength(0);
+					anyCharacter = false;
+					overlong = false;
+				}
+				continue;
+			}
+
+			int recordStart = chunkPosition;
+			while (chunkPosition < chunkLength) {
+				char c = chunk[chunkPosition];
+
+				if (skipNextLf) {
+					skipNextLf = false;
+					if (c == LF) {
+						// second character of CRLF
+						chunkPosition++;
+						recordStart = chunkPosition;
+						continue;
+					}
+				}
+
+				if (!inQuotes && (c == CR || c == LF)) {
+					recordBuilder.append(chunk, recordStart, chunkPosition - recordStart);
+					chunkPosition++;
+					skipNextLf = (c == CR);
+					return recordBuilder.toString();
+				}
+				if (chunkPosition - recordStart + recordBuilder.length() >= maxRecordLength) {
+					// record has max length and goes on - the rest is skipped
+					recordBuilder.append(chunk, recordStart, chunkPosition - recordStart);
+					overlong = true;
+					inQuotes = false;
+					break;
+				}
+				if (c == QUOTE_CHARACTER) {
+					// escaped quote is two toggles - state is the same after both
+					inQuotes = !inQuotes;
+				}
+				chunkPosition++;
+				anyCharacter = true;
+			}
+			if (!overlong) {
+				// chunk finished in the middle of record - keep what we have and read next chunk
+				recordBuilder.append(chunk, recordStart, chunkPosition - recordStart);
+			}
+		}
+	}
+
+	/**
+	 * @return number of records skipped as longer than max length
+	 */
+	public long getOverlongRecordCount() {
+		return overlongRecordCount;
+	}
+
+	// moves chunk position behind line ending - false if there is none in chunk
+	private boolean skipToLineEnd() {
+		while (chunkPosition < chunkLength) {
+			char c = chunk[chunkPosition++];
+			if (c == CR || c == LF) {
+				skipNextLf = (c == CR);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void rejectOverlongRecord() {
+		overlongRecordCount++;
+		inQuotes = false;
+		overlongRecordHandler.accept(recordBuilder.toString());
+	}
+
+	private boolean fillChunk() throws IOException {
+		if (endOfStream) {
+			return false;
+		}
+		int read;
+		do {
+			read = source.read(chunk, 0, chunk.length);
+		} while (read == 0);
+
+		if (read < 0) {
+			endOfStream = true;
+			chunkPosition = chunkLength = 0;
+			return false;
+		}
+		chunkPosition = 0;
+		chunkLength = read;
+		return true;
+	}
+}
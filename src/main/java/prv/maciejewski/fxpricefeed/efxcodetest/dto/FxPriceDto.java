@@ -10,6 +10,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
 
 @Getter
 @Setter
@@ -38,4 +39,19 @@ public class FxPriceDto {
 	// local date time in GMT
 	LocalDateTime dateTime;
 
+	/**
+	 * Translates price entity to DTO
+	 *
+	 * @param fxPrice - price to translate
+	 * @return DTO with price values
+	 */
+	public static FxPriceDto fromFxPrice(FxPrice fxPrice) {
+		return FxPriceDto.builder()
+				.pairSymbol(fxPrice.getPairSymbol())
+				.askPrice(fxPrice.getAskPrice())
+				.bidPrice(fxPrice.getBidPrice())
+				.dateTime(fxPrice.getDateTime())
+				.build();
+	}
+
 }
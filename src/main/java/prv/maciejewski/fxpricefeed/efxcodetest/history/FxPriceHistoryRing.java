@@ -0,0 +1,210 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.history;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FixedPointDecimal;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Preallocated ring of latest ticks of one currency pair. Ticks are kept in
+ * primitive columns - timestamp (nanoseconds since epoch, UTC), bid and ask
+ * mantissas and their scale - so memory does not depend on tick rate: when ring
+ * is full the oldest tick is overwritten.
+ *
+ * Ticks are kept sorted by timestamp - range queries use binary search.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public class FxPriceHistoryRing {
+
+	final static long NANOS_PER_SECOND = 1_000_000_000L;
+
+	private final String pairSymbol;
+	private final int capacity;
+	private final long[] timestamps;
+	private final long[] bidMantissas;
+	private final long[] askMantissas;
+	private final byte[] scales;
+
+	// physical index of oldest tick and number of ticks
+	private int head;
+	private int count;
+
+	// ticks of the pair may be added by many store threads
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * @param pairSymbol - currency pair of ticks
+	 * @param capacity   - max number of kept ticks
+	 */
+	public FxPriceHistoryRing(String pairSymbol, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+		}
+		this.pairSymbol = pairSymbol;
+		this.capacity = capacity;
+		this.timestamps = new long[capacity];
+		this.bidMantissas = new long[capacity];
+		this.askMantissas = new long[capacity];
+		this.scales = new byte[capacity];
+	}
+
+	/**
+	 * Adds tick - oldest tick is dropped when ring is full. Tick older than the
+	 * newest one (listeners of concurrent updates may be called out of order) is
+	 * put in its place by timestamp, or dropped if it is older than all kept ticks
+	 * of full ring.
+	 *
+	 * @param epochNanos  - tick timestamp in nanoseconds since epoch, UTC
+	 * @param bidMantissa - bid mantissa
+	 * @param askMantissa - ask mantissa
+	 * @param scale       - number of decimals of bid and ask
+	 */
+	public void add(long epochNanos, long bidMantissa, long askMantissa, int scale) {
+		lock.lock();
+		try {
+			// position of new tick - after all ticks with the same or older timestamp
+			int position = count;
+			while (position > 0 && timestamps[physical(position - 1)] > epochNanos) {
+				position--;
+			}
+			if (count == capacity) {
+				if (position == 0) {
+					return; // older than whole history
+				}
+				// drop oldest tick
+				head = physical(1);
+				count--;
+				position--;
+			}
+			// move newer ticks one place forward
+			for (int i = count; i > position; i--) {
+				copy(physical(i - 1), physical(i));
+			}
+			int index = physical(position);
+			timestamps[index] = epochNanos;
+			bidMantissas[index] = bidMantissa;
+			askMantissas[index] = askMantissa;
+			scales[index] = (byte) scale;
+			count++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns ticks with timestamp in given range, oldest first. If there are more
+	 * than limit ticks in range then the newest ones are returned.
+	 *
+	 * @param fromNanos - start of range, inclusive
+	 * @param toNanos   - end of range, inclusive
+	 * @param limit     - max number of ticks
+	 * @return ticks as prices with empty id
+	 */
+	public List<FxPrice> range(long fromNanos, long toNanos, int limit) {
+		lock.lock();
+		try {
+			int from = lowerBound(fromNanos);
+			int to = upperBound(toNanos); // exclusive
+			from = Math.max(from, to - Math.max(limit, 0));
+			List<FxPrice> result = new ArrayList<>(Math.max(to - from, 0));
+			for (int i = from; i < to; i++) {
+				int index = physical(i);
+				result.add(FxPrice.builder()
+						.priceId("")
+						.pairSymbol(pairSymbol)
+						.bidPrice(FixedPointDecimal.toBigDecimal(bidMantissas[index], scales[index]))
+						.askPrice(FixedPointDecimal.toBigDecimal(askMantissas[index], scales[index]))
+						.dateTime(toDateTime(timestamps[index]))
+						.build());
+			}
+			return result;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of kept ticks
+	 */
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param dateTime - date time in UTC
+	 * @return nanoseconds since epoch, Long.MIN_VALUE / Long.MAX_VALUE for date
+	 *         time out of range (before 1677 or after 2262)
+	 */
+	public static long toEpochNanos(LocalDateTime dateTime) {
+		long seconds = dateTime.toEpochSecond(ZoneOffset.UTC);
+		if (seconds >= Long.MAX_VALUE / NANOS_PER_SECOND) {
+			return Long.MAX_VALUE;
+		}
+		if (seconds <= Long.MIN_VALUE / NANOS_PER_SECOND) {
+			return Long.MIN_VALUE;
+		}
+		return seconds * NANOS_PER_SECOND + dateTime.getNano();
+	}
+
+	/**
+	 * @param epochNanos - nanoseconds since epoch
+	 * @return date time in UTC
+	 */
+	public static LocalDateTime toDateTime(long epochNanos) {
+		return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+				(int) Math.floorMod(epochNanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+	}
+
+	// first logical position with timestamp >= value
+	private int lowerBound(long value) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (timestamps[physical(middle)] < value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	// first logical position with timestamp > value
+	private int upperBound(long value) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (timestamps[physical(middle)] <= value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private int physical(int logical) {
+		int index = head + logical;
+		return index >= capacity ? index - capacity : index;
+	}
+
+	private void copy(int from, int to) {
+		timestamps[to] = timestamps[from];
+		bidMantissas[to] = bidMantissas[from];
+		askMantissas[to] = askMantissas[from];
+		scales[to] = scales[from];
+	}
+}
@@ -0,0 +1,186 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.journal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxFixedPointPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Binary form of price in journal and snapshot files:
+ *
+ * - int payload length - written last, 0 marks end of records
+ * - int CRC32C of payload - record with wrong checksum is torn write and ends records
+ * - payload: byte type, long epoch second, int nano, id, pair symbol, bid, ask
+ *
+ * Strings are written as short length and UTF-8 bytes. Fixed-point prices are
+ * written as long mantissa and byte scale, BigDecimal ones as byte scale and
+ * unscaled value bytes.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public final class FxJournalRecord {
+
+	final static int HEADER_SIZE = 2 * Integer.BYTES;
+
+	final static byte TYPE_DECIMAL = 1;
+	final static byte TYPE_FIXED_POINT = 2;
+
+	// unscaled value length is written as unsigned byte
+	final static int MAX_UNSCALED_BYTES = 255;
+	// string length is written as short
+	final static int MAX_STRING_BYTES = Short.MAX_VALUE;
+
+	private FxJournalRecord() {
+	}
+
+	/**
+	 * Writes price at buffer position - position is moved after record.
+	 *
+	 * @param buffer  - target buffer
+	 * @param fxPrice - price to write
+	 * @return true if record has been written, false if it does not fit into buffer (position is unchanged)
+	 */
+	public static boolean write(ByteBuffer buffer, FxPrice fxPrice) {
+		byte[] priceId = fxPrice.getPriceId() == null ? new byte[0] : fxPrice.getPriceId().getBytes(StandardCharsets.UTF_8);
+		byte[] pairSymbol = fxPrice.getPairSymbol().getBytes(StandardCharsets.UTF_8);
+		if (priceId.length > MAX_STRING_BYTES || pairSymbol.length > MAX_STRING_BYTES) {
+			throw new IllegalArgumentException("Price id or pair symbol out of journal range: " + fxPrice.getPairSymbol());
+		}
+		FxFixedPointPrice fixedPointPrice = fxPrice instanceof FxFixedPointPrice fixedPoint ? fixedPoint : null;
+		byte[] bid = null;
+		byte[] ask = null;
+
+		int payloadSize = 1 + Long.BYTES + Integer.BYTES + 2 * Short.BYTES + priceId.length + pairSymbol.length;
+		if (fixedPointPrice != null) {
+			payloadSize += 2 * Long.BYTES + 1;
+		} else {
+			bid = fxPrice.getBidPrice().unscaledValue().toByteArray();
+			ask = fxPrice.getAskPrice().unscaledValue().toByteArray();
+			if (bid.length > MAX_UNSCALED_BYTES || ask.length > MAX_UNSCALED_BYTES) {
+				throw new IllegalArgumentException("Price out of journal range: " + fxPrice);
+			}
+			payloadSize += 2 * (Integer.BYTES + 1) + bid.length + ask.length;
+		}
+		int start = buffer.position();
+		if (buffer.remaining() < HEADER_SIZE + payloadSize + Integer.BYTES) { // room for end marker
+			return false;
+		}
+
+		ByteBuffer payload = buffer.duplicate();
+		payload.position(start + HEADER_SIZE);
+		payload.put(fixedPointPrice != null ? TYPE_FIXED_POINT : TYPE_DECIMAL);
+		payload.putLong(fxPrice.getDateTime().toEpochSecond(ZoneOffset.UTC));
+		payload.putInt(fxPrice.getDateTime().getNano());
+		putBytes(payload, priceId);
+		putBytes(payload, pairSymbol);
+		if (fixedPointPrice != null) {
+			payload.putLong(fixedPointPrice.getBidMantissa());
+			payload.putLong(fixedPointPrice.getAskMantissa());
+			payload.put((byte) fixedPointPrice.getPriceScale());
+		} else {
+			putDecimal(payload, fxPrice.getBidPrice().scale(), bid);
+			putDecimal(payload, fxPrice.getAskPrice().scale(), ask);
+		}
+
+		CRC32C crc = new CRC32C();
+		crc.update(buffer.slice(start + HEADER_SIZE, payloadSize));
+		buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+		// length is written last - record becomes visible to reader only when complete
+		buffer.putInt(start, payloadSize);
+		buffer.position(start + HEADER_SIZE + payloadSize);
+		return true;
+	}
+
+	/**
+	 * Reads price at buffer position - position is moved after record.
+	 *
+	 * @param buffer - source buffer
+	 * @return price or null at end of records (end marker, end of buffer or torn record)
+	 */
+	public static FxPrice read(ByteBuffer buffer) {
+		int start = buffer.position();
+		if (buffer.remaining() < HEADER_SIZE) {
+			return null;
+		}
+		int payloadSize = buffer.getInt(start);
+		if (payloadSize <= 0 || payloadSize > buffer.remaining() - HEADER_SIZE) {
+			return null;
+		}
+		CRC32C crc = new CRC32C();
+		crc.update(buffer.slice(start + HEADER_SIZE, payloadSize));
+		if ((int) crc.getValue() != buffer.getInt(start + Integer.BYTES)) {
+			return null;
+		}
+
+		ByteBuffer payload = buffer.slice(start + HEADER_SIZE, payloadSize);
+		byte type = payload.get();
+		LocalDateTime dateTime = LocalDateTime.ofEpochSecond(payload.getLong(), payload.getInt(), ZoneOffset.UTC);
+		String priceId = getString(payload);
+		String pairSymbol = getString(payload);
+		if (priceId == null || pairSymbol == null) {
+			return null;
+		}
+		FxPrice fxPrice;
+		if (type == TYPE_FIXED_POINT) {
+			long bidMantissa = payload.getLong();
+			long askMantissa = payload.getLong();
+			fxPrice = new FxFixedPointPrice(priceId, pairSymbol, bidMantissa, askMantissa, payload.get(), dateTime);
+		} else if (type == TYPE_DECIMAL) {
+			BigDecimal bid = getDecimal(payload);
+			BigDecimal ask = getDecimal(payload);
+			if (bid == null || ask == null) {
+				return null;
+			}
+			fxPrice = FxPrice.builder().priceId(priceId).pairSymbol(pairSymbol).bidPrice(bid).askPrice(ask)
+					.dateTime(dateTime).build();
+		} else {
+			return null;
+		}
+		buffer.position(start + HEADER_SIZE + payloadSize);
+		return fxPrice;
+	}
+
+	private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+	}
+
+	// null when length does not fit into payload - record is torn
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.remaining() < Short.BYTES ? -1 : buffer.getShort();
+		if (length < 0 || length > buffer.remaining()) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void putDecimal(ByteBuffer buffer, int scale, byte[] unscaled) {
+		buffer.putInt(scale);
+		buffer.put((byte) unscaled.length);
+		buffer.put(unscaled);
+	}
+
+	// null when length does not fit into payload - record is torn
+	private static BigDecimal getDecimal(ByteBuffer buffer) {
+		if (buffer.remaining() < Integer.BYTES + 1) {
+			return null;
+		}
+		int scale = buffer.getInt();
+		int length = buffer.get() & 0xFF;
+		if (length > buffer.remaining()) {
+			return null;
+		}
+		byte[] unscaled = new byte[length];
+		buffer.get(unscaled);
+		return new BigDecimal(new BigInteger(unscaled), scale);
+	}
+}
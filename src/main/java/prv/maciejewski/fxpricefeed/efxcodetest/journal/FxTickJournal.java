@@ -0,0 +1,240 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Append-only journal of accepted prices kept in directory as memory-mapped
+ * segment files (journal-N.log) and snapshots (snapshot-N.snap).
+ *
+ * Records are appended to current segment mapped into memory - append is a
+ * memory copy, data reaches disk when OS writes the pages or when force is
+ * called. Full segment is followed by next one.
+ *
+ * Snapshot holds latest price per pair written so far. Snapshot N is written
+ * together with start of segment N, then older segments and snapshots are
+ * deleted - recovery reads newest snapshot and segments from N on, so its time
+ * is bounded by snapshot interval and not by journal history.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Slf4j
+public class FxTickJournal implements Closeable {
+
+	final static String SEGMENT_PREFIX = "journal-";
+	final static String SEGMENT_SUFFIX = ".log";
+	final static String SNAPSHOT_PREFIX = "snapshot-";
+	final static String SNAPSHOT_SUFFIX = ".snap";
+
+	private final Path directory;
+	private final int segmentSize;
+
+	// guards segment and latest prices - append, force, snapshot may be called from different threads
+	private final ReentrantLock lock = new ReentrantLock();
+
+	// latest price per pair written to journal - content of next snapshot
+	private final Map<String, FxPrice> latestByPair = new LinkedHashMap<>();
+
+	private FileChannel segmentChannel;
+	private MappedByteBuffer segment;
+	private long segmentSequence;
+
+	/**
+	 * @param directory   - directory of journal files, created if missing
+	 * @param segmentSize - size of segment file in bytes
+	 */
+	public FxTickJournal(Path directory, int segmentSize) {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Recovers latest price per pair from journal files and starts new segment
+	 * after fresh snapshot of recovered prices.
+	 *
+	 * @return latest recovered price per pair
+	 */
+	public Collection<FxPrice> open() throws IOException {
+		lock.lock();
+		try {
+			Files.createDirectories(directory);
+			List<Long> snapshots = sequences(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+			List<Long> segments = sequences(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+
+			long lastSequence = 0;
+			long snapshotSequence = -1;
+			if (!snapshots.isEmpty()) {
+				snapshotSequence = snapshots.get(snapshots.size() - 1);
+				replay(file(SNAPSHOT_PREFIX, snapshotSequence, SNAPSHOT_SUFFIX));
+				lastSequence = snapshotSequence;
+			}
+			for (long sequence : segments) {
+				if (sequence >= snapshotSequence) {
+					replay(file(SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+				}
+				lastSequence = Math.max(lastSequence, sequence);
+			}
+			segmentSequence = lastSequence;
+			snapshot();
+			return new ArrayList<>(latestByPair.values());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Appends price to current segment, next segment is started when current one is full
+	 *
+	 * @param fxPrice - accepted price
+	 */
+	public void append(FxPrice fxPrice) throws IOException {
+		lock.lock();
+		try {
+			if (!FxJournalRecord.write(segment, fxPrice)) {
+				openSegment(segmentSequence + 1);
+				if (!FxJournalRecord.write(segment, fxPrice)) {
+					throw new IOException("Record does not fit into empty segment: " + fxPrice);
+				}
+			}
+			latestByPair.merge(fxPrice.getPairSymbol(), fxPrice, FxTickJournal::newer);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes appended records of current segment to disk (fsync)
+	 */
+	public void force() {
+		lock.lock();
+		try {
+			if (segment != null) {
+				segment.force();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes snapshot of latest prices, starts new segment and deletes files not
+	 * needed for recovery anymore
+	 */
+	public void snapshot() throws IOException {
+		lock.lock();
+		try {
+			long sequence = segmentSequence + 1;
+			ByteBuffer buffer = ByteBuffer.allocate(Math.max(4096, latestByPair.size() * 128));
+			for (FxPrice fxPrice : latestByPair.values()) {
+				while (!FxJournalRecord.write(buffer, fxPrice)) {
+					buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+				}
+			}
+			buffer.putInt(0).flip();
+
+			Path temporary = directory.resolve(SNAPSHOT_PREFIX + sequence + ".tmp");
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(true);
+			}
+			Files.move(temporary, file(SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+			openSegment(sequence);
+
+			for (long old : sequences(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+				if (old < sequence) {
+					Files.deleteIfExists(file(SEGMENT_PREFIX, old, SEGMENT_SUFFIX));
+				}
+			}
+			for (long old : sequences(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+				if (old < sequence) {
+					Files.deleteIfExists(file(SNAPSHOT_PREFIX, old, SNAPSHOT_SUFFIX));
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			if (segment != null) {
+				segment.force();
+				segment = null;
+			}
+			if (segmentChannel != null) {
+				segmentChannel.close();
+				segmentChannel = null;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void openSegment(long sequence) throws IOException {
+		if (segment != null) {
+			segment.force();
+			segmentChannel.close();
+		}
+		segmentChannel = FileChannel.open(file(SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		segmentSequence = sequence;
+	}
+
+	private void replay(Path file) throws IOException {
+		int records = 0;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			FxPrice fxPrice;
+			while ((fxPrice = FxJournalRecord.read(buffer)) != null) {
+				latestByPair.merge(fxPrice.getPairSymbol(), fxPrice, FxTickJournal::newer);
+				records++;
+			}
+		}
+		log.info("Journal file {} replayed: {} records.", file.getFileName(), records);
+	}
+
+	// price with later date time wins, for the same date time the later written one - as in price store
+	private static FxPrice newer(FxPrice current, FxPrice next) {
+		return current.getDateTime().compareTo(next.getDateTime()) > 0 ? current : next;
+	}
+
+	private Path file(String prefix, long sequence, String suffix) {
+		return directory.resolve(prefix + sequence + suffix);
+	}
+
+	private List<Long> sequences(String prefix, String suffix) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.map(path -> path.getFileName().toString())
+					.filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+					.map(name -> name.substring(prefix.length(), name.length() - suffix.length()))
+					.filter(number -> !number.isEmpty() && number.chars().allMatch(Character::isDigit))
+					.map(Long::valueOf)
+					.sorted()
+					.toList();
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Helper functions for fixed-point decimal values - value is kept as long
+ * mantissa with given scale (number of decimals), e.g. 1.23456 with scale 5 is
+ * kept as 123456.
+ *
+ * Values are parsed with HALF_UP rounding to given scale. Plain decimal
+ * notation is parsed straight from chars, any other notation accepted by
+ * BigDecimal (e.g. exponent) is parsed by BigDecimal.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public final class FixedPointDecimal {
+
+	// scale of margin multipliers - 9 decimals
+	public final static int MULTIPLIER_SCALE = 9;
+	public final static long MULTIPLIER_ONE = 1_000_000_000L;
+
+	// long keeps safely 18 decimal digits
+	final static int MAX_DIGITS = 18;
+
+	final static long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i <= MAX_DIGITS; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private FixedPointDecimal() {
+	}
+
+	/**
+	 * Parses decimal value from part of char buffer to mantissa with given scale
+	 *
+	 * @param buffer - buffer with value
+	 * @param offset - offset of value in buffer
+	 * @param length - length of value
+	 * @param scale  - number of decimals of result
+	 *
+	 * @return mantissa of value rounded HALF_UP to given scale
+	 *
+	 * @throws NumberFormatException - when value is not valid decimal number or
+	 *                               does not fit into long
+	 */
+	public static long parse(char[] buffer, int offset, int length, int scale) {
+		checkScale(scale);
+		int end = offset + length;
+		int position = offset;
+		boolean negative = false;
+
+		if (position < end && (buffer[position] == '-' || buffer[position] == '+')) {
+			negative = buffer[position] == '-';
+			position++;
+		}
+
+		long mantissa = 0;
+		int digits = 0; // significant digits in mantissa
+		int fractionDigits = -1; // -1 until decimal point is found
+		boolean anyDigit = false;
+		boolean roundUp = false;
+
+		for (; position < end; position++) {
+			char c = buffer[position];
+			if (c >= '0' && c <= '9') {
+				anyDigit = true;
+				if (fractionDigits >= scale) {
+					// first digit below scale decides about rounding, rest is dropped
+					if (fractionDigits == scale) {
+						roundUp = c >= '5';
+					}
+					fractionDigits++;
+					continue;
+				}
+				if (mantissa != 0 || c != '0') {
+					digits++;
+				}
+				if (digits > MAX_DIGITS) {
+					return parseWithBigDecimal(buffer, offset, length, scale);
+				}
+				mantissa = mantissa * 10 + (c - '0');
+				if (fractionDigits >= 0) {
+					fractionDigits++;
+				}
+			} else if (c == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+			} else {
+				// other notation - let BigDecimal decide
+				return parseWithBigDecimal(buffer, offset, length, scale);
+			}
+		}
+		if (!anyDigit) {
+			throw new NumberFormatException("No digits in value: [" + new String(buffer, offset, length) + "]");
+		}
+
+		int missingDigits = scale - Math.max(fractionDigits, 0);
+		if (missingDigits > 0) {
+			if (digits + missingDigits > MAX_DIGITS) {
+				return parseWithBigDecimal(buffer, offset, length, scale);
+			}
+			mantissa *= POWERS_OF_TEN[missingDigits];
+		}
+		if (roundUp) {
+			mantissa++;
+		}
+		return negative ? -mantissa : mantissa;
+	}
+
+	/**
+	 * Checks if part of char buffer is decimal number in notation accepted by
+	 * BigDecimal - sign, digits with optional decimal point and optional
+	 * exponent. Bad value is found without cost of NumberFormatException, value
+	 * which passes may still be out of range.
+	 *
+	 * @param buffer - buffer with value
+	 * @param offset - offset of value in buffer
+	 * @param length - length of value
+	 *
+	 * @return true if value is decimal number
+	 */
+	public static boolean isDecimal(char[] buffer, int offset, int length) {
+		int end = offset + length;
+		int position = offset;
+		if (position < end && (buffer[position] == '-' || buffer[position] == '+')) {
+			position++;
+		}
+		boolean anyDigit = false;
+		boolean decimalPoint = false;
+		for (; position < end; position++) {
+			char c = buffer[position];
+			if (c >= '0' && c <= '9') {
+				anyDigit = true;
+			} else if (c == '.' && !decimalPoint) {
+				decimalPoint = true;
+			} else if (c > 0x7F) {
+				// non-ASCII digits - let BigDecimal decide
+				return true;
+			} else {
+				break;
+			}
+		}
+		if (!anyDigit) {
+			return false;
+		}
+		if (position < end && (buffer[position] == 'e' || buffer[position] == 'E')) {
+			position++;
+			if (position < end && (buffer[position] == '-' || buffer[position] == '+')) {
+				position++;
+			}
+			int exponentStart = position;
+			while (position < end && buffer[position] >= '0' && buffer[position] <= '9') {
+				position++;
+			}
+			if (position == exponentStart) {
+				return false;
+			}
+		}
+		return position == end;
+	}
+
+	/**
+	 * Converts BigDecimal to mantissa with given scale
+	 *
+	 * @param value - decimal value
+	 * @param scale - number of decimals of result
+	 *
+	 * @return mantissa of value rounded HALF_UP to given scale
+	 *
+	 * @throws ArithmeticException - when value does not fit into long
+	 */
+	public static long fromBigDecimal(BigDecimal value, int scale) {
+		checkScale(scale);
+		return value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	/**
+	 * Converts mantissa with given scale to BigDecimal
+	 *
+	 * @param mantissa - mantissa of value
+	 * @param scale    - number of decimals
+	 *
+	 * @return decimal value
+	 */
+	public static BigDecimal toBigDecimal(long mantissa, int scale) {
+		return BigDecimal.valueOf(mantissa, scale);
+	}
+
+	/**
+	 * Multiplies mantissa by multiplier with MULTIPLIER_SCALE decimals, result has
+	 * the same scale as given mantissa
+	 *
+	 * @param mantissa     - value to multiply
+	 * @param multiplier   - multiplier with MULTIPLIER_SCALE decimals
+	 * @param roundingMode - FLOOR, CEILING or HALF_UP
+	 *
+	 * @return rounded result
+	 *
+	 * @throws ArithmeticException - when result does not fit into long
+	 */
+	public static long multiply(long mantissa, long multiplier, RoundingMode roundingMode) {
+		long product = mantissa * multiplier;
+		if (Math.multiplyHigh(mantissa, multiplier) != (product >> 63)) {
+			// product takes more than 64 bits (e.g. price above 92233 with scale 5) - result may still fit
+			return multiplyWide(mantissa, multiplier, roundingMode);
+		}
+		long quotient = Math.floorDiv(product, MULTIPLIER_ONE);
+		long remainder = Math.floorMod(product, MULTIPLIER_ONE);
+		if (remainder == 0) {
+			return quotient;
+		}
+		switch (roundingMode) {
+		case FLOOR:
+			return quotient;
+		case CEILING:
+			return quotient + 1;
+		case HALF_UP:
+			// half away from zero
+			if (product >= 0) {
+				return remainder * 2 >= MULTIPLIER_ONE ? quotient + 1 : quotient;
+			}
+			return remainder * 2 > MULTIPLIER_ONE ? quotient + 1 : quotient;
+		default:
+			throw new IllegalArgumentException("Unsupported rounding mode: " + roundingMode);
+		}
+	}
+
+	// multiplication with 128 bit product - rare, so BigDecimal is good enough
+	private static long multiplyWide(long mantissa, long multiplier, RoundingMode roundingMode) {
+		if (roundingMode != RoundingMode.FLOOR && roundingMode != RoundingMode.CEILING
+				&& roundingMode != RoundingMode.HALF_UP) {
+			throw new IllegalArgumentException("Unsupported rounding mode: " + roundingMode);
+		}
+		return BigDecimal.valueOf(mantissa).multiply(BigDecimal.valueOf(multiplier, MULTIPLIER_SCALE))
+				.setScale(0, roundingMode).longValueExact();
+	}
+
+	/**
+	 * Changes scale of mantissa - decimals dropped when scale is reduced are
+	 * rounded HALF_UP
+	 *
+	 * @param mantissa  - value to rescale
+	 * @param fromScale - number of decimals of given mantissa
+	 * @param toScale   - number of decimals of result
+	 *
+	 * @return mantissa with toScale decimals
+	 *
+	 * @throws ArithmeticException - when result does not fit into long
+	 */
+	public static long rescale(long mantissa, int fromScale, int toScale) {
+		checkScale(fromScale);
+		checkScale(toScale);
+		if (toScale >= fromScale) {
+			return Math.multiplyExact(mantissa, POWERS_OF_TEN[toScale - fromScale]);
+		}
+		long divisor = POWERS_OF_TEN[fromScale - toScale];
+		long quotient = mantissa / divisor;
+		long remainder = Math.abs(mantissa % divisor);
+		if (remainder * 2 >= divisor) {
+			quotient += mantissa < 0 ? -1 : 1; // half away from zero
+		}
+		return quotient;
+	}
+
+	private static long parseWithBigDecimal(char[] buffer, int offset, int length, int scale) {
+		try {
+			return fromBigDecimal(new BigDecimal(buffer, offset, length), scale);
+		} catch (ArithmeticException ae) {
+			throw new NumberFormatException("Value out of fixed-point range: [" + new String(buffer, offset, length) + "]");
+		}
+	}
+
+	private static void checkScale(int scale) {
+		if (scale < 0 || scale > MAX_DIGITS) {
+			throw new IllegalArgumentException("Scale out of range 0-" + MAX_DIGITS + ": " + scale);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.model;
+
+import java.nio.CharBuffer;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Hand written decoder of feed date time column in format
+ * "d-MM-uuuu HH:mm:ss:SSS" (see FxPrice.dtFormatter).
+ *
+ * Digits are read straight from chars - no DateTimeFormatter parsing context
+ * is created. Results are the same as for LocalDateTime.parse with
+ * FxPrice.dtFormatter (smart resolver):
+ *
+ * - day 29-31 not existing in month is changed to last day of month
+ * - 24:00:00:000 is resolved to midnight of next day
+ *
+ * Values with layout other than the usual one (day with more than 2 digits,
+ * signed or longer year) are rare and are passed to FxPrice.dtFormatter.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public final class FxDateTimeDecoder {
+
+	// d-MM-uuuu HH:mm:ss:SSS with 1 or 2 digits day
+	final static int MIN_LENGTH = 22;
+	final static int MAX_LENGTH = 23;
+
+	private FxDateTimeDecoder() {
+	}
+
+	/**
+	 * Decodes date time from given string
+	 *
+	 * @param dateTimeStr - date time in feed format
+	 * @return decoded date time or null if value is not valid date time
+	 */
+	public static LocalDateTime decode(CharSequence dateTimeStr) {
+		if (dateTimeStr == null) {
+			return null;
+		}
+		int length = dateTimeStr.length();
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = dateTimeStr.charAt(i);
+		}
+		return decode(chars, 0, length);
+	}
+
+	/**
+	 * Decodes date time from part of char buffer
+	 *
+	 * @param buffer - buffer with date time in feed format
+	 * @param offset - offset of date time in buffer
+	 * @param length - length of date time
+	 *
+	 * @return decoded date time or null if value is not valid date time
+	 */
+	public static LocalDateTime decode(char[] buffer, int offset, int length) {
+		if (length < MIN_LENGTH || length > MAX_LENGTH) {
+			return decodeWithFormatter(buffer, offset, length);
+		}
+		// position of first char after day
+		int p = offset + length - (MIN_LENGTH - 1);
+
+		int day = digit(buffer[offset]);
+		if (length == MAX_LENGTH) {
+			day = day * 10 + digit(buffer[offset + 1]);
+		}
+		int month = twoDigits(buffer, p + 1);
+		int year = fourDigits(buffer, p + 4);
+		int hour = twoDigits(buffer, p + 9);
+		int minute = twoDigits(buffer, p + 12);
+		int second = twoDigits(buffer, p + 15);
+		int milli = threeDigits(buffer, p + 18);
+
+		if ((day | month | year | hour | minute | second | milli) < 0
+				|| buffer[p] != '-' || buffer[p + 3] != '-' || buffer[p + 8] != ' '
+				|| buffer[p + 11] != ':' || buffer[p + 14] != ':' || buffer[p + 17] != ':') {
+			// not a plain digits layout - leave it to formatter
+			return decodeWithFormatter(buffer, offset, length);
+		}
+
+		if (day < 1 || day > 31 || month < 1 || month > 12 || minute > 59 || second > 59) {
+			return null;
+		}
+		boolean endOfDay = false;
+		if (hour > 23) {
+			if (hour != 24 || minute != 0 || second != 0 || milli != 0) {
+				return null;
+			}
+			endOfDay = true;
+			hour = 0;
+		}
+		if (day > 28) {
+			// smart resolving - day which does not exist in month is moved to last day of month
+			day = Math.min(day, YearMonth.of(year, month).lengthOfMonth());
+		}
+
+		LocalDateTime result = LocalDateTime.of(year, month, day, hour, minute, second, milli * 1_000_000);
+		return endOfDay ? result.plusDays(1) : result;
+	}
+
+	private static LocalDateTime decodeWithFormatter(char[] buffer, int offset, int length) {
+		try {
+			return LocalDateTime.parse(CharBuffer.wrap(buffer, offset, length), FxPrice.dtFormatter);
+		} catch (DateTimeParseException dpe) {
+			return null;
+		}
+	}
+
+	private static int digit(char c) {
+		return (c >= '0' && c <= '9') ? c - '0' : -1_000_000;
+	}
+
+	private static int twoDigits(char[] buffer, int position) {
+		return digit(buffer[position]) * 10 + digit(buffer[position + 1]);
+	}
+
+	private static int threeDigits(char[] buffer, int position) {
+		return digit(buffer[position]) * 100 + twoDigits(buffer, position + 1);
+	}
+
+	private static int fourDigits(char[] buffer, int position) {
+		return twoDigits(buffer, position) * 100 + twoDigits(buffer, position + 2);
+	}
+}
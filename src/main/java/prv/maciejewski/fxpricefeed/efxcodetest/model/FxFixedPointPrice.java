@@ -0,0 +1,75 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * FxPrice with bid and ask kept as fixed-point long mantissas with per pair
+ * scale instead of BigDecimal objects. BigDecimal values are created only when
+ * getBidPrice / getAskPrice are called - at REST / DTO boundary.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Getter
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
+public class FxFixedPointPrice extends FxPrice {
+
+	// bid price mantissa - value is bidMantissa * 10^-priceScale
+	@Setter
+	long bidMantissa;
+
+	// ask price mantissa - value is askMantissa * 10^-priceScale
+	@Setter
+	long askMantissa;
+
+	// number of decimals of bid and ask
+	int priceScale;
+
+	public FxFixedPointPrice(String priceId, String pairSymbol, long bidMantissa, long askMantissa, int priceScale,
+			LocalDateTime dateTime) {
+		super(priceId, pairSymbol, null, null, dateTime);
+		this.bidMantissa = bidMantissa;
+		this.askMantissa = askMantissa;
+		this.priceScale = priceScale;
+	}
+
+	/**
+	 * Creates fixed-point price from BigDecimal based one
+	 *
+	 * @param fxPrice    - price to convert
+	 * @param priceScale - number of decimals of fixed-point price
+	 * @return fixed-point price with values rounded HALF_UP to scale
+	 */
+	public static FxFixedPointPrice of(FxPrice fxPrice, int priceScale) {
+		return new FxFixedPointPrice(fxPrice.getPriceId(), fxPrice.getPairSymbol(),
+				FixedPointDecimal.fromBigDecimal(fxPrice.getBidPrice(), priceScale),
+				FixedPointDecimal.fromBigDecimal(fxPrice.getAskPrice(), priceScale), priceScale, fxPrice.getDateTime());
+	}
+
+	@Override
+	public BigDecimal getBidPrice() {
+		return FixedPointDecimal.toBigDecimal(bidMantissa, priceScale);
+	}
+
+	@Override
+	public BigDecimal getAskPrice() {
+		return FixedPointDecimal.toBigDecimal(askMantissa, priceScale);
+	}
+
+	@Override
+	public void setBidPrice(BigDecimal bidPrice) {
+		this.bidMantissa = FixedPointDecimal.fromBigDecimal(bidPrice, priceScale);
+	}
+
+	@Override
+	public void setAskPrice(BigDecimal askPrice) {
+		this.askMantissa = FixedPointDecimal.fromBigDecimal(askPrice, priceScale);
+	}
+}
@@ -0,0 +1,83 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.model;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, read optimized table of price multipliers precomputed from
+ * margins. Applying margin is one array lookup by pair id and one multiply. Table is
+ * replaced as a whole when margins configuration is changed.
+ *
+ * Configured pairs are not registered by table - pair gets its id with first
+ * stored price. Margins of pairs not registered when table has been built are
+ * looked up by symbol.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public final class FxMarginTable {
+
+	final static BigDecimal ONE = new BigDecimal("1.000");
+
+	/**
+	 * Bid and ask multipliers - as BigDecimal and as fixed-point long with
+	 * FixedPointDecimal.MULTIPLIER_SCALE decimals
+	 */
+	public record Multipliers(BigDecimal bid, BigDecimal ask, long bidFixed, long askFixed) {
+
+		public static Multipliers ofMargins(BigDecimal bidMargin, BigDecimal askMargin) {
+			BigDecimal bid = ONE.add(bidMargin);
+			BigDecimal ask = ONE.add(askMargin);
+			return new Multipliers(bid, ask, FixedPointDecimal.fromBigDecimal(bid, FixedPointDecimal.MULTIPLIER_SCALE),
+					FixedPointDecimal.fromBigDecimal(ask, FixedPointDecimal.MULTIPLIER_SCALE));
+		}
+	}
+
+	private final Multipliers defaults;
+	// pair multipliers by pair id from FxPairSymbolRegistry - null for pairs without own margins
+	private final Multipliers[] pairs;
+	// pair multipliers of pairs without id when table has been built
+	private final Map<String, Multipliers> unregisteredPairs;
+	private final Map<String, Multipliers> tiers;
+
+	public FxMarginTable(Multipliers defaults, Map<String, Multipliers> pairs, Map<String, Multipliers> tiers) {
+		this.defaults = defaults;
+		FxPairSymbolRegistry registry = FxPairSymbolRegistry.shared();
+		Map<Integer, Multipliers> byId = new HashMap<>();
+		Map<String, Multipliers> bySymbol = new HashMap<>();
+		pairs.forEach((pairSymbol, multipliers) -> {
+			int pairId = registry.idOf(pairSymbol);
+			if (pairId == FxPairSymbolRegistry.UNKNOWN_ID) {
+				bySymbol.put(pairSymbol, multipliers);
+			} else {
+				byId.put(pairId, multipliers);
+			}
+		});
+		this.pairs = new Multipliers[byId.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1];
+		byId.forEach((pairId, multipliers) -> this.pairs[pairId] = multipliers);
+		this.unregisteredPairs = Map.copyOf(bySymbol);
+		this.tiers = new HashMap<>(tiers);
+	}
+
+	/**
+	 * @param pairSymbol - currency pair symbol
+	 * @return multipliers for pair - default ones if pair has no own margins
+	 */
+	public Multipliers forPair(String pairSymbol) {
+		int pairId = FxPairSymbolRegistry.shared().idOf(pairSymbol);
+		Multipliers multipliers = (pairId >= 0 && pairId < pairs.length) ? pairs[pairId] : null;
+		if (multipliers == null && !unregisteredPairs.isEmpty()) {
+			multipliers = unregisteredPairs.get(pairSymbol);
+		}
+		return multipliers != null ? multipliers : defaults;
+	}
+
+	/**
+	 * @param tier - client tier name
+	 * @return additional multipliers for client tier or null if tier is not known
+	 */
+	public Multipliers forTier(String tier) {
+		return tier == null ? null : tiers.get(tier);
+	}
+}
@@ -0,0 +1,212 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.model;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Registry of currency pair symbols - every symbol gets dense integer id
+ * (0, 1, 2...) when it is seen first time, so per pair data can be kept in
+ * arrays indexed by id instead of maps keyed by symbol.
+ *
+ * Symbols are resolved straight from chars of parsed record - String is
+ * created only when new symbol is registered, known symbols resolve to the one
+ * canonical String instance. Lookup is lock free probe of open addressing
+ * table, only registration of new symbol takes lock.
+ *
+ * Traded universe is fixed and small, so registry has fixed capacity
+ * MAX_PAIRS - symbols above it are not registered. Ids are never released, so
+ * symbols are registered only by price store, when price of new pair is
+ * stored - feed parsers only look symbols up and rejected records never take
+ * an id.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public final class FxPairSymbolRegistry {
+
+	// max number of registered pair symbols
+	public final static int MAX_PAIRS = 4096;
+
+	// id returned for symbol which is not registered
+	public final static int UNKNOWN_ID = -1;
+
+	private static final FxPairSymbolRegistry SHARED = new FxPairSymbolRegistry(MAX_PAIRS);
+
+	private final int capacity;
+	private final int mask;
+	// open addressing table - id + 1 of symbol, 0 for free slot
+	private final AtomicIntegerArray table;
+	// symbols and their hashes by id - written before id is published in table
+	private final String[] symbols;
+	private final int[] hashes;
+	private volatile int size;
+
+	private final ReentrantLock registerLock = new ReentrantLock();
+
+	/**
+	 * Creates empty registry - application uses shared() one
+	 *
+	 * @param capacity - max number of symbols
+	 */
+	public FxPairSymbolRegistry(int capacity) {
+		this.capacity = capacity;
+		// at most half full - probes stay short
+		int tableSize = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+		this.mask = tableSize - 1;
+		this.table = new AtomicIntegerArray(tableSize);
+		this.symbols = new String[capacity];
+		this.hashes = new int[capacity];
+	}
+
+	/**
+	 * @return registry shared by feeds, price store and services
+	 */
+	public static FxPairSymbolRegistry shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Returns id of symbol given as part of char buffer - symbol is registered if
+	 * it is seen first time
+	 *
+	 * @param buffer - buffer with symbol
+	 * @param offset - offset of symbol in buffer
+	 * @param length - length of symbol
+	 * @return symbol id or UNKNOWN_ID if registry is full
+	 */
+	public int resolve(char[] buffer, int offset, int length) {
+		int hash = hash(buffer, offset, length);
+		int id = find(hash, buffer, offset, length, null);
+		return id != UNKNOWN_ID ? id : register(hash, buffer, offset, length, null);
+	}
+
+	/**
+	 * Returns id of symbol - symbol is registered if it is seen first time
+	 *
+	 * @param pairSymbol - currency pair symbol
+	 * @return symbol id or UNKNOWN_ID if registry is full
+	 */
+	public int resolve(String pairSymbol) {
+		int hash = pairSymbol.hashCode();
+		int id = find(hash, null, 0, pairSymbol.length(), pairSymbol);
+		return id != UNKNOWN_ID ? id : register(hash, null, 0, pairSymbol.length(), pairSymbol);
+	}
+
+	/**
+	 * Returns id of already registered symbol given as part of char buffer -
+	 * nothing is registered
+	 *
+	 * @param buffer - buffer with symbol
+	 * @param offset - offset of symbol in buffer
+	 * @param length - length of symbol
+	 * @return symbol id or UNKNOWN_ID if symbol is not registered
+	 */
+	public int idOf(char[] buffer, int offset, int length) {
+		return find(hash(buffer, offset, length), buffer, offset, length, null);
+	}
+
+	/**
+	 * Returns id of already registered symbol - nothing is registered
+	 *
+	 * @param pairSymbol - currency pair symbol, may be null
+	 * @return symbol id or UNKNOWN_ID if symbol is not registered
+	 */
+	public int idOf(String pairSymbol) {
+		if (pairSymbol == null) {
+			return UNKNOWN_ID;
+		}
+		return find(pairSymbol.hashCode(), null, 0, pairSymbol.length(), pairSymbol);
+	}
+
+	/**
+	 * @param id - symbol id
+	 * @return canonical symbol String for id
+	 */
+	public String symbolOf(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("Pair id " + id + " out of " + size);
+		}
+		return symbols[id];
+	}
+
+	/**
+	 * @return number of registered symbols - ids are 0 to size - 1
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return max number of symbols
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	private int find(int hash, char[] buffer, int offset, int length, String pairSymbol) {
+		int index = spread(hash) & mask;
+		int entry;
+		while ((entry = table.get(index)) != 0) {
+			int id = entry - 1;
+			String symbol = symbols[id];
+			if (symbol == pairSymbol
+					|| (hashes[id] == hash && symbol.length() == length && matches(symbol, buffer, offset, pairSymbol))) {
+				return id;
+			}
+			index = (index + 1) & mask;
+		}
+		return UNKNOWN_ID;
+	}
+
+	private int register(int hash, char[] buffer, int offset, int length, String pairSymbol) {
+		registerLock.lock();
+		try {
+			// other thread may have registered it in meantime
+			int id = find(hash, buffer, offset, length, pairSymbol);
+			if (id != UNKNOWN_ID) {
+				return id;
+			}
+			if (size == capacity) {
+				return UNKNOWN_ID;
+			}
+			id = size;
+			symbols[id] = pairSymbol != null ? pairSymbol : new String(buffer, offset, length);
+			hashes[id] = hash;
+			int index = spread(hash) & mask;
+			while (table.get(index) != 0) {
+				index = (index + 1) & mask;
+			}
+			// volatile writes publish symbol to readers of table and size
+			table.set(index, id + 1);
+			size = id + 1;
+			return id;
+		} finally {
+			registerLock.unlock();
+		}
+	}
+
+	private static boolean matches(String symbol, char[] buffer, int offset, String pairSymbol) {
+		if (pairSymbol != null) {
+			return symbol.equals(pairSymbol);
+		}
+		for (int i = 0; i < symbol.length(); i++) {
+			if (symbol.charAt(i) != buffer[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// the same as String.hashCode - so String lookups use cached hash
+	private static int hash(char[] buffer, int offset, int length) {
+		int hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+		return hash;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+}
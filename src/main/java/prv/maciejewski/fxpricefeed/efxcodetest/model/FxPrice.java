@@ -4,9 +4,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -15,6 +15,7 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.csv.CsvRecordCursor;
 
 @AllArgsConstructor
 @Getter
@@ -48,6 +49,8 @@ public class FxPrice {
 	/**
 	 * Transforms and verify list of strings to FxPrice. 
 	 * It is critical function of flow.
+	 * Parsed and rejected records are counted in FxTickCounters, rejected ones
+	 * are logged.
 	 * Meaning of columns by list index:
 	 * 
 	 * columns[0] - id 
@@ -61,24 +64,24 @@ public class FxPrice {
 	 * 		Null return if there problem found while processing - it not pass validation or unexpected exception occured
 	 */
 	public static final Function<List<String>, FxPrice> transformStrings2FxPrice = columns -> {
+		FxTickCounters.parsed();
 		try {
 			FxPrice result = null;
 			if (columns == null) {
-				log.warn("Value provided to parse is null");
-				return null;
+				return rejected(null, FxTickCounters.Reason.EMPTY_RECORD, "Value provided to parse is null", null);
 			}
 	
 			if (columns.size() != 5) {
-				log.warn("Wrong column number: {} expected is 5.", columns.size());
-				return null;
+				return rejected(null, FxTickCounters.Reason.COLUMN_COUNT, "Wrong column number, expected is 5",
+						String.join(",", columns));
 			}
 	
 			var idStr = columns.get(0).trim();
 	
 			var pairSymbol = columns.get(1).trim(); // pairSymbol won't be validated for pattern - only length
 			if (pairSymbol.isBlank()) {
-				log.warn("pairSymbol is empty string.");
-				return null;
+				return rejected(null, FxTickCounters.Reason.PAIR_SYMBOL, "pairSymbol is empty string",
+						String.join(",", columns));
 			}
 	
 			var bidPriceStr = columns.get(2).trim();
@@ -86,8 +89,8 @@ public class FxPrice {
 			try {
 				bidPriceVal = new BigDecimal(bidPriceStr);
 			} catch (NumberFormatException nfee) {
-				log.warn("Bid price has wrong format: [{}]", bidPriceStr);
-				return null;
+				return rejected(null, FxTickCounters.Reason.BID_FORMAT, "Bid price has wrong format",
+						String.join(",", columns));
 			}
 	
 			var askPriceStr = columns.get(3).trim();
@@ -95,17 +98,15 @@ public class FxPrice {
 			try {
 				askPriceVal = new BigDecimal(askPriceStr);
 			} catch (NumberFormatException nfe) {
-				log.warn("Ask price has wrong format: [{}]", askPriceStr);
-				return null;
+				return rejected(null, FxTickCounters.Reason.ASK_FORMAT, "Ask price has wrong format",
+						String.join(",", columns));
 			}
 			
-			LocalDateTime dateTimeVal;
 			var dateTimeStr = columns.get(4).trim();
-			try {
-				dateTimeVal = LocalDateTime.parse(dateTimeStr, dtFormatter);
-			} catch (DateTimeParseException dpe) {
-				log.warn("Wrong date time format: [{}]", dateTimeStr);
-				return null;
+			LocalDateTime dateTimeVal = FxDateTimeDecoder.decode(dateTimeStr);
+			if (dateTimeVal == null) {
+				return rejected(null, FxTickCounters.Reason.DATE_FORMAT, "Wrong date time format",
+						String.join(",", columns));
 			}
 			return FxPrice.builder()
 					.priceId(idStr)
@@ -116,9 +117,156 @@ public class FxPrice {
 					.build();
 		} catch (Exception exc) {
 			// here is catch any exception to not to brake processing chain
-			// handling is simplified for demo purposes - just log warning
-			log.warn("Unknown exception {} while processing: [{}]", exc.toString() ,columns.toString());
-			return null;		
+			// handling is simplified for demo purposes - just report rejection
+			return rejected(null, FxTickCounters.Reason.OTHER, "Unknown exception " + exc, String.valueOf(columns));
 		}
 	};
+
+	/**
+	 * Transforms and verify CSV record cursor to FxPrice. Rules and meaning of
+	 * columns are the same as for transformStrings2FxPrice, but values are read
+	 * straight from cursor buffer - Strings are created only for price id and for
+	 * rejected records, symbol of known pair is taken from FxPairSymbolRegistry.
+	 *
+	 * @param cursor - cursor with parsed CSV record
+	 * @return - price after transformation.
+	 * 		Null return if there problem found while processing - it not pass validation or unexpected exception occured
+	 */
+	public static final Function<CsvRecordCursor, FxPrice> transformCursor2FxPrice = cursor -> transformCursor(cursor, null, "", null);
+
+	/**
+	 * Transforms and verify CSV record cursor to FxPrice - see transformCursor2FxPrice.
+	 * If fixedPointScale function is given then FxFixedPointPrice is created and
+	 * prices are parsed straight to long mantissas with scale given by function for pair symbol.
+	 *
+	 * @param cursor          - cursor with parsed CSV record
+	 * @param fixedPointScale - function returning number of decimals for pair symbol
+	 *                        or null for BigDecimal prices
+	 * @return - price after transformation.
+	 * 		Null return if there problem found while processing - it not pass validation or unexpected exception occured
+	 */
+	public static FxPrice transformCursor(CsvRecordCursor cursor, ToIntFunction<String> fixedPointScale) {
+		return transformCursor(cursor, fixedPointScale, "", null);
+	}
+
+	/**
+	 * Transforms and verify CSV record cursor to FxPrice - see transformCursor.
+	 * Price id is created with given prefix at once, e.g. with prefix of
+	 * margined price id. Rejected records are reported to rejection sink as they
+	 * have been received.
+	 *
+	 * @param cursor          - cursor with parsed CSV record
+	 * @param fixedPointScale - function returning number of decimals for pair symbol
+	 *                        or null for BigDecimal prices
+	 * @param priceIdPrefix   - text put before price id from record
+	 * @param rejectionSink   - sink of rejected records, if null they are logged at once
+	 * @return - price after transformation.
+	 * 		Null return if there problem found while processing - it not pass validation or unexpected exception occured
+	 */
+	public static FxPrice transformCursor(CsvRecordCursor cursor, ToIntFunction<String> fixedPointScale,
+			String priceIdPrefix, FxRejectionSink rejectionSink) {
+		FxTickCounters.parsed();
+		try {
+			if (cursor == null) {
+				return rejected(rejectionSink, FxTickCounters.Reason.EMPTY_RECORD,
+						"Value provided to parse is null", null);
+			}
+
+			if (cursor.columnCount() != 5) {
+				return rejectedRecord(rejectionSink, FxTickCounters.Reason.COLUMN_COUNT,
+						"Wrong column number, expected is 5", cursor);
+			}
+			char[] buffer = cursor.buffer();
+
+			if (cursor.trimmedLength(1) == 0) { // pairSymbol won't be validated for pattern - only length
+				return rejectedRecord(rejectionSink, FxTickCounters.Reason.PAIR_SYMBOL,
+						"pairSymbol is empty string", cursor);
+			}
+			// known pair resolves to its registered symbol - no String is created
+			// new pair is registered by price store when its price is stored - rejected record takes no id
+			int pairId = FxPairSymbolRegistry.shared().idOf(buffer, cursor.trimmedStart(1), cursor.trimmedLength(1));
+			var pairSymbol = pairId != FxPairSymbolRegistry.UNKNOWN_ID ? FxPairSymbolRegistry.shared().symbolOf(pairId)
+					: new String(buffer, cursor.trimmedStart(1), cursor.trimmedLength(1));
+			// syntax checked first - bad batch is rejected without cost of exceptions
+			if (!FixedPointDecimal.isDecimal(buffer, cursor.trimmedStart(2), cursor.trimmedLength(2))) {
+				return rejectedRecord(rejectionSink, FxTickCounters.Reason.BID_FORMAT,
+						"Bid price has wrong format", cursor);
+			}
+			if (!FixedPointDecimal.isDecimal(buffer, cursor.trimmedStart(3), cursor.trimmedLength(3))) {
+				return rejectedRecord(rejectionSink, FxTickCounters.Reason.ASK_FORMAT,
+						"Ask price has wrong format", cursor);
+			}
+
+			LocalDateTime dateTimeVal = FxDateTimeDecoder.decode(buffer, cursor.trimmedStart(4), cursor.trimmedLength(4));
+			if (dateTimeVal == null) {
+				return rejectedRecord(rejectionSink, FxTickCounters.Reason.DATE_FORMAT,
+						"Wrong date time format", cursor);
+			}
+
+			if (fixedPointScale != null) {
+				// scale is resolved for valid record only - mantissa may still not fit into long
+				int scale = fixedPointScale.applyAsInt(pairSymbol);
+				long bidMantissa;
+				try {
+					bidMantissa = FixedPointDecimal.parse(buffer, cursor.trimmedStart(2), cursor.trimmedLength(2), scale);
+				} catch (NumberFormatException nfe) {
+					return rejectedRecord(rejectionSink, FxTickCounters.Reason.BID_FORMAT,
+							"Bid price has wrong format", cursor);
+				}
+				long askMantissa;
+				try {
+					askMantissa = FixedPointDecimal.parse(buffer, cursor.trimmedStart(3), cursor.trimmedLength(3), scale);
+				} catch (NumberFormatException nfe) {
+					return rejectedRecord(rejectionSink, FxTickCounters.Reason.ASK_FORMAT,
+							"Ask price has wrong format", cursor);
+				}
+				return new FxFixedPointPrice(cursor.trimmedAsString(0, priceIdPrefix), pairSymbol, bidMantissa,
+						askMantissa, scale, dateTimeVal);
+			}
+			BigDecimal bidPriceVal;
+			try {
+				bidPriceVal = new BigDecimal(buffer, cursor.trimmedStart(2), cursor.trimmedLength(2));
+			} catch (NumberFormatException nfe) {
+				return rejectedRecord(rejectionSink, FxTickCounters.Reason.BID_FORMAT,
+						"Bid price has wrong format", cursor);
+			}
+			BigDecimal askPriceVal;
+			try {
+				askPriceVal = new BigDecimal(buffer, cursor.trimmedStart(3), cursor.trimmedLength(3));
+			} catch (NumberFormatException nfe) {
+				return rejectedRecord(rejectionSink, FxTickCounters.Reason.ASK_FORMAT,
+						"Ask price has wrong format", cursor);
+			}
+			return FxPrice.builder()
+					.priceId(cursor.trimmedAsString(0, priceIdPrefix))
+					.pairSymbol(pairSymbol)
+					.bidPrice(bidPriceVal)
+					.askPrice(askPriceVal)
+					.dateTime(dateTimeVal)
+					.build();
+		} catch (Exception exc) {
+			// here is catch any exception to not to brake processing chain
+			// handling is simplified for demo purposes - just report rejection
+			return rejected(rejectionSink, FxTickCounters.Reason.OTHER, "Unknown exception " + exc,
+					cursor == null ? null : cursor.record().toString());
+		}
+	}
+
+	// counts and reports rejected record - kept out of parsing functions to keep them small
+	private static FxPrice rejected(FxRejectionSink rejectionSink, FxTickCounters.Reason reason, String message,
+			Object record) {
+		FxTickCounters.rejected(reason);
+		if (rejectionSink != null) {
+			rejectionSink.rejected(reason, message, record);
+		} else {
+			log.warn("{}: [{}]", message, record);
+		}
+		return null;
+	}
+
+	// record as received - cursor source may be reused, so it is copied unless it is String
+	private static FxPrice rejectedRecord(FxRejectionSink rejectionSink, FxTickCounters.Reason reason,
+			String message, CsvRecordCursor cursor) {
+		return rejected(rejectionSink, reason, message, cursor.record().toString());
+	}
 }
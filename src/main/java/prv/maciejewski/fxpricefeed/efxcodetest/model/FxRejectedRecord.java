@@ -0,0 +1,17 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.model;
+
+import java.time.Instant;
+
+/**
+ * Rejected record kept in dead-letter ring of FxRejectionSink
+ *
+ * @param sequence - number of rejection since application start
+ * @param time     - time of rejection
+ * @param reason   - reason tag, the same as in fx.ticks.rejected metric, or "stale"
+ * @param message  - description of problem
+ * @param record   - rejected CSV record (columns joined with comma) or rejected price
+ *
+ * @author Mikolaj Maciejewski
+ */
+public record FxRejectedRecord(long sequence, Instant time, String reason, String message, String record) {
+}
@@ -0,0 +1,287 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sink of rejected records and stale prices - warning is not logged on feed
+ * thread, so bad batch or replayed data does not slow down ingestion.
+ *
+ * Every rejection is put into fixed-size dead-letter ring of latest rejections
+ * (getRejections). Only first maxLogsPerSecond rejections of every reason per
+ * second, and one of sampleRate above that, are queued for logging - the rest
+ * is counted and reported by one summary line per second. Queue is bounded -
+ * when full, rejection is not logged. Warnings are logged by background thread.
+ *
+ * Sink is Spring bean - logging thread is started on init and stopped on
+ * shutdown, limits are set by FxRejectionService. Rejections reported before
+ * start are kept in dead-letter ring and queued.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Component
+@Slf4j
+public final class FxRejectionSink {
+
+	// rejection kinds - reasons of rejected records and stale prices
+	final static int STALE = FxTickCounters.Reason.values().length;
+	final static int KINDS = STALE + 1;
+	final static String STALE_TAG = "stale";
+
+	final static long WINDOW_NANOS = 1_000_000_000L;
+
+	// configuration - changed by configure
+	private volatile int maxLogsPerSecond;
+	private volatile int sampleRate;
+	private volatile int queueCapacity;
+	private volatile AtomicReferenceArray<Rejection> deadLetters;
+
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicIntegerArray logCounts = new AtomicIntegerArray(KINDS);
+	private final LongAdder[] suppressedCounts = new LongAdder[KINDS];
+	private final LongAdder suppressedTotal = new LongAdder();
+	private final LongAdder droppedCount = new LongAdder();
+
+	// rejections waiting for logging
+	private final Queue<Rejection> pendingLogs = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final AtomicBoolean drainWakeUp = new AtomicBoolean(false);
+
+	// written by drain thread only
+	private volatile long loggedCount;
+
+	private volatile Thread drainer;
+	private volatile boolean running;
+
+	private record Rejection(long sequence, long timeMillis, int kind, String message, Object record) {
+
+		FxRejectedRecord toRejectedRecord() {
+			return new FxRejectedRecord(sequence, Instant.ofEpochMilli(timeMillis), tagOf(kind), message,
+					String.valueOf(record));
+		}
+	}
+
+	/**
+	 * Creates sink with default limits - see configure
+	 */
+	public FxRejectionSink() {
+		this(10, 1000, 1024, 1000);
+	}
+
+	/**
+	 * Creates sink - logging thread is started by start()
+	 *
+	 * @param maxLogsPerSecond   - rejections of every reason logged per second
+	 * @param sampleRate         - one of given number of rejections above limit is logged, 0 - none
+	 * @param queueCapacity      - rejections waiting for logging
+	 * @param deadLetterCapacity - latest rejections kept
+	 */
+	FxRejectionSink(int maxLogsPerSecond, int sampleRate, int queueCapacity, int deadLetterCapacity) {
+		for (int kind = 0; kind < KINDS; kind++) {
+			suppressedCounts[kind] = new LongAdder();
+		}
+		configure(maxLogsPerSecond, sampleRate, queueCapacity, deadLetterCapacity);
+	}
+
+	/**
+	 * Starts logging thread
+	 */
+	@PostConstruct
+	public synchronized void start() {
+		if (drainer != null) {
+			return;
+		}
+		running = true;
+		Thread thread = new Thread(this::drainLoop, "fx-rejection-log");
+		thread.setDaemon(true);
+		drainer = thread;
+		thread.start();
+	}
+
+	/**
+	 * Changes limits of sink - dead-letter ring is cleared when its capacity changes
+	 *
+	 * @param maxLogsPerSecond   - rejections of every reason logged per second
+	 * @param sampleRate         - one of given number of rejections above limit is logged, 0 - none
+	 * @param queueCapacity      - rejections waiting for logging
+	 * @param deadLetterCapacity - latest rejections kept
+	 */
+	public void configure(int maxLogsPerSecond, int sampleRate, int queueCapacity, int deadLetterCapacity) {
+		if (maxLogsPerSecond < 0 || sampleRate < 0 || queueCapacity < 0 || deadLetterCapacity < 0) {
+			throw new IllegalArgumentException("Rejection sink limits can't be negative");
+		}
+		this.maxLogsPerSecond = maxLogsPerSecond;
+		this.sampleRate = sampleRate;
+		this.queueCapacity = queueCapacity;
+		if (deadLetters == null || deadLetters.length() != deadLetterCapacity) {
+			deadLetters = new AtomicReferenceArray<>(deadLetterCapacity);
+		}
+	}
+
+	/**
+	 * Reports rejected record - to be called after it is counted in FxTickCounters
+	 *
+	 * @param reason  - reason of rejection
+	 * @param message - description of problem, constant text
+	 * @param record  - rejected record, formatted only when logged or queried
+	 */
+	public void rejected(FxTickCounters.Reason reason, String message, Object record) {
+		offer(reason.ordinal(), message, record);
+	}
+
+	/**
+	 * Reports price ignored by store as older than stored one
+	 *
+	 * @param fxPrice - ignored price
+	 */
+	public void stale(FxPrice fxPrice) {
+		offer(STALE, "Update with older dated price has been ignored", fxPrice);
+	}
+
+	/**
+	 * Returns latest rejections from dead-letter ring
+	 *
+	 * @param limit - max number of rejections
+	 * @return rejections, newest first
+	 */
+	public List<FxRejectedRecord> getRejections(int limit) {
+		AtomicReferenceArray<Rejection> ring = deadLetters;
+		long last = sequence.get();
+		List<FxRejectedRecord> result = new ArrayList<>();
+		for (long seq = last - 1; seq >= 0 && seq >= last - ring.length() && result.size() < limit; seq--) {
+			Rejection rejection = ring.get((int) (seq % ring.length()));
+			// slot may be reused by newer rejection or not yet written
+			if (rejection != null && rejection.sequence() == seq) {
+				result.add(rejection.toRejectedRecord());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return number of logged rejections
+	 */
+	public long getLoggedCount() {
+		return loggedCount;
+	}
+
+	/**
+	 * @return number of rejections not logged because of rate limit
+	 */
+	public long getSuppressedCount() {
+		return suppressedTotal.sum();
+	}
+
+	/**
+	 * @return number of rejections not logged because queue was full
+	 */
+	public long getDroppedCount() {
+		return droppedCount.sum();
+	}
+
+	/**
+	 * Stops logging thread - queued rejections are logged first
+	 */
+	@PreDestroy
+	public synchronized void close() throws InterruptedException {
+		Thread thread = drainer;
+		if (thread == null) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(thread);
+		thread.join();
+		drainer = null;
+	}
+
+	private void offer(int kind, String message, Object record) {
+		long seq = sequence.getAndIncrement();
+		Rejection rejection = new Rejection(seq, System.currentTimeMillis(), kind, message, record);
+		AtomicReferenceArray<Rejection> ring = deadLetters;
+		if (ring.length() > 0) {
+			ring.set((int) (seq % ring.length()), rejection);
+		}
+		if (!shouldLog(kind)) {
+			suppressedCounts[kind].increment();
+			suppressedTotal.increment();
+			return;
+		}
+		if (pendingCount.incrementAndGet() > queueCapacity) {
+			pendingCount.decrementAndGet();
+			droppedCount.increment();
+			return;
+		}
+		pendingLogs.offer(rejection);
+		Thread thread = drainer;
+		if (thread != null && drainWakeUp.compareAndSet(false, true)) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	private boolean shouldLog(int kind) {
+		int max = maxLogsPerSecond;
+		// counter is not incremented any more once limit is reached
+		if (logCounts.get(kind) < max && logCounts.incrementAndGet(kind) <= max) {
+			return true;
+		}
+		int rate = sampleRate;
+		return rate > 0 && ThreadLocalRandom.current().nextInt(rate) == 0;
+	}
+
+	private void drainLoop() {
+		long nextWindow = System.nanoTime() + WINDOW_NANOS;
+		while (true) {
+			boolean stopping = !running;
+			drainWakeUp.set(false);
+			Rejection rejection;
+			while ((rejection = pendingLogs.poll()) != null) {
+				pendingCount.decrementAndGet();
+				log.warn("{}: [{}]", rejection.message(), rejection.record());
+				loggedCount++;
+			}
+			long now = System.nanoTime();
+			if (stopping || now - nextWindow >= 0) {
+				reportSuppressed();
+				nextWindow = now + WINDOW_NANOS;
+			}
+			if (stopping) {
+				return;
+			}
+			if (pendingLogs.isEmpty()) {
+				LockSupport.parkNanos(this, Math.max(0, nextWindow - now));
+			}
+		}
+	}
+
+	private void reportSuppressed() {
+		for (int kind = 0; kind < KINDS; kind++) {
+			logCounts.set(kind, 0);
+			long suppressed = suppressedCounts[kind].sumThenReset();
+			if (suppressed > 0) {
+				log.warn("{} more rejections [{}] have not been logged in last second.", suppressed, tagOf(kind));
+			}
+		}
+	}
+
+	private static String tagOf(int kind) {
+		return kind == STALE ? STALE_TAG : FxTickCounters.Reason.values()[kind].getTag();
+	}
+}
@@ -0,0 +1,105 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of ticks on their way from market feed to price store - parsed
+ * records, records rejected by reason, prices dropped as older than stored one
+ * and accepted prices.
+ *
+ * Counters are static like parsing functions of FxPrice which update them.
+ * Counting is LongAdder increment - no allocation and no contention between
+ * feed threads. Values are exposed as metrics by FxTickMetrics.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public final class FxTickCounters {
+
+	/**
+	 * Reasons of rejected records
+	 */
+	public enum Reason {
+		EMPTY_RECORD("empty_record"),
+		RECORD_LENGTH("record_length"),
+		COLUMN_COUNT("column_count"),
+		PAIR_SYMBOL("pair_symbol"),
+		BID_FORMAT("bid_format"),
+		ASK_FORMAT("ask_format"),
+		DATE_FORMAT("date_format"),
+		// price with margins out of fixed-point range
+		MARGIN("margin"),
+		OTHER("other");
+
+		// value of metric tag
+		private final String tag;
+
+		Reason(String tag) {
+			this.tag = tag;
+		}
+
+		public String getTag() {
+			return tag;
+		}
+	}
+
+	private static final LongAdder parsedCount = new LongAdder();
+	private static final LongAdder staleCount = new LongAdder();
+	private static final LongAdder acceptedCount = new LongAdder();
+	private static final LongAdder[] rejectedCounts = new LongAdder[Reason.values().length];
+
+	static {
+		for (int i = 0; i < rejectedCounts.length; i++) {
+			rejectedCounts[i] = new LongAdder();
+		}
+	}
+
+	private FxTickCounters() {
+	}
+
+	/**
+	 * Counts record given to parse
+	 */
+	public static void parsed() {
+		parsedCount.increment();
+	}
+
+	/**
+	 * Counts rejected record
+	 *
+	 * @param reason - reason of rejection
+	 */
+	public static void rejected(Reason reason) {
+		rejectedCounts[reason.ordinal()].increment();
+	}
+
+	/**
+	 * Counts price ignored by store as older than stored one
+	 */
+	public static void stale() {
+		staleCount.increment();
+	}
+
+	/**
+	 * Counts price accepted by store
+	 */
+	public static void accepted() {
+		acceptedCount.increment();
+	}
+
+	public static long getParsedCount() {
+		return parsedCount.sum();
+	}
+
+	public static long getRejectedCount(Reason reason) {
+		return rejectedCounts[reason.ordinal()].sum();
+	}
+
+	public static long getStaleCount() {
+		return staleCount.sum();
+	}
+
+	public static long getAcceptedCount() {
+		return acceptedCount.sum();
+	}
+}
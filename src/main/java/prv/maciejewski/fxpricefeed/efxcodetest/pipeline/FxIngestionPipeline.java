@@ -0,0 +1,380 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.pipeline;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Disruptor style ingestion pipeline between feed producers and price store.
+ *
+ * Events are kept in preallocated ring buffer with power of two size. Many
+ * producers publish raw CSV lines or prices decoded by other adapters (binary
+ * feed, conflated messages), claiming slots with compare-and-set on cursor.
+ * Two consumer threads work on the ring one after another:
+ *
+ * - parser stage - parses lines, validates them and adds margins (decoded
+ *   prices get margins only); it takes all published events at once as a batch
+ * - writer stage - single writer which applies parsed prices to the store, so
+ *   store updates never compete with each other
+ *
+ * Producer can't overtake writer by more than ring size - when ring is full it
+ * waits with configured wait strategy (BLOCK) or drops the line (REJECT).
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Slf4j
+public class FxIngestionPipeline {
+
+	public enum Backpressure {
+		// producer waits for free slot
+		BLOCK,
+		// line is dropped and counted as rejected
+		REJECT
+	}
+
+	/**
+	 * Slot of ring buffer - reused for every round
+	 */
+	static final class Event {
+		String line;
+		FxPrice price;
+		long publishNanos;
+		long parsedNanos;
+	}
+
+	private final int capacity;
+	private final int indexMask;
+	private final int indexShift;
+	private final Event[] ring;
+	// round number of last published event per slot - tells if slot is ready for consumers
+	private final AtomicIntegerArray published;
+
+	private final FxWaitStrategy waitStrategy;
+	private final Backpressure backpressure;
+	private final Function<String, FxPrice> parser;
+	private final UnaryOperator<FxPrice> pricer;
+	private final Predicate<FxPrice> writer;
+
+	// last claimed sequence
+	private final AtomicLong cursor = new AtomicLong(-1);
+	// last sequence processed by parser stage
+	private final AtomicLong parserSequence = new AtomicLong(-1);
+	// last sequence processed by writer stage
+	private final AtomicLong writerSequence = new AtomicLong(-1);
+	// cached writer sequence for producers - avoids reading writer sequence on every claim
+	private final AtomicLong gatingSequenceCache = new AtomicLong(-1);
+
+	// metrics - written by single thread each (except publish / reject counters)
+	private final AtomicLong publishedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong parsedCount = new AtomicLong();
+	private final AtomicLong invalidCount = new AtomicLong();
+	private final AtomicLong storedCount = new AtomicLong();
+	private final AtomicLong staleCount = new AtomicLong();
+	private final AtomicLong parseNanosTotal = new AtomicLong();
+	private final AtomicLong parseNanosMax = new AtomicLong();
+	private final AtomicLong storeNanosTotal = new AtomicLong();
+	private final AtomicLong storeNanosMax = new AtomicLong();
+
+	private final Thread parserThread;
+	private final Thread writerThread;
+	private volatile boolean running = true;
+
+	/**
+	 * Creates and starts pipeline with daemon platform threads
+	 *
+	 * @param capacity     - ring size, power of two
+	 * @param waitStrategy - how consumers wait for events and producers for free slots
+	 * @param backpressure - what producer does when ring is full
+	 * @param parser       - parser stage function - returns price to store or null for invalid line
+	 * @param writer       - writer stage function - returns true if price has been stored
+	 */
+	public FxIngestionPipeline(int capacity, FxWaitStrategy waitStrategy, Backpressure backpressure,
+			Function<String, FxPrice> parser, Predicate<FxPrice> writer) {
+		this(capacity, waitStrategy, backpressure, parser, writer, FxIngestionPipeline::newDaemonThread);
+	}
+
+	/**
+	 * Creates and starts pipeline
+	 *
+	 * @param capacity     - ring size, power of two
+	 * @param waitStrategy - how consumers wait for events and producers for free slots
+	 * @param backpressure - what producer does when ring is full
+	 * @param parser       - parser stage function - returns price to store or null for invalid line
+	 * @param writer       - writer stage function - returns true if price has been stored
+	 * @param threadFactory - factory of consumer threads, e.g. of virtual threads
+	 */
+	public FxIngestionPipeline(int capacity, FxWaitStrategy waitStrategy, Backpressure backpressure,
+			Function<String, FxPrice> parser, Predicate<FxPrice> writer, ThreadFactory threadFactory) {
+		this(capacity, waitStrategy, backpressure, parser, UnaryOperator.identity(), writer, threadFactory);
+	}
+
+	/**
+	 * Creates and starts pipeline
+	 *
+	 * @param capacity      - ring size, power of two
+	 * @param waitStrategy  - how consumers wait for events and producers for free slots
+	 * @param backpressure  - what producer does when ring is full
+	 * @param parser        - parser stage function for lines - returns verified price or null for invalid line
+	 * @param pricer        - parser stage function for verified prices (parsed or published) - returns
+	 *                      price to store or null if price is rejected
+	 * @param writer        - writer stage function - returns true if price has been stored
+	 * @param threadFactory - factory of consumer threads, e.g. of virtual threads
+	 */
+	public FxIngestionPipeline(int capacity, FxWaitStrategy waitStrategy, Backpressure backpressure,
+			Function<String, FxPrice> parser, UnaryOperator<FxPrice> pricer, Predicate<FxPrice> writer,
+			ThreadFactory threadFactory) {
+		if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Ring capacity must be power of two: " + capacity);
+		}
+		this.capacity = capacity;
+		this.indexMask = capacity - 1;
+		this.indexShift = Integer.numberOfTrailingZeros(capacity);
+		this.ring = new Event[capacity];
+		for (int i = 0; i < capacity; i++) {
+			ring[i] = new Event();
+		}
+		this.published = new AtomicIntegerArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			published.set(i, -1);
+		}
+		this.waitStrategy = waitStrategy;
+		this.backpressure = backpressure;
+		this.parser = parser;
+		this.pricer = pricer;
+		this.writer = writer;
+
+		parserThread = threadFactory.newThread(this::parserLoop);
+		parserThread.setName("fx-pipeline-parser");
+		writerThread = threadFactory.newThread(this::writerLoop);
+		writerThread.setName("fx-pipeline-writer");
+		parserThread.start();
+		writerThread.start();
+	}
+
+	/**
+	 * Publishes raw CSV line to pipeline. Depending on backpressure mode it waits
+	 * for free slot or drops the line when ring is full.
+	 *
+	 * @param line - CSV record
+	 * @return true if line has been published, false if it has been rejected
+	 */
+	public boolean publish(String line) {
+		return publish(line, null);
+	}
+
+	/**
+	 * Publishes price decoded by other feed adapter - it skips parsing, margins
+	 * are added by parser stage. Depending on backpressure mode it waits for free
+	 * slot or drops the price when ring is full.
+	 *
+	 * @param price - verified price from market feed
+	 * @return true if price has been published, false if it has been rejected
+	 */
+	public boolean publish(FxPrice price) {
+		return publish(null, price);
+	}
+
+	private boolean publish(String line, FxPrice price) {
+		long sequence = claim();
+		if (sequence < 0) {
+			rejectedCount.incrementAndGet();
+			return false;
+		}
+		Event event = ring[(int) sequence & indexMask];
+		event.line = line;
+		event.price = price;
+		event.publishNanos = System.nanoTime();
+		// release store - event fields are visible to consumer which sees the round number
+		published.lazySet((int) sequence & indexMask, (int) (sequence >>> indexShift));
+		publishedCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Waits until all published lines are stored
+	 *
+	 * @param timeout - max wait time
+	 * @param unit    - unit of timeout
+	 * @return true if pipeline is drained, false on timeout
+	 */
+	public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		long target = cursor.get();
+		while (writerSequence.get() < target) {
+			if (System.nanoTime() > deadline) {
+				return false;
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			Thread.sleep(1);
+		}
+		return true;
+	}
+
+	/**
+	 * Stops consumer threads - lines not yet processed are lost
+	 */
+	public void stop() {
+		running = false;
+		parserThread.interrupt();
+		writerThread.interrupt();
+	}
+
+	/**
+	 * @return current metrics snapshot
+	 */
+	public FxPipelineStats getStats() {
+		long parsed = parsedCount.get();
+		long stored = storedCount.get() + staleCount.get();
+		return new FxPipelineStats(capacity,
+				Math.max(0, cursor.get() - writerSequence.get()),
+				publishedCount.get(),
+				rejectedCount.get(),
+				parsed,
+				invalidCount.get(),
+				storedCount.get(),
+				staleCount.get(),
+				parsed == 0 ? 0 : parseNanosTotal.get() / parsed,
+				parseNanosMax.get(),
+				stored == 0 ? 0 : storeNanosTotal.get() / stored,
+				storeNanosMax.get());
+	}
+
+	private long claim() {
+		int attempt = 0;
+		while (true) {
+			long current = cursor.get();
+			long next = current + 1;
+			long wrapPoint = next - capacity;
+			if (wrapPoint > gatingSequenceCache.get()) {
+				long gatingSequence = writerSequence.get();
+				gatingSequenceCache.set(gatingSequence);
+				if (wrapPoint > gatingSequence) {
+					// ring is full
+					if (backpressure == Backpressure.REJECT || !running) {
+						return -1;
+					}
+					waitStrategy.idle(attempt++);
+					continue;
+				}
+			}
+			if (cursor.compareAndSet(current, next)) {
+				return next;
+			}
+		}
+	}
+
+	private boolean isPublished(long sequence) {
+		return published.get((int) sequence & indexMask) == (int) (sequence >>> indexShift);
+	}
+
+	private long waitFor(long sequence, AtomicLong dependency) {
+		int attempt = 0;
+		long available;
+		while ((available = dependency.get()) < sequence) {
+			if (!running) {
+				return -1;
+			}
+			waitStrategy.idle(attempt++);
+		}
+		return available;
+	}
+
+	private void parserLoop() {
+		long next = 0;
+		int unpublishedAttempt = 0;
+		while (running) {
+			long available = waitFor(next, cursor);
+			if (available < 0) {
+				return;
+			}
+			// claimed sequences may be not published yet - process only continuous published batch
+			long last = next - 1;
+			while (last < available && isPublished(last + 1)) {
+				last++;
+			}
+			if (last < next) {
+				// producer claimed the slot and has not published it - wait as for new events
+				waitStrategy.idle(unpublishedAttempt++);
+				continue;
+			}
+			unpublishedAttempt = 0;
+			for (long sequence = next; sequence <= last; sequence++) {
+				Event event = ring[(int) sequence & indexMask];
+				try {
+					FxPrice price = event.line != null ? parser.apply(event.line) : event.price;
+					event.price = price == null ? null : pricer.apply(price);
+				} catch (RuntimeException exc) {
+					log.warn("Line parsing failed: {}", exc.toString());
+					event.price = null;
+				}
+				event.line = null;
+				event.parsedNanos = System.nanoTime();
+				if (event.price == null) {
+					invalidCount.lazySet(invalidCount.get() + 1);
+				}
+				recordLatency(event.parsedNanos - event.publishNanos, parseNanosTotal, parseNanosMax);
+			}
+			parsedCount.lazySet(parsedCount.get() + (last - next + 1));
+			parserSequence.set(last);
+			next = last + 1;
+		}
+	}
+
+	private void writerLoop() {
+		long next = 0;
+		while (running) {
+			long available = waitFor(next, parserSequence);
+			if (available < 0) {
+				return;
+			}
+			for (long sequence = next; sequence <= available; sequence++) {
+				Event event = ring[(int) sequence & indexMask];
+				FxPrice price = event.price;
+				event.price = null;
+				if (price == null) {
+					continue;
+				}
+				boolean stored;
+				try {
+					stored = writer.test(price);
+				} catch (RuntimeException exc) {
+					log.warn("Price store failed: {}", exc.toString());
+					stored = false;
+				}
+				if (stored) {
+					storedCount.lazySet(storedCount.get() + 1);
+				} else {
+					staleCount.lazySet(staleCount.get() + 1);
+				}
+				recordLatency(System.nanoTime() - event.parsedNanos, storeNanosTotal, storeNanosMax);
+			}
+			writerSequence.set(available);
+			next = available + 1;
+		}
+	}
+
+	private static Thread newDaemonThread(Runnable task) {
+		Thread thread = new Thread(task);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	private static void recordLatency(long nanos, AtomicLong total, AtomicLong max) {
+		// single writer per stage - plain read and ordered write is enough
+		total.lazySet(total.get() + nanos);
+		if (nanos > max.get()) {
+			max.lazySet(nanos);
+		}
+	}
+}
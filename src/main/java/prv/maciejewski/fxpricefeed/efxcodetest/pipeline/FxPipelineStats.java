@@ -0,0 +1,24 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.pipeline;
+
+/**
+ * Snapshot of ingestion pipeline metrics. Latencies are in nanoseconds:
+ * parse - from publishing of line to end of parse and margin stage, store -
+ * from end of parse stage to price stored.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public record FxPipelineStats(
+		int capacity,
+		long queueDepth,
+		long published,
+		long rejected,
+		long parsed,
+		long invalid,
+		long stored,
+		long staleIgnored,
+		long parseLatencyAvgNanos,
+		long parseLatencyMaxNanos,
+		long storeLatencyAvgNanos,
+		long storeLatencyMaxNanos) {
+}
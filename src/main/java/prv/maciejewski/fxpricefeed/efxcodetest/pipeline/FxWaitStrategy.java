@@ -0,0 +1,60 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strategies of waiting for sequence in ingestion pipeline - used both by
+ * consumers waiting for new events and by producers waiting for free slots.
+ *
+ * BUSY_SPIN - lowest latency, keeps one core busy per waiting thread
+ * YIELDING - spins for a while, then gives core to other threads
+ * SLEEPING - spins and yields for a while, then parks thread - lowest CPU use
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public enum FxWaitStrategy {
+
+	BUSY_SPIN {
+		@Override
+		void idle(int attempt) {
+			Thread.onSpinWait();
+		}
+	},
+
+	YIELDING {
+		@Override
+		void idle(int attempt) {
+			if (attempt < SPIN_TRIES) {
+				Thread.onSpinWait();
+			} else {
+				Thread.yield();
+			}
+		}
+	},
+
+	SLEEPING {
+		@Override
+		void idle(int attempt) {
+			if (attempt < SPIN_TRIES) {
+				Thread.onSpinWait();
+			} else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(SLEEP_NANOS);
+			}
+		}
+	};
+
+	final static int SPIN_TRIES = 100;
+	final static int YIELD_TRIES = 100;
+	final static long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	/**
+	 * Waits a bit before next check of awaited condition
+	 *
+	 * @param attempt - number of checks done so far
+	 */
+	abstract void idle(int attempt);
+}
@@ -0,0 +1,145 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.replication;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.journal.FxJournalRecord;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Connection of peers starts with handshake:
+ *
+ * - int magic (HANDSHAKE_MAGIC), int version (VERSION)
+ * - long fingerprint of sender margins - stored prices are margined or raw
+ *   depending on margins, so receiver accepts only peer with the same ones
+ *
+ * Then batches of replicated prices are sent:
+ *
+ * - int length of records in bytes
+ * - prices in the same binary form as in journal (FxJournalRecord) - fixed-point
+ *   prices as mantissas, BigDecimal ones as unscaled value bytes
+ *
+ * Snapshot after reconnect is sent as ordinary batches - receiver applies every
+ * price with "newer price wins" rule, so batches may be repeated or reordered.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public final class FxReplicationBatch {
+
+	public final static int HEADER_SIZE = Integer.BYTES;
+	public final static int HANDSHAKE_MAGIC = 0x46585250; // "FXRP"
+	public final static int VERSION = 1;
+	public final static int HANDSHAKE_SIZE = 2 * Integer.BYTES + Long.BYTES;
+
+	private FxReplicationBatch() {
+	}
+
+	/**
+	 * Writes handshake - first bytes sent on new connection
+	 *
+	 * @param buffer      - target buffer
+	 * @param fingerprint - margins fingerprint of sender
+	 */
+	public static void writeHandshake(ByteBuffer buffer, long fingerprint) {
+		buffer.putInt(HANDSHAKE_MAGIC).putInt(VERSION).putLong(fingerprint);
+	}
+
+	/**
+	 * @param buffer - buffer in read mode
+	 * @return true if whole handshake is between buffer position and limit
+	 */
+	public static boolean hasHandshake(ByteBuffer buffer) {
+		return buffer.remaining() >= HANDSHAKE_SIZE;
+	}
+
+	/**
+	 * Reads handshake - position is moved after it
+	 *
+	 * @param buffer - buffer in read mode with whole handshake
+	 * @return margins fingerprint of sender
+	 * @throws IllegalStateException if peer is not replication peer of the same version
+	 */
+	public static long readHandshake(ByteBuffer buffer) {
+		int magic = buffer.getInt();
+		int version = buffer.getInt();
+		if (magic != HANDSHAKE_MAGIC || version != VERSION) {
+			throw new IllegalStateException("Invalid replication handshake, version " + version);
+		}
+		return buffer.getLong();
+	}
+
+	/**
+	 * Starts batch at buffer position - header is written by end
+	 *
+	 * @param buffer - target buffer
+	 * @return position of batch to be passed to end
+	 */
+	public static int begin(ByteBuffer buffer) {
+		int start = buffer.position();
+		buffer.position(start + HEADER_SIZE);
+		return start;
+	}
+
+	/**
+	 * Appends price to batch
+	 *
+	 * @param buffer  - target buffer
+	 * @param fxPrice - price to append
+	 * @return true if price has been appended, false if it does not fit into buffer
+	 */
+	public static boolean append(ByteBuffer buffer, FxPrice fxPrice) {
+		return FxJournalRecord.write(buffer, fxPrice);
+	}
+
+	/**
+	 * Completes batch - writes its header
+	 *
+	 * @param buffer - target buffer
+	 * @param start  - position returned by begin
+	 * @return true if batch has any price, empty batch is removed from buffer
+	 */
+	public static boolean end(ByteBuffer buffer, int start) {
+		int length = buffer.position() - start - HEADER_SIZE;
+		if (length == 0) {
+			buffer.position(start);
+			return false;
+		}
+		buffer.putInt(start, length);
+		return true;
+	}
+
+	/**
+	 * Decodes all complete batches between buffer position and limit. Position
+	 * is moved after last complete batch - incomplete batch stays in buffer.
+	 *
+	 * @param buffer  - buffer in read mode
+	 * @param handler - receiver of decoded prices
+	 * @return number of decoded prices
+	 * @throws IllegalStateException if batch is corrupted or longer than buffer capacity
+	 */
+	public static int decode(ByteBuffer buffer, Consumer<FxPrice> handler) {
+		int prices = 0;
+		while (buffer.remaining() >= HEADER_SIZE) {
+			int start = buffer.position();
+			int length = buffer.getInt(start);
+			if (length <= 0 || length > buffer.capacity() - HEADER_SIZE) {
+				throw new IllegalStateException("Invalid replication batch length " + length);
+			}
+			if (buffer.remaining() < HEADER_SIZE + length) {
+				break;
+			}
+			ByteBuffer records = buffer.slice(start + HEADER_SIZE, length);
+			while (records.hasRemaining()) {
+				FxPrice fxPrice = FxJournalRecord.read(records);
+				if (fxPrice == null) {
+					throw new IllegalStateException("Corrupted replication batch at record " + records.position());
+				}
+				handler.accept(fxPrice);
+				prices++;
+			}
+			buffer.position(start + HEADER_SIZE + length);
+		}
+		return prices;
+	}
+}
@@ -0,0 +1,275 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.binary.FxBinaryTickFrame;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxBinaryFeedProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FixedPointDecimal;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxFixedPointPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPairSymbolRegistry;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxTickCounters;
+
+/**
+ * Second ingestion adapter next to CSV feed - non-blocking TCP listener of
+ * fixed-width binary tick frames (see FxBinaryTickFrame).
+ *
+ * Single selector thread accepts connections and reads them into direct
+ * buffers. Frames are decoded straight from buffers and sent to the same
+ * margin and store path as CSV records (FxDataFeedService.onFxPrice) - through
+ * ingestion pipeline when it is enabled. Prices have number of decimals
+ * configured for the pair in FxPricePrecisionService, price id is sequence
+ * number of frame. Frame which can't be turned into price is rejected alone,
+ * connection stays open.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Service
+@Slf4j
+public class FxBinaryFeedService {
+
+	@Autowired
+	FxBinaryFeedProperties fxBinaryFeedProperties;
+
+	@Autowired
+	FxDataFeedService fxDataFeedService;
+
+	@Autowired
+	FxPricePrecisionService fxPricePrecisionService;
+
+	@Autowired
+	FxPriceMarginCalculatorService fxPriceMarginCalculatorService;
+
+	// pair symbols and their scales by symbol id - resolved once on start
+	private String[] symbols = new String[0];
+	private int[] scales = new int[0];
+
+	// frames decoded by selector thread - written by this thread only
+	private volatile long frameCount;
+	private volatile long rejectedCount;
+	private volatile int connectionCount;
+
+	private final FxBinaryTickFrame.Handler tickHandler = this::onTick;
+
+	// price id prefix and digits of sequence - used by selector thread only
+	private final char[] priceIdBuffer = new char[24];
+
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+	private Thread selectorThread;
+	private volatile boolean running;
+
+	@PostConstruct
+	void start() throws IOException {
+		setSymbols(fxBinaryFeedProperties.getSymbols());
+		if (!fxBinaryFeedProperties.isEnabled()) {
+			return;
+		}
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.bind(new InetSocketAddress(fxBinaryFeedProperties.getBindAddress(), fxBinaryFeedProperties.getPort()));
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		running = true;
+		selectorThread = new Thread(this::selectLoop, "fx-binary-feed");
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+		log.info("Binary tick feed listening on {} for {} symbols.", serverChannel.getLocalAddress(), symbols.length);
+	}
+
+	@PreDestroy
+	void stop() {
+		if (selector == null) {
+			return;
+		}
+		running = false;
+		selector.wakeup();
+		try {
+			selectorThread.join(1000);
+			for (SelectionKey key : selector.keys()) {
+				key.channel().close();
+			}
+			selector.close();
+		} catch (IOException | InterruptedException exc) {
+			log.warn("Binary tick feed stopped with problem: {}", exc.toString());
+		}
+	}
+
+	/**
+	 * @return port of binary feed listener or -1 if listener is not started
+	 */
+	public int getLocalPort() {
+		return serverChannel == null ? -1 : serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * @return listener counters, empty if listener is not started
+	 */
+	public Optional<FxBinaryFeedStats> getStats() {
+		if (serverChannel == null) {
+			return Optional.empty();
+		}
+		return Optional.of(new FxBinaryFeedStats(connectionCount, frameCount, rejectedCount));
+	}
+
+	/**
+	 * Sets pair symbols by symbol id
+	 *
+	 * @param symbolList - pair symbols, symbol id is index in the list
+	 */
+	void setSymbols(List<String> symbolList) {
+		String[] newSymbols = symbolList.toArray(new String[0]);
+		int[] newScales = new int[newSymbols.length];
+		FxPairSymbolRegistry registry = FxPairSymbolRegistry.shared();
+		for (int i = 0; i < newSymbols.length; i++) {
+			// registered symbol instance - store finds its slot without comparing chars
+			// pair which is not registered yet is registered by store with its first price
+			int pairId = registry.idOf(newSymbols[i]);
+			if (pairId != FxPairSymbolRegistry.UNKNOWN_ID) {
+				newSymbols[i] = registry.symbolOf(pairId);
+			}
+			newScales[i] = fxPricePrecisionService.scaleOf(newSymbols[i]);
+		}
+		scales = newScales;
+		symbols = newSymbols;
+	}
+
+	/**
+	 * Decodes all complete frames from buffer and sends them to price store.
+	 * Incomplete frame stays in buffer.
+	 *
+	 * @param buffer - buffer in read mode
+	 * @return number of decoded frames
+	 */
+	int onFrames(ByteBuffer buffer) {
+		return FxBinaryTickFrame.decode(buffer, tickHandler);
+	}
+
+	private void onTick(int symbolId, long bidMantissa, long askMantissa, long epochNanos) {
+		long sequence = ++frameCount;
+		if (symbolId < 0 || symbolId >= symbols.length || bidMantissa < 0 || askMantissa < 0 || epochNanos < 0) {
+			rejectedCount++;
+			log.warn("Binary tick rejected: symbol id {}, bid {}, ask {}, timestamp {}", symbolId, bidMantissa,
+					askMantissa, epochNanos);
+			return;
+		}
+		try {
+			LocalDateTime dateTime = LocalDateTime.ofEpochSecond(epochNanos / 1_000_000_000L,
+					(int) (epochNanos % 1_000_000_000L), ZoneOffset.UTC);
+			String priceId = priceId(sequence);
+			int scale = scales[symbolId];
+
+			FxPrice fxPrice;
+			if (fxPricePrecisionService.isFixedPointEnabled()) {
+				fxPrice = new FxFixedPointPrice(priceId, symbols[symbolId], bidMantissa, askMantissa, scale, dateTime);
+			} else {
+				fxPrice = new FxPrice(priceId, symbols[symbolId], FixedPointDecimal.toBigDecimal(bidMantissa, scale),
+						FixedPointDecimal.toBigDecimal(askMantissa, scale), dateTime);
+			}
+			fxDataFeedService.onFxPrice(fxPrice);
+		} catch (RuntimeException exc) {
+			rejectedCount++;
+			FxTickCounters.rejected(FxTickCounters.Reason.OTHER);
+			log.warn("Binary tick rejected: symbol {}, bid {}, ask {}, timestamp {} - {}", symbols[symbolId],
+					bidMantissa, askMantissa, epochNanos, exc.toString());
+		}
+	}
+
+	// price id with prefix of stored prices - one String per tick, no intermediate ones
+	private String priceId(long sequence) {
+		String prefix = fxPriceMarginCalculatorService.getPriceIdToStorePrefix();
+		int position = priceIdBuffer.length;
+		do {
+			priceIdBuffer[--position] = (char) ('0' + sequence % 10);
+			sequence /= 10;
+		} while (sequence > 0);
+		position -= prefix.length();
+		prefix.getChars(0, prefix.length(), priceIdBuffer, position);
+		return new String(priceIdBuffer, position, priceIdBuffer.length - position);
+	}
+
+	private void selectLoop() {
+		try {
+			while (running) {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					} else if (key.isReadable()) {
+						read(key);
+					}
+				}
+			}
+		} catch (IOException | ClosedSelectorException exc) {
+			if (running) {
+				log.error("Binary tick feed listener failed: {}", exc.toString());
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.register(selector, SelectionKey.OP_READ,
+				ByteBuffer.allocateDirect(Math.max(fxBinaryFeedProperties.getReceiveBufferSize(), FxBinaryTickFrame.FRAME_SIZE)));
+		connectionCount++;
+		log.info("Binary tick feed connection from {}", channel.getRemoteAddress());
+	}
+
+	private void read(SelectionKey key) {
+		SocketChannel channel = (SocketChannel) key.channel();
+		ByteBuffer buffer = (ByteBuffer) key.attachment();
+		try {
+			int read = channel.read(buffer);
+			if (read > 0) {
+				buffer.flip();
+				onFrames(buffer);
+				buffer.compact();
+			} else if (read < 0) {
+				close(key, channel);
+			}
+		} catch (IOException | RuntimeException exc) {
+			log.warn("Binary tick feed connection closed: {}", exc.toString());
+			close(key, channel);
+		}
+	}
+
+	private void close(SelectionKey key, SocketChannel channel) {
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException ioe) {
+			// connection is dropped anyway
+		}
+		connectionCount--;
+	}
+}
@@ -0,0 +1,13 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+/**
+ * Counters of binary tick feed listener
+ *
+ * @param connections - currently open feed connections
+ * @param frames      - frames received
+ * @param rejected    - frames rejected by validation (unknown symbol id, negative price or timestamp)
+ *
+ * @author Mikolaj Maciejewski
+ */
+public record FxBinaryFeedStats(int connections, long frames, long rejected) {
+}
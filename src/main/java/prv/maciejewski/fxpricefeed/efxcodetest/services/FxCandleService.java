@@ -0,0 +1,170 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.candle.FxCandle;
+import prv.maciejewski.fxpricefeed.efxcodetest.candle.FxCandleSeries;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxCandleProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.history.FxPriceHistoryRing;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FixedPointDecimal;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxFixedPointPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPairSymbolRegistry;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Service aggregating accepted prices into OHLC candles of configured
+ * intervals, tick by tick (see FxCandleSeries).
+ *
+ * Candles are built from prices as stored - with pair margin in EAGER mode,
+ * market prices in LAZY mode - and margins missing in stored prices (pair
+ * margin in LAZY mode, client tier margin) are added when candles are read, as
+ * they are for prices. Fixed-point prices are added without allocation,
+ * BigDecimal ones are converted to series scale first.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Service
+@Slf4j
+public class FxCandleService implements FxPriceUpdateListener {
+
+	// max scale of candle prices - mantissa with more decimals does not fit into long
+	final static int MAX_SCALE = 18;
+
+	@Autowired
+	FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	FxPricePrecisionService fxPricePrecisionService;
+
+	@Autowired
+	FxPriceMarginCalculatorService fxPriceMarginCalculatorService;
+
+	@Autowired
+	FxCandleProperties fxCandleProperties;
+
+	// series by pair id from FxPairSymbolRegistry
+	private final AtomicReferenceArray<FxCandleSeries> seriesByPair = new AtomicReferenceArray<>(
+			FxPairSymbolRegistry.MAX_PAIRS);
+
+	private List<Duration> intervals = List.of();
+
+	@PostConstruct
+	void start() {
+		intervals = List.copyOf(fxCandleProperties.getIntervals());
+		if (fxCandleProperties.isEnabled()) {
+			if (intervals.isEmpty()) {
+				throw new IllegalArgumentException("Candles are enabled, but no candle interval is configured");
+			}
+			fxPriceStoreService.addUpdateListener(this);
+		}
+	}
+
+	@PreDestroy
+	void stop() {
+		fxPriceStoreService.removeUpdateListener(this);
+	}
+
+	@Override
+	public void onFxPriceUpdated(FxPrice fxPrice) {
+		// accepted price has its pair registered by store already
+		int pairId = FxPairSymbolRegistry.shared().idOf(fxPrice.getPairSymbol());
+		if (pairId == FxPairSymbolRegistry.UNKNOWN_ID) {
+			return;
+		}
+		FxCandleSeries series = seriesByPair.get(pairId);
+		if (series == null) {
+			seriesByPair.compareAndSet(pairId, null, newSeries(fxPrice.getPairSymbol()));
+			series = seriesByPair.get(pairId);
+		}
+		long bid;
+		long ask;
+		try {
+			if (fxPrice instanceof FxFixedPointPrice fixedPointPrice) {
+				bid = FixedPointDecimal.rescale(fixedPointPrice.getBidMantissa(), fixedPointPrice.getPriceScale(), series.getScale());
+				ask = FixedPointDecimal.rescale(fixedPointPrice.getAskMantissa(), fixedPointPrice.getPriceScale(), series.getScale());
+			} else {
+				bid = FixedPointDecimal.fromBigDecimal(fxPrice.getBidPrice(), series.getScale());
+				ask = FixedPointDecimal.fromBigDecimal(fxPrice.getAskPrice(), series.getScale());
+			}
+		} catch (ArithmeticException ae) {
+			log.warn("Price out of candle range has been ignored: {}", fxPrice);
+			return;
+		}
+		series.add(FxPriceHistoryRing.toEpochNanos(fxPrice.getDateTime()), bid, ask);
+	}
+
+	/**
+	 * @return configured candle intervals
+	 */
+	public List<Duration> getIntervals() {
+		return intervals;
+	}
+
+	/**
+	 * Returns latest candles of pair, oldest first
+	 *
+	 * @param pairSymbol - currency pair symbol
+	 * @param interval   - one of configured intervals
+	 * @param limit      - max number of candles - the newest ones are returned
+	 * @param tier       - client tier used for margins, may be null
+	 * @return candles, empty list if there was no price of the pair
+	 *
+	 * @throws IllegalArgumentException - when interval is not configured
+	 */
+	public List<FxCandle> getCandles(String pairSymbol, Duration interval, int limit, String tier) {
+		int intervalIndex = intervalIndex(interval);
+		int pairId = FxPairSymbolRegistry.shared().idOf(pairSymbol);
+		FxCandleSeries series = pairId == FxPairSymbolRegistry.UNKNOWN_ID ? null : seriesByPair.get(pairId);
+		if (series == null) {
+			return List.of();
+		}
+		return series.candles(intervalIndex, limit).stream()
+				.map(candle -> fxPriceMarginCalculatorService.calculateCandleToRead(candle, tier)).toList();
+	}
+
+	/**
+	 * Returns candle of pair for current interval - the one updated by latest price
+	 *
+	 * @param pairSymbol - currency pair symbol
+	 * @param interval   - one of configured intervals
+	 * @param tier       - client tier used for margins, may be null
+	 * @return current candle, empty if there was no price of the pair
+	 *
+	 * @throws IllegalArgumentException - when interval is not configured
+	 */
+	public Optional<FxCandle> getCurrentCandle(String pairSymbol, Duration interval, String tier) {
+		return getCandles(pairSymbol, interval, 1, tier).stream().findFirst();
+	}
+
+	/**
+	 * Clears candles - used for test purposes
+	 */
+	public void removeAll() {
+		for (int pairId = 0; pairId < seriesByPair.length(); pairId++) {
+			seriesByPair.set(pairId, null);
+		}
+	}
+
+	private int intervalIndex(Duration interval) {
+		int intervalIndex = intervals.indexOf(interval);
+		if (intervalIndex < 0) {
+			throw new IllegalArgumentException("Candle interval " + interval + " is not configured, available: " + intervals);
+		}
+		return intervalIndex;
+	}
+
+	private FxCandleSeries newSeries(String pairSymbol) {
+		int scale = Math.min(fxPricePrecisionService.scaleOf(pairSymbol) + fxCandleProperties.getExtraDecimals(), MAX_SCALE);
+		return new FxCandleSeries(pairSymbol, intervals, fxCandleProperties.getCapacity(), scale);
+	}
+}
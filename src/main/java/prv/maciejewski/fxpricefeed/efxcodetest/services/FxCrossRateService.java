@@ -0,0 +1,115 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxCrossProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.cross.FxCrossRate;
+import prv.maciejewski.fxpricefeed.efxcodetest.cross.FxCrossRateGraph;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxFixedPointPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPairSymbolRegistry;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Service calculating derived pairs (cross rates) from their legs. When price
+ * store accepts leg price, only cross rates depending on that leg are
+ * recalculated (FxCrossRateGraph) and stored as any other price - they are
+ * served by the same REST endpoints and streams.
+ *
+ * Cross rate is calculated from market prices of legs - pair margin of leg
+ * stored in EAGER mode is removed first - and gets margin of derived pair
+ * once, in the same way as price from market feed.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Service
+@Slf4j
+public class FxCrossRateService implements FxPriceUpdateListener {
+
+	@Autowired
+	FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	FxPriceMarginCalculatorService fxPriceMarginCalculatorService;
+
+	@Autowired
+	FxPricePrecisionService fxPricePrecisionService;
+
+	@Autowired
+	FxCrossProperties fxCrossProperties;
+
+	private FxCrossRateGraph crossRateGraph = new FxCrossRateGraph(List.of());
+
+	@PostConstruct
+	void start() {
+		if (!fxCrossProperties.isEnabled() || fxCrossProperties.getPairs().isEmpty()) {
+			return;
+		}
+		List<FxCrossRate> crossRates = new ArrayList<>();
+		fxCrossProperties.getPairs().forEach((pairSymbol, legs) -> {
+			if (legs.size() != 2) {
+				throw new IllegalArgumentException("Cross rate " + pairSymbol + " needs two legs: " + legs);
+			}
+			crossRates.add(FxCrossRate.of(pairSymbol, legs.get(0), legs.get(1)));
+		});
+		crossRateGraph = new FxCrossRateGraph(crossRates);
+		fxPriceStoreService.addUpdateListener(this);
+		log.info("Cross rates: {}", crossRates);
+	}
+
+	@PreDestroy
+	void stop() {
+		fxPriceStoreService.removeUpdateListener(this);
+	}
+
+	@Override
+	public void onFxPriceUpdated(FxPrice fxPrice) {
+		// accepted price has its pair registered by store already
+		int pairId = FxPairSymbolRegistry.shared().idOf(fxPrice.getPairSymbol());
+		for (FxCrossRate crossRate : crossRateGraph.dependentsOf(pairId)) {
+			recalculate(crossRate);
+		}
+	}
+
+	/**
+	 * @return configured cross rates
+	 */
+	public List<FxCrossRate> getCrossRates() {
+		return crossRateGraph.getCrossRates();
+	}
+
+	/**
+	 * Calculates cross rate from stored legs and stores it - nothing is done
+	 * until both legs have price. Legs are read and cross is stored under lock
+	 * of cross rate, so calculation triggered by later leg update is stored
+	 * after earlier one.
+	 *
+	 * @param crossRate - cross rate to recalculate
+	 */
+	void recalculate(FxCrossRate crossRate) {
+		crossRate.getLock().lock();
+		try {
+			FxPrice baseLegPrice = fxPriceStoreService.getFxPrice(crossRate.getBaseLeg());
+			FxPrice quoteLegPrice = fxPriceStoreService.getFxPrice(crossRate.getQuoteLeg());
+			if (baseLegPrice == null || quoteLegPrice == null) {
+				return;
+			}
+			int scale = fxPricePrecisionService.scaleOf(crossRate.getPairSymbol());
+			FxPrice crossPrice = crossRate.calculate(fxPriceMarginCalculatorService.calculateMarketPrice(baseLegPrice),
+					fxPriceMarginCalculatorService.calculateMarketPrice(quoteLegPrice), scale);
+			if (fxPricePrecisionService.isFixedPointEnabled()) {
+				crossPrice = FxFixedPointPrice.of(crossPrice, scale);
+			}
+			fxPriceStoreService.updateFxPrice(fxPriceMarginCalculatorService.calculatePriceToStore(crossPrice));
+		} finally {
+			crossRate.getLock().unlock();
+		}
+	}
+}
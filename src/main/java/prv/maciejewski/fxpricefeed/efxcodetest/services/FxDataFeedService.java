@@ -1,13 +1,42 @@
 package prv.maciejewski.fxpricefeed.efxcodetest.services;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxFeedProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxPipelineProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxThreadsProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.csv.CsvRecordCursor;
+import prv.maciejewski.fxpricefeed.efxcodetest.csv.CsvRecordReader;
 import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxRejectionSink;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxTickCounters;
+import prv.maciejewski.fxpricefeed.efxcodetest.pipeline.FxIngestionPipeline;
+import prv.maciejewski.fxpricefeed.efxcodetest.pipeline.FxPipelineStats;
+import prv.maciejewski.fxpricefeed.efxcodetest.pipeline.FxWaitStrategy;
+import prv.maciejewski.fxpricefeed.efxcodetest.threads.FxVirtualThreads;
 
 /**
  * Service used to parse comma-separated values (CSV) strings and update value
@@ -30,6 +59,7 @@ import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
  * Details of CSV file in https://datatracker.ietf.org/doc/html/rfc4180
  */
 @Service
+@Slf4j
 public class FxDataFeedService {
 
 	final static char DEFAULT_COLUMN_SEPARATOR = ',';
@@ -48,6 +78,41 @@ public class FxDataFeedService {
 	@Autowired
 	FxPriceMarginCalculatorService fxPriceMarginCalculatorService;
 
+	@Autowired
+	FxPricePrecisionService fxPricePrecisionService;
+
+	@Autowired
+	FxPipelineProperties fxPipelineProperties;
+
+	@Autowired
+	FxFeedProperties fxFeedProperties;
+
+	@Autowired
+	FxThreadsProperties fxThreadsProperties;
+
+	@Autowired
+	FxTickMetrics fxTickMetrics;
+
+	@Autowired
+	FxRejectionSink fxRejectionSink;
+
+	// counters of conflating batch mode
+	private final LongAdder conflatedMessageCount = new LongAdder();
+	private final LongAdder receivedTickCount = new LongAdder();
+	private final LongAdder conflatedTickCount = new LongAdder();
+	private final LongAdder parallelMessageCount = new LongAdder();
+
+	// asynchronous ingestion pipeline - null when feed is processed on caller thread
+	private FxIngestionPipeline ingestionPipeline;
+
+	// workers of parallel mode - created with first big message
+	private volatile ExecutorService parallelWorkers;
+	private int shardCount;
+	private final ReentrantLock parallelWorkersLock = new ReentrantLock();
+
+	// scale resolver for fixed-point prices - kept as field to not create it for every record
+	private final ToIntFunction<String> fixedPointScale = pairSymbol -> fxPricePrecisionService.scaleOf(pairSymbol);
+
 //	@parsing csv, "" - for field, trim, verify date, parse string to BigDecimal,
 //	timezone assumed is GMT, no negative values for bid, ask, no overwrite with data before current value
 
@@ -60,38 +125,25 @@ public class FxDataFeedService {
 	 * @return List of Strings with record columns
 	 */
 	List<String> parseCSVLine(String csvLine) {
-		List<String> result = new ArrayList<>();
-
 		if (csvLine == null)
 			return null;
 
-		boolean inQuotes = false; // flag to determine if we parse string in quote
-		StringBuilder columnBuilder = new StringBuilder(); // column value
-
-		for (int i = 0; i < csvLine.length(); i++) {
-			char c = csvLine.charAt(i);
-
-			if (c == QUOTE_CHARACTER) {
-				// quote character found
-				if (i < csvLine.length() - 1 && csvLine.charAt(i + 1) == QUOTE_CHARACTER) {
-					// Found an escaped quote - skip the first quote and append the second
-					columnBuilder.append(QUOTE_CHARACTER);
-					i++; // move to next char
-				} else {
-					// Found a non-escaped quote - toggle the inQuotes flag
-					inQuotes = !inQuotes;
-				}
-			} else if (c == columnSeparator && !inQuotes) {
-				// unquoted column separator found
-				result.add(columnBuilder.toString());
-				columnBuilder.setLength(0);
-			} else {
-				columnBuilder.append(c);
-			}
-		}
-		result.add(columnBuilder.toString()); // Add last column
+		CsvRecordCursor cursor = parseCSVRecord(csvLine);
+		List<String> columns = cursor.toList();
+		cursor.clear();
+		return columns;
+	}
 
-		return result;
+	/**
+	 * Parses single line with CSV record using rules defined in RFC 4180 without
+	 * creating Strings for columns. Cursor reused by current thread is returned.
+	 * 
+	 * @param csvLine - string with line containing data record in CSV form
+	 * 
+	 * @return cursor with record columns - valid until next call in this thread
+	 */
+	CsvRecordCursor parseCSVRecord(CharSequence csvLine) {
+		return CsvRecordCursor.forCurrentThread().parse(csvLine, columnSeparator);
 	}
 
 	/**
@@ -126,15 +178,330 @@ public class FxDataFeedService {
 		// split message to line list
 		List<String> lineList = splitMessage2Lines(csvMessageFeed);
 		
+		if (fxFeedProperties.isConflationEnabled()) {
+			onConflatedMessage(lineList);
+			return;
+		}
+		if (ingestionPipeline == null && fxFeedProperties.getParallel().isEnabled()
+				&& lineList.size() >= fxFeedProperties.getParallel().getMinLines()) {
+			onParallelMessage(lineList);
+			return;
+		}
 		// process splitted lines (splitting message to lines is separated intentionally)
-		lineList.stream()
-			.filter(line -> (!line.isBlank())) // remove blank lines after split
-			.map(line -> parseCSVLine(line))
-			.filter(rec -> (rec != null)) // remove null in case of problem while parsing CSV Line
-			.map(rec -> FxPrice.transformStrings2FxPrice.apply(rec))
-			.filter(price -> (price != null)) // remove null generated in case of problem while 
-			.map(price -> fxPriceMarginCalculatorService.calculateNewPrice(price))  // add margins to price
-			.forEach(price -> fxPriceStoreService.updateFxPrice(price)); // update price store service
+		lineList.forEach(line -> onCsvRecord(line));
+	}
+
+	/**
+	 * Conflating batch mode of message processing. All lines are parsed first and
+	 * only newest tick per pair symbol (by date time, later line wins for the same
+	 * date time) is margined and sent to store - other ticks would be overwritten
+	 * by it at once anyway.
+	 *
+	 * @param lineList - lines of message
+	 */
+	void onConflatedMessage(List<String> lineList) {
+		Map<String, FxPrice> newestByPair = new LinkedHashMap<>();
+		long receivedTicks = 0;
+		for (String line : lineList) {
+			if (line.isBlank()) {
+				continue;
+			}
+			FxPrice fxPrice = parseCsvRecord(line);
+			if (fxPrice == null) {
+				continue;
+			}
+			receivedTicks++;
+			newestByPair.merge(fxPrice.getPairSymbol(), fxPrice,
+					(current, next) -> current.getDateTime().compareTo(next.getDateTime()) > 0 ? current : next);
+		}
+		newestByPair.values().forEach(this::onFxPrice);
+
+		conflatedMessageCount.increment();
+		receivedTickCount.add(receivedTicks);
+		conflatedTickCount.add(receivedTicks - newestByPair.size());
+	}
+
+	/**
+	 * Parallel mode of message processing for big messages. Lines are processed
+	 * in two steps, both spread on worker threads:
+	 *
+	 * - message is cut into continuous chunks, one per worker - lines of chunk
+	 *   are parsed and margined and prices are put into buckets by shard of pair
+	 * - every shard stores its buckets chunk after chunk as one batch - pair
+	 *   belongs to one shard only, so its prices are stored in order of lines
+	 *
+	 * Pairs are spread on shards by hash of pair symbol - the same shard for
+	 * every line of pair, also when pair is registered while message is parsed.
+	 *
+	 * @param lineList - lines of message
+	 */
+	void onParallelMessage(List<String> lineList) {
+		ExecutorService workers = parallelWorkers();
+		int shards = shardCount;
+		int chunkSize = (lineList.size() + shards - 1) / shards;
+
+		List<Future<List<List<FxPrice>>>> chunkFutures = new ArrayList<>(shards);
+		for (int from = 0; from < lineList.size(); from += chunkSize) {
+			List<String> chunk = lineList.subList(from, Math.min(from + chunkSize, lineList.size()));
+			chunkFutures.add(workers.submit(() -> parseChunk(chunk, shards)));
+		}
+		List<List<List<FxPrice>>> chunks = awaitAll(chunkFutures);
+
+		List<Future<Object>> shardFutures = new ArrayList<>(shards);
+		for (int shard = 0; shard < shards; shard++) {
+			int shardIndex = shard;
+			shardFutures.add(workers.submit(() -> {
+				for (List<List<FxPrice>> buckets : chunks) {
+					for (FxPrice fxPrice : buckets.get(shardIndex)) {
+						storePrice(fxPrice);
+					}
+				}
+				return null;
+			}));
+		}
+		awaitAll(shardFutures);
+		parallelMessageCount.increment();
+	}
+
+	/**
+	 * @return counters of conflating batch mode and of parallel mode
+	 */
+	public FxFeedStats getFeedStats() {
+		return new FxFeedStats(conflatedMessageCount.sum(), receivedTickCount.sum(), conflatedTickCount.sum(),
+				parallelMessageCount.sum());
+	}
+
+	/**
+	 * Streaming version of onMessage. Feed is read from reader chunk by chunk and
+	 * every record is sent to margin calculation and price store as soon as it is
+	 * complete, so memory used does not depend on feed size. Records longer than
+	 * max record length are rejected.
+	 *
+	 * @param csvFeedReader - reader with 0 or more lines with CSV records
+	 * 
+	 * @throws IOException - when feed can't be read. Records read before problem
+	 *                     are already stored.
+	 */
+	public void onStream(Reader csvFeedReader) throws IOException {
+		CsvRecordReader recordReader = new CsvRecordReader(csvFeedReader, CsvRecordReader.DEFAULT_CHUNK_SIZE,
+				fxFeedProperties.getMaxRecordLength(), this::onOverlongRecord);
+		String record;
+		while ((record = recordReader.nextRecord()) != null) {
+			onCsvRecord(record);
+		}
+	}
+
+	// record cut to max length - it is counted and reported like rejected by parser
+	private void onOverlongRecord(String recordStart) {
+		FxTickCounters.rejected(FxTickCounters.Reason.RECORD_LENGTH);
+		fxRejectionSink.rejected(FxTickCounters.Reason.RECORD_LENGTH, "Record is too long", recordStart);
+	}
+
+	/**
+	 * Processes single CSV record - parse, verify, add margins and update price store.
+	 * When ingestion pipeline is enabled record is only published to pipeline.
+	 * Blank records are ignored without warning.
+	 *
+	 * @param csvRecord - line with single CSV record
+	 */
+	void onCsvRecord(String csvRecord) {
+		if (csvRecord == null || csvRecord.isBlank()) {
+			return; // remove blank lines after split
+		}
+		if (ingestionPipeline != null) {
+			ingestionPipeline.publish(csvRecord);
+		} else {
+			onFxPrice(parseCsvRecord(csvRecord));
+		}
+	}
+
+	/**
+	 * Parses and verifies single CSV record - price id gets prefix of stored
+	 * price id, so margins are added to the price in place
+	 *
+	 * @param csvRecord - line with single CSV record
+	 * @return price from record or null if record is not valid
+	 */
+	FxPrice parseCsvRecord(String csvRecord) {
+		long startNanos = fxTickMetrics.startNanos();
+		CsvRecordCursor cursor = parseCSVRecord(csvRecord);
+		FxPrice fxPrice = FxPrice.transformCursor(cursor,
+				fxPricePrecisionService.isFixedPointEnabled() ? fixedPointScale : null,
+				fxPriceMarginCalculatorService.getPriceIdToStorePrefix(), fxRejectionSink);
+		// cursor of thread must not keep record nor buffers of long record
+		cursor.clear();
+		fxTickMetrics.recordParse(startNanos);
+		return fxPrice;
+	}
+
+	/**
+	 * Adds margins to verified price and sends it to price store. When ingestion
+	 * pipeline is enabled price is only published to pipeline - conflated and
+	 * binary feed prices take the same path and metrics as CSV records.
+	 * Null value (problem while processing record) is ignored.
+	 *
+	 * @param fxPrice - price from market feed with id prefixed by
+	 *                FxPriceMarginCalculatorService.getPriceIdToStorePrefix()
+	 */
+	void onFxPrice(FxPrice fxPrice) {
+		if (fxPrice == null) {
+			return; // in case of problem while transforming record to price
+		}
+		if (ingestionPipeline != null) {
+			ingestionPipeline.publish(fxPrice);
+			return;
+		}
+		FxPrice price2Store = marginPrice(fxPrice); // add margins to price
+		if (price2Store != null) {
+			storePrice(price2Store); // update price store service
+		}
+	}
+
+	/**
+	 * Adds pair margin to price in place (see addMarginsToStore) - timed as margin stage.
+	 * Price which does not fit into fixed-point range with margins is rejected.
+	 *
+	 * @param fxPrice - price from market feed with id prefixed by
+	 *                FxPriceMarginCalculatorService.getPriceIdToStorePrefix()
+	 * @return price to store or null if price has been rejected
+	 */
+	FxPrice marginPrice(FxPrice fxPrice) {
+		long startNanos = fxTickMetrics.startNanos();
+		FxPrice price2Store;
+		try {
+			price2Store = fxPriceMarginCalculatorService.addMarginsToStore(fxPrice);
+		} catch (ArithmeticException ae) {
+			FxTickCounters.rejected(FxTickCounters.Reason.MARGIN);
+			fxRejectionSink.rejected(FxTickCounters.Reason.MARGIN, "Price with margins out of range", fxPrice);
+			price2Store = null;
+		}
+		fxTickMetrics.recordMargin(startNanos);
+		return price2Store;
+	}
+
+	/**
+	 * Sends price to price store - timed as store stage
+	 *
+	 * @param price2Store - price with margins
+	 * @return true if price has been stored
+	 */
+	boolean storePrice(FxPrice price2Store) {
+		long startNanos = fxTickMetrics.startNanos();
+		boolean stored = fxPriceStoreService.updateFxPrice(price2Store);
+		fxTickMetrics.recordStore(startNanos);
+		return stored;
+	}
+
+	/**
+	 * @return metrics of ingestion pipeline, empty if pipeline is not enabled
+	 */
+	public Optional<FxPipelineStats> getPipelineStats() {
+		return Optional.ofNullable(ingestionPipeline).map(FxIngestionPipeline::getStats);
+	}
+
+	/**
+	 * Waits until lines published to ingestion pipeline are stored - returns at once if pipeline is not enabled
+	 *
+	 * @param timeout - max wait time
+	 * @param unit    - unit of timeout
+	 * @return true if all lines are processed
+	 */
+	public boolean awaitIngested(long timeout, TimeUnit unit) throws InterruptedException {
+		return ingestionPipeline == null || ingestionPipeline.awaitDrained(timeout, unit);
+	}
+
+	@PostConstruct
+	void startPipeline() {
+		if (fxPipelineProperties.isEnabled()) {
+			ingestionPipeline = new FxIngestionPipeline(fxPipelineProperties.getRingSize(),
+					fxPipelineProperties.getWaitStrategy(), fxPipelineProperties.getBackpressure(),
+					this::parseCsvRecord, this::marginPrice, this::storePrice, pipelineThreadFactory());
+		}
+	}
+
+	// parses and margins lines of one chunk - result are prices by shard, in order of lines
+	private List<List<FxPrice>> parseChunk(List<String> chunk, int shards) {
+		List<List<FxPrice>> buckets = new ArrayList<>(shards);
+		for (int shard = 0; shard < shards; shard++) {
+			buckets.add(new ArrayList<>(chunk.size() / shards + 1));
+		}
+		for (String line : chunk) {
+			if (line.isBlank()) {
+				continue;
+			}
+			FxPrice fxPrice = parseCsvRecord(line);
+			if (fxPrice == null) {
+				continue;
+			}
+			int shard = Math.floorMod(fxPrice.getPairSymbol().hashCode(), shards);
+			FxPrice price2Store = marginPrice(fxPrice);
+			if (price2Store != null) {
+				buckets.get(shard).add(price2Store);
+			}
+		}
+		return buckets;
+	}
+
+	private ExecutorService parallelWorkers() {
+		ExecutorService workers = parallelWorkers;
+		if (workers != null) {
+			return workers;
+		}
+		parallelWorkersLock.lock();
+		try {
+			if (parallelWorkers == null) {
+				int shards = fxFeedProperties.getParallel().getShards();
+				shardCount = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+				AtomicInteger threadNo = new AtomicInteger();
+				parallelWorkers = Executors.newFixedThreadPool(shardCount, runnable -> {
+					Thread thread = new Thread(runnable, "fx-feed-worker-" + threadNo.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+			return parallelWorkers;
+		} finally {
+			parallelWorkersLock.unlock();
+		}
+	}
+
+	private static <T> List<T> awaitAll(List<Future<T>> futures) {
+		List<T> results = new ArrayList<>(futures.size());
+		try {
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for feed workers", ie);
+		} catch (ExecutionException ee) {
+			throw new IllegalStateException("Feed worker failed", ee.getCause());
+		}
+		return results;
+	}
+
+	private ThreadFactory pipelineThreadFactory() {
+		if (!fxThreadsProperties.isVirtual() || !FxVirtualThreads.isAvailable()) {
+			return runnable -> {
+				Thread thread = new Thread(runnable);
+				thread.setDaemon(true);
+				return thread;
+			};
+		}
+		if (fxPipelineProperties.getWaitStrategy() == FxWaitStrategy.BUSY_SPIN) {
+			log.warn("BUSY_SPIN pipeline on virtual threads keeps carrier threads busy - SLEEPING is advised.");
+		}
+		return FxVirtualThreads.factory("fx-pipeline-");
+	}
+
+	@PreDestroy
+	void stopPipeline() {
+		if (ingestionPipeline != null) {
+			ingestionPipeline.stop();
+		}
+		if (parallelWorkers != null) {
+			parallelWorkers.shutdown();
+		}
 	}
 
 }
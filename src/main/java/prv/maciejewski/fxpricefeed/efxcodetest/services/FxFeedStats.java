@@ -0,0 +1,15 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+/**
+ * Counters of CSV feed messages processed in conflating batch mode and in
+ * parallel mode
+ *
+ * @param conflatedMessages - number of messages processed with conflation
+ * @param receivedTicks     - valid ticks found in these messages
+ * @param conflatedTicks    - ticks dropped because newer tick of the same pair was in the message
+ * @param parallelMessages  - number of messages processed by parallel workers
+ *
+ * @author Mikolaj Maciejewski
+ */
+public record FxFeedStats(long conflatedMessages, long receivedTicks, long conflatedTicks, long parallelMessages) {
+}
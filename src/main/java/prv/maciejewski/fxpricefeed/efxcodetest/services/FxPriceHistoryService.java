@@ -0,0 +1,118 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxHistoryProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.history.FxPriceHistoryRing;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxFixedPointPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPairSymbolRegistry;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Service keeping bounded history of accepted prices next to
+ * FxPriceStoreService - latest ticks of every pair in FxPriceHistoryRing.
+ *
+ * Prices are kept as stored - with pair margin in EAGER mode, without it in
+ * LAZY mode - so they have to be read through
+ * FxPriceMarginCalculatorService.calculatePriceToRead like stored prices.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Service
+@Slf4j
+public class FxPriceHistoryService implements FxPriceUpdateListener {
+
+	// max scale of kept values - mantissa with more decimals does not fit into long
+	final static int MAX_SCALE = 18;
+
+	@Autowired
+	FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	FxHistoryProperties fxHistoryProperties;
+
+	// rings by pair id from FxPairSymbolRegistry
+	private final AtomicReferenceArray<FxPriceHistoryRing> historyByPair = new AtomicReferenceArray<>(
+			FxPairSymbolRegistry.MAX_PAIRS);
+
+	@PostConstruct
+	void start() {
+		if (fxHistoryProperties.isEnabled()) {
+			fxPriceStoreService.addUpdateListener(this);
+		}
+	}
+
+	@PreDestroy
+	void stop() {
+		fxPriceStoreService.removeUpdateListener(this);
+	}
+
+	@Override
+	public void onFxPriceUpdated(FxPrice fxPrice) {
+		// accepted price has its pair registered by store already
+		int pairId = FxPairSymbolRegistry.shared().idOf(fxPrice.getPairSymbol());
+		if (pairId == FxPairSymbolRegistry.UNKNOWN_ID) {
+			return;
+		}
+		FxPriceHistoryRing ring = historyByPair.get(pairId);
+		if (ring == null) {
+			historyByPair.compareAndSet(pairId, null,
+					new FxPriceHistoryRing(fxPrice.getPairSymbol(), fxHistoryProperties.getCapacity()));
+			ring = historyByPair.get(pairId);
+		}
+		long epochNanos = FxPriceHistoryRing.toEpochNanos(fxPrice.getDateTime());
+		if (fxPrice instanceof FxFixedPointPrice fixedPointPrice) {
+			ring.add(epochNanos, fixedPointPrice.getBidMantissa(), fixedPointPrice.getAskMantissa(),
+					fixedPointPrice.getPriceScale());
+			return;
+		}
+		BigDecimal bid = fxPrice.getBidPrice();
+		BigDecimal ask = fxPrice.getAskPrice();
+		int scale = Math.min(Math.max(Math.max(bid.scale(), ask.scale()), 0), MAX_SCALE);
+		try {
+			ring.add(epochNanos, bid.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact(),
+					ask.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact(), scale);
+		} catch (ArithmeticException ae) {
+			log.warn("Price out of history range has been ignored: {}", fxPrice);
+		}
+	}
+
+	/**
+	 * Returns kept prices of pair with date time in given range, oldest first
+	 *
+	 * @param pairSymbol - currency pair symbol
+	 * @param from       - start of range (inclusive), null for oldest kept price
+	 * @param to         - end of range (inclusive), null for newest kept price
+	 * @param limit      - max number of prices - the newest ones are returned
+	 * @return prices as stored, with empty price id
+	 */
+	public List<FxPrice> getHistory(String pairSymbol, LocalDateTime from, LocalDateTime to, int limit) {
+		int pairId = FxPairSymbolRegistry.shared().idOf(pairSymbol);
+		FxPriceHistoryRing ring = pairId == FxPairSymbolRegistry.UNKNOWN_ID ? null : historyByPair.get(pairId);
+		if (ring == null) {
+			return List.of();
+		}
+		return ring.range(from == null ? Long.MIN_VALUE : FxPriceHistoryRing.toEpochNanos(from),
+				to == null ? Long.MAX_VALUE : FxPriceHistoryRing.toEpochNanos(to), limit);
+	}
+
+	/**
+	 * Clears history - used for test purposes
+	 */
+	public void removeAll() {
+		for (int pairId = 0; pairId < historyByPair.length(); pairId++) {
+			historyByPair.set(pairId, null);
+		}
+	}
+}
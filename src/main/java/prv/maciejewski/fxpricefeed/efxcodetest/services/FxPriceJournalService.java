@@ -0,0 +1,141 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxJournalProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.journal.FxTickJournal;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Service journaling accepted prices and restoring latest ones on start.
+ *
+ * Store thread only queues price and wakes journal writer thread - journal I/O
+ * is never done on price update path. Writer appends queued prices to
+ * memory-mapped journal, forces it to disk according to fsync policy and takes
+ * snapshots to keep recovery time bounded.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Service
+@Slf4j
+public class FxPriceJournalService implements FxPriceUpdateListener {
+
+	@Autowired
+	FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	FxJournalProperties fxJournalProperties;
+
+	// prices waiting for journal writer
+	private final Queue<FxPrice> pendingPrices = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean writerWakeUp = new AtomicBoolean(false);
+
+	private FxTickJournal journal;
+	private Thread writer;
+	private volatile boolean running;
+
+	@PostConstruct
+	void start() throws IOException {
+		if (!fxJournalProperties.isEnabled()) {
+			return;
+		}
+		journal = new FxTickJournal(Path.of(fxJournalProperties.getDirectory()), fxJournalProperties.getSegmentSize());
+		Collection<FxPrice> recovered = journal.open();
+		// restored before listener is registered - recovered prices are already in journal
+		recovered.forEach(fxPriceStoreService::updateFxPrice);
+		log.info("Journal {} opened, {} prices restored.", fxJournalProperties.getDirectory(), recovered.size());
+
+		running = true;
+		writer = new Thread(this::writeLoop, "fx-journal-writer");
+		writer.setDaemon(true);
+		writer.start();
+		fxPriceStoreService.addUpdateListener(this);
+	}
+
+	@PreDestroy
+	void stop() throws IOException, InterruptedException {
+		if (journal == null) {
+			return;
+		}
+		fxPriceStoreService.removeUpdateListener(this);
+		running = false;
+		LockSupport.unpark(writer);
+		writer.join();
+		journal.close();
+	}
+
+	@Override
+	public void onFxPriceUpdated(FxPrice fxPrice) {
+		pendingPrices.offer(fxPrice);
+		if (writerWakeUp.compareAndSet(false, true)) {
+			LockSupport.unpark(writer);
+		}
+	}
+
+	private void writeLoop() {
+		FxJournalProperties.FsyncPolicy fsyncPolicy = fxJournalProperties.getFsyncPolicy();
+		long fsyncIntervalNanos = fxJournalProperties.getFsyncInterval().toNanos();
+		long snapshotIntervalNanos = fxJournalProperties.getSnapshotInterval().toNanos();
+		long nextFsync = System.nanoTime() + fsyncIntervalNanos;
+		long nextSnapshot = System.nanoTime() + snapshotIntervalNanos;
+		boolean unforced = false;
+
+		while (true) {
+			boolean stopping = !running;
+			writerWakeUp.set(false);
+			int written = drain();
+			unforced |= written > 0;
+
+			long now = System.nanoTime();
+			if (unforced && (stopping || fsyncPolicy == FxJournalProperties.FsyncPolicy.EVERY_BATCH
+					|| (fsyncPolicy == FxJournalProperties.FsyncPolicy.INTERVAL && now - nextFsync >= 0))) {
+				journal.force();
+				unforced = false;
+			}
+			if (now - nextFsync >= 0) {
+				nextFsync = now + fsyncIntervalNanos;
+			}
+			if (now - nextSnapshot >= 0) {
+				try {
+					journal.snapshot();
+				} catch (IOException exc) {
+					log.error("Journal snapshot failed: {}", exc.toString());
+				}
+				nextSnapshot = now + snapshotIntervalNanos;
+			}
+			if (stopping) {
+				return;
+			}
+			if (pendingPrices.isEmpty()) {
+				LockSupport.parkNanos(Math.max(0, Math.min(nextFsync, nextSnapshot) - now));
+			}
+		}
+	}
+
+	private int drain() {
+		int written = 0;
+		FxPrice fxPrice;
+		while ((fxPrice = pendingPrices.poll()) != null) {
+			try {
+				journal.append(fxPrice);
+				written++;
+			} catch (IOException | RuntimeException exc) {
+				log.error("Price can't be journaled: {} - {}", fxPrice, exc.toString());
+			}
+		}
+		return written;
+	}
+}
@@ -1,58 +1,343 @@
 package prv.maciejewski.fxpricefeed.efxcodetest.services;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.function.Function;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.candle.FxCandle;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxMarginProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FixedPointDecimal;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxFixedPointPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxMarginTable;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxMarginTable.Multipliers;
 import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
 
 /**
- * Simple service to calculate new FxPrice on base of given commission Values of
- * commission for bid and ask are hardcoded as constants for case of the test
- * 
+ * Service to calculate new FxPrice on base of given commission. Margins for bid
+ * and ask are configured per currency pair (with default for other pairs) and
+ * per client tier in FxMarginProperties. They are precomputed to multipliers in
+ * FxMarginTable, which is replaced when configuration file changes.
+ *
+ * In EAGER mode margins are added before price is stored. In LAZY mode raw
+ * prices are stored and margins are added only when price is read - most of
+ * prices are overwritten before anybody reads them.
+ *
+ * Client tier margins are always applied on read, on top of pair margin.
+ *
+ * Feed adapters create price ids with getPriceIdToStorePrefix() and margins
+ * are added to such prices in place (addMarginsToStore) - no other price nor
+ * id String is allocated per tick.
+ *
  * @author Mikolaj Maciejewski
  *
  */
 @Service
+@Slf4j
 public class FxPriceMarginCalculatorService {
-	// commission constants for BigDecimal
-	// -0.1% on bid
-	// +0.1% on ask
 	// new price have new ID with "R" prefix addeded to incoming - date is unchanged
 	// multiply is without math context for simplicity
-
-	final static String BID_MARGIN = "-0.001"; // -0.1%
-	final static String ASK_MARGIN = "0.001"; // 0.1%
 	final static String NEW_PRICE_ID_PREFIX = "R";
+	final static String MARGIN_PROPERTIES_PREFIX = "fx.margin";
 
-	// declare bid and ask multipliers for new value calculation
-	final static BigDecimal BID_MULTIPLIER = (new BigDecimal("1.000")).add(new BigDecimal(BID_MARGIN));
-	final static BigDecimal ASK_MULTIPLIER = (new BigDecimal("1.000")).add(new BigDecimal(ASK_MARGIN));
+	// bid is rounded down and ask is rounded up for fixed-point prices, so margin is never lost on rounding
+	final static RoundingMode BID_ROUNDING = RoundingMode.FLOOR;
+	final static RoundingMode ASK_ROUNDING = RoundingMode.CEILING;
 
-	/**
-	 * Define lambda function <T,R> to calculate price with margins
-	 * 
-	 * T - FxPrice - base price for calculation R - FxPrice - result price with
-	 * calculated new margin and ID
-	 */
-	public static final Function<FxPrice, FxPrice> calculatePriceWithMargin = price -> {
-		return FxPrice.builder().priceId(NEW_PRICE_ID_PREFIX.concat(price.getPriceId()))
-				.pairSymbol(price.getPairSymbol()).bidPrice(price.getBidPrice().multiply(BID_MULTIPLIER))
-				.askPrice(price.getAskPrice().multiply(ASK_MULTIPLIER)).dateTime(price.getDateTime()).build();
-	};
+	// precision of market prices recovered from stored ones
+	final static MathContext MARKET_PRICE_CONTEXT = MathContext.DECIMAL64;
+
+	@Autowired
+	FxMarginProperties fxMarginProperties;
+
+	// current margins - replaced as a whole on reload
+	private volatile FxMarginTable marginTable;
+
+	// number of margin reloads - tells cached results that margins have changed
+	private volatile long marginsVersion;
+
+	// fingerprint of default and pair margins - the same on instances with the same configuration
+	private volatile long pairMarginsFingerprint;
+
+	// last modification time of margins file - to reload it only when changed
+	private FileTime marginFileModified;
+
+	@PostConstruct
+	void init() {
+		reloadIfChanged();
+		if (marginTable == null) {
+			reload(fxMarginProperties);
+		}
+	}
 
 	/**
-	 * Service function for calculate new price with margin. It reuse defined lambda
-	 * function
-	 * 
+	 * Service function for calculate new price with margin of the pair.
+	 * Fixed-point price gives fixed-point result.
 	 *
 	 * @param fxPrice - base value for price
-	 * 
+	 *
 	 * @return result price with calculated margin
 	 */
 	public FxPrice calculateNewPrice(FxPrice fxPrice) {
-		return calculatePriceWithMargin.apply(fxPrice);
+		return applyMultipliers(fxPrice, marginTable.forPair(fxPrice.getPairSymbol()),
+				NEW_PRICE_ID_PREFIX.concat(fxPrice.getPriceId()));
+	}
+
+	/**
+	 * Prepares price from market feed to be stored - adds pair margin in EAGER
+	 * mode, returns the same price in LAZY mode.
+	 *
+	 * @param fxPrice - price from market feed
+	 *
+	 * @return price to store
+	 */
+	public FxPrice calculatePriceToStore(FxPrice fxPrice) {
+		return isLazy() ? fxPrice : calculateNewPrice(fxPrice);
+	}
+
+	/**
+	 * Prefix of stored price id - market feed adapters create price ids with it,
+	 * so margins can be added to their prices in place (see addMarginsToStore)
+	 *
+	 * @return "R" in EAGER mode, empty in LAZY mode
+	 */
+	public String getPriceIdToStorePrefix() {
+		return isLazy() ? "" : NEW_PRICE_ID_PREFIX;
+	}
+
+	/**
+	 * Prepares price from market feed to be stored in place - adds pair margin to
+	 * its bid and ask in EAGER mode, price id is left as it is. Meant for prices
+	 * created by feed adapter, which are not shared yet and have id with
+	 * getPriceIdToStorePrefix() - no other price is allocated.
+	 *
+	 * @param feedPrice - price from market feed, changed in place
+	 *
+	 * @return the same price
+	 *
+	 * @throws ArithmeticException - when fixed-point price with margins is out of range
+	 */
+	public FxPrice addMarginsToStore(FxPrice feedPrice) {
+		if (isLazy()) {
+			return feedPrice;
+		}
+		Multipliers multipliers = marginTable.forPair(feedPrice.getPairSymbol());
+		if (feedPrice instanceof FxFixedPointPrice fixedPointPrice) {
+			long bidMantissa = FixedPointDecimal.multiply(fixedPointPrice.getBidMantissa(), multipliers.bidFixed(), BID_ROUNDING);
+			long askMantissa = FixedPointDecimal.multiply(fixedPointPrice.getAskMantissa(), multipliers.askFixed(), ASK_ROUNDING);
+			fixedPointPrice.setBidMantissa(bidMantissa);
+			fixedPointPrice.setAskMantissa(askMantissa);
+		} else {
+			feedPrice.setBidPrice(feedPrice.getBidPrice().multiply(multipliers.bid()));
+			feedPrice.setAskPrice(feedPrice.getAskPrice().multiply(multipliers.ask()));
+		}
+		return feedPrice;
+	}
+
+	/**
+	 * Prepares stored price to be sent to client - adds pair margin in LAZY mode
+	 * and client tier margin if tier is known.
+	 *
+	 * @param storedPrice - price from price store
+	 * @param tier        - client tier or null for default one
+	 *
+	 * @return price for client
+	 */
+	public FxPrice calculatePriceToRead(FxPrice storedPrice, String tier) {
+		FxPrice result = isLazy() ? calculateNewPrice(storedPrice) : storedPrice;
+		Multipliers tierMultipliers = marginTable.forTier(tier);
+		return tierMultipliers == null ? result : applyMultipliers(result, tierMultipliers, result.getPriceId());
+	}
+
+	/**
+	 * Prepares candle built from stored prices to be sent to client - adds pair
+	 * margin in LAZY mode and client tier margin if tier is known. Margin
+	 * multipliers are positive, so highest and lowest prices stay highest and
+	 * lowest with margins. Values keep scale of candle, bid is rounded down and
+	 * ask up.
+	 *
+	 * @param storedCandle - candle of stored prices
+	 * @param tier         - client tier or null for default one
+	 *
+	 * @return candle for client
+	 */
+	public FxCandle calculateCandleToRead(FxCandle storedCandle, String tier) {
+		FxCandle result = isLazy() ? applyMultipliers(storedCandle, marginTable.forPair(storedCandle.pairSymbol()))
+				: storedCandle;
+		Multipliers tierMultipliers = marginTable.forTier(tier);
+		return tierMultipliers == null ? result : applyMultipliers(result, tierMultipliers);
+	}
+
+	/**
+	 * Recovers market price from stored price - removes pair margin in EAGER
+	 * mode, returns the same price in LAZY mode. Market price of BigDecimal price
+	 * is exact, of fixed-point price it is within rounding of margin.
+	 *
+	 * @param storedPrice - price from price store
+	 *
+	 * @return market price with BigDecimal bid and ask
+	 */
+	public FxPrice calculateMarketPrice(FxPrice storedPrice) {
+		if (isLazy()) {
+			return storedPrice;
+		}
+		Multipliers multipliers = marginTable.forPair(storedPrice.getPairSymbol());
+		String priceId = storedPrice.getPriceId();
+		return FxPrice.builder()
+				.priceId(priceId.startsWith(NEW_PRICE_ID_PREFIX) ? priceId.substring(NEW_PRICE_ID_PREFIX.length()) : priceId)
+				.pairSymbol(storedPrice.getPairSymbol())
+				.bidPrice(storedPrice.getBidPrice().divide(multipliers.bid(), MARKET_PRICE_CONTEXT))
+				.askPrice(storedPrice.getAskPrice().divide(multipliers.ask(), MARKET_PRICE_CONTEXT))
+				.dateTime(storedPrice.getDateTime()).build();
+	}
+
+	/**
+	 * @return true if margins are applied when price is read
+	 */
+	public boolean isLazy() {
+		return fxMarginProperties.getMode() == FxMarginProperties.Mode.LAZY;
+	}
+
+	/**
+	 * @param tier - client tier name
+	 * @return true if tier has own margins
+	 */
+	public boolean hasTier(String tier) {
+		return marginTable.forTier(tier) != null;
+	}
+
+	/**
+	 * @return number of margin reloads - changes whenever margins are replaced
+	 */
+	public long getMarginsVersion() {
+		return marginsVersion;
+	}
+
+	/**
+	 * Fingerprint of margins which are in stored prices - stored prices of two
+	 * instances can be exchanged only if their fingerprints are equal. In LAZY
+	 * mode stored prices are raw, so only mode counts. Tier margins are applied
+	 * on read and don't count.
+	 *
+	 * @return fingerprint of margin mode and, in EAGER mode, default and pair margins
+	 */
+	public long getStoredMarginsFingerprint() {
+		return isLazy() ? 0 : pairMarginsFingerprint;
+	}
+
+	/**
+	 * Replaces margins with given configuration
+	 *
+	 * @param marginProperties - new margins configuration
+	 */
+	public void reload(FxMarginProperties marginProperties) {
+		Map<String, Multipliers> pairs = new HashMap<>();
+		marginProperties.getPairs().forEach((pairSymbol, margin) -> pairs.put(pairSymbol, toMultipliers(margin)));
+		Map<String, Multipliers> tiers = new HashMap<>();
+		marginProperties.getTiers().forEach((tier, margin) -> tiers.put(tier, toMultipliers(margin)));
+
+		marginTable = new FxMarginTable(toMultipliers(marginProperties.getDefaults()), pairs, tiers);
+		pairMarginsFingerprint = fingerprint(marginProperties);
+		marginsVersion++;
+		log.info("Margins loaded: {} pairs, {} tiers.", pairs.size(), tiers.size());
+	}
+
+	/**
+	 * Reloads margins from configured file if it has been modified since last
+	 * load. Problems with file are reported and current margins stay in use.
+	 * Margin mode can't be reloaded - mode in file is reported and ignored.
+	 */
+	@Scheduled(fixedDelayString = "${fx.margin.reload-interval:PT10S}")
+	public void reloadIfChanged() {
+		String file = fxMarginProperties.getFile();
+		if (file == null || file.isBlank()) {
+			return;
+		}
+		try {
+			Path path = Path.of(file);
+			FileTime modified = Files.getLastModifiedTime(path);
+			if (modified.equals(marginFileModified)) {
+				return;
+			}
+			FxMarginProperties fileProperties = new FxMarginProperties();
+			for (PropertySource<?> source : new YamlPropertySourceLoader().load(file, new FileSystemResource(path))) {
+				Binder binder = new Binder(ConfigurationPropertySources.from(source));
+				binder.bind(MARGIN_PROPERTIES_PREFIX, Bindable.ofInstance(fileProperties));
+				// stored prices depend on mode - it is taken from application configuration only
+				binder.bind(MARGIN_PROPERTIES_PREFIX + ".mode", FxMarginProperties.Mode.class)
+						.ifBound(mode -> log.warn("Margin mode {} in margins file [{}] is ignored - mode {} can't be changed "
+								+ "without restart.", mode, file, fxMarginProperties.getMode()));
+			}
+			reload(fileProperties);
+			marginFileModified = modified;
+		} catch (IOException | RuntimeException exc) {
+			log.warn("Margins file [{}] can't be loaded, current margins are kept: {}", file, exc.toString());
+		}
+	}
+
+	private static long fingerprint(FxMarginProperties marginProperties) {
+		StringBuilder canonical = new StringBuilder("defaults=").append(canonical(marginProperties.getDefaults()));
+		new TreeMap<>(marginProperties.getPairs()).forEach(
+				(pairSymbol, margin) -> canonical.append(';').append(pairSymbol).append('=').append(canonical(margin)));
+		return UUID.nameUUIDFromBytes(canonical.toString().getBytes(StandardCharsets.UTF_8)).getMostSignificantBits();
+	}
+
+	// the same margin gives the same text whatever scale it is written with
+	private static String canonical(FxMarginProperties.Margin margin) {
+		return margin.getBid().stripTrailingZeros().toPlainString() + "/" + margin.getAsk().stripTrailingZeros().toPlainString();
+	}
+
+	private static Multipliers toMultipliers(FxMarginProperties.Margin margin) {
+		return Multipliers.ofMargins(margin.getBid(), margin.getAsk());
+	}
+
+	private static FxPrice applyMultipliers(FxPrice price, Multipliers multipliers, String priceId) {
+		if (price instanceof FxFixedPointPrice fixedPointPrice) {
+			return new FxFixedPointPrice(priceId, price.getPairSymbol(),
+					FixedPointDecimal.multiply(fixedPointPrice.getBidMantissa(), multipliers.bidFixed(), BID_ROUNDING),
+					FixedPointDecimal.multiply(fixedPointPrice.getAskMantissa(), multipliers.askFixed(), ASK_ROUNDING),
+					fixedPointPrice.getPriceScale(), price.getDateTime());
+		}
+		return FxPrice.builder().priceId(priceId)
+				.pairSymbol(price.getPairSymbol()).bidPrice(price.getBidPrice().multiply(multipliers.bid()))
+				.askPrice(price.getAskPrice().multiply(multipliers.ask())).dateTime(price.getDateTime()).build();
+	}
+
+	private static FxCandle applyMultipliers(FxCandle candle, Multipliers multipliers) {
+		return new FxCandle(candle.pairSymbol(), candle.interval(), candle.start(),
+				multiply(candle.openBid(), multipliers.bid(), BID_ROUNDING),
+				multiply(candle.highBid(), multipliers.bid(), BID_ROUNDING),
+				multiply(candle.lowBid(), multipliers.bid(), BID_ROUNDING),
+				multiply(candle.closeBid(), multipliers.bid(), BID_ROUNDING),
+				multiply(candle.openAsk(), multipliers.ask(), ASK_ROUNDING),
+				multiply(candle.highAsk(), multipliers.ask(), ASK_ROUNDING),
+				multiply(candle.lowAsk(), multipliers.ask(), ASK_ROUNDING),
+				multiply(candle.closeAsk(), multipliers.ask(), ASK_ROUNDING),
+				candle.tickCount());
+	}
+
+	private static BigDecimal multiply(BigDecimal value, BigDecimal multiplier, RoundingMode roundingMode) {
+		return value.multiply(multiplier).setScale(value.scale(), roundingMode);
 	}
 
 }
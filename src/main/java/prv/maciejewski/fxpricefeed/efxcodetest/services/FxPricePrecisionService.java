@@ -0,0 +1,77 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxPriceProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPairSymbolRegistry;
+
+/**
+ * Service resolving precision (number of decimals) of prices per currency pair
+ * for fixed-point price representation. Scales of registered pairs are cached
+ * by pair id, so lookup on hot path is registry lookup and array read. Scale of
+ * pair which is not registered is resolved on every call - cache can't be
+ * filled by symbols of rejected records.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Service
+public class FxPricePrecisionService {
+
+	final static char PAIR_SEPARATOR = '/';
+
+	@Autowired
+	FxPriceProperties fxPriceProperties;
+
+	// scale + 1 per pair id - 0 if not resolved yet
+	private final AtomicIntegerArray scaleCache = new AtomicIntegerArray(FxPairSymbolRegistry.MAX_PAIRS);
+
+	/**
+	 * @return true if prices should be stored in fixed-point form
+	 */
+	public boolean isFixedPointEnabled() {
+		return fxPriceProperties.getFixedPoint().isEnabled();
+	}
+
+	/**
+	 * Returns number of decimals used for prices of given pair
+	 *
+	 * @param pairSymbol - currency pair symbol
+	 * @return number of decimals
+	 */
+	public int scaleOf(String pairSymbol) {
+		int pairId = FxPairSymbolRegistry.shared().idOf(pairSymbol);
+		if (pairId == FxPairSymbolRegistry.UNKNOWN_ID) {
+			return resolveScale(pairSymbol);
+		}
+		int cached = scaleCache.get(pairId);
+		if (cached == 0) {
+			cached = resolveScale(pairSymbol) + 1;
+			scaleCache.set(pairId, cached);
+		}
+		return cached - 1;
+	}
+
+	/**
+	 * Clears cached scales - to be used when configuration has changed
+	 */
+	public void clearCache() {
+		for (int pairId = 0; pairId < scaleCache.length(); pairId++) {
+			scaleCache.set(pairId, 0);
+		}
+	}
+
+	private int resolveScale(String pairSymbol) {
+		FxPriceProperties.FixedPoint config = fxPriceProperties.getFixedPoint();
+		Integer scale = config.getPairScales().get(pairSymbol);
+		if (scale == null) {
+			int separator = pairSymbol.lastIndexOf(PAIR_SEPARATOR);
+			String quoteCurrency = pairSymbol.substring(separator + 1).trim();
+			scale = config.getQuoteCurrencyScales().get(quoteCurrency);
+		}
+		return scale != null ? scale : config.getDefaultScale();
+	}
+}
@@ -0,0 +1,56 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.compression.FxContentEncoding;
+
+/**
+ * JSON array of all prices, ready to be sent. Encoded forms of JSON are made
+ * when requested first and kept with snapshot - snapshot is reused until prices
+ * change, so every encoding is done once per change, not once per request.
+ *
+ * @param json        - UTF-8 JSON bytes - must not be modified
+ * @param etag        - entity tag of the content, quoted
+ * @param encodedJson - encoded JSON by encoding ordinal, null until requested
+ *
+ * @author Mikolaj Maciejewski
+ */
+public record FxPriceSnapshot(byte[] json, String etag, AtomicReferenceArray<byte[]> encodedJson) {
+
+	public FxPriceSnapshot(byte[] json, String etag) {
+		this(json, etag, new AtomicReferenceArray<>(FxContentEncoding.values().length));
+	}
+
+	/**
+	 * Returns JSON encoded with given encoding - encoded once, the same bytes are
+	 * returned later. Threads which request the same encoding at once may encode
+	 * it each, but all of them get bytes kept first.
+	 *
+	 * @param encoding - content encoding
+	 * @return encoded JSON - must not be modified
+	 */
+	public byte[] json(FxContentEncoding encoding) {
+		if (encoding == FxContentEncoding.IDENTITY) {
+			return json;
+		}
+		byte[] encoded = encodedJson.get(encoding.ordinal());
+		if (encoded == null) {
+			encoded = encoding.encode(json);
+			byte[] kept = encodedJson.compareAndExchange(encoding.ordinal(), null, encoded);
+			return kept != null ? kept : encoded;
+		}
+		return encoded;
+	}
+
+	/**
+	 * @param encoding - content encoding
+	 * @return entity tag of JSON encoded with given encoding - differs from tags of
+	 *         other encodings, as their bytes differ
+	 */
+	public String etag(FxContentEncoding encoding) {
+		if (encoding == FxContentEncoding.IDENTITY) {
+			return etag;
+		}
+		return etag.substring(0, etag.length() - 1) + "-" + encoding.getToken() + "\"";
+	}
+}
@@ -0,0 +1,210 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.dto.FxPriceDto;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Cache of JSON form of prices for GET /fx/prices and POST /fx/prices/query.
+ *
+ * JSON of every pair is encoded once per stored price - entry is reused as long
+ * as the same price object is stored for the pair and margins are not changed.
+ * Response is assembled by copying cached bytes of pairs and is kept until
+ * store modification count or margins change, so polling of unchanged prices
+ * costs only few volatile reads. Compressed forms of response are kept with
+ * it too (FxPriceSnapshot), so they are compressed once per change.
+ *
+ * The same cached JSON of pairs is used for batch lookups of chosen pairs.
+ *
+ * Cache is kept per client tier with own margins - other tiers get the same
+ * prices as no tier.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Service
+public class FxPriceSnapshotCache {
+
+	final static String DEFAULT_TIER = "";
+
+	// fixed parts of batch query response
+	private final static byte[] PRICES_START = "{\"prices\":[".getBytes(StandardCharsets.US_ASCII);
+	private final static byte[] MISSING_START = "],\"missing\":[".getBytes(StandardCharsets.US_ASCII);
+	private final static byte[] END = "]}".getBytes(StandardCharsets.US_ASCII);
+
+	@Autowired
+	FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	FxPriceMarginCalculatorService fxPriceMarginCalculatorService;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	// distinguishes entity tags of application instances
+	private final String etagPrefix = Long.toString(System.currentTimeMillis(), 36);
+
+	final ConcurrentMap<String, TierCache> cacheByTier = new ConcurrentHashMap<>();
+
+	/**
+	 * JSON of single price with price and margins it has been encoded from
+	 */
+	record Entry(FxPrice source, long marginsVersion, boolean lazy, byte[] json) {
+	}
+
+	/**
+	 * Assembled JSON with store and margins state it has been built for
+	 */
+	record Assembled(FxPriceSnapshot snapshot, long modificationCount, long marginsVersion, boolean lazy) {
+	}
+
+	/**
+	 * Cached JSON of one client tier
+	 */
+	static final class TierCache {
+		final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+		volatile Assembled assembled;
+	}
+
+	/**
+	 * Returns JSON array of all prices with margins for given tier
+	 *
+	 * @param tier - client tier, may be null
+	 * @return JSON and its entity tag
+	 */
+	public FxPriceSnapshot getSnapshot(String tier) {
+		String tierKey = tierKey(tier);
+		TierCache cache = cacheByTier.computeIfAbsent(tierKey, key -> new TierCache());
+
+		// read before prices - snapshot is at least as new as this count
+		long modificationCount = fxPriceStoreService.getModificationCount();
+		long marginsVersion = fxPriceMarginCalculatorService.getMarginsVersion();
+		boolean lazy = fxPriceMarginCalculatorService.isLazy();
+		Assembled assembled = cache.assembled;
+		if (assembled != null && assembled.modificationCount() == modificationCount
+				&& assembled.marginsVersion() == marginsVersion && assembled.lazy() == lazy) {
+			return assembled.snapshot();
+		}
+
+		String entryTier = tierKey == DEFAULT_TIER ? null : tierKey;
+		List<byte[]> parts = new ArrayList<>();
+		List<String> pairs = new ArrayList<>();
+		fxPriceStoreService.forEachFxPrice(fxPrice -> {
+			parts.add(entryJson(cache, fxPrice, entryTier, marginsVersion, lazy));
+			pairs.add(fxPrice.getPairSymbol());
+		});
+		if (cache.entries.size() > pairs.size()) {
+			cache.entries.keySet().retainAll(pairs); // storage has been cleared
+		}
+
+		FxPriceSnapshot snapshot = new FxPriceSnapshot(join(parts),
+				"\"" + etagPrefix + "-" + modificationCount + "-" + marginsVersion + (lazy ? "L" : "E") + "\"");
+		cache.assembled = new Assembled(snapshot, modificationCount, marginsVersion, lazy);
+		return snapshot;
+	}
+
+	/**
+	 * Writes prices of given pairs as JSON object with two arrays - "prices" with
+	 * prices found in store, in order of request, and "missing" with pair symbols
+	 * without price. Prices are copied from the same cached JSON as in snapshot,
+	 * so nothing is encoded for pairs which have not changed since last request.
+	 *
+	 * @param pairSymbols - pair symbols to look up
+	 * @param tier        - client tier, may be null
+	 * @param out         - stream to write JSON to, it is not closed
+	 *
+	 * @throws IOException - when stream can't be written
+	 */
+	public void writePrices(List<String> pairSymbols, String tier, OutputStream out) throws IOException {
+		String tierKey = tierKey(tier);
+		TierCache cache = cacheByTier.computeIfAbsent(tierKey, key -> new TierCache());
+		String entryTier = tierKey == DEFAULT_TIER ? null : tierKey;
+		long marginsVersion = fxPriceMarginCalculatorService.getMarginsVersion();
+		boolean lazy = fxPriceMarginCalculatorService.isLazy();
+
+		// missing pairs are expected to be rare - list is created for the first one only
+		List<String> missing = null;
+		out.write(PRICES_START);
+		boolean first = true;
+		for (String pairSymbol : pairSymbols) {
+			FxPrice fxPrice = pairSymbol == null ? null : fxPriceStoreService.getFxPrice(pairSymbol);
+			if (fxPrice == null) {
+				if (missing == null) {
+					missing = new ArrayList<>();
+				}
+				missing.add(pairSymbol);
+				continue;
+			}
+			if (!first) {
+				out.write(',');
+			}
+			first = false;
+			out.write(entryJson(cache, fxPrice, entryTier, marginsVersion, lazy));
+		}
+		out.write(MISSING_START);
+		if (missing != null) {
+			for (int i = 0; i < missing.size(); i++) {
+				if (i > 0) {
+					out.write(',');
+				}
+				out.write(objectMapper.writeValueAsBytes(missing.get(i)));
+			}
+		}
+		out.write(END);
+	}
+
+	private String tierKey(String tier) {
+		return tier != null && fxPriceMarginCalculatorService.hasTier(tier) ? tier : DEFAULT_TIER;
+	}
+
+	private byte[] entryJson(TierCache cache, FxPrice fxPrice, String entryTier, long marginsVersion, boolean lazy) {
+		Entry entry = cache.entries.get(fxPrice.getPairSymbol());
+		if (entry == null || entry.source() != fxPrice || entry.marginsVersion() != marginsVersion || entry.lazy() != lazy) {
+			entry = new Entry(fxPrice, marginsVersion, lazy, encode(fxPrice, entryTier));
+			cache.entries.put(fxPrice.getPairSymbol(), entry);
+		}
+		return entry.json();
+	}
+
+	private byte[] encode(FxPrice storedPrice, String tier) {
+		try {
+			return objectMapper.writeValueAsBytes(
+					FxPriceDto.fromFxPrice(fxPriceMarginCalculatorService.calculatePriceToRead(storedPrice, tier)));
+		} catch (JsonProcessingException jpe) {
+			throw new IllegalStateException("Price can't be written as JSON: " + storedPrice, jpe);
+		}
+	}
+
+	private static byte[] join(List<byte[]> parts) {
+		int size = 2 + Math.max(parts.size() - 1, 0);
+		for (byte[] part : parts) {
+			size += part.length;
+		}
+		byte[] json = new byte[size];
+		int position = 0;
+		json[position++] = '[';
+		for (int i = 0; i < parts.size(); i++) {
+			if (i > 0) {
+				json[position++] = ',';
+			}
+			byte[] part = parts.get(i);
+			System.arraycopy(part, 0, json, position, part.length);
+			position += part.length;
+		}
+		json[position] = ']';
+		return json;
+	}
+}
@@ -1,81 +1,213 @@
 package prv.maciejewski.fxpricefeed.efxcodetest.services;
 
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPairSymbolRegistry;
 import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxRejectionSink;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxTickCounters;
 
 
 /**
  * Simple service for storing data feed from market
  * Assumed is no use of database in the case for demo purposes.
- * Instead of DB data are stored in simple map object
- * 
+ * Instead of DB data are stored in AtomicReferenceArray indexed by pair id.
+ *
+ * Every pair symbol has its own slot with reference to latest price - slots are
+ * kept in array indexed by pair id from FxPairSymbolRegistry.
+ * Stored prices are treated as immutable snapshots - slot is updated with
+ * compare-and-set, so "newer price wins" check and write are one atomic step per pair
+ * and readers never block.
+ *
+ * Listeners registered with addUpdateListener are called for every accepted price,
+ * after compare-and-set - listeners of concurrent updates of one pair may be
+ * called out of order, so they have to compare date times themselves.
+ *
+ * Storage belongs to service instance - pair ids are shared by all instances,
+ * so more stores (e.g. replication peers in one process) can run side by side.
+ * Stores created outside of Spring context have no rejection sink - their
+ * ignored prices are only counted.
+ *
  * @author Mikolaj Maciejewski
  *
  */
 @Service
 @Slf4j
 public class FxPriceStoreService {
-	
-	// work as price storage
-	private static final Map<String, FxPrice> fxPriceStorage = new HashMap<>();
-	
+
+	@Autowired
+	FxRejectionSink fxRejectionSink;
+
+	// work as price storage - one slot per pair id
+	private final AtomicReferenceArray<FxPrice> fxPriceStorage = new AtomicReferenceArray<>(
+			FxPairSymbolRegistry.MAX_PAIRS);
+
+	private static final FxPairSymbolRegistry pairSymbolRegistry = FxPairSymbolRegistry.shared();
+
+	// number of changes of storage - tells readers that stored prices have changed
+	private final LongAdder modificationCount = new LongAdder();
+
+	// listeners of accepted prices
+	private final List<FxPriceUpdateListener> updateListeners = new CopyOnWriteArrayList<>();
+
 	/**
-	 * Returns Optional object with FxPrice from storage with provide pairSymbol. 
-	 * 
+	 * Returns Optional object with FxPrice from storage with provide pairSymbol.
+	 *
 	 * @param pairSymbol - symbols to get fx price for
-	 * 
+	 *
 	 * @return Optional with fx price for pairSymbol
 	 */
 	public Optional<FxPrice> getFxPriceByPairSymbol(String pairSymbol) {
-		return Optional.ofNullable(fxPriceStorage.get(pairSymbol));
+		return Optional.ofNullable(getFxPrice(pairSymbol));
 	}
-	
+
+	/**
+	 * Returns FxPrice from storage with provided pairSymbol - without Optional
+	 * wrapper, for lookups of many pairs at once.
+	 *
+	 * @param pairSymbol - symbols to get fx price for
+	 *
+	 * @return fx price for pairSymbol or null if there is no price
+	 */
+	public FxPrice getFxPrice(String pairSymbol) {
+		int pairId = pairSymbolRegistry.idOf(pairSymbol);
+		return pairId == FxPairSymbolRegistry.UNKNOWN_ID ? null : fxPriceStorage.get(pairId);
+	}
+
 	/**
 	 * Return list of all stored fx prices stored in storage
-	 * 
+	 *
 	 * @return - list of fx prices
 	 */
 	public List<FxPrice> getAllFxPrices() {
-		return fxPriceStorage.entrySet().stream().map(entry -> entry.getValue()).toList();
+		List<FxPrice> result = new ArrayList<>();
+		forEachFxPrice(result::add);
+		return Collections.unmodifiableList(result);
 	}
-	
+
+	/**
+	 * Calls action for every stored price - without building list of prices
+	 *
+	 * @param action - action to call
+	 */
+	public void forEachFxPrice(Consumer<FxPrice> action) {
+		int pairCount = pairSymbolRegistry.size();
+		for (int pairId = 0; pairId < pairCount; pairId++) {
+			FxPrice fxPrice = fxPriceStorage.get(pairId);
+			if (fxPrice != null) { // pair may be registered and not yet stored
+				action.accept(fxPrice);
+			}
+		}
+	}
+
+	/**
+	 * Returns number of changes of storage so far. The same value means that
+	 * stored prices have not changed - value read before prices tells that prices
+	 * are at least as new as that change.
+	 *
+	 * @return number of changes
+	 */
+	public long getModificationCount() {
+		return modificationCount.sum();
+	}
+
 	/**
 	 * Adds / updates storage with new price.
 	 * If price with pair symbol exist then dates are check - if it is newer then it is updated,
-	 * else warnng is sent to logs and it is not updated
+	 * else it is reported to FxRejectionSink and it is not updated
 	 * if prices does not exists in storage then it is just added
-	 * 
+	 *
+	 * Check and update are done with compare-and-set loop on pair slot,
+	 * so concurrent updates never let older price overwrite newer one.
+	 *
 	 * @param newFxPrice - new price to add / update
+	 *
+	 * @return true if price has been stored, false if it has been ignored
 	 */
-	public void updateFxPrice(FxPrice newFxPrice) {
+	public boolean updateFxPrice(FxPrice newFxPrice) {
 		// just raport and ignore null value - something went wrong
 		if (newFxPrice == null) {
 			log.warn("Update with null value has been ignored.");
-			return;
+			return false;
+		}
+		// first price of unknown pair registers it - the price is stored then, as there is no newer one
+		int pairId = pairSymbolRegistry.resolve(newFxPrice.getPairSymbol());
+		if (pairId == FxPairSymbolRegistry.UNKNOWN_ID) {
+			FxTickCounters.rejected(FxTickCounters.Reason.PAIR_SYMBOL);
+			if (fxRejectionSink != null) {
+				fxRejectionSink.rejected(FxTickCounters.Reason.PAIR_SYMBOL,
+						"Update of pair which can't be registered has been ignored", newFxPrice);
+			}
+			return false;
 		}
-		FxPrice currentFxPrice = fxPriceStorage.get(newFxPrice.getPairSymbol());
 
-		if ((currentFxPrice != null) && (currentFxPrice.getDateTime().compareTo(newFxPrice.getDateTime()) > 0)) {
-			log.warn("Update with older dated price has been ignored.");
-			return;
+		while (true) {
+			FxPrice currentFxPrice = fxPriceStorage.get(pairId);
+			if ((currentFxPrice != null) && (currentFxPrice.getDateTime().compareTo(newFxPrice.getDateTime()) > 0)) {
+				FxTickCounters.stale();
+				if (fxRejectionSink != null) {
+					fxRejectionSink.stale(newFxPrice);
+				}
+				return false;
+			}
+			if (fxPriceStorage.compareAndSet(pairId, currentFxPrice, newFxPrice)) {
+				// counted after price is visible - reader which sees new count sees new price
+				modificationCount.increment();
+				FxTickCounters.accepted();
+				notifyUpdateListeners(newFxPrice);
+				return true;
+			}
+			// other thread updated slot in meantime - check date again
+		}
+	}
+
+	/**
+	 * Registers listener of accepted prices
+	 *
+	 * @param listener - listener to add
+	 */
+	public void addUpdateListener(FxPriceUpdateListener listener) {
+		updateListeners.add(listener);
+	}
+
+	/**
+	 * Unregisters listener of accepted prices
+	 *
+	 * @param listener - listener to remove
+	 */
+	public void removeUpdateListener(FxPriceUpdateListener listener) {
+		updateListeners.remove(listener);
+	}
+
+	private void notifyUpdateListeners(FxPrice fxPrice) {
+		for (FxPriceUpdateListener listener : updateListeners) {
+			try {
+				listener.onFxPriceUpdated(fxPrice);
+			} catch (Exception exc) {
+				// problem in listener must not break price update
+				log.warn("Price update listener {} failed: {}", listener, exc.toString());
+			}
 		}
-		fxPriceStorage.put(newFxPrice.getPairSymbol(), newFxPrice);
-				
 	}
 
 	/**
 	 * Clears storage - used for test purposes
 	 */
 	public void removeAll() {
-		fxPriceStorage.clear();
-		
+		for (int pairId = 0; pairId < fxPriceStorage.length(); pairId++) {
+			fxPriceStorage.set(pairId, null);
+		}
+		modificationCount.increment();
 	}
 }
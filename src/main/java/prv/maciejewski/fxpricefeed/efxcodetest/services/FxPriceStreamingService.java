@@ -0,0 +1,233 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxStreamProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Service pushing accepted prices to subscribers.
+ *
+ * Ingestion thread only puts price into latest-value map of changed pairs and
+ * wakes dispatcher thread - cost does not depend on number of subscribers.
+ * Dispatcher hands prices over to subscriptions of the pair, each subscription
+ * keeps latest-value slot per pair and is flushed by sender thread pool. Prices
+ * are conflated on both levels, so slow subscriber never slows down ingestion
+ * nor other subscribers. Slots keep the newest price by date time - store
+ * listeners may be notified of concurrent updates of a pair out of order - and
+ * subscription never sends price older than one it has already sent.
+ *
+ * Dispatcher also fails subscriptions whose send is blocked longer than send
+ * timeout, so clients which don't read can't hold all sender threads.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Service
+@Slf4j
+public class FxPriceStreamingService implements FxPriceUpdateListener {
+
+	@Autowired
+	FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	FxPriceMarginCalculatorService fxPriceMarginCalculatorService;
+
+	@Autowired
+	FxStreamProperties fxStreamProperties;
+
+	// subscriptions by pair symbol
+	private final ConcurrentMap<String, Set<FxPriceSubscription>> subscriptionsByPair = new ConcurrentHashMap<>();
+
+	// subscriptions of all pairs
+	private final Set<FxPriceSubscription> allPairsSubscriptions = ConcurrentHashMap.newKeySet();
+
+	// latest price per pair waiting for dispatcher
+	private final ConcurrentMap<String, FxPrice> changedPrices = new ConcurrentHashMap<>();
+
+	private final AtomicBoolean dispatcherWakeUp = new AtomicBoolean(false);
+	private final AtomicInteger subscriptionCount = new AtomicInteger();
+
+	private ExecutorService senderExecutor;
+	private Thread dispatcher;
+	private volatile boolean running;
+	private long nextSendTimeoutCheckNanos;
+
+	@PostConstruct
+	void start() {
+		AtomicInteger threadNo = new AtomicInteger();
+		senderExecutor = Executors.newFixedThreadPool(fxStreamProperties.getSenderThreads(), runnable -> {
+			Thread thread = new Thread(runnable, "fx-price-sender-" + threadNo.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		running = true;
+		dispatcher = new Thread(this::dispatchLoop, "fx-price-dispatcher");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+		fxPriceStoreService.addUpdateListener(this);
+	}
+
+	@PreDestroy
+	void stop() {
+		fxPriceStoreService.removeUpdateListener(this);
+		running = false;
+		LockSupport.unpark(dispatcher);
+		senderExecutor.shutdownNow();
+	}
+
+	/**
+	 * Subscribes to updates of given pairs. Current prices of the pairs are sent
+	 * at once.
+	 *
+	 * @param pairSymbols - pairs to subscribe, null or empty for all pairs
+	 * @param tier        - client tier used for margins, may be null
+	 * @param sender      - receiver of prices
+	 *
+	 * @return subscription - to be passed to unsubscribe
+	 */
+	public FxPriceSubscription subscribe(Collection<String> pairSymbols, String tier, FxPriceSubscription.Sender sender) {
+		return subscribe(pairSymbols, tier, sender, exc -> {
+		});
+	}
+
+	/**
+	 * Subscribes to updates of given pairs. Current prices of the pairs are sent
+	 * at once.
+	 *
+	 * @param pairSymbols     - pairs to subscribe, null or empty for all pairs
+	 * @param tier            - client tier used for margins, may be null
+	 * @param sender          - receiver of prices
+	 * @param failureListener - notified when subscription is removed as its send
+	 *                        failed or timed out - e.g. to close connection
+	 *
+	 * @return subscription - to be passed to unsubscribe
+	 */
+	public FxPriceSubscription subscribe(Collection<String> pairSymbols, String tier, FxPriceSubscription.Sender sender,
+			Consumer<Exception> failureListener) {
+		Set<String> pairs = (pairSymbols == null || pairSymbols.isEmpty()) ? null : Set.copyOf(pairSymbols);
+		FxPriceSubscription subscription = new FxPriceSubscription(pairs, tier, sender, fxPriceMarginCalculatorService,
+				senderExecutor, this::unsubscribe, failureListener);
+
+		if (pairs == null) {
+			allPairsSubscriptions.add(subscription);
+			fxPriceStoreService.getAllFxPrices().forEach(subscription::offer);
+		} else {
+			for (String pair : pairs) {
+				subscriptionsByPair.computeIfAbsent(pair, key -> ConcurrentHashMap.newKeySet()).add(subscription);
+				fxPriceStoreService.getFxPriceByPairSymbol(pair).ifPresent(subscription::offer);
+			}
+		}
+		subscriptionCount.incrementAndGet();
+		return subscription;
+	}
+
+	/**
+	 * Removes subscription - no more prices are sent to it
+	 *
+	 * @param subscription - subscription to remove
+	 */
+	public void unsubscribe(FxPriceSubscription subscription) {
+		if (subscription == null) {
+			return;
+		}
+		subscription.close();
+		boolean removed;
+		if (subscription.getPairSymbols() == null) {
+			removed = allPairsSubscriptions.remove(subscription);
+		} else {
+			removed = false;
+			for (String pair : subscription.getPairSymbols()) {
+				Set<FxPriceSubscription> subscriptions = subscriptionsByPair.get(pair);
+				removed |= subscriptions != null && subscriptions.remove(subscription);
+			}
+		}
+		if (removed) {
+			subscriptionCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return number of active subscriptions
+	 */
+	public int getSubscriptionCount() {
+		return subscriptionCount.get();
+	}
+
+	@Override
+	public void onFxPriceUpdated(FxPrice fxPrice) {
+		changedPrices.merge(fxPrice.getPairSymbol(), fxPrice, FxPriceSubscription::newer);
+		if (dispatcherWakeUp.compareAndSet(false, true)) {
+			LockSupport.unpark(dispatcher);
+		}
+	}
+
+	private void dispatchLoop() {
+		while (running) {
+			dispatcherWakeUp.set(false);
+			Iterator<String> pairs = changedPrices.keySet().iterator();
+			while (pairs.hasNext()) {
+				FxPrice fxPrice = changedPrices.remove(pairs.next());
+				if (fxPrice != null) {
+					dispatch(fxPrice);
+				}
+			}
+			long sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(fxStreamProperties.getSendTimeout());
+			if (sendTimeoutNanos > 0) {
+				expireSlowSends(sendTimeoutNanos);
+			}
+			if (changedPrices.isEmpty()) {
+				if (sendTimeoutNanos > 0) {
+					LockSupport.parkNanos(this, checkIntervalNanos(sendTimeoutNanos));
+				} else {
+					LockSupport.park(this);
+				}
+			}
+		}
+	}
+
+	// checks sends of all subscriptions few times per timeout
+	private void expireSlowSends(long sendTimeoutNanos) {
+		long now = System.nanoTime();
+		if (now - nextSendTimeoutCheckNanos < 0) {
+			return;
+		}
+		nextSendTimeoutCheckNanos = now + checkIntervalNanos(sendTimeoutNanos);
+		allPairsSubscriptions.forEach(subscription -> subscription.expireSlowSend(now, sendTimeoutNanos));
+		subscriptionsByPair.values().forEach(subscriptions -> subscriptions
+				.forEach(subscription -> subscription.expireSlowSend(now, sendTimeoutNanos)));
+	}
+
+	private static long checkIntervalNanos(long sendTimeoutNanos) {
+		return Math.max(sendTimeoutNanos / 4, TimeUnit.MILLISECONDS.toNanos(10));
+	}
+
+	private void dispatch(FxPrice fxPrice) {
+		try {
+			Set<FxPriceSubscription> subscriptions = subscriptionsByPair.get(fxPrice.getPairSymbol());
+			if (subscriptions != null) {
+				subscriptions.forEach(subscription -> subscription.offer(fxPrice));
+			}
+			allPairsSubscriptions.forEach(subscription -> subscription.offer(fxPrice));
+		} catch (RuntimeException exc) {
+			log.warn("Price {} dispatch failed: {}", fxPrice.getPairSymbol(), exc.toString());
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.dto.FxPriceDto;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Subscription of single client to price updates.
+ *
+ * Subscription has one latest-value-wins slot per pair - new price replaces
+ * price not yet sent, so slow subscriber gets newest prices instead of growing
+ * backlog. Slots are flushed to subscriber by sender executor, at most one
+ * flush per subscription at a time. Slots keep the newest price by date time,
+ * as prices of one pair may be offered out of order by concurrent writers -
+ * and price older than the one already sent for its pair is not sent at all.
+ *
+ * Send blocked longer than send timeout of streaming service (client which
+ * does not read) fails the subscription and its sender thread is interrupted,
+ * so few slow clients can't hold all sender threads.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Slf4j
+public class FxPriceSubscription {
+
+	/**
+	 * Receiver of prices - e.g. adapter of SSE connection
+	 */
+	@FunctionalInterface
+	public interface Sender {
+		void send(FxPriceDto price) throws Exception;
+	}
+
+	// subscribed pairs - null for all pairs
+	@Getter
+	private final Set<String> pairSymbols;
+
+	// client tier used for margins
+	@Getter
+	private final String tier;
+
+	private final Sender sender;
+	private final FxPriceMarginCalculatorService marginCalculator;
+	private final Executor senderExecutor;
+	private final Consumer<FxPriceSubscription> onFailure;
+	private final Consumer<Exception> failureListener;
+
+	// latest not yet sent price per pair
+	private final ConcurrentMap<String, FxPrice> pendingPrices = new ConcurrentHashMap<>();
+	// date time of last sent price per pair - used by flush only, one flush runs at a time
+	private final Map<String, LocalDateTime> sentDateTimes = new HashMap<>();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+	private volatile boolean closed = false;
+
+	// thread blocked in send and start of the send - guarded by this
+	private Thread sendingThread;
+	private long sendStartNanos;
+	// set when blocked send has been interrupted - reported instead of interruption
+	private volatile TimeoutException sendTimeout;
+
+	FxPriceSubscription(Set<String> pairSymbols, String tier, Sender sender,
+			FxPriceMarginCalculatorService marginCalculator, Executor senderExecutor, Consumer<FxPriceSubscription> onFailure,
+			Consumer<Exception> failureListener) {
+		this.pairSymbols = pairSymbols;
+		this.tier = tier;
+		this.sender = sender;
+		this.marginCalculator = marginCalculator;
+		this.senderExecutor = senderExecutor;
+		this.onFailure = onFailure;
+		this.failureListener = failureListener;
+	}
+
+	/**
+	 * @param current - price in slot, may be null
+	 * @param offered - price offered to slot
+	 * @return price which is kept in slot - offered one unless current is newer
+	 */
+	static FxPrice newer(FxPrice current, FxPrice offered) {
+		return current != null && current.getDateTime().isAfter(offered.getDateTime()) ? current : offered;
+	}
+
+	/**
+	 * Puts price to pair slot - replacing not yet sent older one - and schedules flush
+	 *
+	 * @param fxPrice - stored price
+	 */
+	void offer(FxPrice fxPrice) {
+		if (closed) {
+			return;
+		}
+		pendingPrices.merge(fxPrice.getPairSymbol(), fxPrice, FxPriceSubscription::newer);
+		scheduleFlush();
+	}
+
+	/**
+	 * Stops sending prices to subscriber
+	 */
+	void close() {
+		closed = true;
+		pendingPrices.clear();
+	}
+
+	/**
+	 * Fails subscription if its send takes longer than given timeout - sender
+	 * thread is interrupted to get it back from blocked write
+	 *
+	 * @param nowNanos     - current System.nanoTime()
+	 * @param timeoutNanos - max time of single send
+	 * @return true if subscription has been failed
+	 */
+	boolean expireSlowSend(long nowNanos, long timeoutNanos) {
+		synchronized (this) {
+			if (sendingThread == null || nowNanos - sendStartNanos < timeoutNanos) {
+				return false;
+			}
+			sendTimeout = new TimeoutException("Price has not been sent in " + timeoutNanos / 1_000_000 + " ms");
+			sendingThread.interrupt();
+			sendingThread = null;
+		}
+		fail(sendTimeout);
+		return true;
+	}
+
+	private void scheduleFlush() {
+		if (flushScheduled.compareAndSet(false, true)) {
+			try {
+				senderExecutor.execute(this::flush);
+			} catch (RuntimeException exc) {
+				// executor stopped - nothing will be sent anymore
+				flushScheduled.set(false);
+				fail(exc);
+			}
+		}
+	}
+
+	private void flush() {
+		try {
+			Iterator<String> pairs = pendingPrices.keySet().iterator();
+			while (pairs.hasNext() && !closed) {
+				FxPrice fxPrice = pendingPrices.remove(pairs.next());
+				if (fxPrice != null && !isSent(fxPrice)) {
+					FxPriceDto price = FxPriceDto.fromFxPrice(marginCalculator.calculatePriceToRead(fxPrice, tier));
+					synchronized (this) {
+						sendingThread = Thread.currentThread();
+						sendStartNanos = System.nanoTime();
+					}
+					try {
+						sender.send(price);
+					} finally {
+						synchronized (this) {
+							sendingThread = null;
+						}
+					}
+					sentDateTimes.put(fxPrice.getPairSymbol(), fxPrice.getDateTime());
+				}
+			}
+		} catch (Exception exc) {
+			fail(sendTimeout != null ? sendTimeout : exc);
+		} finally {
+			flushScheduled.set(false);
+		}
+		// price could be offered after iteration but before flag reset
+		if (!closed && !pendingPrices.isEmpty()) {
+			scheduleFlush();
+		}
+	}
+
+	// true if newer price of the pair has been sent already - late listener call of older update
+	private boolean isSent(FxPrice fxPrice) {
+		LocalDateTime sent = sentDateTimes.get(fxPrice.getPairSymbol());
+		return sent != null && sent.isAfter(fxPrice.getDateTime());
+	}
+
+	private void fail(Exception exc) {
+		if (closed) {
+			return; // already failed or unsubscribed
+		}
+		log.debug("Subscriber failed and is removed: {}", exc.toString());
+		close();
+		onFailure.accept(this);
+		failureListener.accept(exc);
+	}
+}
@@ -0,0 +1,26 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Listener of prices accepted by FxPriceStoreService. It is called on thread
+ * which has updated the store, so implementation has to be short and must not
+ * block - longer work should be handed over to other threads.
+ *
+ * Store does not lock pair while listeners run, so listeners of concurrent
+ * updates of one pair may be called out of order - price older than one already
+ * received may come later.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@FunctionalInterface
+public interface FxPriceUpdateListener {
+
+	/**
+	 * Called after price has been stored
+	 *
+	 * @param fxPrice - stored price
+	 */
+	void onFxPriceUpdated(FxPrice fxPrice);
+}
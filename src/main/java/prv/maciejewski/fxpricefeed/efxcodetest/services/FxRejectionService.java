@@ -0,0 +1,45 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxRejectionProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxRejectedRecord;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxRejectionSink;
+
+/**
+ * Service configuring rejection sink (FxRejectionSink) and giving
+ * access to its dead-letter ring of latest rejected records.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Service
+public class FxRejectionService {
+
+	@Autowired
+	FxRejectionProperties fxRejectionProperties;
+
+	@Autowired
+	FxRejectionSink fxRejectionSink;
+
+	@PostConstruct
+	void init() {
+		fxRejectionSink.configure(fxRejectionProperties.getMaxLogsPerSecond(),
+				fxRejectionProperties.getSampleRate(), fxRejectionProperties.getQueueCapacity(),
+				fxRejectionProperties.getDeadLetterCapacity());
+	}
+
+	/**
+	 * Returns latest rejected records and prices ignored as stale
+	 *
+	 * @param limit - max number of records
+	 * @return rejected records, newest first
+	 */
+	public List<FxRejectedRecord> getRejections(int limit) {
+		return fxRejectionSink.getRejections(limit);
+	}
+}
@@ -0,0 +1,470 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxReplicationProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.replication.FxReplicationBatch;
+
+/**
+ * Service replicating price store between instances behind load balancer -
+ * every instance sends prices it has accepted itself to all configured peers,
+ * so peers have to be configured as full mesh.
+ *
+ * Store thread only queues price for every connected peer. Sender thread of
+ * peer keeps persistent TCP connection and writes queued prices in batches
+ * (FxReplicationBatch) - more prices queued means bigger batches. After connect,
+ * or when slow peer has too many queued prices, peer gets snapshot of latest
+ * price per pair instead.
+ *
+ * Single selector thread receives batches of peers and stores prices with the
+ * same "newer price wins" rule as feed - repeated or reordered prices change
+ * nothing. Received prices are not sent further.
+ *
+ * Prices are replicated as stored - with pair margins in EAGER mode, raw in
+ * LAZY mode. Sender starts connection with fingerprint of its margins and
+ * receiver with other margin mode or pair margins rejects it, so no price is
+ * stored with margins applied twice or not at all. When margins of either side
+ * are reloaded, connection is opened again and checked with new margins.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Service
+@Slf4j
+public class FxReplicationService implements FxPriceUpdateListener {
+
+	@Autowired
+	FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	FxReplicationProperties fxReplicationProperties;
+
+	@Autowired
+	FxPriceMarginCalculatorService fxPriceMarginCalculatorService;
+
+	private final List<Peer> peers = new CopyOnWriteArrayList<>();
+
+	private final Consumer<FxPrice> receivedPriceHandler = this::onReceivedPrice;
+
+	// written by receiver thread only
+	private volatile long receivedCount;
+	private volatile int inboundCount;
+	private volatile long rejectedCount;
+
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+	private Thread receiverThread;
+	private volatile boolean running;
+
+	@PostConstruct
+	void start() throws IOException {
+		if (!fxReplicationProperties.isEnabled()) {
+			return;
+		}
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.bind(new InetSocketAddress(fxReplicationProperties.getBindAddress(), fxReplicationProperties.getPort()));
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		running = true;
+		receiverThread = new Thread(this::receiveLoop, "fx-replication-receiver");
+		receiverThread.setDaemon(true);
+		receiverThread.start();
+		fxPriceStoreService.addUpdateListener(this);
+		for (String address : fxReplicationProperties.getPeers()) {
+			addPeer(address);
+		}
+		log.info("Replication listening on {} with {} peers.", serverChannel.getLocalAddress(), peers.size());
+	}
+
+	@PreDestroy
+	void stop() {
+		if (selector == null) {
+			return;
+		}
+		fxPriceStoreService.removeUpdateListener(this);
+		running = false;
+		for (Peer peer : peers) {
+			peer.stop();
+		}
+		selector.wakeup();
+		try {
+			receiverThread.join(1000);
+			for (SelectionKey key : selector.keys()) {
+				key.channel().close();
+			}
+			selector.close();
+		} catch (IOException | InterruptedException exc) {
+			log.warn("Replication stopped with problem: {}", exc.toString());
+		}
+	}
+
+	/**
+	 * @return port receiving peer connections or -1 if replication is not started
+	 */
+	public int getLocalPort() {
+		return serverChannel == null ? -1 : serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * @return replication counters, empty if replication is not started
+	 */
+	public Optional<FxReplicationStats> getStats() {
+		if (serverChannel == null) {
+			return Optional.empty();
+		}
+		int connectedPeers = 0;
+		long sentPrices = 0;
+		long snapshots = 0;
+		for (Peer peer : peers) {
+			connectedPeers += peer.connected ? 1 : 0;
+			sentPrices += peer.sentCount;
+			snapshots += peer.snapshotCount;
+		}
+		return Optional.of(new FxReplicationStats(peers.size(), connectedPeers, inboundCount, sentPrices,
+				receivedCount, snapshots, rejectedCount));
+	}
+
+	/**
+	 * Starts sending accepted prices to peer
+	 *
+	 * @param address - peer address as host:port
+	 */
+	void addPeer(String address) {
+		int separator = address.lastIndexOf(':');
+		if (separator <= 0) {
+			throw new IllegalArgumentException("Replication peer address host:port expected: " + address);
+		}
+		Peer peer = new Peer(InetSocketAddress.createUnresolved(address.substring(0, separator).trim(),
+				Integer.parseInt(address.substring(separator + 1).trim())));
+		peers.add(peer);
+		peer.start();
+	}
+
+	@Override
+	public void onFxPriceUpdated(FxPrice fxPrice) {
+		// price received from peer has been sent to all peers by its origin
+		if (Thread.currentThread() == receiverThread) {
+			return;
+		}
+		for (Peer peer : peers) {
+			peer.offer(fxPrice);
+		}
+	}
+
+	private void onReceivedPrice(FxPrice fxPrice) {
+		receivedCount++;
+		fxPriceStoreService.updateFxPrice(fxPrice);
+	}
+
+	private void receiveLoop() {
+		try {
+			while (running) {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					} else if (key.isReadable()) {
+						read(key);
+					}
+				}
+			}
+		} catch (IOException | ClosedSelectorException exc) {
+			if (running) {
+				log.error("Replication receiver failed: {}", exc.toString());
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.register(selector, SelectionKey.OP_READ, new Inbound(ByteBuffer.allocateDirect(fxReplicationProperties.getBufferSize())));
+		inboundCount++;
+		log.info("Replication connection from peer {}", channel.getRemoteAddress());
+	}
+
+	private void read(SelectionKey key) {
+		SocketChannel channel = (SocketChannel) key.channel();
+		Inbound inbound = (Inbound) key.attachment();
+		ByteBuffer buffer = inbound.buffer;
+		try {
+			int read = channel.read(buffer);
+			if (read > 0) {
+				buffer.flip();
+				if (!inbound.handshaken) {
+					if (!FxReplicationBatch.hasHandshake(buffer)) {
+						buffer.compact();
+						return;
+					}
+					inbound.fingerprint = FxReplicationBatch.readHandshake(buffer);
+					inbound.handshaken = true;
+					if (inbound.fingerprint != fxPriceMarginCalculatorService.getStoredMarginsFingerprint()) {
+						log.error("Replication peer {} rejected - its margin mode or pair margins differ from ours.",
+								channel.getRemoteAddress());
+						rejectedCount++;
+						close(key, channel);
+						return;
+					}
+				}
+				if (inbound.fingerprint != fxPriceMarginCalculatorService.getStoredMarginsFingerprint()) {
+					// peer connects again and is checked with our new margins
+					log.warn("Replication connection of peer {} closed - margins have been reloaded.",
+							channel.getRemoteAddress());
+					close(key, channel);
+					return;
+				}
+				FxReplicationBatch.decode(buffer, receivedPriceHandler);
+				buffer.compact();
+			} else if (read < 0) {
+				close(key, channel);
+			}
+		} catch (IOException | RuntimeException exc) {
+			log.warn("Replication connection of peer closed: {}", exc.toString());
+			close(key, channel);
+		}
+	}
+
+	private void close(SelectionKey key, SocketChannel channel) {
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException ioe) {
+			// connection is dropped anyway
+		}
+		inboundCount--;
+	}
+
+	/**
+	 * Connection of peer sending to this instance
+	 */
+	private static final class Inbound {
+
+		private final ByteBuffer buffer;
+		private boolean handshaken;
+		private long fingerprint;
+
+		Inbound(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+	}
+
+	/**
+	 * Connection to one peer with its queue of accepted prices and sender thread
+	 */
+	private final class Peer implements Runnable {
+
+		private final InetSocketAddress address;
+
+		// prices waiting for sender - queued only while peer is connected
+		private final Queue<FxPrice> pendingPrices = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger pendingCount = new AtomicInteger();
+		private final AtomicBoolean senderWakeUp = new AtomicBoolean(false);
+		private volatile boolean connected;
+		private volatile boolean snapshotNeeded;
+
+		// written by sender thread only
+		private volatile long sentCount;
+		private volatile long snapshotCount;
+
+		private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(fxReplicationProperties.getBufferSize());
+		private int batchStart;
+		private Thread sender;
+
+		Peer(InetSocketAddress address) {
+			this.address = address;
+		}
+
+		void start() {
+			sender = new Thread(this, "fx-replication-" + address.getHostString() + ":" + address.getPort());
+			sender.setDaemon(true);
+			sender.start();
+		}
+
+		void stop() {
+			sender.interrupt();
+			try {
+				sender.join(1000);
+			} catch (InterruptedException exc) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		void offer(FxPrice fxPrice) {
+			if (!connected) {
+				// snapshot after connect has it
+				return;
+			}
+			if (pendingCount.incrementAndGet() > fxReplicationProperties.getMaxPendingPrices()) {
+				pendingCount.decrementAndGet();
+				snapshotNeeded = true;
+			} else {
+				pendingPrices.offer(fxPrice);
+			}
+			if (senderWakeUp.compareAndSet(false, true)) {
+				LockSupport.unpark(sender);
+			}
+		}
+
+		@Override
+		public void run() {
+			long reconnectNanos = fxReplicationProperties.getReconnectInterval().toNanos();
+			while (running) {
+				try (SocketChannel channel = SocketChannel.open()) {
+					channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+					channel.connect(new InetSocketAddress(address.getHostString(), address.getPort()));
+					log.info("Replication to peer {} connected.", address);
+					// prices accepted from now on are queued, older ones are in snapshot
+					snapshotNeeded = true;
+					connected = true;
+					sendLoop(channel);
+				} catch (IOException | RuntimeException exc) {
+					if (running) {
+						log.warn("Replication to peer {} failed: {}", address, exc.toString());
+					}
+				}
+				connected = false;
+				clearPending();
+				if (running) {
+					LockSupport.parkNanos(reconnectNanos);
+				}
+			}
+		}
+
+		private void sendLoop(SocketChannel channel) throws IOException {
+			long idleCheckNanos = fxReplicationProperties.getReconnectInterval().toNanos();
+			long fingerprint = fxPriceMarginCalculatorService.getStoredMarginsFingerprint();
+			sendBuffer.clear();
+			FxReplicationBatch.writeHandshake(sendBuffer, fingerprint);
+			sendBuffer.flip();
+			while (sendBuffer.hasRemaining()) {
+				channel.write(sendBuffer);
+			}
+			sendBuffer.clear();
+			batchStart = FxReplicationBatch.begin(sendBuffer);
+			long lastSend = System.nanoTime();
+			while (running) {
+				senderWakeUp.set(false);
+				if (fingerprint != fxPriceMarginCalculatorService.getStoredMarginsFingerprint()) {
+					// peer checks new margins at handshake and gets snapshot with them
+					throw new IOException("Margins have been reloaded - reconnecting");
+				}
+				if (snapshotNeeded) {
+					snapshotNeeded = false;
+					clearPending();
+					sendSnapshot(channel);
+				}
+				if (sendPending(channel) > 0) {
+					lastSend = System.nanoTime();
+				} else if (!snapshotNeeded) {
+					if (System.nanoTime() - lastSend >= idleCheckNanos) {
+						checkOpen(channel);
+						lastSend = System.nanoTime();
+					}
+					LockSupport.parkNanos(this, idleCheckNanos);
+				}
+			}
+		}
+
+		// closed connection is noticed by write - idle one is checked by read, peer never sends anything
+		private void checkOpen(SocketChannel channel) throws IOException {
+			channel.configureBlocking(false);
+			try {
+				if (channel.read(ByteBuffer.allocate(1)) < 0) {
+					throw new IOException("Connection closed by peer");
+				}
+			} finally {
+				channel.configureBlocking(true);
+			}
+		}
+
+		private void sendSnapshot(SocketChannel channel) throws IOException {
+			for (FxPrice fxPrice : fxPriceStoreService.getAllFxPrices()) {
+				append(channel, fxPrice);
+			}
+			flush(channel);
+			snapshotCount++;
+		}
+
+		private int sendPending(SocketChannel channel) throws IOException {
+			int sent = 0;
+			FxPrice fxPrice;
+			while ((fxPrice = pendingPrices.poll()) != null) {
+				pendingCount.decrementAndGet();
+				append(channel, fxPrice);
+				sent++;
+			}
+			if (sent > 0) {
+				flush(channel);
+			}
+			return sent;
+		}
+
+		private void append(SocketChannel channel, FxPrice fxPrice) throws IOException {
+			try {
+				if (!FxReplicationBatch.append(sendBuffer, fxPrice)) {
+					flush(channel);
+					if (!FxReplicationBatch.append(sendBuffer, fxPrice)) {
+						log.warn("Price does not fit into replication batch: {}", fxPrice);
+						return;
+					}
+				}
+				sentCount++;
+			} catch (IllegalArgumentException exc) {
+				log.warn("Price can't be replicated: {} - {}", fxPrice, exc.toString());
+			}
+		}
+
+		private void flush(SocketChannel channel) throws IOException {
+			if (FxReplicationBatch.end(sendBuffer, batchStart)) {
+				sendBuffer.flip();
+				while (sendBuffer.hasRemaining()) {
+					channel.write(sendBuffer);
+				}
+			}
+			sendBuffer.clear();
+			batchStart = FxReplicationBatch.begin(sendBuffer);
+		}
+
+		private void clearPending() {
+			while (pendingPrices.poll() != null) {
+				pendingCount.decrementAndGet();
+			}
+		}
+	}
+}
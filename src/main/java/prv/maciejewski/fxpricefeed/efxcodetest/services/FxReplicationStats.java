@@ -0,0 +1,18 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+/**
+ * Counters of price store replication
+ *
+ * @param peers            - configured peers
+ * @param connectedPeers   - peers with open connection
+ * @param inboundPeers     - open connections of peers sending to this instance
+ * @param sentPrices       - prices sent to peers, snapshots included
+ * @param receivedPrices   - prices received from peers
+ * @param snapshots        - snapshots sent after connect or after pending prices overflow
+ * @param rejectedPeers    - connections of peers rejected by handshake - other margins or protocol
+ *
+ * @author Mikolaj Maciejewski
+ */
+public record FxReplicationStats(int peers, int connectedPeers, int inboundPeers, long sentPrices,
+		long receivedPrices, long snapshots, long rejectedPeers) {
+}
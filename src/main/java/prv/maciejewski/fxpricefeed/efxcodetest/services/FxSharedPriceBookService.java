@@ -0,0 +1,86 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.book.FxPriceBookLayout;
+import prv.maciejewski.fxpricefeed.efxcodetest.book.FxSharedPriceBook;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxPriceBookProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.history.FxPriceHistoryRing;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxFixedPointPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPairSymbolRegistry;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+/**
+ * Service writing accepted prices to shared price book (FxSharedPriceBook) -
+ * slot of price is its pair id. Price is written on store thread: it is a
+ * memory write, page is written to file by OS.
+ *
+ * Prices are written as stored - with pair margin in EAGER mode, market prices
+ * in LAZY mode. Fixed-point prices are written without allocation.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Service
+@Slf4j
+public class FxSharedPriceBookService implements FxPriceUpdateListener {
+
+	@Autowired
+	FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	FxPriceBookProperties fxPriceBookProperties;
+
+	private FxSharedPriceBook priceBook;
+
+	@PostConstruct
+	void start() throws IOException {
+		if (!fxPriceBookProperties.isEnabled()) {
+			return;
+		}
+		priceBook = new FxSharedPriceBook(Path.of(fxPriceBookProperties.getFile()), fxPriceBookProperties.getSlots());
+		// prices stored before start, e.g. restored from journal
+		fxPriceStoreService.forEachFxPrice(this::onFxPriceUpdated);
+		fxPriceStoreService.addUpdateListener(this);
+		log.info("Price book {} opened with {} slots.", fxPriceBookProperties.getFile(), priceBook.getSlotCount());
+	}
+
+	@PreDestroy
+	void stop() throws IOException {
+		if (priceBook == null) {
+			return;
+		}
+		fxPriceStoreService.removeUpdateListener(this);
+		priceBook.close();
+	}
+
+	@Override
+	public void onFxPriceUpdated(FxPrice fxPrice) {
+		int pairId = FxPairSymbolRegistry.shared().idOf(fxPrice.getPairSymbol());
+		if (pairId < 0 || pairId >= priceBook.getSlotCount()
+				|| fxPrice.getPairSymbol().length() > FxPriceBookLayout.MAX_SYMBOL_LENGTH) {
+			return;
+		}
+		long epochNanos = FxPriceHistoryRing.toEpochNanos(fxPrice.getDateTime());
+		if (fxPrice instanceof FxFixedPointPrice fixedPointPrice) {
+			priceBook.write(pairId, fxPrice.getPairSymbol(), fixedPointPrice.getBidMantissa(),
+					fixedPointPrice.getPriceScale(), fixedPointPrice.getAskMantissa(), fixedPointPrice.getPriceScale(),
+					epochNanos);
+			return;
+		}
+		try {
+			priceBook.write(pairId, fxPrice.getPairSymbol(), fxPrice.getBidPrice().unscaledValue().longValueExact(),
+					fxPrice.getBidPrice().scale(), fxPrice.getAskPrice().unscaledValue().longValueExact(),
+					fxPrice.getAskPrice().scale(), epochNanos);
+		} catch (ArithmeticException exc) {
+			log.warn("Price does not fit into price book: {}", fxPrice);
+		}
+	}
+}
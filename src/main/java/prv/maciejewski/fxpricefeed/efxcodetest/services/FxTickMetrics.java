@@ -0,0 +1,194 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxMetricsProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.history.FxPriceHistoryRing;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPairSymbolRegistry;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxTickCounters;
+
+/**
+ * Micrometer metrics of tick processing, exposed by Actuator (also in
+ * Prometheus format on /actuator/prometheus):
+ *
+ * - fx.ticks.parsed, fx.ticks.rejected (by reason), fx.ticks.stale and
+ *   fx.ticks.accepted - counters read from FxTickCounters
+ * - fx.tick.stage - latency histogram of parse, margin and store stage
+ * - fx.tick.age - histogram of feed-to-publish age of accepted prices per pair,
+ *   difference between wall clock and price date time
+ *
+ * Recording does not allocate - counters are LongAdders, timers keep fixed
+ * histogram buckets and age timers are created once per pair. Counters count
+ * every tick. Latency is recorded only if enabled in FxMetricsProperties and
+ * only for random sample of ticks (latencySampleRate) - record to timer costs
+ * more than parsing of the tick, and sample gives the same distribution.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Service
+public class FxTickMetrics implements FxPriceUpdateListener {
+
+	final static String STAGE_TIMER = "fx.tick.stage";
+	final static String AGE_TIMER = "fx.tick.age";
+
+	// histogram buckets of stages - they take from hundreds of nanos to millis
+	// short fixed lists keep number of series low - age histogram is per pair
+	final static Duration[] STAGE_BUCKETS = { Duration.ofNanos(250), Duration.ofNanos(500), Duration.ofNanos(1000),
+			Duration.ofNanos(2500), Duration.ofNanos(5000), Duration.ofNanos(10_000), Duration.ofNanos(25_000),
+			Duration.ofNanos(100_000), Duration.ofMillis(1), Duration.ofMillis(10), Duration.ofMillis(100) };
+
+	// histogram buckets of price age
+	final static Duration[] AGE_BUCKETS = { Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofMillis(25),
+			Duration.ofMillis(100), Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofSeconds(5),
+			Duration.ofSeconds(30), Duration.ofMinutes(5) };
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Autowired
+	FxMetricsProperties fxMetricsProperties;
+
+	@Autowired
+	FxPriceStoreService fxPriceStoreService;
+
+	private boolean latencyEnabled;
+	private int latencySampleRate;
+
+	private Timer parseTimer;
+	private Timer marginTimer;
+	private Timer storeTimer;
+
+	// age timers by pair id from FxPairSymbolRegistry
+	private final AtomicReferenceArray<Timer> ageTimers = new AtomicReferenceArray<>(FxPairSymbolRegistry.MAX_PAIRS);
+
+	@PostConstruct
+	void start() {
+		FunctionCounter.builder("fx.ticks.parsed", this, metrics -> FxTickCounters.getParsedCount())
+				.description("Records given to parse").register(meterRegistry);
+		for (FxTickCounters.Reason reason : FxTickCounters.Reason.values()) {
+			FunctionCounter.builder("fx.ticks.rejected", reason, FxTickCounters::getRejectedCount)
+					.tag("reason", reason.getTag()).description("Rejected records").register(meterRegistry);
+		}
+		FunctionCounter.builder("fx.ticks.stale", this, metrics -> FxTickCounters.getStaleCount())
+				.description("Prices ignored as older than stored ones").register(meterRegistry);
+		FunctionCounter.builder("fx.ticks.accepted", this, metrics -> FxTickCounters.getAcceptedCount())
+				.description("Prices accepted by store").register(meterRegistry);
+
+		parseTimer = stageTimer("parse");
+		marginTimer = stageTimer("margin");
+		storeTimer = stageTimer("store");
+
+		latencyEnabled = fxMetricsProperties.isLatencyEnabled();
+		latencySampleRate = Math.max(fxMetricsProperties.getLatencySampleRate(), 1);
+		if (latencyEnabled) {
+			fxPriceStoreService.addUpdateListener(this);
+		}
+	}
+
+	@PreDestroy
+	void stop() {
+		fxPriceStoreService.removeUpdateListener(this);
+	}
+
+	/**
+	 * Starts timing of stage - only sampled ticks are timed
+	 *
+	 * @return start time for record methods, 0 if latency is not recorded
+	 */
+	public long startNanos() {
+		return latencyEnabled && sampled() ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records time of parse stage
+	 *
+	 * @param startNanos - result of startNanos()
+	 */
+	public void recordParse(long startNanos) {
+		record(parseTimer, startNanos);
+	}
+
+	/**
+	 * Records time of margin stage
+	 *
+	 * @param startNanos - result of startNanos()
+	 */
+	public void recordMargin(long startNanos) {
+		record(marginTimer, startNanos);
+	}
+
+	/**
+	 * Records time of store stage
+	 *
+	 * @param startNanos - result of startNanos()
+	 */
+	public void recordStore(long startNanos) {
+		record(storeTimer, startNanos);
+	}
+
+	@Override
+	public void onFxPriceUpdated(FxPrice fxPrice) {
+		if (!sampled()) {
+			return;
+		}
+		// accepted price has its pair registered by store already
+		int pairId = FxPairSymbolRegistry.shared().idOf(fxPrice.getPairSymbol());
+		if (pairId == FxPairSymbolRegistry.UNKNOWN_ID) {
+			return;
+		}
+		Timer ageTimer = ageTimers.get(pairId);
+		if (ageTimer == null) {
+			ageTimers.compareAndSet(pairId, null, Timer.builder(AGE_TIMER).tag("pair", fxPrice.getPairSymbol())
+					.description("Age of accepted prices").serviceLevelObjectives(AGE_BUCKETS)
+					.register(meterRegistry));
+			ageTimer = ageTimers.get(pairId);
+		}
+		// price of future date or out of range has negative age - timer ignores it
+		ageTimer.record(ageNanos(fxPrice.getDateTime(), System.currentTimeMillis()), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param dateTime   - UTC date time of price
+	 * @param nowMillis  - current epoch millis
+	 * @return age of price in nanos, negative for price of future date and for
+	 *         price whose age does not fit into long nanos
+	 */
+	static long ageNanos(LocalDateTime dateTime, long nowMillis) {
+		long priceNanos = FxPriceHistoryRing.toEpochNanos(dateTime);
+		long nowNanos = nowMillis * 1_000_000L;
+		// clamped date time - age would overflow
+		if (priceNanos == Long.MAX_VALUE || priceNanos <= nowNanos - Long.MAX_VALUE) {
+			return -1;
+		}
+		return nowNanos - priceNanos;
+	}
+
+	private Timer stageTimer(String stage) {
+		return Timer.builder(STAGE_TIMER).tag("stage", stage).description("Latency of tick processing stage")
+				.serviceLevelObjectives(STAGE_BUCKETS).register(meterRegistry);
+	}
+
+	private boolean sampled() {
+		return latencySampleRate == 1 || ThreadLocalRandom.current().nextInt(latencySampleRate) == 0;
+	}
+
+	private static void record(Timer timer, long startNanos) {
+		if (startNanos != 0) {
+			timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+}
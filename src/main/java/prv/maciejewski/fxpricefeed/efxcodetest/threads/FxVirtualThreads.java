@@ -0,0 +1,97 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.threads;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads of Java 21 runtime from code compiled for Java
+ * 17. Methods are looked up once with reflection - when application runs on
+ * older Java isAvailable() is false and factories can't be created.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+public final class FxVirtualThreads {
+
+	// Thread.ofVirtual(), Thread.Builder.name(String, long), Thread.Builder.factory()
+	private static final Method OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_FACTORY;
+	// Executors.newThreadPerTaskExecutor(ThreadFactory)
+	private static final Method THREAD_PER_TASK_EXECUTOR;
+
+	static {
+		Method ofVirtual = null;
+		Method builderName = null;
+		Method builderFactory = null;
+		Method threadPerTaskExecutor = null;
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			builderName = builderClass.getMethod("name", String.class, long.class);
+			builderFactory = builderClass.getMethod("factory");
+			threadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+		} catch (ReflectiveOperationException exc) {
+			ofVirtual = null; // runtime older than Java 21
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_FACTORY = builderFactory;
+		THREAD_PER_TASK_EXECUTOR = threadPerTaskExecutor;
+	}
+
+	private FxVirtualThreads() {
+	}
+
+	/**
+	 * @return true if runtime supports virtual threads
+	 */
+	public static boolean isAvailable() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Creates factory of virtual threads named with given prefix and counter
+	 *
+	 * @param namePrefix - prefix of thread names, e.g. "fx-http-"
+	 * @return virtual thread factory
+	 *
+	 * @throws UnsupportedOperationException - when runtime has no virtual threads
+	 */
+	public static ThreadFactory factory(String namePrefix) {
+		checkAvailable();
+		try {
+			Object builder = OF_VIRTUAL.invoke(null);
+			builder = BUILDER_NAME.invoke(builder, namePrefix, 0L);
+			return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+		} catch (ReflectiveOperationException exc) {
+			throw new IllegalStateException("Virtual thread factory can't be created", exc);
+		}
+	}
+
+	/**
+	 * Creates executor which starts new virtual thread for every task
+	 *
+	 * @param namePrefix - prefix of thread names
+	 * @return executor - to be shut down by caller
+	 *
+	 * @throws UnsupportedOperationException - when runtime has no virtual threads
+	 */
+	public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+		ThreadFactory factory = factory(namePrefix);
+		try {
+			return (ExecutorService) THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+		} catch (ReflectiveOperationException exc) {
+			throw new IllegalStateException("Virtual thread executor can't be created", exc);
+		}
+	}
+
+	private static void checkAvailable() {
+		if (!isAvailable()) {
+			throw new UnsupportedOperationException(
+					"Virtual threads need Java 21 runtime, current one is " + Runtime.version());
+		}
+	}
+}
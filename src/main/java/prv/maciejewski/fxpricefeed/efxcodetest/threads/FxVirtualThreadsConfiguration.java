@@ -0,0 +1,64 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.threads;
+
+import java.util.concurrent.ExecutorService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxThreadsProperties;
+
+/**
+ * Switches Tomcat request handling to virtual threads when fx.threads.virtual
+ * is enabled - every request gets its own virtual thread instead of thread
+ * from limited pool, so slow feed clients holding PUT connections open do not
+ * block other requests. On runtime without virtual threads warning is logged
+ * and platform thread pool is kept.
+ *
+ * On Java 21 Tomcat blocking read of request body waits with Object.wait,
+ * which pins virtual thread to its carrier - carrier pool grows up to
+ * jdk.virtualThreadScheduler.maxPoolSize (256 by default), which limits number
+ * of requests waiting for body at once.
+ *
+ * @author Mikolaj Maciejewski
+ *
+ */
+@Configuration
+@Slf4j
+public class FxVirtualThreadsConfiguration {
+
+	final static String HTTP_THREAD_PREFIX = "fx-http-";
+
+	@Autowired
+	FxThreadsProperties fxThreadsProperties;
+
+	// executor given to Tomcat - Tomcat does not stop executors it has not created
+	private ExecutorService requestExecutor;
+
+	@Bean
+	TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+		return protocolHandler -> {
+			if (!fxThreadsProperties.isVirtual()) {
+				return;
+			}
+			if (!FxVirtualThreads.isAvailable()) {
+				log.warn("Virtual threads are enabled but runtime {} has no virtual threads - platform thread pool is used.",
+						Runtime.version());
+				return;
+			}
+			requestExecutor = FxVirtualThreads.newThreadPerTaskExecutor(HTTP_THREAD_PREFIX);
+			protocolHandler.setExecutor(requestExecutor);
+			log.info("Requests are handled on virtual threads.");
+		};
+	}
+
+	@PreDestroy
+	void stop() {
+		if (requestExecutor != null) {
+			requestExecutor.shutdown();
+		}
+	}
+}
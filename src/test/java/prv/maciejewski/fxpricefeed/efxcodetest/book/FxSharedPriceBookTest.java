@@ -0,0 +1,182 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.book;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Testing shared memory price book.")
+public class FxSharedPriceBookTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testWriteAndRead() throws Exception {
+		Path file = directory.resolve("book.dat");
+		try (FxSharedPriceBook book = new FxSharedPriceBook(file, 16);
+				FxSharedPriceBookReader reader = FxSharedPriceBookReader.open(file)) {
+			FxSharedPriceBookReader.Quote quote = new FxSharedPriceBookReader.Quote();
+			assertEquals(16, reader.getSlotCount());
+			assertFalse(reader.read(3, quote));
+			assertEquals(-1, reader.slotOf("EUR/JPY"));
+
+			long epochNanos = 1_591_012_862_001_000_000L;
+			assertTrue(book.write(3, "EUR/JPY", 119_610, 3, 119_910, 3, epochNanos));
+			assertEquals(3, reader.slotOf("EUR/JPY"));
+			assertEquals("EUR/JPY", reader.symbolOf(3));
+			assertNull(reader.symbolOf(4));
+			assertTrue(reader.read(3, quote));
+			assertEquals(new BigDecimal("119.610"), quote.getBidPrice());
+			assertEquals(new BigDecimal("119.910"), quote.getAskPrice());
+			assertEquals(LocalDateTime.of(2020, 6, 1, 12, 1, 2, 1_000_000), quote.getDateTime());
+			assertEquals(2, quote.getSequence());
+
+			// older price is not written
+			assertFalse(book.write(3, "EUR/JPY", 1, 3, 2, 3, epochNanos - 1));
+			assertTrue(reader.read(3, quote));
+			assertEquals(119_610, quote.getBidMantissa());
+			assertEquals(2, quote.getSequence());
+
+			assertTrue(book.write(3, "EUR/JPY", 119_620, 3, 119_920, 3, epochNanos + 1));
+			assertTrue(reader.read(3, quote));
+			assertEquals(119_620, quote.getBidMantissa());
+			assertEquals(4, quote.getSequence());
+
+			assertThrows(IndexOutOfBoundsException.class, () -> book.write(16, "EUR/JPY", 1, 3, 2, 3, epochNanos));
+			assertThrows(IllegalArgumentException.class, () -> book.write(4, "X".repeat(30), 1, 3, 2, 3, epochNanos));
+		}
+	}
+
+	@Test
+	void testBookClearedWhenOpened() throws Exception {
+		Path file = directory.resolve("book.dat");
+		try (FxSharedPriceBook book = new FxSharedPriceBook(file, 8)) {
+			book.write(1, "EUR/USD", 110_000, 5, 110_020, 5, 1);
+		}
+		try (FxSharedPriceBook book = new FxSharedPriceBook(file, 8);
+				FxSharedPriceBookReader reader = FxSharedPriceBookReader.open(file)) {
+			assertFalse(reader.read(1, new FxSharedPriceBookReader.Quote()));
+		}
+
+		// stray file at book path is replaced
+		Files.writeString(file, "x".repeat(128));
+		try (FxSharedPriceBook book = new FxSharedPriceBook(file, 8)) {
+			assertEquals(1, book.getGeneration());
+		}
+
+		Path notBook = Files.writeString(directory.resolve("other.dat"), "x".repeat(128));
+		assertThrows(IOException.class, () -> FxSharedPriceBookReader.open(notBook));
+	}
+
+	@Test
+	void testReplacedBookReportedStale() throws Exception {
+		Path file = directory.resolve("book.dat");
+		FxSharedPriceBookReader.Quote quote = new FxSharedPriceBookReader.Quote();
+		try (FxSharedPriceBook book = new FxSharedPriceBook(file, 8);
+				FxSharedPriceBookReader reader = FxSharedPriceBookReader.open(file)) {
+			assertTrue(book.write(1, "EUR/USD", 110_000, 5, 110_020, 5, 1));
+			assertTrue(reader.read(1, quote));
+			assertEquals(1, reader.getGeneration());
+
+			// writer restarted - possibly with different slots, old book is kept mapped by reader
+			try (FxSharedPriceBook restarted = new FxSharedPriceBook(file, 4);
+					FxSharedPriceBookReader reopened = FxSharedPriceBookReader.open(file)) {
+				assertTrue(restarted.write(1, "GBP/USD", 125_000, 5, 125_020, 5, 2));
+				assertTrue(reader.isReplaced());
+				assertFalse(reader.read(1, quote));
+				assertTrue(quote.isStale());
+
+				assertEquals(2, reopened.getGeneration());
+				assertEquals(4, reopened.getSlotCount());
+				assertFalse(reopened.isReplaced());
+				assertTrue(reopened.read(1, quote));
+				assertEquals("GBP/USD", reopened.symbolOf(1));
+			}
+		}
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(1, files.count());
+		}
+	}
+
+	@Test
+	void testSlotLeftInWriteReportedStale() throws Exception {
+		Path file = directory.resolve("book.dat");
+		try (FxSharedPriceBook book = new FxSharedPriceBook(file, 4);
+				FxSharedPriceBookReader reader = FxSharedPriceBookReader.open(file, Duration.ofMillis(5));
+				FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			assertTrue(book.write(1, "EUR/USD", 110_000, 5, 110_020, 5, 1));
+			FxSharedPriceBookReader.Quote quote = new FxSharedPriceBookReader.Quote();
+			assertTrue(reader.read(1, quote));
+			assertFalse(quote.isStale());
+
+			// writer died after it made sequence odd
+			ByteBuffer oddSequence = ByteBuffer.allocate(Long.BYTES).order(FxPriceBookLayout.BYTE_ORDER).putLong(0, 3);
+			channel.write(oddSequence, FxPriceBookLayout.slotOffset(1) + FxPriceBookLayout.SEQUENCE_OFFSET);
+			assertFalse(reader.read(1, quote));
+			assertTrue(quote.isStale());
+
+			// empty slot is not stale
+			assertFalse(reader.read(2, quote));
+			assertFalse(quote.isStale());
+		}
+	}
+
+	@Test
+	void testNoTornReads() throws Exception {
+		Path file = directory.resolve("book.dat");
+		try (FxSharedPriceBook book = new FxSharedPriceBook(file, 4);
+				FxSharedPriceBookReader reader = FxSharedPriceBookReader.open(file)) {
+			AtomicBoolean running = new AtomicBoolean(true);
+			// every written price has ask = 3 * bid, epoch = bid and scales = bid % 8 - any mix of two writes breaks it
+			Thread writer = new Thread(() -> {
+				for (long i = 1; running.get(); i++) {
+					book.write(2, "EUR/USD", i, (int) (i % 8), 3 * i, (int) (i % 8), i);
+				}
+			});
+			writer.start();
+			FxSharedPriceBookReader.Quote quote = new FxSharedPriceBookReader.Quote();
+			long torn = 0;
+			long lastBid = 0;
+			long reads = 0;
+			long deadline = System.nanoTime() + 500_000_000L;
+			try {
+				while (System.nanoTime() < deadline) {
+					if (!reader.read(2, quote)) {
+						continue;
+					}
+					long bid = quote.getBidMantissa();
+					if (quote.getAskMantissa() != 3 * bid || quote.getEpochNanos() != bid
+							|| quote.getBidScale() != bid % 8 || quote.getAskScale() != bid % 8 || bid < lastBid) {
+						torn++;
+					}
+					lastBid = bid;
+					reads++;
+				}
+			} finally {
+				running.set(false);
+				writer.join();
+			}
+			assertEquals(0, torn);
+			assertTrue(reads > 0);
+			assertTrue(lastBid > 0);
+		}
+	}
+}
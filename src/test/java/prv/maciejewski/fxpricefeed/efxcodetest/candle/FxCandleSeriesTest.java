@@ -0,0 +1,118 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.candle;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.history.FxPriceHistoryRing;
+
+@DisplayName("Testing incremental OHLC candle series.")
+public class FxCandleSeriesTest {
+
+	final static long SECOND = 1_000_000_000L;
+
+	@Test
+	void testBarsPerInterval() {
+		FxCandleSeries series = new FxCandleSeries("EUR/USD", List.of(Duration.ofSeconds(1), Duration.ofMinutes(1)), 10, 5);
+		LocalDateTime startTime = LocalDateTime.of(2020, 6, 1, 12, 1);
+		long start = FxPriceHistoryRing.toEpochNanos(startTime);
+		series.add(start, 110000, 110010);
+		series.add(start + SECOND / 2, 110050, 110060);
+		series.add(start + SECOND / 2, 109990, 110000);
+		series.add(start + 2 * SECOND, 110020, 110030); // no tick in second 1 - no bar
+
+		List<FxCandle> seconds = series.candles(0, 10);
+		assertEquals(2, seconds.size());
+		FxCandle first = seconds.get(0);
+		assertEquals("EUR/USD", first.pairSymbol());
+		assertEquals("PT1S", first.interval());
+		assertEquals(new BigDecimal("1.10000"), first.openBid());
+		assertEquals(new BigDecimal("1.10050"), first.highBid());
+		assertEquals(new BigDecimal("1.09990"), first.lowBid());
+		assertEquals(new BigDecimal("1.09990"), first.closeBid());
+		assertEquals(new BigDecimal("1.10060"), first.highAsk());
+		assertEquals(3, first.tickCount());
+		assertEquals(startTime, first.start());
+		assertEquals(first.start().plusSeconds(2), seconds.get(1).start());
+
+		List<FxCandle> minutes = series.candles(1, 10);
+		assertEquals(1, minutes.size());
+		assertEquals(4, minutes.get(0).tickCount());
+		assertEquals(new BigDecimal("1.10020"), minutes.get(0).closeBid());
+	}
+
+	@Test
+	void testOldestBarsAreOverwrittenAndOlderTicksIgnored() {
+		FxCandleSeries series = new FxCandleSeries("EUR/USD", List.of(Duration.ofSeconds(1)), 3, 0);
+		for (long second = 0; second < 10; second++) {
+			assertTrue(series.add(second * SECOND, second, second));
+		}
+		assertFalse(series.add(6 * SECOND, 100, 100)); // older than all kept bars
+		assertTrue(series.add(9 * SECOND, 90, 90)); // the same timestamp is accepted
+		assertEquals(1, series.getIgnoredTicks());
+
+		List<FxCandle> candles = series.candles(0, 10);
+		assertThat(candles).extracting(FxCandle::openBid)
+				.containsExactly(BigDecimal.valueOf(7), BigDecimal.valueOf(8), BigDecimal.valueOf(9));
+		assertEquals(BigDecimal.valueOf(90), candles.get(2).highBid());
+		assertEquals(2, candles.get(2).tickCount());
+		assertEquals(2, series.candles(0, 2).size());
+	}
+
+	@Test
+	void testLateTicksArePutIntoTheirBars() {
+		FxCandleSeries series = new FxCandleSeries("EUR/USD", List.of(Duration.ofSeconds(1)), 4, 0);
+		series.add(SECOND + SECOND / 2, 15, 15);
+		series.add(3 * SECOND, 30, 30);
+		// listener calls of concurrent updates out of order
+		assertTrue(series.add(SECOND + SECOND / 4, 12, 12)); // new open of bar 1
+		assertTrue(series.add(SECOND + SECOND / 2 + 1, 16, 16)); // new close of bar 1
+		assertTrue(series.add(2 * SECOND, 20, 20)); // missing bar 2 is inserted
+		assertTrue(series.add(0, 1, 1)); // ring not full - inserted as oldest bar
+		assertEquals(0, series.getIgnoredTicks());
+
+		List<FxCandle> candles = series.candles(0, 10);
+		assertThat(candles).extracting(FxCandle::openBid).containsExactly(BigDecimal.valueOf(1),
+				BigDecimal.valueOf(12), BigDecimal.valueOf(20), BigDecimal.valueOf(30));
+		FxCandle second = candles.get(1);
+		assertEquals(BigDecimal.valueOf(16), second.closeBid());
+		assertEquals(BigDecimal.valueOf(16), second.highBid());
+		assertEquals(BigDecimal.valueOf(12), second.lowBid());
+		assertEquals(3, second.tickCount());
+
+		// full ring - bar inserted in the middle drops the oldest one
+		series.add(5 * SECOND, 50, 50);
+		assertTrue(series.add(4 * SECOND, 40, 40));
+		assertThat(series.candles(0, 10)).extracting(FxCandle::openBid).containsExactly(BigDecimal.valueOf(20),
+				BigDecimal.valueOf(30), BigDecimal.valueOf(40), BigDecimal.valueOf(50));
+	}
+
+	@Test
+	void testAddDoesNotAllocate() {
+		FxCandleSeries series = new FxCandleSeries("EUR/USD", List.of(Duration.ofSeconds(1), Duration.ofMinutes(1)), 100, 5);
+		ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		for (int round = 0; round < 3; round++) { // warm up before last round
+			long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+			for (long tick = 0; tick < 100_000; tick++) {
+				series.add((round * 100_000L + tick) * SECOND / 100, 110000 + tick % 50, 110010 + tick % 50);
+			}
+			long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+			if (round == 2) {
+				assertThat(allocated).isLessThan(1024);
+			}
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.compression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testing content encodings of feed bodies and responses.")
+public class FxContentEncodingTest {
+
+	final static List<FxContentEncoding> OFFERED = List.of(FxContentEncoding.LZ4, FxContentEncoding.GZIP);
+
+	@Test
+	void testEncodedContentDecodedWhileRead() throws IOException {
+		StringBuilder feed = new StringBuilder();
+		for (int i = 0; i < 20_000; i++) {
+			feed.append(i).append(", EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\n");
+		}
+		byte[] content = feed.toString().getBytes(StandardCharsets.UTF_8);
+
+		for (FxContentEncoding encoding : FxContentEncoding.values()) {
+			byte[] encoded = encoding.encode(content);
+			if (encoding != FxContentEncoding.IDENTITY) {
+				assertTrue(encoded.length < content.length / 4, encoding + " " + encoded.length);
+			}
+			// read in small pieces - content is decoded block by block
+			try (InputStream decoding = encoding.decoding(new ByteArrayInputStream(encoded))) {
+				byte[] decoded = new byte[content.length];
+				int position = 0;
+				int read;
+				while ((read = decoding.read(decoded, position, Math.min(1000, decoded.length - position))) > 0) {
+					position += read;
+				}
+				assertEquals(content.length, position, encoding.getToken());
+				assertEquals(-1, decoding.read());
+				assertArrayEquals(content, decoded, encoding.getToken());
+			}
+		}
+	}
+
+	@Test
+	void testDecodingOfContentEncodingHeader() throws IOException {
+		byte[] content = "109, GBP/USD, 1.2499,1.2561,01-06-2020 12:01:02:100".getBytes(StandardCharsets.UTF_8);
+		// gzip applied first, lz4 last - lz4 is decoded first
+		byte[] encoded = FxContentEncoding.LZ4.encode(FxContentEncoding.GZIP.encode(content));
+
+		assertArrayEquals(content, FxContentEncoding.decoding("gzip, LZ4", OFFERED, new ByteArrayInputStream(encoded))
+				.readAllBytes());
+		assertArrayEquals(content, FxContentEncoding.decoding(null, OFFERED, new ByteArrayInputStream(content))
+				.readAllBytes());
+		assertArrayEquals(content, FxContentEncoding.decoding("identity", List.of(), new ByteArrayInputStream(content))
+				.readAllBytes());
+
+		assertThrows(IllegalArgumentException.class,
+				() -> FxContentEncoding.decoding("br", OFFERED, new ByteArrayInputStream(content)));
+		assertThrows(IllegalArgumentException.class,
+				() -> FxContentEncoding.decoding("lz4", List.of(FxContentEncoding.GZIP), new ByteArrayInputStream(encoded)));
+	}
+
+	@Test
+	void testNegotiation() {
+		assertEquals(FxContentEncoding.IDENTITY, FxContentEncoding.negotiate(null, OFFERED));
+		assertEquals(FxContentEncoding.IDENTITY, FxContentEncoding.negotiate("br, deflate", OFFERED));
+		assertEquals(FxContentEncoding.GZIP, FxContentEncoding.negotiate("gzip, deflate, br", OFFERED));
+		// server preference between equal quality values
+		assertEquals(FxContentEncoding.LZ4, FxContentEncoding.negotiate("gzip, lz4", OFFERED));
+		assertEquals(FxContentEncoding.LZ4, FxContentEncoding.negotiate("*", OFFERED));
+		assertEquals(FxContentEncoding.GZIP, FxContentEncoding.negotiate("lz4;q=0.5, GZIP", OFFERED));
+		assertEquals(FxContentEncoding.GZIP, FxContentEncoding.negotiate("lz4;q=0, *;q=0.1", OFFERED));
+		assertEquals(FxContentEncoding.IDENTITY, FxContentEncoding.negotiate("gzip", List.of()));
+	}
+}
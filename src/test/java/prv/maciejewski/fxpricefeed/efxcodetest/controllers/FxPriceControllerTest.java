@@ -5,7 +5,10 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import org.junit.jupiter.api.DisplayName;
@@ -15,16 +18,21 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import prv.maciejewski.fxpricefeed.efxcodetest.EfxCodeTestApplication;
+import prv.maciejewski.fxpricefeed.efxcodetest.compression.FxContentEncoding;
 import prv.maciejewski.fxpricefeed.efxcodetest.dto.FxPriceDto;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxCandleService;
 import prv.maciejewski.fxpricefeed.efxcodetest.services.FxDataFeedService;
+import prv.maciejewski.fxpricefeed.efxcodetest.services.FxPriceHistoryService;
 import prv.maciejewski.fxpricefeed.efxcodetest.services.FxPriceStoreService;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.hamcrest.Matchers.*;
+import static org.assertj.core.api.Assertions.assertThat;
 @DisplayName("Testing FX prices controller module")
 @AutoConfigureMockMvc
 @SpringBootTest(classes = EfxCodeTestApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -39,6 +47,12 @@ public class FxPriceControllerTest {
 	@Autowired
 	private FxPriceStoreService fxDaFxPriceStoreService;
 
+	@Autowired
+	private FxPriceHistoryService fxPriceHistoryService;
+
+	@Autowired
+	private FxCandleService fxCandleService;
+
 	@Test
 	void testGetController() throws Exception {
 		
@@ -84,4 +98,279 @@ public class FxPriceControllerTest {
 				.andExpect(jsonPath("$.dateTime",  is("2020-06-01T12:01:02.11")));
 	}
 
+	@Test
+	void testPutStreamController() throws Exception {
+		fxDaFxPriceStoreService.removeAll();
+
+		String testCSV = "106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\r\n"+
+						"110, EUR/JPY, 119.61,119.91,01-06-2020 12:01:02:110\r\n";
+
+		mockMvc.perform(put("/fx/price/stream")
+                .contentType(MediaType.TEXT_PLAIN)
+                .content(testCSV))
+                .andExpect(status().isOk());
+
+		mockMvc.perform(get("/fx/price/EUR/JPY"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.pairSymbol",  is("EUR/JPY")))
+				.andExpect(jsonPath("$.askPrice",  is((new BigDecimal("120.02991")).doubleValue())));
+	}
+
+	@Test
+	void testPutCompressedController() throws Exception {
+		fxDaFxPriceStoreService.removeAll();
+
+		byte[] testCSV = ("106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\n"+
+						"110, EUR/JPY, 119.61,119.91,01-06-2020 12:01:02:110\n").getBytes(StandardCharsets.UTF_8);
+
+		mockMvc.perform(put("/fx/price")
+                .contentType(MediaType.TEXT_PLAIN)
+                .header("Content-Encoding", "gzip")
+                .content(FxContentEncoding.GZIP.encode(testCSV)))
+                .andExpect(status().isOk());
+
+		mockMvc.perform(get("/fx/price/EUR/JPY"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.askPrice",  is((new BigDecimal("120.02991")).doubleValue())));
+
+		mockMvc.perform(put("/fx/price/stream")
+                .contentType(MediaType.TEXT_PLAIN)
+                .header("Content-Encoding", "lz4")
+                .content(FxContentEncoding.LZ4.encode("111, EUR/JPY, 119.62,119.92,01-06-2020 12:01:03:110".getBytes(StandardCharsets.UTF_8))))
+                .andExpect(status().isOk());
+
+		mockMvc.perform(get("/fx/price/EUR/JPY"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.dateTime",  is("2020-06-01T12:01:03.11")));
+
+		mockMvc.perform(put("/fx/price")
+                .contentType(MediaType.TEXT_PLAIN)
+                .header("Content-Encoding", "br")
+                .content(testCSV))
+                .andExpect(status().isUnsupportedMediaType());
+	}
+
+	@Test
+	void testPutCorruptCompressedController() throws Exception {
+		byte[] testCSV = "106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\n".getBytes(StandardCharsets.UTF_8);
+
+		// header of encoded body is wrong
+		mockMvc.perform(put("/fx/price")
+                .contentType(MediaType.TEXT_PLAIN)
+                .header("Content-Encoding", "gzip")
+                .content(testCSV))
+                .andExpect(status().isBadRequest());
+
+		mockMvc.perform(put("/fx/price/stream")
+                .contentType(MediaType.TEXT_PLAIN)
+                .header("Content-Encoding", "lz4")
+                .content(testCSV))
+                .andExpect(status().isBadRequest());
+
+		// header is right, body is cut
+		byte[] encoded = FxContentEncoding.GZIP.encode(testCSV);
+		mockMvc.perform(put("/fx/price")
+                .contentType(MediaType.TEXT_PLAIN)
+                .header("Content-Encoding", "gzip")
+                .content(Arrays.copyOf(encoded, encoded.length - 10)))
+                .andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void testStreamController() throws Exception {
+		fxDaFxPriceStoreService.removeAll();
+		fxDataFeedService.onMessage("109, GBP/USD, 1.2499,1.2561,01-06-2020 12:01:02:100");
+
+		MvcResult streamResult = mockMvc.perform(get("/fx/prices/stream").param("pairs", "GBP/USD,EUR/USD"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		fxDataFeedService.onMessage("110, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:02:110");
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		String events = "";
+		while (!(events.contains("EUR/USD") && events.contains("GBP/USD")) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+			events = streamResult.getResponse().getContentAsString();
+		}
+		assertThat(events).contains("event:price").contains("\"pairSymbol\":\"GBP/USD\"").contains("\"pairSymbol\":\"EUR/USD\"");
+	}
+
+	@Test
+	void testHistoryController() throws Exception {
+		fxPriceHistoryService.removeAll();
+		fxDataFeedService.onMessage("201, AUD/NZD, 1.0700,1.0710,01-06-2020 12:01:01:000\n"
+				+ "202, AUD/NZD, 1.0701,1.0711,01-06-2020 12:01:02:000\n"
+				+ "203, AUD/NZD, 1.0702,1.0712,01-06-2020 12:01:03:000\n"
+				+ "204, AUD/NZD, 1.0703,1.0713,01-06-2020 12:01:04:000");
+
+		mockMvc.perform(get("/fx/price/AUD/NZD/history")
+				.param("from", "2020-06-01T12:01:02")
+				.param("to", "2020-06-01T12:01:03"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[0].bidPrice", is((new BigDecimal("1.0701").multiply(new BigDecimal("0.999"))).doubleValue())))
+				.andExpect(jsonPath("$[1].dateTime", is("2020-06-01T12:01:03")));
+
+		mockMvc.perform(get("/fx/price/AUD%2FNZD/history").param("limit", "3"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(3)))
+				.andExpect(jsonPath("$[2].askPrice", is((new BigDecimal("1.0713").multiply(new BigDecimal("1.001"))).doubleValue())));
+	}
+
+	@Test
+	void testCandleController() throws Exception {
+		fxCandleService.removeAll();
+		fxDataFeedService.onMessage("301, CHF/SEK, 10.7000,10.7100,01-06-2020 12:01:01:000\n"
+				+ "302, CHF/SEK, 10.7200,10.7300,01-06-2020 12:01:20:000\n"
+				+ "303, CHF/SEK, 10.6900,10.7000,01-06-2020 12:01:40:000\n"
+				+ "304, CHF/SEK, 10.7100,10.7200,01-06-2020 12:02:05:000");
+
+		mockMvc.perform(get("/fx/candles/CHF/SEK").param("interval", "PT1M"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[0].start", is("2020-06-01T12:01:00")))
+				.andExpect(jsonPath("$[0].interval", is("PT1M")))
+				.andExpect(jsonPath("$[0].tickCount", is(3)))
+				.andExpect(jsonPath("$[0].highBid", is((new BigDecimal("10.72").multiply(new BigDecimal("0.999"))).doubleValue())))
+				.andExpect(jsonPath("$[0].lowBid", is((new BigDecimal("10.69").multiply(new BigDecimal("0.999"))).doubleValue())))
+				.andExpect(jsonPath("$[1].tickCount", is(1)));
+
+		mockMvc.perform(get("/fx/candles/CHF/SEK").param("interval", "PT2M"))
+				.andExpect(status().isBadRequest());
+
+		MvcResult streamResult = mockMvc.perform(get("/fx/prices/stream").param("pairs", "CHF/SEK").param("candles", "PT5M"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		long deadline = System.currentTimeMillis() + 10_000;
+		String events = "";
+		while (!events.contains("event:candle") && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+			events = streamResult.getResponse().getContentAsString();
+		}
+		assertThat(events).contains("event:price").contains("event:candle").contains("\"interval\":\"PT5M\"")
+				.contains("\"tickCount\":4");
+	}
+
+	@Test
+	void testGetAllPricesWithEtag() throws Exception {
+		fxDaFxPriceStoreService.removeAll();
+		fxDataFeedService.onMessage("106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\n"
+				+ "109, GBP/USD, 1.2499,1.2561,01-06-2020 12:01:02:100");
+
+		MvcResult first = mockMvc.perform(get("/fx/prices"))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+				.andExpect(header().exists("ETag"))
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[?(@.pairSymbol == 'GBP/USD')].bidPrice").value(contains((new BigDecimal("1.2486501")).doubleValue())))
+				.andExpect(jsonPath("$[?(@.pairSymbol == 'GBP/USD')].dateTime", contains((Object) "2020-06-01T12:01:02.1")))
+				.andReturn();
+		String etag = first.getResponse().getHeader("ETag");
+
+		mockMvc.perform(get("/fx/prices").header("If-None-Match", etag))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string("ETag", etag));
+
+		fxDataFeedService.onMessage("110, EUR/USD, 1.1001,1.2001,01-06-2020 12:01:03:001");
+		mockMvc.perform(get("/fx/prices").header("If-None-Match", etag))
+				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", not(etag)))
+				.andExpect(jsonPath("$[?(@.pairSymbol == 'EUR/USD')].bidPrice", contains((new BigDecimal("1.1001").multiply(new BigDecimal("0.999"))).doubleValue())));
+	}
+
+	@Test
+	void testGetAllPricesCompressed() throws Exception {
+		fxDaFxPriceStoreService.removeAll();
+		fxDataFeedService.onMessage("109, GBP/USD, 1.2499,1.2561,01-06-2020 12:01:02:100");
+
+		// small response is not compressed
+		mockMvc.perform(get("/fx/prices").header("Accept-Encoding", "gzip"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Vary", containsString("Accept-Encoding")))
+				.andExpect(header().doesNotExist("Content-Encoding"))
+				.andExpect(jsonPath("$", hasSize(1)));
+
+		fxDaFxPriceStoreService.removeAll();
+		StringBuilder feed = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			feed.append(300 + i).append(", C").append(10 + i).append("/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\n");
+		}
+		fxDataFeedService.onMessage(feed.toString());
+
+		String plain = mockMvc.perform(get("/fx/prices"))
+				.andExpect(status().isOk())
+				.andExpect(header().doesNotExist("Content-Encoding"))
+				.andExpect(jsonPath("$", hasSize(20)))
+				.andReturn().getResponse().getContentAsString();
+		assertThat(plain.length()).isGreaterThan(1024);
+
+		MvcResult gzip = mockMvc.perform(get("/fx/prices").header("Accept-Encoding", "gzip, deflate"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Content-Encoding", "gzip"))
+				.andReturn();
+		byte[] gzipBody = gzip.getResponse().getContentAsByteArray();
+		assertThat(gzipBody.length).isLessThan(plain.length() / 4);
+		assertThat(new String(FxContentEncoding.GZIP.decoding(new ByteArrayInputStream(gzipBody)).readAllBytes(),
+				StandardCharsets.UTF_8)).isEqualTo(plain);
+		String gzipEtag = gzip.getResponse().getHeader("ETag");
+
+		mockMvc.perform(get("/fx/prices").header("Accept-Encoding", "gzip").header("If-None-Match", gzipEtag))
+				.andExpect(status().isNotModified());
+
+		MvcResult lz4 = mockMvc.perform(get("/fx/prices").header("Accept-Encoding", "gzip, lz4"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Content-Encoding", "lz4"))
+				.andExpect(header().string("ETag", not(gzipEtag)))
+				.andReturn();
+		assertThat(new String(FxContentEncoding.LZ4.decoding(new ByteArrayInputStream(lz4.getResponse().getContentAsByteArray()))
+				.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(plain);
+
+		MvcResult query = mockMvc.perform(post("/fx/prices/query").contentType(MediaType.APPLICATION_JSON)
+						.header("Accept-Encoding", "gzip").content("[\"C10/USD\", \"USD/CHF\"]"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Content-Encoding", "gzip"))
+				.andReturn();
+		assertThat(new String(FxContentEncoding.GZIP.decoding(new ByteArrayInputStream(query.getResponse().getContentAsByteArray()))
+				.readAllBytes(), StandardCharsets.UTF_8)).contains("\"pairSymbol\":\"C10/USD\"").endsWith("\"missing\":[\"USD/CHF\"]}");
+	}
+
+	@Test
+	void testQueryPrices() throws Exception {
+		fxDaFxPriceStoreService.removeAll();
+		fxDataFeedService.onMessage("106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\n"
+				+ "109, GBP/USD, 1.2499,1.2561,01-06-2020 12:01:02:100\n"
+				+ "110, EUR/JPY, 119.60,119.90,01-06-2020 12:01:02:110");
+
+		mockMvc.perform(post("/fx/prices/query").contentType(MediaType.APPLICATION_JSON)
+						.content("[\"GBP/USD\", \"USD/CHF\", \"EUR/USD\", \"XXX/\\\"YYY\"]"))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$.prices", hasSize(2)))
+				.andExpect(jsonPath("$.prices[0].pairSymbol").value("GBP/USD"))
+				.andExpect(jsonPath("$.prices[0].bidPrice").value((new BigDecimal("1.2486501")).doubleValue()))
+				.andExpect(jsonPath("$.prices[1].pairSymbol").value("EUR/USD"))
+				.andExpect(jsonPath("$.missing", contains("USD/CHF", "XXX/\"YYY")));
+
+		mockMvc.perform(post("/fx/prices/query").contentType(MediaType.APPLICATION_JSON).content("[]"))
+				.andExpect(status().isOk())
+				.andExpect(content().json("{\"prices\":[],\"missing\":[]}", true));
+	}
+
+	@Test
+	void testGetRejections() throws Exception {
+		fxDaFxPriceStoreService.removeAll();
+		fxDataFeedService.onMessage("111, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:02:001\n"
+				+ "112, EUR/USD, 1.1x,1.2000,01-06-2020 12:01:03:001\n"
+				+ "113, EUR/USD, 1.0900,1.1900,01-06-2020 12:01:01:001");
+
+		mockMvc.perform(get("/fx/rejections").param("limit", "2"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[0].reason").value("stale"))
+				.andExpect(jsonPath("$[0].record", containsString("113")))
+				.andExpect(jsonPath("$[1].reason").value("bid_format"))
+				.andExpect(jsonPath("$[1].message").value("Bid price has wrong format"))
+				.andExpect(jsonPath("$[1].record").value("112, EUR/USD, 1.1x,1.2000,01-06-2020 12:01:03:001"));
+	}
 }
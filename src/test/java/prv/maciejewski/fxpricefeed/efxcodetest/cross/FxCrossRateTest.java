@@ -0,0 +1,100 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.cross;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPairSymbolRegistry;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+@DisplayName("Testing cross rate calculation and dependency graph.")
+public class FxCrossRateTest {
+
+	final static LocalDateTime TIME = LocalDateTime.of(2020, 6, 1, 12, 1, 1);
+
+	@Test
+	void testLegOrientation() {
+		FxCrossRate direct = FxCrossRate.of("EUR/JPY", "EUR/USD", "USD/JPY");
+		assertEquals("EUR/USD", direct.getBaseLeg());
+		assertFalse(direct.isBaseLegInverted());
+		assertEquals("USD/JPY", direct.getQuoteLeg());
+		assertFalse(direct.isQuoteLegInverted());
+
+		// legs in other order and quoted the other way round
+		FxCrossRate inverted = FxCrossRate.of("CHF/JPY", "JPY/USD", "USD/CHF");
+		assertEquals("USD/CHF", inverted.getBaseLeg());
+		assertTrue(inverted.isBaseLegInverted());
+		assertEquals("JPY/USD", inverted.getQuoteLeg());
+		assertTrue(inverted.isQuoteLegInverted());
+	}
+
+	@Test
+	void testInvalidLegs() {
+		assertThrows(IllegalArgumentException.class, () -> FxCrossRate.of("EUR/JPY", "EUR/USD", "GBP/JPY"));
+		assertThrows(IllegalArgumentException.class, () -> FxCrossRate.of("EUR/JPY", "EUR/USD", "USD/CHF"));
+		assertThrows(IllegalArgumentException.class, () -> FxCrossRate.of("EUR/JPY", "EUR/JPY", "USD/JPY"));
+		assertThrows(IllegalArgumentException.class, () -> FxCrossRate.of("EURJPY", "EUR/USD", "USD/JPY"));
+	}
+
+	@Test
+	void testCalculateDirect() {
+		FxCrossRate crossRate = FxCrossRate.of("EUR/JPY", "EUR/USD", "USD/JPY");
+		FxPrice cross = crossRate.calculate(price("1", "EUR/USD", "1.1000", "1.1002", TIME),
+				price("2", "USD/JPY", "107.50", "107.52", TIME.plusSeconds(1)), 3);
+
+		assertEquals("EUR/JPY", cross.getPairSymbol());
+		assertEquals("1x2", cross.getPriceId());
+		assertEquals(new BigDecimal("118.250"), cross.getBidPrice()); // 118.25
+		assertEquals(new BigDecimal("118.294"), cross.getAskPrice()); // 118.293504 rounded up
+		assertEquals(TIME.plusSeconds(1), cross.getDateTime());
+	}
+
+	@Test
+	void testCalculateInverted() {
+		// GBP/EUR = GBP/USD * 1 / EUR/USD
+		FxCrossRate crossRate = FxCrossRate.of("GBP/EUR", "GBP/USD", "EUR/USD");
+		FxPrice cross = crossRate.calculate(price("1", "GBP/USD", "1.2500", "1.2502", TIME),
+				price("2", "EUR/USD", "1.1000", "1.1002", TIME), 5);
+
+		// bid 1.25 / 1.1002 = 1.136157..., ask 1.2502 / 1.1 = 1.136545...
+		assertEquals(new BigDecimal("1.13615"), cross.getBidPrice());
+		assertEquals(new BigDecimal("1.13655"), cross.getAskPrice());
+		assertTrue(cross.getBidPrice().compareTo(cross.getAskPrice()) < 0);
+	}
+
+	@Test
+	void testGraphDependents() {
+		FxCrossRate eurJpy = FxCrossRate.of("EUR/JPY", "EUR/USD", "USD/JPY");
+		FxCrossRate gbpJpy = FxCrossRate.of("GBP/JPY", "GBP/USD", "USD/JPY");
+		FxCrossRateGraph graph = new FxCrossRateGraph(List.of(eurJpy, gbpJpy));
+		FxPairSymbolRegistry registry = FxPairSymbolRegistry.shared();
+
+		assertArrayEquals(new FxCrossRate[] { eurJpy, gbpJpy }, graph.dependentsOf(registry.idOf("USD/JPY")));
+		assertArrayEquals(new FxCrossRate[] { eurJpy }, graph.dependentsOf(registry.idOf("EUR/USD")));
+		assertEquals(0, graph.dependentsOf(registry.resolve("USD/CHF")).length);
+		assertEquals(0, graph.dependentsOf(FxPairSymbolRegistry.UNKNOWN_ID).length);
+		assertEquals(List.of(eurJpy, gbpJpy), graph.getCrossRates());
+	}
+
+	@Test
+	void testGraphRejectsDerivedLegs() {
+		FxCrossRate eurJpy = FxCrossRate.of("EUR/JPY", "EUR/USD", "USD/JPY");
+		FxCrossRate chfEur = FxCrossRate.of("CHF/EUR", "CHF/JPY", "EUR/JPY");
+		assertThrows(IllegalArgumentException.class, () -> new FxCrossRateGraph(List.of(eurJpy, chfEur)));
+		assertThrows(IllegalArgumentException.class, () -> new FxCrossRateGraph(List.of(eurJpy, eurJpy)));
+	}
+
+	private static FxPrice price(String priceId, String pairSymbol, String bid, String ask, LocalDateTime dateTime) {
+		return FxPrice.builder().priceId(priceId).pairSymbol(pairSymbol).bidPrice(new BigDecimal(bid))
+				.askPrice(new BigDecimal(ask)).dateTime(dateTime).build();
+	}
+}
@@ -0,0 +1,88 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.csv;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testing streaming CSV record reader.")
+public class CsvRecordReaderTest {
+
+	private List<String> readAll(String feed, int chunkSize) throws IOException {
+		CsvRecordReader reader = new CsvRecordReader(new StringReader(feed), chunkSize);
+		List<String> records = new ArrayList<>();
+		String record;
+		while ((record = reader.nextRecord()) != null) {
+			records.add(record);
+		}
+		return records;
+	}
+
+	@Test
+	void testMixedLineEndsOnAnyChunkBoundary() throws IOException {
+		String feed = "line 1\nline2\rLINE3\r\nLine4\r\n";
+		// every chunk size puts boundaries in different places - also between CR and LF
+		for (int chunkSize = 1; chunkSize <= feed.length() + 1; chunkSize++) {
+			assertThat(readAll(feed, chunkSize))
+					.as("chunk size %d", chunkSize)
+					.containsExactly("line 1", "line2", "LINE3", "Line4");
+		}
+	}
+
+	@Test
+	void testLastRecordWithoutLineEnd() throws IOException {
+		assertThat(readAll("a,b\nc,d", 3)).containsExactly("a,b", "c,d");
+	}
+
+	@Test
+	void testEmptyLinesAreReturned() throws IOException {
+		assertThat(readAll("a\n\n\rb", 2)).containsExactly("a", "", "", "b");
+	}
+
+	@Test
+	void testLineEndInsideQuotesIsPartOfRecord() throws IOException {
+		String feed = "1,\"multi\r\nline\",\"with \"\"quote\"\"\"\n2,x";
+		for (int chunkSize = 1; chunkSize <= feed.length(); chunkSize++) {
+			assertThat(readAll(feed, chunkSize))
+					.as("chunk size %d", chunkSize)
+					.containsExactly("1,\"multi\r\nline\",\"with \"\"quote\"\"\"", "2,x");
+		}
+	}
+
+	@Test
+	void testEmptyStream() throws IOException {
+		assertThat(readAll("", 4)).isEmpty();
+	}
+
+	@Test
+	void testOverlongRecordIsSkippedToNextLine() throws IOException {
+		String longRecord = "1,\"" + "x".repeat(40); // unbalanced quote - record would never end in quotes
+		String feed = "a,b\r\n" + longRecord + "\r\n" + "y".repeat(21) + "\nc,d\r" + "z".repeat(20);
+		for (int chunkSize = 1; chunkSize <= feed.length() + 1; chunkSize++) {
+			List<String> skipped = new ArrayList<>();
+			CsvRecordReader reader = new CsvRecordReader(new StringReader(feed), chunkSize, 20, skipped::add);
+			List<String> records = new ArrayList<>();
+			String record;
+			while ((record = reader.nextRecord()) != null) {
+				records.add(record);
+			}
+			assertThat(records).as("chunk size %d", chunkSize).containsExactly("a,b", "c,d", "z".repeat(20));
+			assertThat(skipped).as("chunk size %d", chunkSize).containsExactly(longRecord.substring(0, 20), "y".repeat(20));
+			assertThat(reader.getOverlongRecordCount()).isEqualTo(2);
+		}
+	}
+
+	@Test
+	void testOverlongRecordAtEndOfStream() throws IOException {
+		List<String> skipped = new ArrayList<>();
+		CsvRecordReader reader = new CsvRecordReader(new StringReader("a\n" + "b".repeat(100)), 8, 10, skipped::add);
+		assertThat(reader.nextRecord()).isEqualTo("a");
+		assertThat(reader.nextRecord()).isNull();
+		assertThat(skipped).containsExactly("b".repeat(10));
+	}
+}
@@ -0,0 +1,69 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+@DisplayName("Testing per pair tick history ring.")
+public class FxPriceHistoryRingTest {
+
+	private static List<Long> timestamps(List<FxPrice> prices) {
+		return prices.stream().map(price -> FxPriceHistoryRing.toEpochNanos(price.getDateTime())).toList();
+	}
+
+	@Test
+	void testOldestTicksAreOverwritten() {
+		FxPriceHistoryRing ring = new FxPriceHistoryRing("EUR/USD", 4);
+		for (long i = 1; i <= 10; i++) {
+			ring.add(i * 1000, 110000 + i, 120000 + i, 5);
+		}
+		assertEquals(4, ring.size());
+		List<FxPrice> all = ring.range(Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+		assertEquals(List.of(7000L, 8000L, 9000L, 10000L), timestamps(all));
+		assertEquals(new BigDecimal("1.10010"), all.get(3).getBidPrice());
+		assertEquals(new BigDecimal("1.20010"), all.get(3).getAskPrice());
+		assertEquals("EUR/USD", all.get(3).getPairSymbol());
+	}
+
+	@Test
+	void testRangeQueries() {
+		FxPriceHistoryRing ring = new FxPriceHistoryRing("EUR/USD", 8);
+		for (long i = 1; i <= 20; i++) {
+			ring.add(i * 1000, i, i, 0);
+		}
+		// kept 13000..20000
+		assertEquals(List.of(15000L, 16000L), timestamps(ring.range(14500, 16000, Integer.MAX_VALUE)));
+		assertEquals(List.of(13000L, 14000L), timestamps(ring.range(0, 14000, Integer.MAX_VALUE)));
+		assertEquals(List.of(19000L, 20000L), timestamps(ring.range(Long.MIN_VALUE, Long.MAX_VALUE, 2)));
+		assertThat(ring.range(21000, Long.MAX_VALUE, Integer.MAX_VALUE)).isEmpty();
+		assertThat(ring.range(16000, 15000, Integer.MAX_VALUE)).isEmpty();
+	}
+
+	@Test
+	void testOutOfOrderTicksAreSorted() {
+		FxPriceHistoryRing ring = new FxPriceHistoryRing("EUR/USD", 4);
+		ring.add(1000, 1, 1, 0);
+		ring.add(3000, 3, 3, 0);
+		ring.add(2000, 2, 2, 0);
+		ring.add(4000, 4, 4, 0);
+		ring.add(2500, 25, 25, 0); // ring full - 1000 is dropped
+		ring.add(500, 5, 5, 0); // older than whole full history - ignored
+		assertEquals(List.of(2000L, 2500L, 3000L, 4000L), timestamps(ring.range(Long.MIN_VALUE, Long.MAX_VALUE, 10)));
+	}
+
+	@Test
+	void testEpochNanosConversion() {
+		LocalDateTime dateTime = LocalDateTime.of(2020, 6, 1, 12, 1, 2, 123_456_789);
+		assertEquals(dateTime, FxPriceHistoryRing.toDateTime(FxPriceHistoryRing.toEpochNanos(dateTime)));
+		assertEquals(Long.MAX_VALUE, FxPriceHistoryRing.toEpochNanos(LocalDateTime.of(3000, 1, 1, 0, 0)));
+		assertEquals(Long.MIN_VALUE, FxPriceHistoryRing.toEpochNanos(LocalDateTime.of(1600, 1, 1, 0, 0)));
+	}
+}
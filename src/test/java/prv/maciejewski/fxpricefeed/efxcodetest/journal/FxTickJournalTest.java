@@ -0,0 +1,147 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.journal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxFixedPointPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+@DisplayName("Testing memory-mapped tick journal.")
+public class FxTickJournalTest {
+
+	@TempDir
+	Path directory;
+
+	private static FxPrice price(String id, String pairSymbol, String bid, String ask, int second) {
+		return FxPrice.builder().priceId(id).pairSymbol(pairSymbol).bidPrice(new BigDecimal(bid))
+				.askPrice(new BigDecimal(ask)).dateTime(LocalDateTime.of(2020, 6, 1, 12, 1, second, 1_000_000)).build();
+	}
+
+	private static Map<String, FxPrice> byPair(Collection<FxPrice> prices) {
+		return prices.stream().collect(Collectors.toMap(FxPrice::getPairSymbol, Function.identity()));
+	}
+
+	private long fileCount(String prefix) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(path -> path.getFileName().toString().startsWith(prefix)).count();
+		}
+	}
+
+	@Test
+	void testLatestPricePerPairIsRecovered() throws IOException {
+		FxFixedPointPrice eurJpy = new FxFixedPointPrice("R3", "EUR/JPY", 119480, 120020, 3,
+				LocalDateTime.of(2020, 6, 1, 12, 1, 2, 2_000_000));
+		try (FxTickJournal journal = new FxTickJournal(directory, 64 * 1024)) {
+			assertThat(journal.open()).isEmpty();
+			journal.append(price("R1", "EUR/USD", "1.0989", "1.2012", 1));
+			journal.append(price("R2", "EUR/USD", "1.09901", "1.20131", 3));
+			journal.append(eurJpy);
+			journal.append(price("R4", "GBP/USD", "1.2487", "1.2573", 4));
+			journal.append(price("R5", "EUR/USD", "1.0990", "1.2013", 2)); // older - journaled, not latest
+		}
+
+		try (FxTickJournal journal = new FxTickJournal(directory, 64 * 1024)) {
+			Map<String, FxPrice> recovered = byPair(journal.open());
+			assertEquals(3, recovered.size());
+			assertEquals(price("R2", "EUR/USD", "1.09901", "1.20131", 3), recovered.get("EUR/USD"));
+			assertEquals(eurJpy, recovered.get("EUR/JPY"));
+			assertEquals("R4", recovered.get("GBP/USD").getPriceId());
+		}
+		// recovery takes snapshot - only newest snapshot and its segment are kept
+		assertEquals(1, fileCount(FxTickJournal.SNAPSHOT_PREFIX));
+		assertEquals(1, fileCount(FxTickJournal.SEGMENT_PREFIX));
+	}
+
+	@Test
+	void testSegmentRollAndSnapshot() throws IOException {
+		try (FxTickJournal journal = new FxTickJournal(directory, 512)) {
+			journal.open();
+			for (int i = 0; i < 50; i++) {
+				journal.append(price("R" + i, i % 2 == 0 ? "EUR/USD" : "GBP/USD", "1.1", "1.2", i));
+			}
+			assertThat(fileCount(FxTickJournal.SEGMENT_PREFIX)).isGreaterThan(1);
+			journal.append(price("R50", "EUR/USD", "1.3", "1.4", 55));
+			journal.snapshot();
+			assertEquals(1, fileCount(FxTickJournal.SEGMENT_PREFIX));
+			journal.append(price("R51", "GBP/USD", "1.5", "1.6", 56));
+		}
+
+		try (FxTickJournal journal = new FxTickJournal(directory, 512)) {
+			Map<String, FxPrice> recovered = byPair(journal.open());
+			assertEquals("R50", recovered.get("EUR/USD").getPriceId());
+			assertEquals("R51", recovered.get("GBP/USD").getPriceId());
+		}
+	}
+
+	@Test
+	void testTornRecordEndsReplay() throws IOException {
+		try (FxTickJournal journal = new FxTickJournal(directory, 64 * 1024)) {
+			journal.open();
+			journal.append(price("R1", "EUR/USD", "1.1", "1.2", 1));
+			journal.append(price("R2", "EUR/USD", "1.3", "1.4", 2));
+		}
+		Path segment;
+		try (Stream<Path> files = Files.list(directory)) {
+			segment = files.filter(path -> path.getFileName().toString().startsWith(FxTickJournal.SEGMENT_PREFIX))
+					.findFirst().get();
+		}
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+			channel.read(header, 0);
+			int secondRecord = FxJournalRecord.HEADER_SIZE + header.flip().getInt();
+			// damage last byte of second record payload as if write was not completed
+			ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+			channel.read(length, secondRecord);
+			long lastByte = secondRecord + FxJournalRecord.HEADER_SIZE + length.flip().getInt() - 1;
+			channel.write(ByteBuffer.wrap(new byte[] { 0x7F }), lastByte);
+		}
+
+		try (FxTickJournal journal = new FxTickJournal(directory, 64 * 1024)) {
+			assertEquals("R1", byPair(journal.open()).get("EUR/USD").getPriceId());
+		}
+	}
+
+	@Test
+	void testTooLongPriceIdIsRejected() {
+		ByteBuffer buffer = ByteBuffer.allocate(128 * 1024);
+		FxPrice longId = price("R".repeat(FxJournalRecord.MAX_STRING_BYTES + 1), "EUR/USD", "1.1", "1.2", 1);
+		assertThrows(IllegalArgumentException.class, () -> FxJournalRecord.write(buffer, longId));
+		assertEquals(0, buffer.position());
+	}
+
+	@Test
+	void testNegativeStringLengthIsTornRecord() {
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		FxJournalRecord.write(buffer, price("R1", "EUR/USD", "1.1", "1.2", 1));
+		// price id length is after type, epoch second and nano - set it negative and fix checksum
+		int payloadSize = buffer.getInt(0);
+		buffer.putShort(FxJournalRecord.HEADER_SIZE + 1 + Long.BYTES + Integer.BYTES, (short) -1);
+		CRC32C crc = new CRC32C();
+		crc.update(buffer.slice(FxJournalRecord.HEADER_SIZE, payloadSize));
+		buffer.putInt(Integer.BYTES, (int) crc.getValue());
+
+		assertNull(FxJournalRecord.read(buffer.position(0)));
+		assertEquals(0, buffer.position());
+	}
+}
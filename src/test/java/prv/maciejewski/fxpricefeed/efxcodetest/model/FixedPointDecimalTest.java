@@ -0,0 +1,107 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testing fixed-point decimal helpers.")
+public class FixedPointDecimalTest {
+
+	private static long parse(String value, int scale) {
+		return FixedPointDecimal.parse(value.toCharArray(), 0, value.length(), scale);
+	}
+
+	@Test
+	void testParse() {
+		assertEquals(110000L, parse("1.1000", 5));
+		assertEquals(119600L, parse("119.60", 3));
+		assertEquals(123457L, parse("1.234565", 5));
+		assertEquals(-123457L, parse("-1.234565", 5));
+		assertEquals(123456L, parse("1.2345649", 5));
+		assertEquals(100000L, parse("1.", 5));
+		assertEquals(50000L, parse(".5", 5));
+		assertEquals(1200L, parse("1.2E3", 0));
+		assertThrows(NumberFormatException.class, () -> parse("", 5));
+		assertThrows(NumberFormatException.class, () -> parse("-", 5));
+		assertThrows(NumberFormatException.class, () -> parse("1.2.3", 5));
+		assertThrows(NumberFormatException.class, () -> parse("1,2", 5));
+		assertThrows(NumberFormatException.class, () -> parse("99999999999999999999", 5));
+	}
+
+	@Test
+	void testParseIsSameAsBigDecimal() {
+		Random random = new Random(42);
+		for (int i = 0; i < 100_000; i++) {
+			int scale = random.nextInt(8);
+			BigDecimal value = BigDecimal.valueOf(random.nextLong() % 100_000_000_000L, random.nextInt(10));
+			String text = value.toPlainString();
+			assertEquals(value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact(), parse(text, scale),
+					"Different result for " + text + " with scale " + scale);
+		}
+	}
+
+	@Test
+	void testIsDecimalSameAsBigDecimal() {
+		String[] values = { "1.1000", "-1.1", "+.5", "5.", "1e5", "1.2E-3", "0", "", "-", ".", "1x", "1.1.1", "1e",
+				"1e+", "e5", " 1", "1,1", "١٢" };
+		for (String value : values) {
+			boolean bigDecimal;
+			try {
+				new BigDecimal(value);
+				bigDecimal = true;
+			} catch (NumberFormatException nfe) {
+				bigDecimal = false;
+			}
+			assertEquals(bigDecimal, FixedPointDecimal.isDecimal(value.toCharArray(), 0, value.length()), value);
+		}
+	}
+
+	@Test
+	void testMultiply() {
+		long bidMultiplier = FixedPointDecimal.fromBigDecimal(new BigDecimal("0.999"), FixedPointDecimal.MULTIPLIER_SCALE);
+		long askMultiplier = FixedPointDecimal.fromBigDecimal(new BigDecimal("1.001"), FixedPointDecimal.MULTIPLIER_SCALE);
+
+		// 1.24990 * 0.999 = 1.2486501 / 1.25610 * 1.001 = 1.2573561
+		assertEquals(124865L, FixedPointDecimal.multiply(124990L, bidMultiplier, RoundingMode.FLOOR));
+		assertEquals(125736L, FixedPointDecimal.multiply(125610L, askMultiplier, RoundingMode.CEILING));
+		assertEquals(124865L, FixedPointDecimal.multiply(124990L, bidMultiplier, RoundingMode.HALF_UP));
+		assertEquals(-124865L, FixedPointDecimal.multiply(-124990L, bidMultiplier, RoundingMode.HALF_UP));
+		assertEquals(124990L, FixedPointDecimal.multiply(124990L, FixedPointDecimal.MULTIPLIER_ONE, RoundingMode.CEILING));
+	}
+
+	@Test
+	void testMultiplyLargeValues() {
+		long bidMultiplier = FixedPointDecimal.fromBigDecimal(new BigDecimal("0.999"), FixedPointDecimal.MULTIPLIER_SCALE);
+		long askMultiplier = FixedPointDecimal.fromBigDecimal(new BigDecimal("1.001"), FixedPointDecimal.MULTIPLIER_SCALE);
+
+		// product of mantissa and multiplier does not fit into long - 16250.00003 * 0.999 = 16233.75002997
+		assertEquals(1623375002L, FixedPointDecimal.multiply(1625000003L, bidMultiplier, RoundingMode.FLOOR));
+		assertEquals(1623375003L, FixedPointDecimal.multiply(1625000003L, bidMultiplier, RoundingMode.CEILING));
+		assertEquals(1623375003L, FixedPointDecimal.multiply(1625000003L, bidMultiplier, RoundingMode.HALF_UP));
+		assertEquals(-1623375003L, FixedPointDecimal.multiply(-1625000003L, bidMultiplier, RoundingMode.HALF_UP));
+		// 9999999.12345 * 1.001 = 10009999.12257345
+		assertEquals(1000999912258L, FixedPointDecimal.multiply(999999912345L, askMultiplier, RoundingMode.CEILING));
+		assertEquals(1000999912257L, FixedPointDecimal.multiply(999999912345L, askMultiplier, RoundingMode.FLOOR));
+		assertEquals(Long.MAX_VALUE, FixedPointDecimal.multiply(Long.MAX_VALUE, FixedPointDecimal.MULTIPLIER_ONE, RoundingMode.FLOOR));
+		// result itself does not fit into long
+		assertThrows(ArithmeticException.class,
+				() -> FixedPointDecimal.multiply(Long.MAX_VALUE - 1000, askMultiplier, RoundingMode.CEILING));
+		assertThrows(IllegalArgumentException.class,
+				() -> FixedPointDecimal.multiply(1625000003L, bidMultiplier, RoundingMode.DOWN));
+	}
+	@Test
+	void testRescale() {
+		assertEquals(1100000L, FixedPointDecimal.rescale(110000, 5, 6));
+		assertEquals(110000L, FixedPointDecimal.rescale(110000, 5, 5));
+		assertEquals(1235L, FixedPointDecimal.rescale(123450, 5, 3));
+		assertEquals(1234L, FixedPointDecimal.rescale(123449, 5, 3));
+		assertEquals(-1235L, FixedPointDecimal.rescale(-123450, 5, 3));
+		assertThrows(ArithmeticException.class, () -> FixedPointDecimal.rescale(Long.MAX_VALUE / 2, 0, 1));
+	}
+}
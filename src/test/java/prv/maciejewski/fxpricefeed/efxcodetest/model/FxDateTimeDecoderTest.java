@@ -0,0 +1,94 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testing feed date time decoder against dtFormatter.")
+public class FxDateTimeDecoderTest {
+
+	private static final long SEED = 20230425L;
+	private static final int ITERATIONS = 50_000;
+	private static final String MUTATION_CHARS = "0123456789-: +x";
+
+	private static LocalDateTime parseWithFormatter(String value) {
+		try {
+			return LocalDateTime.parse(value, FxPrice.dtFormatter);
+		} catch (DateTimeParseException dpe) {
+			return null;
+		}
+	}
+
+	private static void assertSameAsFormatter(String value) {
+		assertEquals(parseWithFormatter(value), FxDateTimeDecoder.decode(value), "Different result for [" + value + "]");
+	}
+
+	private static String randomDateTime(Random random) {
+		// ranges a bit wider than valid ones to cover rejected and smart resolved values
+		int day = random.nextInt(34);
+		String dayStr = (day < 10 && random.nextBoolean()) ? "0" + day : Integer.toString(day);
+		return String.format("%s-%02d-%04d %02d:%02d:%02d:%03d", dayStr, random.nextInt(14), random.nextInt(10000),
+				random.nextInt(26), random.nextInt(62), random.nextInt(62), random.nextInt(1000));
+	}
+
+	@Test
+	void testKnownValues() {
+		assertEquals(LocalDateTime.of(2020, 6, 1, 12, 1, 2, 100_000_000), FxDateTimeDecoder.decode("01-06-2020 12:01:02:100"));
+		assertEquals(LocalDateTime.of(2020, 6, 1, 12, 1, 2, 1_000_000), FxDateTimeDecoder.decode("1-06-2020 12:01:02:001"));
+		assertEquals(LocalDateTime.of(2020, 6, 30, 0, 0), FxDateTimeDecoder.decode("31-06-2020 00:00:00:000"));
+		assertEquals(LocalDateTime.of(2021, 1, 1, 0, 0), FxDateTimeDecoder.decode("31-12-2020 24:00:00:000"));
+		assertNull(FxDateTimeDecoder.decode("1-06-2020 24:00:00:001"));
+		assertNull(FxDateTimeDecoder.decode("01-13-2020 12:01:02:100"));
+		assertNull(FxDateTimeDecoder.decode("2020-06-01 12:01:02"));
+		assertNull(FxDateTimeDecoder.decode(""));
+	}
+
+	@Test
+	void testUnusualLayoutsAreSameAsFormatter() {
+		assertSameAsFormatter("001-06-2020 12:01:02:100");
+		assertSameAsFormatter("1-06-+12020 12:01:02:100");
+		assertSameAsFormatter("1-06--2020 12:01:02:100");
+		assertSameAsFormatter("-1-06-2020 12:01:02:100");
+		assertSameAsFormatter("1-6-2020 12:01:02:100");
+		assertSameAsFormatter("1-06-2020 12:01:02:10");
+		assertSameAsFormatter("01-06-2020 12:01:02:100 ");
+	}
+
+	@Test
+	void testRandomDateTimesAreSameAsFormatter() {
+		Random random = new Random(SEED);
+		for (int i = 0; i < ITERATIONS; i++) {
+			assertSameAsFormatter(randomDateTime(random));
+		}
+	}
+
+	@Test
+	void testRandomlyMutatedDateTimesAreSameAsFormatter() {
+		Random random = new Random(SEED + 1);
+		for (int i = 0; i < ITERATIONS; i++) {
+			StringBuilder value = new StringBuilder(randomDateTime(random));
+			int mutations = 1 + random.nextInt(3);
+			for (int m = 0; m < mutations; m++) {
+				int position = random.nextInt(value.length());
+				switch (random.nextInt(3)) {
+				case 0 -> value.setCharAt(position, MUTATION_CHARS.charAt(random.nextInt(MUTATION_CHARS.length())));
+				case 1 -> value.deleteCharAt(position);
+				default -> value.insert(position, MUTATION_CHARS.charAt(random.nextInt(MUTATION_CHARS.length())));
+				}
+			}
+			assertSameAsFormatter(value.toString());
+		}
+	}
+
+	@Test
+	void testDecodeFromBufferPart() {
+		char[] buffer = "xx01-06-2020 12:01:02:100yy".toCharArray();
+		assertEquals(LocalDateTime.of(2020, 6, 1, 12, 1, 2, 100_000_000), FxDateTimeDecoder.decode(buffer, 2, 23));
+	}
+}
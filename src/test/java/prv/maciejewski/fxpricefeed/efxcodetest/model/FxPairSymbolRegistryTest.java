@@ -0,0 +1,125 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testing registry of pair symbols.")
+public class FxPairSymbolRegistryTest {
+
+	@Test
+	void testResolveFromCharsAndStrings() {
+		FxPairSymbolRegistry registry = new FxPairSymbolRegistry(16);
+		char[] buffer = " 109, GBP/USD, 1.2499".toCharArray();
+
+		int gbpUsd = registry.resolve(buffer, 6, 7);
+		int eurUsd = registry.resolve("EUR/USD");
+		assertEquals(0, gbpUsd);
+		assertEquals(1, eurUsd);
+		assertEquals(2, registry.size());
+
+		// the same id and the same String instance for every form of symbol
+		String symbol = registry.symbolOf(gbpUsd);
+		assertEquals("GBP/USD", symbol);
+		assertEquals(gbpUsd, registry.resolve(new String("GBP/USD")));
+		assertEquals(gbpUsd, registry.resolve("GBP/USD".toCharArray(), 0, 7));
+		assertSame(symbol, registry.symbolOf(registry.resolve(buffer, 6, 7)));
+		assertEquals(eurUsd, registry.idOf("EUR/USD"));
+
+		// lookup does not register
+		assertEquals(FxPairSymbolRegistry.UNKNOWN_ID, registry.idOf("USD/CHF"));
+		assertEquals(FxPairSymbolRegistry.UNKNOWN_ID, registry.idOf(null));
+		assertEquals(2, registry.size());
+		assertThrows(IndexOutOfBoundsException.class, () -> registry.symbolOf(2));
+	}
+
+	@Test
+	void testSameHashDifferentSymbols() {
+		FxPairSymbolRegistry registry = new FxPairSymbolRegistry(16);
+		// "Aa" and "BB" have the same String hash code
+		int first = registry.resolve("Aa/Aa");
+		int second = registry.resolve("BB/BB".toCharArray(), 0, 5);
+		assertEquals("Aa/Aa".hashCode(), "BB/BB".hashCode());
+		assertEquals(0, first);
+		assertEquals(1, second);
+		assertEquals(second, registry.idOf("BB/BB"));
+		assertEquals(first, registry.resolve("Aa/Aa".toCharArray(), 0, 5));
+		assertEquals(second, registry.idOf(" BB/BB ".toCharArray(), 1, 5));
+		assertEquals(FxPairSymbolRegistry.UNKNOWN_ID, registry.idOf("CC/CC".toCharArray(), 0, 5));
+		assertEquals(2, registry.size());
+	}
+
+	@Test
+	void testFullRegistry() {
+		FxPairSymbolRegistry registry = new FxPairSymbolRegistry(2);
+		assertEquals(0, registry.resolve("EUR/USD"));
+		assertEquals(1, registry.resolve("GBP/USD"));
+		assertEquals(FxPairSymbolRegistry.UNKNOWN_ID, registry.resolve("USD/CHF"));
+		assertEquals(1, registry.resolve("GBP/USD"));
+		assertEquals(2, registry.size());
+	}
+
+	@Test
+	void testMarginTableDoesNotRegisterPairs() {
+		FxMarginTable.Multipliers defaults = FxMarginTable.Multipliers.ofMargins(new BigDecimal("-0.001"),
+				new BigDecimal("0.001"));
+		FxMarginTable.Multipliers pairMargins = FxMarginTable.Multipliers.ofMargins(new BigDecimal("-0.002"),
+				new BigDecimal("0.002"));
+		int registered = FxPairSymbolRegistry.shared().size();
+
+		FxMarginTable table = new FxMarginTable(defaults, Map.of("MRG/NEW", pairMargins), Map.of());
+		assertEquals(registered, FxPairSymbolRegistry.shared().size());
+		assertSame(pairMargins, table.forPair("MRG/NEW"));
+		// pair registered after table has been built keeps its margins
+		FxPairSymbolRegistry.shared().resolve("MRG/NEW");
+		assertSame(pairMargins, table.forPair("MRG/NEW"));
+		assertSame(defaults, table.forPair("MRG/OTH"));
+	}
+
+	@Test
+	void testConcurrentRegistration() throws InterruptedException {
+		FxPairSymbolRegistry registry = new FxPairSymbolRegistry(1024);
+		ConcurrentMap<String, Integer> seen = new ConcurrentHashMap<>();
+		AtomicInteger mismatches = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException ie) {
+					return;
+				}
+				for (int i = 0; i < 500; i++) {
+					String symbol = "P" + i + "/USD";
+					int id = registry.resolve(symbol.toCharArray(), 0, symbol.length());
+					Integer previous = seen.putIfAbsent(symbol, id);
+					if (previous != null && previous != id) {
+						mismatches.incrementAndGet();
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, mismatches.get());
+		assertEquals(500, registry.size());
+		seen.forEach((symbol, id) -> assertEquals(symbol, registry.symbolOf(id)));
+	}
+}
@@ -0,0 +1,89 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testing rate limited rejection sink with dead-letter ring.")
+public class FxRejectionSinkTest {
+
+	@Test
+	void testDeadLetterRingKeepsLatest() throws Exception {
+		FxRejectionSink sink = new FxRejectionSink(10, 0, 16, 4);
+		sink.start();
+		try {
+			assertEquals(0, sink.getRejections(10).size());
+			for (int i = 0; i < 10; i++) {
+				sink.rejected(FxTickCounters.Reason.BID_FORMAT, "Bid price has wrong format", "line " + i);
+			}
+			FxPrice stale = FxPrice.builder().priceId("11").pairSymbol("EUR/USD").bidPrice(BigDecimal.ONE)
+					.askPrice(BigDecimal.TEN).dateTime(LocalDateTime.of(2020, 6, 1, 12, 1, 1)).build();
+			sink.stale(stale);
+
+			List<FxRejectedRecord> rejections = sink.getRejections(10);
+			assertEquals(4, rejections.size());
+			assertEquals(10, rejections.get(0).sequence());
+			assertEquals("stale", rejections.get(0).reason());
+			assertEquals(stale.toString(), rejections.get(0).record());
+			assertEquals("bid_format", rejections.get(1).reason());
+			assertEquals("line 9", rejections.get(1).record());
+			assertEquals("line 7", rejections.get(3).record());
+			assertEquals(2, sink.getRejections(2).size());
+		} finally {
+			sink.close();
+		}
+	}
+
+	@Test
+	void testLoggingRateLimited() throws Exception {
+		FxRejectionSink sink = new FxRejectionSink(3, 0, 1024, 8);
+		sink.start();
+		for (int i = 0; i < 1000; i++) {
+			sink.rejected(FxTickCounters.Reason.DATE_FORMAT, "Wrong date time format", "line " + i);
+		}
+		// limit is per reason
+		sink.rejected(FxTickCounters.Reason.ASK_FORMAT, "Ask price has wrong format", "line");
+		sink.close();
+
+		assertEquals(4, sink.getLoggedCount());
+		assertEquals(997, sink.getSuppressedCount());
+		assertEquals(0, sink.getDroppedCount());
+		assertEquals(8, sink.getRejections(100).size());
+	}
+
+	@Test
+	void testSamplingAndBoundedQueue() throws Exception {
+		// every rejection above limit sampled, queue of 10 - most of them dropped while logging thread sleeps
+		FxRejectionSink sink = new FxRejectionSink(0, 1, 10, 0);
+		sink.start();
+		for (int i = 0; i < 10_000; i++) {
+			sink.rejected(FxTickCounters.Reason.OTHER, "Unknown exception", "line " + i);
+		}
+		sink.close();
+
+		assertEquals(0, sink.getSuppressedCount());
+		assertEquals(10_000, sink.getLoggedCount() + sink.getDroppedCount());
+		assertTrue(sink.getDroppedCount() > 0);
+		assertEquals(0, sink.getRejections(10).size());
+	}
+
+	@Test
+	void testRejectionsBeforeStartLoggedOnStart() throws Exception {
+		FxRejectionSink sink = new FxRejectionSink(10, 0, 16, 4);
+		sink.rejected(FxTickCounters.Reason.BID_FORMAT, "Bid price has wrong format", "line");
+		assertEquals(1, sink.getRejections(10).size());
+		assertEquals(0, sink.getLoggedCount());
+
+		sink.start();
+		sink.close();
+		assertEquals(1, sink.getLoggedCount());
+		// closed sink can be closed again
+		sink.close();
+	}
+}
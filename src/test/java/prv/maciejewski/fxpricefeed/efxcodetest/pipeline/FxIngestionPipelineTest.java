@@ -0,0 +1,122 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+@DisplayName("Testing ring buffer ingestion pipeline.")
+public class FxIngestionPipelineTest {
+
+	private static final LocalDateTime BASE_TIME = LocalDateTime.of(2023, 4, 25, 0, 0);
+
+	// line is "<producer>,<sequence>" - price symbol is producer, so order per producer can be checked
+	private static FxPrice parse(String line) {
+		String[] columns = line.split(",");
+		if (columns.length != 2) {
+			return null;
+		}
+		long sequence = Long.parseLong(columns[1]);
+		return new FxPrice(columns[1], columns[0], BigDecimal.ONE, BigDecimal.TEN, BASE_TIME.plusNanos(sequence));
+	}
+
+	@Test
+	void testAllLinesFromManyProducersAreStoredInOrder() throws Exception {
+		final int producers = 4;
+		final int linesPerProducer = 50_000;
+		Map<String, Long> lastSequence = new ConcurrentHashMap<>();
+		AtomicLong outOfOrder = new AtomicLong();
+		// writer is single thread - plain check of order per producer
+		FxIngestionPipeline pipeline = new FxIngestionPipeline(1024, FxWaitStrategy.YIELDING,
+				FxIngestionPipeline.Backpressure.BLOCK, FxIngestionPipelineTest::parse, price -> {
+					long sequence = Long.parseLong(price.getPriceId());
+					Long previous = lastSequence.put(price.getPairSymbol(), sequence);
+					if (previous != null && previous >= sequence) {
+						outOfOrder.incrementAndGet();
+					}
+					return true;
+				});
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<?>> futures = new ArrayList<>();
+			for (int p = 0; p < producers; p++) {
+				String producer = "P" + p;
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < linesPerProducer; i++) {
+						pipeline.publish(producer + "," + i);
+					}
+					pipeline.publish("invalid line");
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+			assertTrue(pipeline.awaitDrained(30, TimeUnit.SECONDS));
+
+			FxPipelineStats stats = pipeline.getStats();
+			assertEquals(producers * (linesPerProducer + 1L), stats.published());
+			assertEquals(producers * (linesPerProducer + 1L), stats.parsed());
+			assertEquals(producers, stats.invalid());
+			assertEquals((long) producers * linesPerProducer, stats.stored());
+			assertEquals(0, stats.queueDepth());
+			assertEquals(0, outOfOrder.get());
+			for (int p = 0; p < producers; p++) {
+				assertEquals(linesPerProducer - 1L, lastSequence.get("P" + p));
+			}
+		} finally {
+			executor.shutdownNow();
+			pipeline.stop();
+		}
+	}
+
+	@Test
+	void testFullRingRejectsLines() throws Exception {
+		CountDownLatch writerBlocked = new CountDownLatch(1);
+		FxIngestionPipeline pipeline = new FxIngestionPipeline(4, FxWaitStrategy.SLEEPING,
+				FxIngestionPipeline.Backpressure.REJECT, FxIngestionPipelineTest::parse, price -> {
+					try {
+						writerBlocked.await();
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+					}
+					return true;
+				});
+		try {
+			int accepted = 0;
+			for (int i = 0; i < 20; i++) {
+				if (pipeline.publish("P," + i)) {
+					accepted++;
+				}
+			}
+			assertThat(accepted).isLessThanOrEqualTo(4);
+			assertEquals(20 - accepted, pipeline.getStats().rejected());
+
+			writerBlocked.countDown();
+			assertTrue(pipeline.awaitDrained(10, TimeUnit.SECONDS));
+			assertEquals(accepted, pipeline.getStats().stored());
+		} finally {
+			pipeline.stop();
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.replication;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxFixedPointPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+@DisplayName("Testing binary batches of replicated prices.")
+public class FxReplicationBatchTest {
+
+	final static LocalDateTime TIME = LocalDateTime.of(2020, 6, 1, 12, 1, 1, 1_000_000);
+
+	@Test
+	void testBatchesDecodedFromStream() {
+		FxPrice decimal = FxPrice.builder().priceId("1").pairSymbol("EUR/USD").bidPrice(new BigDecimal("1.0989"))
+				.askPrice(new BigDecimal("1.20120")).dateTime(TIME).build();
+		FxPrice fixedPoint = new FxFixedPointPrice("2", "EUR/JPY", 119_610, 119_910, 3, TIME.plusSeconds(1));
+
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		int start = FxReplicationBatch.begin(buffer);
+		assertTrue(FxReplicationBatch.append(buffer, decimal));
+		assertTrue(FxReplicationBatch.append(buffer, fixedPoint));
+		assertTrue(FxReplicationBatch.end(buffer, start));
+		start = FxReplicationBatch.begin(buffer);
+		assertTrue(FxReplicationBatch.append(buffer, fixedPoint));
+		assertTrue(FxReplicationBatch.end(buffer, start));
+		// empty batch is not sent
+		int end = buffer.position();
+		start = FxReplicationBatch.begin(buffer);
+		assertFalse(FxReplicationBatch.end(buffer, start));
+		assertEquals(end, buffer.position());
+		buffer.flip();
+
+		// stream arrives in two parts - second batch is incomplete after first one
+		List<FxPrice> received = new ArrayList<>();
+		ByteBuffer receiveBuffer = ByteBuffer.allocate(1024);
+		receiveBuffer.put(buffer.slice(0, end - 5)).flip();
+		assertEquals(2, FxReplicationBatch.decode(receiveBuffer, received::add));
+		receiveBuffer.compact();
+		receiveBuffer.put(buffer.slice(end - 5, 5)).flip();
+		assertEquals(1, FxReplicationBatch.decode(receiveBuffer, received::add));
+		assertFalse(receiveBuffer.hasRemaining());
+
+		assertEquals(3, received.size());
+		assertEquals("EUR/USD", received.get(0).getPairSymbol());
+		assertEquals(new BigDecimal("1.0989"), received.get(0).getBidPrice());
+		assertEquals(new BigDecimal("1.20120"), received.get(0).getAskPrice());
+		assertEquals(TIME, received.get(0).getDateTime());
+		FxFixedPointPrice receivedFixedPoint = (FxFixedPointPrice) received.get(2);
+		assertEquals(119_610, receivedFixedPoint.getBidMantissa());
+		assertEquals(119_910, receivedFixedPoint.getAskMantissa());
+		assertEquals(3, receivedFixedPoint.getPriceScale());
+	}
+
+	@Test
+	void testHandshake() {
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		FxReplicationBatch.writeHandshake(buffer, 0x1234_5678_9abc_def0L);
+		buffer.flip();
+		assertFalse(FxReplicationBatch.hasHandshake(buffer.slice(0, FxReplicationBatch.HANDSHAKE_SIZE - 1)));
+		assertTrue(FxReplicationBatch.hasHandshake(buffer));
+		assertEquals(0x1234_5678_9abc_def0L, FxReplicationBatch.readHandshake(buffer));
+		assertFalse(buffer.hasRemaining());
+
+		assertThrows(IllegalStateException.class, () -> FxReplicationBatch.readHandshake(ByteBuffer.allocate(16)));
+	}
+
+	@Test
+	void testFullBufferAndCorruptedBatch() {
+		FxPrice fixedPoint = new FxFixedPointPrice("2", "EUR/JPY", 119_610, 119_910, 3, TIME);
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		int start = FxReplicationBatch.begin(buffer);
+		assertTrue(FxReplicationBatch.append(buffer, fixedPoint));
+		assertFalse(FxReplicationBatch.append(buffer, fixedPoint));
+		assertTrue(FxReplicationBatch.end(buffer, start));
+
+		buffer.flip();
+		buffer.put(10, (byte) (buffer.get(10) + 1));
+		assertThrows(IllegalStateException.class, () -> FxReplicationBatch.decode(buffer, fxPrice -> {
+		}));
+		assertThrows(IllegalStateException.class,
+				() -> FxReplicationBatch.decode(ByteBuffer.allocate(8).putInt(0, 1024), fxPrice -> {
+				}));
+	}
+}
@@ -0,0 +1,139 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.binary.FxBinaryTickFrame;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPairSymbolRegistry;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+@SpringBootTest(properties = { "fx.binary-feed.enabled=true", "fx.binary-feed.port=0",
+		"fx.binary-feed.symbols=EUR/USD,GBP/USD,EUR/JPY" })
+@DisplayName("Testing binary tick feed listener.")
+class FxBinaryFeedServiceTest {
+
+	@Autowired
+	private FxBinaryFeedService fxBinaryFeedService;
+
+	@Autowired
+	private FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	private FxPricePrecisionService fxPricePrecisionService;
+
+	@Autowired
+	private FxPriceMarginCalculatorService fxPriceMarginCalculatorService;
+
+	@BeforeEach
+	void clearStorage() {
+		fxPriceStoreService.removeAll();
+	}
+
+	@Test
+	void testFramesOverLoopback() throws Exception {
+		LocalDateTime dateTime = LocalDateTime.of(2020, 6, 1, 12, 1, 1, 1_000_000);
+		long epochNanos = dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano();
+		FxBinaryFeedStats statsBefore = fxBinaryFeedService.getStats().get();
+
+		ByteBuffer frames = ByteBuffer.allocate(4 * FxBinaryTickFrame.FRAME_SIZE);
+		FxBinaryTickFrame.encode(frames, 0, 110000, 120000, epochNanos); // EUR/USD 1.10000 / 1.20000
+		FxBinaryTickFrame.encode(frames, 2, 119600, 119900, epochNanos); // EUR/JPY 119.600 / 119.900
+		FxBinaryTickFrame.encode(frames, 7, 1, 2, epochNanos); // unknown symbol id
+		FxBinaryTickFrame.encode(frames, 1, 125000, 125600, epochNanos); // GBP/USD 1.25000 / 1.25600
+		frames.flip();
+
+		try (SocketChannel client = SocketChannel.open(
+				new InetSocketAddress("127.0.0.1", fxBinaryFeedService.getLocalPort()))) {
+			// frame split between writes has to be joined by listener
+			ByteBuffer first = frames.duplicate().limit(FxBinaryTickFrame.FRAME_SIZE + 10);
+			while (first.hasRemaining()) {
+				client.write(first);
+			}
+			Thread.sleep(50);
+			frames.position(FxBinaryTickFrame.FRAME_SIZE + 10);
+			while (frames.hasRemaining()) {
+				client.write(frames);
+			}
+			assertTrue(waitFor(() -> fxPriceStoreService.getFxPriceByPairSymbol("GBP/USD").isPresent()));
+		}
+
+		FxPrice eurUsd = fxPriceStoreService.getFxPriceByPairSymbol("EUR/USD").get();
+		assertThat(eurUsd.getBidPrice()).isEqualByComparingTo(new BigDecimal("1.10000").multiply(new BigDecimal("0.999")));
+		assertThat(eurUsd.getAskPrice()).isEqualByComparingTo(new BigDecimal("1.20000").multiply(new BigDecimal("1.001")));
+		assertEquals(dateTime, eurUsd.getDateTime());
+
+		Optional<FxPrice> eurJpy = fxPriceStoreService.getFxPriceByPairSymbol("EUR/JPY");
+		assertThat(eurJpy.get().getBidPrice()).isEqualByComparingTo(new BigDecimal("119.600").multiply(new BigDecimal("0.999")));
+
+		assertTrue(waitFor(() -> fxBinaryFeedService.getStats().get().connections() == statsBefore.connections()));
+		FxBinaryFeedStats stats = fxBinaryFeedService.getStats().get();
+		assertEquals(4, stats.frames() - statsBefore.frames());
+		assertEquals(1, stats.rejected() - statsBefore.rejected());
+	}
+
+	@Test
+	void testFailedTickRejectedAlone() {
+		List<FxPrice> received = new ArrayList<>();
+		FxBinaryFeedService binaryFeedService = new FxBinaryFeedService();
+		binaryFeedService.fxPricePrecisionService = fxPricePrecisionService;
+		binaryFeedService.fxPriceMarginCalculatorService = fxPriceMarginCalculatorService;
+		binaryFeedService.fxDataFeedService = new FxDataFeedService() {
+			@Override
+			void onFxPrice(FxPrice fxPrice) {
+				if (fxPrice.getPairSymbol().equals("GBP/USD")) {
+					throw new ArithmeticException("Overflow");
+				}
+				received.add(fxPrice);
+			}
+		};
+		binaryFeedService.setSymbols(List.of("EUR/USD", "GBP/USD"));
+
+		ByteBuffer frames = ByteBuffer.allocate(3 * FxBinaryTickFrame.FRAME_SIZE);
+		FxBinaryTickFrame.encode(frames, 0, 110000, 120000, 0);
+		FxBinaryTickFrame.encode(frames, 1, 125000, 125600, 0);
+		FxBinaryTickFrame.encode(frames, 0, 110001, 120001, 0);
+		frames.flip();
+
+		// frame after failed one is still processed
+		assertEquals(3, binaryFeedService.onFrames(frames));
+		assertEquals(2, received.size());
+		assertEquals("R1", received.get(0).getPriceId());
+		assertEquals("R3", received.get(1).getPriceId());
+		assertThat(received.get(1).getAskPrice()).isEqualByComparingTo(new BigDecimal("1.20001"));
+	}
+
+	@Test
+	void testSymbolsAreNotRegisteredBeforeTheirPrice() {
+		FxBinaryFeedService binaryFeedService = new FxBinaryFeedService();
+		binaryFeedService.fxPricePrecisionService = fxPricePrecisionService;
+		int registered = FxPairSymbolRegistry.shared().size();
+
+		binaryFeedService.setSymbols(List.of("EUR/USD", "BIN/NEW"));
+		assertEquals(registered, FxPairSymbolRegistry.shared().size());
+	}
+
+	private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+		for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+			Thread.sleep(10);
+		}
+		return condition.getAsBoolean();
+	}
+}
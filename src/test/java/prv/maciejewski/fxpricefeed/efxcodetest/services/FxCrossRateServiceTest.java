@@ -0,0 +1,75 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+// CRB/CRV leg is quoted the other way round - it is inverted
+@SpringBootTest(properties = "fx.cross.pairs[CRA/CRB]=CRA/CRV, CRB/CRV")
+@AutoConfigureMockMvc
+@DisplayName("Testing cross rates calculated from legs.")
+class FxCrossRateServiceTest {
+
+	@Autowired
+	private FxDataFeedService fxDataFeedService;
+
+	@Autowired
+	private FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	private FxCrossRateService fxCrossRateService;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	void testCrossRateFromLegs() throws Exception {
+		fxPriceStoreService.removeAll();
+		assertEquals(1, fxCrossRateService.getCrossRates().size());
+
+		fxDataFeedService.onMessage("1, CRA/CRV, 1.1000,1.2000,01-06-2020 12:01:02:001");
+		// one leg only - nothing to calculate
+		assertNull(fxPriceStoreService.getFxPrice("CRA/CRB"));
+
+		fxDataFeedService.onMessage("2, CRB/CRV, 0.5000,0.6000,01-06-2020 12:01:03:001");
+		FxPrice cross = fxPriceStoreService.getFxPrice("CRA/CRB");
+		// market cross bid 1.1 / 0.6 = 1.83333 (5 decimals, down), ask 1.2 / 0.5 = 2.40000
+		// then margin of derived pair added once - legs margins are removed first
+		assertEquals(0, new BigDecimal("1.83333").multiply(new BigDecimal("0.999")).compareTo(cross.getBidPrice()));
+		assertEquals(0, new BigDecimal("2.40000").multiply(new BigDecimal("1.001")).compareTo(cross.getAskPrice()));
+		assertEquals("R1x2", cross.getPriceId());
+		assertEquals(LocalDateTime.of(2020, 6, 1, 12, 1, 3, 1_000_000), cross.getDateTime());
+
+		// unrelated pair does not touch cross
+		fxDataFeedService.onMessage("3, CRC/CRV, 1.3000,1.4000,01-06-2020 12:01:04:001");
+		assertSame(cross, fxPriceStoreService.getFxPrice("CRA/CRB"));
+
+		// update of one leg recalculates cross with the other leg as stored
+		fxDataFeedService.onMessage("4, CRA/CRV, 1.0000,1.1000,01-06-2020 12:01:05:001");
+		cross = fxPriceStoreService.getFxPrice("CRA/CRB");
+		assertEquals("R4x2", cross.getPriceId());
+		assertEquals(0, new BigDecimal("1.66666").multiply(new BigDecimal("0.999")).compareTo(cross.getBidPrice()));
+		assertEquals(0, new BigDecimal("2.20000").multiply(new BigDecimal("1.001")).compareTo(cross.getAskPrice()));
+
+		// served by REST endpoint as any other pair
+		mockMvc.perform(get("/fx/price/CRA/CRB")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.pairSymbol", is("CRA/CRB")))
+				.andExpect(jsonPath("$.askPrice", is(new BigDecimal("2.202200").doubleValue())));
+	}
+}
@@ -0,0 +1,74 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxFeedProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.pipeline.FxPipelineStats;
+
+@SpringBootTest(properties = { "fx.pipeline.enabled=true", "fx.pipeline.ring-size=1024" })
+@DisplayName("Testing CSV feed processed by ingestion pipeline.")
+class FxDataFeedServicePipelineTest {
+
+	@Autowired
+	private FxDataFeedService fxDataFeedService;
+
+	@Autowired
+	private FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	private FxFeedProperties fxFeedProperties;
+
+	@Test
+	void testMessageThroughPipeline() throws Exception {
+		fxPriceStoreService.removeAll();
+		fxDataFeedService.onMessage("106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\n"
+				+ "107, EUR/JPY, 119.60,119.90,01-06-2020 12:01:02:002\n"
+				+ "bad line\n"
+				+ "108, EUR/JPY, 119.50,119.80,01-06-2020 11:59:11:001");
+		assertTrue(fxDataFeedService.awaitIngested(10, TimeUnit.SECONDS));
+
+		Optional<FxPrice> eurJpy = fxPriceStoreService.getFxPriceByPairSymbol("EUR/JPY");
+		assertTrue(eurJpy.isPresent());
+		assertEquals("R107", eurJpy.get().getPriceId());
+		assertThat(eurJpy.get().getAskPrice().compareTo(new BigDecimal("120.0199"))).isEqualTo(0);
+
+		FxPipelineStats stats = fxDataFeedService.getPipelineStats().get();
+		assertThat(stats.published()).isGreaterThanOrEqualTo(4);
+		assertThat(stats.invalid()).isGreaterThanOrEqualTo(1);
+		assertThat(stats.staleIgnored()).isGreaterThanOrEqualTo(1);
+	}
+
+	@Test
+	void testConflatedMessageThroughPipeline() throws Exception {
+		fxPriceStoreService.removeAll();
+		assertTrue(fxDataFeedService.awaitIngested(10, TimeUnit.SECONDS));
+		long publishedBefore = fxDataFeedService.getPipelineStats().get().published();
+		fxFeedProperties.setConflationEnabled(true);
+		try {
+			fxDataFeedService.onMessage("106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\n"
+					+ "107, EUR/JPY, 119.60,119.90,01-06-2020 12:01:02:002\n"
+					+ "108, EUR/USD, 1.1001,1.2001,01-06-2020 12:01:03:001");
+		} finally {
+			fxFeedProperties.setConflationEnabled(false);
+		}
+		assertTrue(fxDataFeedService.awaitIngested(10, TimeUnit.SECONDS));
+
+		// newest price per pair is margined and stored by pipeline
+		assertEquals(2, fxDataFeedService.getPipelineStats().get().published() - publishedBefore);
+		FxPrice eurUsd = fxPriceStoreService.getFxPriceByPairSymbol("EUR/USD").get();
+		assertEquals("R108", eurUsd.getPriceId());
+		assertThat(eurUsd.getAskPrice().compareTo(new BigDecimal("1.2013001"))).isEqualTo(0);
+	}
+}
@@ -2,17 +2,27 @@ package prv.maciejewski.fxpricefeed.efxcodetest.services;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxFeedProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxPriceProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.csv.CsvRecordCursor;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxFixedPointPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPairSymbolRegistry;
 import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxRejectionSink;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxTickCounters;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -27,6 +37,15 @@ class FxDataFeedServiceTest {
     @Autowired
     private FxPriceStoreService fxDaFxPriceStoreService;
 
+    @Autowired
+    private FxPriceProperties fxPriceProperties;
+
+    @Autowired
+    private FxFeedProperties fxFeedProperties;
+
+    @Autowired
+    private FxRejectionSink fxRejectionSink;
+
 	@Test
 	void testParseCSVLineWithEmptyString() {
 		List<String> csvRecordColumns = fxDataFeedService.parseCSVLine("");
@@ -81,6 +100,44 @@ class FxDataFeedServiceTest {
 		assertThat(expectedColumns.toArray()).isEqualTo(csvRecordColumns.toArray());
 	}
 
+	@Test
+	void testParseCSVRecordCursorOffsets() {
+		CsvRecordCursor cursor = fxDataFeedService.parseCSVRecord(" 106 ,\"EUR/\"\"USD\"\" \",,1.2");
+
+		assertEquals(4, cursor.columnCount());
+		assertEquals("EUR/\"USD\" ", new String(cursor.buffer(), cursor.columnStart(1), cursor.columnLength(1)));
+		assertEquals("106", new String(cursor.buffer(), cursor.trimmedStart(0), cursor.trimmedLength(0)));
+		assertEquals(0, cursor.trimmedLength(2));
+		assertEquals("1.2", cursor.trimmedAsString(3));
+	}
+
+	@Test
+	void testParseCSVRecordCursorIsReused() {
+		CsvRecordCursor first = fxDataFeedService.parseCSVRecord("a,b,c,d,e,f,g,h,i,j");
+		CsvRecordCursor second = fxDataFeedService.parseCSVRecord("x,y");
+
+		assertTrue(first == second, "Cursor is expected to be reused by thread.");
+		assertThat(second.toList()).containsExactly("x", "y");
+	}
+
+	@Test
+	void testParseCSVRecordCursorClearedAfterLongRecord() {
+		String longRecord = "106, EUR/USD, 1.1000,1.2000," + " ".repeat(100_000) + "01-06-2020 12:01:01:001";
+		CsvRecordCursor cursor = fxDataFeedService.parseCSVRecord(longRecord);
+		assertTrue(cursor.buffer().length >= longRecord.length());
+		assertSame(longRecord, cursor.record());
+
+		cursor.clear();
+		assertEquals("", cursor.record());
+		assertEquals(0, cursor.columnCount());
+		assertThat(cursor.buffer().length).isLessThan(longRecord.length());
+		assertThat(fxDataFeedService.parseCSVRecord("x,y").toList()).containsExactly("x", "y");
+
+		// record parsed for price is not kept by cursor of thread
+		assertNotNull(fxDataFeedService.parseCsvRecord(longRecord));
+		assertEquals("", CsvRecordCursor.forCurrentThread().record());
+	}
+
 	@Test
 	void testSplitMessage2Lines() {
 		List<String> splittedLines = fxDataFeedService.splitMessage2Lines("test line 1\ntest line2");
@@ -106,6 +163,75 @@ class FxDataFeedServiceTest {
 		assertEquals(testFxPrice.getAskPrice(),new BigDecimal("1.2000"));
 	}
 	
+	@Test
+	void testCursorTransformMatchesStringTransform() {
+		String[] lines = { "106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001",
+				"\"107\",\" EUR/JPY \",\"119.60\", 119.90 ,1-06-2020 12:01:02:002",
+				"108, GBP/USD, 1.2500,1.2560" };
+
+		for (String line : lines) {
+			FxPrice fromStrings = FxPrice.transformStrings2FxPrice.apply(fxDataFeedService.parseCSVLine(line));
+			FxPrice fromCursor = FxPrice.transformCursor2FxPrice.apply(fxDataFeedService.parseCSVRecord(line));
+			assertEquals(fromStrings, fromCursor, "Different result for: " + line);
+		}
+	}
+
+	@Test
+	void testCursorTransformRejectsWrongValues() {
+		assertNull(FxPrice.transformCursor2FxPrice.apply(fxDataFeedService.parseCSVRecord("106, , 1.1,1.2,01-06-2020 12:01:01:001")));
+		assertNull(FxPrice.transformCursor2FxPrice.apply(fxDataFeedService.parseCSVRecord("106, EUR/USD, 1.1x,1.2,01-06-2020 12:01:01:001")));
+		assertNull(FxPrice.transformCursor2FxPrice.apply(fxDataFeedService.parseCSVRecord("106, EUR/USD, 1.1,,01-06-2020 12:01:01:001")));
+		assertNull(FxPrice.transformCursor2FxPrice.apply(fxDataFeedService.parseCSVRecord("106, EUR/USD, 1.1,1.2,2020-06-01 12:01:01")));
+	}
+
+	@Test
+	void testFixedPointScaleResolvedForValidRecordOnly() {
+		AtomicInteger scaleLookups = new AtomicInteger();
+		String[] wrongLines = { "106, SCA/LE, 1.1x,1.2,01-06-2020 12:01:01:001",
+				"106, SCA/LE, 1.1,,01-06-2020 12:01:01:001",
+				"106, SCA/LE, 1.1,1.2,2020-06-01 12:01:01" };
+		for (String line : wrongLines) {
+			assertNull(FxPrice.transformCursor(fxDataFeedService.parseCSVRecord(line), pairSymbol -> {
+				scaleLookups.incrementAndGet();
+				return 5;
+			}));
+		}
+		assertEquals(0, scaleLookups.get());
+
+		FxPrice price = FxPrice.transformCursor(
+				fxDataFeedService.parseCSVRecord("106, SCA/LE, 1.1,1.2,01-06-2020 12:01:01:001"), pairSymbol -> {
+					scaleLookups.incrementAndGet();
+					return 5;
+				});
+		assertEquals(new BigDecimal("1.10000"), price.getBidPrice());
+		assertEquals(1, scaleLookups.get());
+	}
+
+	@Test
+	void testRejectedRecordKeptAsReceived() {
+		String record = "\"106\", \"EUR/\"\"USD\", 1.1x,1.2,01-06-2020 12:01:01:001";
+		fxDataFeedService.onMessage(record);
+
+		// quotes removed by parsing are kept in dead-letter ring
+		assertEquals(record, fxRejectionSink.getRejections(1).get(0).record());
+	}
+
+	@Test
+	void testRejectedRecordsTakeNoPairIds() {
+		int registered = FxPairSymbolRegistry.shared().size();
+		StringBuilder junk = new StringBuilder();
+		for (int i = 0; i <= FxPairSymbolRegistry.MAX_PAIRS; i++) {
+			junk.append(i).append(", J").append(i).append("/UNK, 1.1x,1.2000,01-06-2020 12:01:01:001\n");
+		}
+		fxDataFeedService.onMessage(junk.toString());
+		assertEquals(registered, FxPairSymbolRegistry.shared().size());
+
+		// new pair is registered by its first stored price
+		fxDataFeedService.onMessage("107, REG/NEW, 1.1000,1.2000,01-06-2020 12:01:01:001");
+		assertTrue(fxDaFxPriceStoreService.getFxPriceByPairSymbol("REG/NEW").isPresent());
+		assertEquals(registered + 1, FxPairSymbolRegistry.shared().size());
+	}
+
 	@Test
 	void testCSVSingleMessage() {
 		fxDataFeedService.onMessage("107, EUR/JPY, 119.60,119.90,01-06-2020 12:01:02:002");
@@ -134,4 +260,146 @@ class FxDataFeedServiceTest {
 
 	}
 
+	@Test
+	void testOnStream() throws IOException {
+		fxDaFxPriceStoreService.removeAll();
+		fxDataFeedService.onStream(new StringReader("106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\r\n"
+				+ "\r\n"
+				+ "107, \"EUR/JPY\", 119.60,119.90,01-06-2020 12:01:02:002\r"
+				+ "108, EUR/USD, 1.1001,1.2001,01-06-2020 12:01:02:002"));
+
+		Optional<FxPrice> eurUsd = fxDaFxPriceStoreService.getFxPriceByPairSymbol("EUR/USD");
+		assertTrue(eurUsd.isPresent());
+		assertEquals("R108", eurUsd.get().getPriceId());
+
+		Optional<FxPrice> eurJpy = fxDaFxPriceStoreService.getFxPriceByPairSymbol("EUR/JPY");
+		assertTrue(eurJpy.isPresent());
+		assertThat(eurJpy.get().getAskPrice().compareTo(new BigDecimal("120.0199"))).isEqualTo( 0 );
+	}
+
+	@Test
+	void testOnStreamRejectsOverlongRecord() throws IOException {
+		fxDaFxPriceStoreService.removeAll();
+		long rejectedBefore = FxTickCounters.getRejectedCount(FxTickCounters.Reason.RECORD_LENGTH);
+		fxDataFeedService.onStream(new StringReader("106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\n"
+				+ "107, \"EUR/JPY" + " ".repeat(fxFeedProperties.getMaxRecordLength()) + "\n"
+				+ "108, EUR/USD, 1.1001,1.2001,01-06-2020 12:01:02:002"));
+
+		assertEquals("R108", fxDaFxPriceStoreService.getFxPriceByPairSymbol("EUR/USD").get().getPriceId());
+		assertTrue(fxDaFxPriceStoreService.getFxPriceByPairSymbol("EUR/JPY").isEmpty());
+		assertEquals(rejectedBefore + 1, FxTickCounters.getRejectedCount(FxTickCounters.Reason.RECORD_LENGTH));
+	}
+
+	@Test
+	void testFixedPointMessage() {
+		fxDaFxPriceStoreService.removeAll();
+		fxPriceProperties.getFixedPoint().setEnabled(true);
+		try {
+			fxDataFeedService.onMessage("106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\n"
+					+ "107, EUR/JPY, 119.60,119.90,01-06-2020 12:01:02:002");
+		} finally {
+			fxPriceProperties.getFixedPoint().setEnabled(false);
+		}
+
+		FxPrice eurUsd = fxDaFxPriceStoreService.getFxPriceByPairSymbol("EUR/USD").get();
+		assertTrue(eurUsd instanceof FxFixedPointPrice);
+		assertEquals(new BigDecimal("1.09890"), eurUsd.getBidPrice());
+		assertEquals(new BigDecimal("1.20120"), eurUsd.getAskPrice());
+
+		FxPrice eurJpy = fxDaFxPriceStoreService.getFxPriceByPairSymbol("EUR/JPY").get();
+		assertEquals(3, ((FxFixedPointPrice) eurJpy).getPriceScale());
+		assertEquals(new BigDecimal("120.020"), eurJpy.getAskPrice());
+	}
+
+	@Test
+	void testFixedPointMessageWithLargePrices() {
+		fxDaFxPriceStoreService.removeAll();
+		long rejectedBefore = FxTickCounters.getRejectedCount(FxTickCounters.Reason.MARGIN);
+		fxPriceProperties.getFixedPoint().setEnabled(true);
+		try {
+			// the last price is out of fixed-point range with margins - only its record is rejected
+			fxDataFeedService.onMessage("111, USD/IDR, 16250.00000,16260.00000,01-06-2020 12:01:01:001\n"
+					+ "112, BTC/USD, 99000.50,99100.50,01-06-2020 12:01:01:002\n"
+					+ "113, XXX/YYY, 92233720368547.00000,92233720368547.00000,01-06-2020 12:01:01:003\n"
+					+ "114, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:004");
+		} finally {
+			fxPriceProperties.getFixedPoint().setEnabled(false);
+		}
+
+		FxPrice usdIdr = fxDaFxPriceStoreService.getFxPriceByPairSymbol("USD/IDR").get();
+		assertEquals(new BigDecimal("16233.75000"), usdIdr.getBidPrice());
+		assertEquals(new BigDecimal("16276.26000"), usdIdr.getAskPrice());
+		FxPrice btcUsd = fxDaFxPriceStoreService.getFxPriceByPairSymbol("BTC/USD").get();
+		assertEquals(new BigDecimal("98901.49950"), btcUsd.getBidPrice());
+		assertEquals(new BigDecimal("99199.60050"), btcUsd.getAskPrice());
+		assertTrue(fxDaFxPriceStoreService.getFxPriceByPairSymbol("XXX/YYY").isEmpty());
+		assertTrue(fxDaFxPriceStoreService.getFxPriceByPairSymbol("EUR/USD").isPresent());
+		assertEquals(rejectedBefore + 1, FxTickCounters.getRejectedCount(FxTickCounters.Reason.MARGIN));
+	}
+
+	@Test
+	void testConflatedMessage() {
+		fxDaFxPriceStoreService.removeAll();
+		FxFeedStats statsBefore = fxDataFeedService.getFeedStats();
+		fxFeedProperties.setConflationEnabled(true);
+		try {
+			fxDataFeedService.onMessage("106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\n"
+					+ "107, EUR/JPY, 119.60,119.90,01-06-2020 12:01:02:002\n"
+					+ "108, EUR/USD, 1.1001,1.2001,01-06-2020 12:01:03:001\n"
+					+ "109, EUR/JPY, 119.50,119.80,01-06-2020 11:59:11:001\n"
+					+ "110, EUR/USD, 1.1002,1.2002,01-06-2020 12:01:02:001\n"
+					+ "bad line");
+		} finally {
+			fxFeedProperties.setConflationEnabled(false);
+		}
+
+		assertEquals("R108", fxDaFxPriceStoreService.getFxPriceByPairSymbol("EUR/USD").get().getPriceId());
+		assertEquals("R107", fxDaFxPriceStoreService.getFxPriceByPairSymbol("EUR/JPY").get().getPriceId());
+
+		FxFeedStats stats = fxDataFeedService.getFeedStats();
+		assertEquals(1, stats.conflatedMessages() - statsBefore.conflatedMessages());
+		assertEquals(5, stats.receivedTicks() - statsBefore.receivedTicks());
+		assertEquals(3, stats.conflatedTicks() - statsBefore.conflatedTicks());
+	}
+
+	@Test
+	void testParallelMessageSameAsSequential() {
+		// prices of every pair go back and forth in time - result depends on order of lines
+		String[] pairs = { "EUR/USD", "EUR/JPY", "GBP/USD", "USD/CHF", "AUD/USD", "NZD/USD", "USD/CAD" };
+		StringBuilder message = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			int second = (i * 7919) % 60;
+			message.append(i).append(", ").append(pairs[i % pairs.length]).append(", 1.").append(1000 + i % 9000)
+					.append(",1.").append(2000 + i % 7000).append(",01-06-2020 12:01:").append(second < 10 ? "0" : "")
+					.append(second).append(":001\n");
+			if (i % 1000 == 0) {
+				message.append("bad line\n");
+			}
+		}
+
+		fxDaFxPriceStoreService.removeAll();
+		fxDataFeedService.onMessage(message.toString());
+		List<String> sequential = Arrays.stream(pairs)
+				.map(pair -> fxDaFxPriceStoreService.getFxPriceByPairSymbol(pair).get().getPriceId()).toList();
+
+		fxDaFxPriceStoreService.removeAll();
+		FxFeedStats statsBefore = fxDataFeedService.getFeedStats();
+		FxFeedProperties.Parallel parallel = fxFeedProperties.getParallel();
+		parallel.setEnabled(true);
+		parallel.setMinLines(1000);
+		parallel.setShards(3);
+		try {
+			fxDataFeedService.onMessage(message.toString());
+			// small message is processed on caller thread
+			fxDataFeedService.onMessage("110, EUR/USD, 1.1002,1.2002,01-06-2020 12:01:02:001");
+		} finally {
+			parallel.setEnabled(false);
+		}
+		List<String> parallelResult = Arrays.stream(pairs)
+				.map(pair -> fxDaFxPriceStoreService.getFxPriceByPairSymbol(pair).get().getPriceId()).toList();
+
+		assertEquals(sequential, parallelResult);
+		assertEquals(1, fxDataFeedService.getFeedStats().parallelMessages() - statsBefore.parallelMessages());
+	}
+
 }
@@ -0,0 +1,67 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxJournalProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+@DisplayName("Testing journal of accepted prices.")
+public class FxPriceJournalServiceTest {
+
+	@TempDir
+	Path directory;
+
+	private final FxPriceStoreService fxPriceStoreService = new FxPriceStoreService();
+
+	private FxPriceJournalService startJournal(FxJournalProperties.FsyncPolicy fsyncPolicy) throws Exception {
+		FxJournalProperties properties = new FxJournalProperties();
+		properties.setEnabled(true);
+		properties.setDirectory(directory.toString());
+		properties.setSegmentSize(64 * 1024);
+		properties.setFsyncPolicy(fsyncPolicy);
+
+		FxPriceJournalService journalService = new FxPriceJournalService();
+		journalService.fxPriceStoreService = fxPriceStoreService;
+		journalService.fxJournalProperties = properties;
+		journalService.start();
+		return journalService;
+	}
+
+	@AfterEach
+	void clearStorage() {
+		fxPriceStoreService.removeAll();
+	}
+
+	@Test
+	void testPricesRestoredAfterRestart() throws Exception {
+		fxPriceStoreService.removeAll();
+		FxPriceJournalService journalService = startJournal(FxJournalProperties.FsyncPolicy.EVERY_BATCH);
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(fxPriceStoreService.updateFxPrice(FxPrice.builder().priceId("R" + i)
+					.pairSymbol(i % 2 == 0 ? "EUR/USD" : "EUR/JPY").bidPrice(new BigDecimal("1.1"))
+					.askPrice(new BigDecimal("1.2")).dateTime(LocalDateTime.of(2020, 6, 1, 12, 0).plusSeconds(i))
+					.build()));
+		}
+		journalService.stop();
+
+		// restart - store is empty, journal restores latest prices
+		fxPriceStoreService.removeAll();
+		journalService = startJournal(FxJournalProperties.FsyncPolicy.NONE);
+		try {
+			assertEquals("R998", fxPriceStoreService.getFxPriceByPairSymbol("EUR/USD").get().getPriceId());
+			assertEquals("R999", fxPriceStoreService.getFxPriceByPairSymbol("EUR/JPY").get().getPriceId());
+		} finally {
+			journalService.stop();
+		}
+	}
+}
@@ -5,14 +5,22 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import prv.maciejewski.fxpricefeed.efxcodetest.candle.FxCandle;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxMarginProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxFixedPointPrice;
 import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
 
 @SpringBootTest
@@ -22,12 +30,29 @@ public class FxPriceMarginCalculatorServiceTest {
 	@Autowired
 	FxPriceMarginCalculatorService fxPriceMarginCalculatorService;
 
+	@Autowired
+	FxMarginProperties fxMarginProperties;
+
+	@AfterEach
+	void restoreMargins() {
+		fxMarginProperties.setMode(FxMarginProperties.Mode.EAGER);
+		fxMarginProperties.setFile(null);
+		fxPriceMarginCalculatorService.reload(fxMarginProperties);
+	}
+
+	private FxMarginProperties marginsWithPairAndTier() {
+		FxMarginProperties margins = new FxMarginProperties();
+		margins.getPairs().put("EUR/USD", new FxMarginProperties.Margin(new BigDecimal("-0.0005"), new BigDecimal("0.0005")));
+		margins.getTiers().put("GOLD", new FxMarginProperties.Margin(new BigDecimal("0.0001"), new BigDecimal("-0.0001")));
+		return margins;
+	}
+
 	@Test
-	void testPriceWithMarginCalculationLambda() {
+	void testPriceWithDefaultMargins() {
 		FxPrice sourcePrice = new FxPrice("1002", "CUR/CRR", new BigDecimal("1000.000"), new BigDecimal("2000.000"),
 				LocalDateTime.of(2023, 4, 25, 13, 15, 56, 750000000));
 
-		FxPrice marginPrice = FxPriceMarginCalculatorService.calculatePriceWithMargin.apply(sourcePrice);
+		FxPrice marginPrice = fxPriceMarginCalculatorService.calculateNewPrice(sourcePrice);
 
 		assertNotNull(marginPrice, "Result date is null");
 		assertEquals(marginPrice.getPriceId(), "R1002", "Price ID is diffrent than expected.");
@@ -58,4 +83,171 @@ public class FxPriceMarginCalculatorServiceTest {
 		assertNotNull(marginPrice.getDateTime(), "Date is not assigned");
 	}
 
+	@Test
+	void testFixedPointPriceWithMarginCalculationService() {
+		FxPrice sourcePrice = new FxFixedPointPrice("1004", "EUR/JPY", 119600L, 119900L, 3,
+				LocalDateTime.of(2023, 4, 25, 13, 15, 56, 750000000));
+
+		FxPrice marginPrice = fxPriceMarginCalculatorService.calculateNewPrice(sourcePrice);
+
+		assertTrue(marginPrice instanceof FxFixedPointPrice, "Fixed-point price expected.");
+		FxFixedPointPrice fixedPointMarginPrice = (FxFixedPointPrice) marginPrice;
+		assertEquals(fixedPointMarginPrice.getPriceId(), "R1004", "Price ID is diffrent than expected.");
+		// 119.600 * 0.999 = 119.4804 rounded down, 119.900 * 1.001 = 120.0199 rounded up
+		assertEquals(119480L, fixedPointMarginPrice.getBidMantissa(), "Bid price misscalculated.");
+		assertEquals(120020L, fixedPointMarginPrice.getAskMantissa(), "Ask price misscalculated.");
+		assertEquals(3, fixedPointMarginPrice.getPriceScale());
+		assertEquals(new BigDecimal("120.020"), marginPrice.getAskPrice());
+	}
+
+	@Test
+	void testMarginsAddedInPlaceToStore() {
+		fxPriceMarginCalculatorService.reload(marginsWithPairAndTier());
+		FxPrice feedPrice = new FxPrice("R1005", "EUR/USD", new BigDecimal("1.0000"), new BigDecimal("2.0000"),
+				LocalDateTime.of(2023, 4, 25, 13, 15, 56, 750000000));
+		FxPrice fixedPointFeedPrice = new FxFixedPointPrice("R1006", "EUR/USD", 10000L, 20000L, 4,
+				LocalDateTime.of(2023, 4, 25, 13, 15, 56, 750000000));
+
+		assertEquals("R", fxPriceMarginCalculatorService.getPriceIdToStorePrefix());
+		assertTrue(fxPriceMarginCalculatorService.addMarginsToStore(feedPrice) == feedPrice);
+		assertEquals("R1005", feedPrice.getPriceId());
+		assertThat(feedPrice.getBidPrice().compareTo(new BigDecimal("0.9995"))).isEqualTo(0);
+		assertThat(feedPrice.getAskPrice().compareTo(new BigDecimal("2.0010"))).isEqualTo(0);
+
+		FxFixedPointPrice margined = (FxFixedPointPrice) fxPriceMarginCalculatorService
+				.addMarginsToStore(fixedPointFeedPrice);
+		assertTrue(margined == fixedPointFeedPrice);
+		assertEquals(9995L, margined.getBidMantissa());
+		assertEquals(20010L, margined.getAskMantissa());
+
+		// raw price is stored in lazy mode, id has no prefix
+		fxMarginProperties.setMode(FxMarginProperties.Mode.LAZY);
+		assertEquals("", fxPriceMarginCalculatorService.getPriceIdToStorePrefix());
+		FxPrice rawPrice = new FxPrice("1007", "EUR/USD", new BigDecimal("1.0000"), new BigDecimal("2.0000"),
+				LocalDateTime.of(2023, 4, 25, 13, 15, 56, 750000000));
+		assertTrue(fxPriceMarginCalculatorService.addMarginsToStore(rawPrice) == rawPrice);
+		assertThat(rawPrice.getBidPrice().compareTo(new BigDecimal("1.0000"))).isEqualTo(0);
+	}
+
+	@Test
+	void testPairAndTierMargins() {
+		fxPriceMarginCalculatorService.reload(marginsWithPairAndTier());
+		LocalDateTime dateTime = LocalDateTime.of(2023, 4, 25, 13, 15, 56, 750000000);
+
+		FxPrice eurUsd = fxPriceMarginCalculatorService.calculateNewPrice(
+				new FxPrice("1", "EUR/USD", new BigDecimal("1.0000"), new BigDecimal("2.0000"), dateTime));
+		assertThat(eurUsd.getBidPrice().compareTo(new BigDecimal("0.9995"))).isEqualTo(0);
+		assertThat(eurUsd.getAskPrice().compareTo(new BigDecimal("2.0010"))).isEqualTo(0);
+
+		// pair without own margin gets defaults
+		FxPrice gbpUsd = fxPriceMarginCalculatorService.calculateNewPrice(
+				new FxPrice("2", "GBP/USD", new BigDecimal("1.0000"), new BigDecimal("2.0000"), dateTime));
+		assertThat(gbpUsd.getBidPrice().compareTo(new BigDecimal("0.999"))).isEqualTo(0);
+
+		// tier margin on top of stored (already margined) price
+		FxPrice gold = fxPriceMarginCalculatorService.calculatePriceToRead(eurUsd, "GOLD");
+		assertThat(gold.getBidPrice().compareTo(new BigDecimal("0.99959995"))).isEqualTo(0);
+		assertEquals("R1", gold.getPriceId());
+		assertTrue(fxPriceMarginCalculatorService.calculatePriceToRead(eurUsd, "UNKNOWN") == eurUsd);
+	}
+
+	@Test
+	void testLazyMargins() {
+		fxMarginProperties.setMode(FxMarginProperties.Mode.LAZY);
+		FxPrice rawPrice = new FxPrice("5", "GBP/USD", new BigDecimal("1.0000"), new BigDecimal("2.0000"),
+				LocalDateTime.of(2023, 4, 25, 13, 15, 56, 750000000));
+
+		FxPrice stored = fxPriceMarginCalculatorService.calculatePriceToStore(rawPrice);
+		assertTrue(stored == rawPrice, "Raw price expected to be stored in lazy mode.");
+
+		FxPrice read = fxPriceMarginCalculatorService.calculatePriceToRead(stored, null);
+		assertEquals("R5", read.getPriceId());
+		assertThat(read.getAskPrice().compareTo(new BigDecimal("2.002"))).isEqualTo(0);
+	}
+
+	@Test
+	void testCandleMargins() {
+		fxPriceMarginCalculatorService.reload(marginsWithPairAndTier());
+		FxCandle stored = new FxCandle("EUR/USD", "PT1M", LocalDateTime.of(2023, 4, 25, 13, 15),
+				new BigDecimal("1.100000000"), new BigDecimal("1.200000000"), new BigDecimal("1.000000000"),
+				new BigDecimal("1.100000000"), new BigDecimal("1.200000000"), new BigDecimal("1.300000000"),
+				new BigDecimal("1.100000000"), new BigDecimal("1.200000000"), 3);
+
+		// EAGER mode - pair margin is in stored prices already, tier margin is added
+		assertTrue(fxPriceMarginCalculatorService.calculateCandleToRead(stored, null) == stored);
+		FxCandle gold = fxPriceMarginCalculatorService.calculateCandleToRead(stored, "GOLD");
+		assertEquals(new BigDecimal("1.200120000"), gold.highBid());
+		assertEquals(new BigDecimal("1.299870000"), gold.highAsk());
+		assertEquals(3, gold.tickCount());
+
+		// LAZY mode - pair margin is added too, candle keeps its scale
+		fxMarginProperties.setMode(FxMarginProperties.Mode.LAZY);
+		FxCandle lazy = fxPriceMarginCalculatorService.calculateCandleToRead(stored, null);
+		assertEquals(new BigDecimal("0.999500000"), lazy.lowBid());
+		assertEquals(new BigDecimal("1.300650000"), lazy.highAsk());
+		FxCandle lazyGold = fxPriceMarginCalculatorService.calculateCandleToRead(stored, "GOLD");
+		// 1.2 * 0.9995 * 1.0001 = 1.19951994 / 1.3 * 1.0005 * 0.9999 = 1.300519935 rounded up
+		assertEquals(new BigDecimal("1.199519940"), lazyGold.highBid());
+		assertEquals(new BigDecimal("1.300519935"), lazyGold.highAsk());
+	}
+
+	@Test
+	void testMarginsReloadFromFile(@TempDir Path tempDir) throws IOException {
+		Path marginsFile = tempDir.resolve("margins.yaml");
+		Files.writeString(marginsFile, """
+				fx:
+				  margin:
+				    defaults:
+				      bid: -0.002
+				      ask: 0.002
+				""");
+		fxMarginProperties.setFile(marginsFile.toString());
+		fxPriceMarginCalculatorService.reloadIfChanged();
+
+		FxPrice price = fxPriceMarginCalculatorService.calculateNewPrice(new FxPrice("6", "GBP/USD",
+				new BigDecimal("1.0000"), new BigDecimal("2.0000"), LocalDateTime.of(2023, 4, 25, 13, 15, 56)));
+		assertThat(price.getBidPrice().compareTo(new BigDecimal("0.998"))).isEqualTo(0);
+		assertThat(price.getAskPrice().compareTo(new BigDecimal("2.004"))).isEqualTo(0);
+	}
+
+	@Test
+	void testModeInReloadedFileIsIgnored(@TempDir Path tempDir) throws IOException {
+		Path marginsFile = tempDir.resolve("margins.yaml");
+		Files.writeString(marginsFile, """
+				fx:
+				  margin:
+				    mode: LAZY
+				    defaults:
+				      bid: -0.003
+				      ask: 0.003
+				""");
+		fxMarginProperties.setFile(marginsFile.toString());
+		fxPriceMarginCalculatorService.reloadIfChanged();
+
+		// margins are reloaded, mode of running feed stays
+		assertTrue(!fxPriceMarginCalculatorService.isLazy(), "Mode expected to be kept.");
+		FxPrice price = fxPriceMarginCalculatorService.calculateNewPrice(new FxPrice("7", "GBP/USD",
+				new BigDecimal("1.0000"), new BigDecimal("2.0000"), LocalDateTime.of(2023, 4, 25, 13, 15, 56)));
+		assertThat(price.getBidPrice().compareTo(new BigDecimal("0.997"))).isEqualTo(0);
+	}
+
+	@Test
+	void testMarketPriceOfStoredPrice() {
+		fxPriceMarginCalculatorService.reload(marginsWithPairAndTier());
+		FxPrice marketPrice = new FxPrice("1004", "EUR/USD", new BigDecimal("1.1000"), new BigDecimal("1.2000"),
+				LocalDateTime.of(2023, 4, 25, 13, 15, 56, 750000000));
+
+		// pair margin is removed exactly, price id is the one from market feed
+		FxPrice recovered = fxPriceMarginCalculatorService
+				.calculateMarketPrice(fxPriceMarginCalculatorService.calculatePriceToStore(marketPrice));
+		assertEquals("1004", recovered.getPriceId());
+		assertEquals(0, recovered.getBidPrice().compareTo(marketPrice.getBidPrice()));
+		assertEquals(0, recovered.getAskPrice().compareTo(marketPrice.getAskPrice()));
+		assertEquals(marketPrice.getDateTime(), recovered.getDateTime());
+
+		// stored price is market price in LAZY mode
+		fxMarginProperties.setMode(FxMarginProperties.Mode.LAZY);
+		assertEquals(marketPrice, fxPriceMarginCalculatorService.calculateMarketPrice(marketPrice));
+	}
+
 }
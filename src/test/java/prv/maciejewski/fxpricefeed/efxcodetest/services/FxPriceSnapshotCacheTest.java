@@ -0,0 +1,113 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.compression.FxContentEncoding;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxMarginProperties;
+
+@SpringBootTest
+@DisplayName("Testing cache of pre-serialized prices.")
+public class FxPriceSnapshotCacheTest {
+
+	@Autowired
+	private FxPriceSnapshotCache fxPriceSnapshotCache;
+
+	@Autowired
+	private FxDataFeedService fxDataFeedService;
+
+	@Autowired
+	private FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	private FxPriceMarginCalculatorService fxPriceMarginCalculatorService;
+
+	@Autowired
+	private FxMarginProperties fxMarginProperties;
+
+	@AfterEach
+	void restoreMargins() {
+		fxPriceMarginCalculatorService.reload(fxMarginProperties);
+	}
+
+	@Test
+	void testSnapshotReusedUntilPricesChange() {
+		fxPriceStoreService.removeAll();
+		fxDataFeedService.onMessage("106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001\n"
+				+ "109, GBP/USD, 1.2499,1.2561,01-06-2020 12:01:02:100");
+
+		FxPriceSnapshot first = fxPriceSnapshotCache.getSnapshot(null);
+		assertSame(first, fxPriceSnapshotCache.getSnapshot(null));
+		assertSame(first, fxPriceSnapshotCache.getSnapshot("UNKNOWN_TIER")); // no own margins - default prices
+		String json = new String(first.json(), StandardCharsets.UTF_8);
+		assertThat(json).startsWith("[").endsWith("]").contains("\"pairSymbol\":\"GBP/USD\"").contains("1.2486501");
+
+		// only changed pair is encoded again - the other one is copied from cache
+		byte[] gbpUsd = cachedEntry("GBP/USD");
+		fxDataFeedService.onMessage("110, EUR/USD, 1.1001,1.2001,01-06-2020 12:01:03:001");
+		FxPriceSnapshot second = fxPriceSnapshotCache.getSnapshot(null);
+		assertNotEquals(first.etag(), second.etag());
+		assertThat(new String(second.json(), StandardCharsets.UTF_8)).contains("1.09899");
+		assertSame(gbpUsd, cachedEntry("GBP/USD"));
+
+		fxPriceStoreService.removeAll();
+		assertEquals("[]", new String(fxPriceSnapshotCache.getSnapshot(null).json(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testTierAndMarginChange() {
+		fxPriceStoreService.removeAll();
+		fxDataFeedService.onMessage("109, GBP/USD, 1.2499,1.2561,01-06-2020 12:01:02:100");
+		FxPriceSnapshot defaultSnapshot = fxPriceSnapshotCache.getSnapshot(null);
+
+		FxMarginProperties goldMargins = new FxMarginProperties();
+		goldMargins.setTiers(Map.of("GOLD", new FxMarginProperties.Margin(new BigDecimal("0.0005"),
+				new BigDecimal("-0.0005"))));
+		fxPriceMarginCalculatorService.reload(goldMargins);
+
+		FxPriceSnapshot gold = fxPriceSnapshotCache.getSnapshot("GOLD");
+		assertNotEquals(defaultSnapshot.etag(), fxPriceSnapshotCache.getSnapshot(null).etag());
+		assertThat(new String(gold.json(), StandardCharsets.UTF_8)).doesNotContain("1.2486501");
+	}
+
+	@Test
+	void testEncodedSnapshotReusedUntilPricesChange() throws IOException {
+		fxPriceStoreService.removeAll();
+		fxDataFeedService.onMessage("109, GBP/USD, 1.2499,1.2561,01-06-2020 12:01:02:100");
+
+		FxPriceSnapshot snapshot = fxPriceSnapshotCache.getSnapshot(null);
+		byte[] gzip = snapshot.json(FxContentEncoding.GZIP);
+		assertSame(gzip, fxPriceSnapshotCache.getSnapshot(null).json(FxContentEncoding.GZIP));
+		assertSame(snapshot.json(), snapshot.json(FxContentEncoding.IDENTITY));
+		assertArrayEquals(snapshot.json(), FxContentEncoding.GZIP.decoding(new ByteArrayInputStream(gzip)).readAllBytes());
+		assertArrayEquals(snapshot.json(), FxContentEncoding.LZ4
+				.decoding(new ByteArrayInputStream(snapshot.json(FxContentEncoding.LZ4))).readAllBytes());
+		assertEquals(snapshot.etag(), snapshot.etag(FxContentEncoding.IDENTITY));
+		assertNotEquals(snapshot.etag(FxContentEncoding.GZIP), snapshot.etag(FxContentEncoding.LZ4));
+
+		fxDataFeedService.onMessage("110, GBP/USD, 1.2500,1.2562,01-06-2020 12:01:03:100");
+		FxPriceSnapshot changed = fxPriceSnapshotCache.getSnapshot(null);
+		assertArrayEquals(changed.json(),
+				FxContentEncoding.GZIP.decoding(new ByteArrayInputStream(changed.json(FxContentEncoding.GZIP))).readAllBytes());
+		assertNotEquals(snapshot.etag(FxContentEncoding.GZIP), changed.etag(FxContentEncoding.GZIP));
+	}
+
+	private byte[] cachedEntry(String pairSymbol) {
+		return fxPriceSnapshotCache.cacheByTier.get(FxPriceSnapshotCache.DEFAULT_TIER).entries.get(pairSymbol).json();
+	}
+}
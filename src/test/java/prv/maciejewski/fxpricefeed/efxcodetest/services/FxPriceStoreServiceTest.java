@@ -1,12 +1,20 @@
 package prv.maciejewski.fxpricefeed.efxcodetest.services;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -58,4 +66,61 @@ public class FxPriceStoreServiceTest {
 		assertTrue(testPrice2.get().getAskPrice().equals(new BigDecimal("2048.000")), "Ask price is wrong in second test value.");
 		assertTrue(testPrice2.get().getBidPrice().equals(new BigDecimal("1024.000")), "Bid  price is wrong.");
 	}
+
+	@Test
+	void testOlderPriceIsIgnored() {
+		FxPrice newerPrice = new FxPrice("2001", "CUR/CRR", new BigDecimal("1.1000"), new BigDecimal("1.2000"),
+				LocalDateTime.of(2023, 4, 25, 13, 15, 57, 0));
+		FxPrice olderPrice = new FxPrice("2000", "CUR/CRR", new BigDecimal("1.0000"), new BigDecimal("1.1000"),
+				LocalDateTime.of(2023, 4, 25, 13, 15, 56, 0));
+
+		assertTrue(fxPriceStoreService.updateFxPrice(newerPrice), "Newer price should be accepted.");
+		assertFalse(fxPriceStoreService.updateFxPrice(olderPrice), "Older price should be ignored.");
+		assertEquals(fxPriceStoreService.getFxPriceByPairSymbol("CUR/CRR").get().getPriceId(), "2001", "Older price overwrote newer one.");
+	}
+
+	@Test
+	void testLatestPriceIsNeverLostUnderContention() throws Exception {
+		final int threads = 8;
+		final int updatesPerThread = 5_000;
+		final String[] symbols = { "AAA/BBB", "CCC/DDD", "EEE/FFF" };
+		final LocalDateTime baseTime = LocalDateTime.of(2023, 4, 25, 0, 0);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				final int threadNo = t;
+				futures.add(executor.submit(() -> {
+					start.await();
+					// every thread writes interleaved, increasing timestamps - the highest one is
+					// written by the last thread in its last iteration
+					for (int i = 0; i < updatesPerThread; i++) {
+						long tick = (long) i * threads + threadNo;
+						for (String symbol : symbols) {
+							fxPriceStoreService.updateFxPrice(new FxPrice(Long.toString(tick), symbol,
+									BigDecimal.valueOf(tick), BigDecimal.valueOf(tick + 1), baseTime.plusNanos(tick * 1000)));
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		long lastTick = (long) (updatesPerThread - 1) * threads + (threads - 1);
+		for (String symbol : symbols) {
+			Optional<FxPrice> stored = fxPriceStoreService.getFxPriceByPairSymbol(symbol);
+			assertTrue(stored.isPresent());
+			assertEquals(Long.toString(lastTick), stored.get().getPriceId(), "Latest tick has been lost for " + symbol);
+			assertEquals(baseTime.plusNanos(lastTick * 1000), stored.get().getDateTime());
+		}
+		assertEquals(symbols.length, fxPriceStoreService.getAllFxPrices().size());
+	}
 }
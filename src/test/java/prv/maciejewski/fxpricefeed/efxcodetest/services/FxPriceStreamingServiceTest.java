@@ -0,0 +1,188 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxStreamProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.dto.FxPriceDto;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+@SpringBootTest
+@DisplayName("Testing price streaming service.")
+public class FxPriceStreamingServiceTest {
+
+	private static final LocalDateTime BASE_TIME = LocalDateTime.of(2023, 4, 25, 13, 0);
+
+	@Autowired
+	FxPriceStreamingService fxPriceStreamingService;
+
+	@Autowired
+	FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	FxStreamProperties fxStreamProperties;
+
+	@BeforeEach
+	void clearStorage() {
+		fxPriceStoreService.removeAll();
+	}
+
+	private static FxPrice price(String pairSymbol, int tick) {
+		return new FxPrice(Integer.toString(tick), pairSymbol, BigDecimal.valueOf(tick), BigDecimal.valueOf(tick + 1),
+				BASE_TIME.plusSeconds(tick));
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+
+	@Test
+	void testSlowSubscriberGetsLatestPrice() throws Exception {
+		final int ticks = 2_000;
+		List<FxPriceDto> received = new CopyOnWriteArrayList<>();
+		FxPriceSubscription subscription = fxPriceStreamingService.subscribe(List.of("SLO/W"), null, price -> {
+			Thread.sleep(1); // slow consumer
+			received.add(price);
+		});
+		try {
+			long start = System.nanoTime();
+			for (int tick = 1; tick <= ticks; tick++) {
+				fxPriceStoreService.updateFxPrice(price("SLO/W", tick));
+			}
+			long ingestMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+			waitFor(() -> !received.isEmpty() && received.get(received.size() - 1).getDateTime().equals(BASE_TIME.plusSeconds(ticks)));
+
+			assertEquals(BASE_TIME.plusSeconds(ticks), received.get(received.size() - 1).getDateTime(), "Latest price not delivered.");
+			assertThat(received.size()).as("prices should be conflated").isLessThan(ticks);
+			// ingestion is not slowed down by consumer sleeping 1ms per price
+			assertThat(ingestMillis).isLessThan(ticks);
+		} finally {
+			fxPriceStreamingService.unsubscribe(subscription);
+		}
+	}
+
+	@Test
+	void testSubscriberGetsOnlySubscribedPairs() throws Exception {
+		Map<String, FxPriceDto> received = new ConcurrentHashMap<>();
+		AtomicInteger allPairsCount = new AtomicInteger();
+		FxPriceSubscription subscription = fxPriceStreamingService.subscribe(List.of("AAA/BBB"), null,
+				price -> received.put(price.getPairSymbol(), price));
+		FxPriceSubscription allPairs = fxPriceStreamingService.subscribe(null, null, price -> allPairsCount.incrementAndGet());
+		try {
+			fxPriceStoreService.updateFxPrice(price("AAA/BBB", 1));
+			fxPriceStoreService.updateFxPrice(price("CCC/DDD", 1));
+
+			waitFor(() -> received.containsKey("AAA/BBB") && allPairsCount.get() >= 2);
+			assertTrue(received.containsKey("AAA/BBB"));
+			assertEquals(1, received.size());
+			assertThat(allPairsCount.get()).isGreaterThanOrEqualTo(2);
+		} finally {
+			fxPriceStreamingService.unsubscribe(subscription);
+			fxPriceStreamingService.unsubscribe(allPairs);
+		}
+	}
+
+	@Test
+	void testFailingSubscriberIsRemoved() throws Exception {
+		int subscriptionsBefore = fxPriceStreamingService.getSubscriptionCount();
+		fxPriceStreamingService.subscribe(List.of("ERR/ERR"), null, price -> {
+			throw new IOException("connection closed");
+		});
+		fxPriceStoreService.updateFxPrice(price("ERR/ERR", 1));
+
+		waitFor(() -> fxPriceStreamingService.getSubscriptionCount() == subscriptionsBefore);
+		assertEquals(subscriptionsBefore, fxPriceStreamingService.getSubscriptionCount());
+	}
+
+	@Test
+	void testOlderPriceDoesNotReplaceNewerOne() {
+		FxPrice older = price("ORD/ER", 1);
+		FxPrice newer = price("ORD/ER", 2);
+
+		assertEquals(newer, FxPriceSubscription.newer(older, newer));
+		assertEquals(newer, FxPriceSubscription.newer(newer, older));
+		assertEquals(older, FxPriceSubscription.newer(null, older));
+	}
+
+	@Test
+	void testOlderPriceIsNotSentAfterNewerOne() throws Exception {
+		List<FxPriceDto> received = new CopyOnWriteArrayList<>();
+		FxPriceSubscription subscription = fxPriceStreamingService.subscribe(List.of("LAT/E"), null, received::add);
+		try {
+			// listener calls of concurrent store updates in reverse order
+			fxPriceStreamingService.onFxPriceUpdated(price("LAT/E", 2));
+			waitFor(() -> received.size() == 1);
+			fxPriceStreamingService.onFxPriceUpdated(price("LAT/E", 1));
+			fxPriceStreamingService.onFxPriceUpdated(price("LAT/E", 3));
+			waitFor(() -> received.size() == 2);
+
+			assertEquals(List.of(BASE_TIME.plusSeconds(2), BASE_TIME.plusSeconds(3)),
+					received.stream().map(FxPriceDto::getDateTime).toList());
+		} finally {
+			fxPriceStreamingService.unsubscribe(subscription);
+		}
+	}
+
+	@Test
+	void testBlockedSubscriberIsRemoved() throws Exception {
+		long sendTimeout = fxStreamProperties.getSendTimeout();
+		fxStreamProperties.setSendTimeout(200);
+		CountDownLatch neverRead = new CountDownLatch(1);
+		AtomicReference<Exception> failure = new AtomicReference<>();
+		AtomicInteger interrupted = new AtomicInteger();
+		List<FxPriceDto> received = new CopyOnWriteArrayList<>();
+		int subscriptionsBefore = fxPriceStreamingService.getSubscriptionCount();
+		fxPriceStreamingService.subscribe(List.of("BLO/CK"), null, price -> {
+			try {
+				neverRead.await(); // client which does not read
+			} catch (InterruptedException ie) {
+				interrupted.incrementAndGet();
+				throw ie;
+			}
+		}, failure::set);
+		FxPriceSubscription other = fxPriceStreamingService.subscribe(List.of("BLO/CK"), null, received::add);
+		try {
+			fxPriceStoreService.updateFxPrice(price("BLO/CK", 1));
+
+			waitFor(() -> failure.get() != null && fxPriceStreamingService.getSubscriptionCount() == subscriptionsBefore + 1);
+			assertTrue(failure.get() instanceof TimeoutException, String.valueOf(failure.get()));
+			assertEquals(subscriptionsBefore + 1, fxPriceStreamingService.getSubscriptionCount());
+			waitFor(() -> interrupted.get() == 1);
+			assertEquals(1, interrupted.get());
+
+			// sender thread is released - other subscriber still gets prices
+			fxPriceStoreService.updateFxPrice(price("BLO/CK", 2));
+			waitFor(() -> received.size() == 2);
+			assertEquals(BASE_TIME.plusSeconds(2), received.get(received.size() - 1).getDateTime());
+		} finally {
+			neverRead.countDown();
+			fxPriceStreamingService.unsubscribe(other);
+			fxStreamProperties.setSendTimeout(sendTimeout);
+		}
+	}
+}
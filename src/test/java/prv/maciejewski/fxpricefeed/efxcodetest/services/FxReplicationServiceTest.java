@@ -0,0 +1,210 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxMarginProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxReplicationProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+@DisplayName("Testing replication of price store between instances.")
+public class FxReplicationServiceTest {
+
+	final static LocalDateTime TIME = LocalDateTime.of(2020, 6, 1, 12, 1, 1);
+
+	private final List<FxReplicationService> nodes = new ArrayList<>();
+
+	private FxReplicationService startNode(int port) throws Exception {
+		return startNode(port, new FxMarginProperties());
+	}
+
+	private FxReplicationService startNode(int port, FxMarginProperties marginProperties) throws Exception {
+		FxPriceMarginCalculatorService marginCalculatorService = new FxPriceMarginCalculatorService();
+		marginCalculatorService.fxMarginProperties = marginProperties;
+		marginCalculatorService.init();
+
+		FxReplicationProperties properties = new FxReplicationProperties();
+		properties.setEnabled(true);
+		properties.setPort(port);
+		properties.setReconnectInterval(Duration.ofMillis(50));
+
+		FxReplicationService replicationService = new FxReplicationService();
+		replicationService.fxPriceStoreService = new FxPriceStoreService();
+		replicationService.fxReplicationProperties = properties;
+		replicationService.fxPriceMarginCalculatorService = marginCalculatorService;
+		replicationService.start();
+		nodes.add(replicationService);
+		return replicationService;
+	}
+
+	private static void connect(FxReplicationService... nodes) {
+		for (FxReplicationService node : nodes) {
+			for (FxReplicationService peer : nodes) {
+				if (peer != node) {
+					node.addPeer("127.0.0.1:" + peer.getLocalPort());
+				}
+			}
+		}
+	}
+
+	@AfterEach
+	void stopNodes() {
+		nodes.forEach(FxReplicationService::stop);
+	}
+
+	@Test
+	void testAcceptedPricesReplicatedToPeers() throws Exception {
+		FxReplicationService nodeA = startNode(0);
+		FxReplicationService nodeB = startNode(0);
+		FxReplicationService nodeC = startNode(0);
+		connect(nodeA, nodeB, nodeC);
+		await(() -> nodeA.getStats().get().connectedPeers() == 2 && nodeB.getStats().get().connectedPeers() == 2
+				&& nodeC.getStats().get().connectedPeers() == 2);
+
+		assertTrue(nodeA.fxPriceStoreService.updateFxPrice(price("1", "RPA/RPB", "1.1000", TIME)));
+		awaitPrice("1", "RPA/RPB", nodeB, nodeC);
+		assertEquals(new BigDecimal("1.1000"), nodeC.fxPriceStoreService.getFxPrice("RPA/RPB").getBidPrice());
+
+		// newer price of the same pair accepted by other instance
+		assertTrue(nodeB.fxPriceStoreService.updateFxPrice(price("2", "RPA/RPB", "1.2000", TIME.plusSeconds(1))));
+		awaitPrice("2", "RPA/RPB", nodeA, nodeC);
+
+		// older price is rejected locally and not sent
+		assertFalse(nodeC.fxPriceStoreService.updateFxPrice(price("3", "RPA/RPB", "1.3000", TIME)));
+		assertTrue(nodeC.fxPriceStoreService.updateFxPrice(price("4", "RPC/RPB", "1.4000", TIME)));
+		awaitPrice("4", "RPC/RPB", nodeA, nodeB);
+		assertEquals("2", nodeA.fxPriceStoreService.getFxPrice("RPA/RPB").getPriceId());
+
+		// received prices are not sent back - every instance sent only its own price
+		assertEquals(2, nodeA.getStats().get().receivedPrices());
+		assertEquals(2, nodeB.getStats().get().receivedPrices());
+		assertEquals(2, nodeC.getStats().get().receivedPrices());
+	}
+
+	@Test
+	void testReorderedPricesIgnored() throws Exception {
+		FxReplicationService nodeA = startNode(0);
+		FxReplicationService nodeB = startNode(0);
+		// one direction only - price of B can't reach A before A accepts older one
+		nodeA.addPeer("127.0.0.1:" + nodeB.getLocalPort());
+		await(() -> nodeA.getStats().get().connectedPeers() == 1);
+
+		nodeB.fxPriceStoreService.updateFxPrice(price("2", "RPD/RPB", "1.2000", TIME.plusSeconds(1)));
+		// older price accepted by other instance arrives later - newer price wins
+		assertTrue(nodeA.fxPriceStoreService.updateFxPrice(price("1", "RPD/RPB", "1.1000", TIME)));
+		await(() -> nodeB.getStats().get().receivedPrices() == 1);
+		assertEquals("2", nodeB.fxPriceStoreService.getFxPrice("RPD/RPB").getPriceId());
+	}
+
+	@Test
+	void testReorderedPricesIgnoredBothWays() throws Exception {
+		FxReplicationService nodeA = startNode(0);
+		FxReplicationService nodeB = startNode(0);
+		connect(nodeA, nodeB);
+		await(() -> nodeA.getStats().get().connectedPeers() == 1 && nodeB.getStats().get().connectedPeers() == 1);
+
+		assertTrue(nodeB.fxPriceStoreService.updateFxPrice(price("2", "RPG/RPB", "1.2000", TIME.plusSeconds(1))));
+		// newer price of B may reach A first - then older price is rejected by A and not sent at all
+		boolean olderAcceptedByA = nodeA.fxPriceStoreService.updateFxPrice(price("1", "RPG/RPB", "1.1000", TIME));
+		if (olderAcceptedByA) {
+			await(() -> nodeB.getStats().get().receivedPrices() == 1);
+		}
+		awaitPrice("2", "RPG/RPB", nodeA, nodeB);
+		assertEquals("2", nodeB.fxPriceStoreService.getFxPrice("RPG/RPB").getPriceId());
+		assertEquals(1, nodeA.getStats().get().receivedPrices());
+	}
+
+	@Test
+	void testPeerWithOtherMarginsRejected() throws Exception {
+		FxMarginProperties lazyMargins = new FxMarginProperties();
+		lazyMargins.setMode(FxMarginProperties.Mode.LAZY);
+		FxReplicationService nodeA = startNode(0);
+		FxReplicationService nodeB = startNode(0, lazyMargins);
+		FxMarginProperties otherPairMargins = new FxMarginProperties();
+		otherPairMargins.getPairs().put("RPH/RPB", new FxMarginProperties.Margin(new BigDecimal("-0.002"), new BigDecimal("0.002")));
+		FxReplicationService nodeC = startNode(0, otherPairMargins);
+		nodeA.addPeer("127.0.0.1:" + nodeB.getLocalPort());
+		nodeA.addPeer("127.0.0.1:" + nodeC.getLocalPort());
+
+		await(() -> nodeB.getStats().get().rejectedPeers() > 0 && nodeC.getStats().get().rejectedPeers() > 0);
+		nodeA.fxPriceStoreService.updateFxPrice(price("1", "RPH/RPB", "1.1000", TIME));
+		Thread.sleep(200);
+		assertEquals(0, nodeB.getStats().get().receivedPrices());
+		assertEquals(0, nodeC.getStats().get().receivedPrices());
+
+		// the same margins written with other scale are the same margins
+		FxMarginProperties sameMargins = new FxMarginProperties();
+		sameMargins.setDefaults(new FxMarginProperties.Margin(new BigDecimal("-0.00100"), new BigDecimal("0.0010")));
+		FxReplicationService nodeD = startNode(0, sameMargins);
+		nodeA.addPeer("127.0.0.1:" + nodeD.getLocalPort());
+		awaitPrice("1", "RPH/RPB", nodeD);
+
+		// reload of receiver margins closes connection - peer is checked again and rejected
+		nodeD.fxPriceMarginCalculatorService.reload(otherPairMargins);
+		nodeA.fxPriceStoreService.updateFxPrice(price("2", "RPH/RPB", "1.1000", TIME.plusSeconds(1)));
+		await(() -> nodeD.getStats().get().rejectedPeers() > 0);
+		assertEquals("1", nodeD.fxPriceStoreService.getFxPrice("RPH/RPB").getPriceId());
+	}
+
+	@Test
+	void testSnapshotAfterReconnect() throws Exception {
+		FxReplicationService nodeA = startNode(0);
+		FxReplicationService nodeB = startNode(0);
+		int portB = nodeB.getLocalPort();
+		nodeA.addPeer("127.0.0.1:" + portB);
+		await(() -> nodeA.getStats().get().connectedPeers() == 1);
+		nodeA.fxPriceStoreService.updateFxPrice(price("1", "RPE/RPB", "1.1000", TIME));
+		awaitPrice("1", "RPE/RPB", nodeB);
+
+		// peer is down while prices change
+		nodeB.stop();
+		nodes.remove(nodeB);
+		await(() -> nodeA.getStats().get().connectedPeers() == 0);
+		for (int i = 2; i <= 100; i++) {
+			nodeA.fxPriceStoreService.updateFxPrice(price(Integer.toString(i), i % 2 == 0 ? "RPE/RPB" : "RPF/RPB",
+					"1.1000", TIME.plusSeconds(i)));
+		}
+
+		// restarted peer catches up with latest price per pair
+		FxReplicationService restartedB = startNode(portB);
+		awaitPrice("100", "RPE/RPB", restartedB);
+		awaitPrice("99", "RPF/RPB", restartedB);
+		assertEquals(2, restartedB.getStats().get().receivedPrices());
+		await(() -> nodeA.getStats().get().snapshots() == 2);
+	}
+
+	private static FxPrice price(String priceId, String pairSymbol, String bid, LocalDateTime dateTime) {
+		return FxPrice.builder().priceId(priceId).pairSymbol(pairSymbol).bidPrice(new BigDecimal(bid))
+				.askPrice(new BigDecimal(bid).add(new BigDecimal("0.0002"))).dateTime(dateTime).build();
+	}
+
+	private static void awaitPrice(String priceId, String pairSymbol, FxReplicationService... nodes)
+			throws InterruptedException {
+		for (FxReplicationService node : nodes) {
+			await(() -> {
+				FxPrice fxPrice = node.fxPriceStoreService.getFxPrice(pairSymbol);
+				return fxPrice != null && priceId.equals(fxPrice.getPriceId());
+			});
+		}
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline, "Condition not met in 10 seconds");
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.book.FxSharedPriceBookReader;
+import prv.maciejewski.fxpricefeed.efxcodetest.config.FxPriceBookProperties;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxFixedPointPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+
+@DisplayName("Testing shared price book of accepted prices.")
+public class FxSharedPriceBookServiceTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testAcceptedPricesWrittenToBook() throws Exception {
+		FxPriceStoreService fxPriceStoreService = new FxPriceStoreService();
+		FxPriceBookProperties properties = new FxPriceBookProperties();
+		properties.setEnabled(true);
+		properties.setFile(directory.resolve("book.dat").toString());
+
+		FxSharedPriceBookService bookService = new FxSharedPriceBookService();
+		bookService.fxPriceStoreService = fxPriceStoreService;
+		bookService.fxPriceBookProperties = properties;
+		bookService.start();
+		try (FxSharedPriceBookReader reader = FxSharedPriceBookReader.open(Path.of(properties.getFile()))) {
+			LocalDateTime dateTime = LocalDateTime.of(2020, 6, 1, 12, 1, 2, 1_000_000);
+			assertTrue(fxPriceStoreService.updateFxPrice(FxPrice.builder().priceId("1").pairSymbol("BKA/BKB")
+					.bidPrice(new BigDecimal("1.0989")).askPrice(new BigDecimal("1.20120")).dateTime(dateTime).build()));
+			assertTrue(fxPriceStoreService.updateFxPrice(new FxFixedPointPrice("2", "BKC/BKB", 119_610, 119_910, 3,
+					dateTime)));
+
+			FxSharedPriceBookReader.Quote quote = new FxSharedPriceBookReader.Quote();
+			assertTrue(reader.read(reader.slotOf("BKA/BKB"), quote));
+			assertEquals(new BigDecimal("1.0989"), quote.getBidPrice());
+			assertEquals(new BigDecimal("1.20120"), quote.getAskPrice());
+			assertEquals(dateTime, quote.getDateTime());
+
+			assertTrue(reader.read(reader.slotOf("BKC/BKB"), quote));
+			assertEquals(new BigDecimal("119.610"), quote.getBidPrice());
+			assertEquals(new BigDecimal("119.910"), quote.getAskPrice());
+		} finally {
+			bookService.stop();
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.services;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// every tick timed - timer counts are checked
+@SpringBootTest(properties = "fx.metrics.latency-sample-rate=1")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@DisplayName("Testing metrics of tick processing.")
+class FxTickMetricsTest {
+
+	@Autowired
+	private FxDataFeedService fxDataFeedService;
+
+	@Autowired
+	private FxPriceStoreService fxPriceStoreService;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	void testTickCounters() {
+		fxPriceStoreService.removeAll();
+		double parsed = counter("fx.ticks.parsed", null);
+		double bidFormat = counter("fx.ticks.rejected", "bid_format");
+		double dateFormat = counter("fx.ticks.rejected", "date_format");
+		double columnCount = counter("fx.ticks.rejected", "column_count");
+		double stale = counter("fx.ticks.stale", null);
+		double accepted = counter("fx.ticks.accepted", null);
+		long parseCount = stageTimer("parse").count();
+		long storeCount = stageTimer("store").count();
+
+		fxDataFeedService.onMessage("""
+				1, MTR/USD, 1.1000,1.2000,01-06-2020 12:01:02:001
+				2, MTR/USD, 1.x000,1.2000,01-06-2020 12:01:03:001
+				3, MTR/USD, 1.1000,1.2000,01-06-2020 12:01:99:001
+				4, MTR/USD, 1.1000
+				5, MTR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001
+				6, MTR/USD, 1.1000,1.2000,01-06-2020 12:01:04:001
+				""");
+
+		assertEquals(6, counter("fx.ticks.parsed", null) - parsed);
+		assertEquals(1, counter("fx.ticks.rejected", "bid_format") - bidFormat);
+		assertEquals(1, counter("fx.ticks.rejected", "date_format") - dateFormat);
+		assertEquals(1, counter("fx.ticks.rejected", "column_count") - columnCount);
+		assertEquals(1, counter("fx.ticks.stale", null) - stale);
+		assertEquals(2, counter("fx.ticks.accepted", null) - accepted);
+		assertEquals(6, stageTimer("parse").count() - parseCount);
+		assertEquals(3, stageTimer("store").count() - storeCount);
+
+		Timer ageTimer = meterRegistry.find("fx.tick.age").tag("pair", "MTR/USD").timer();
+		assertNotNull(ageTimer);
+		assertEquals(2, ageTimer.count());
+	}
+
+	@Test
+	void testAgeNanos() {
+		LocalDateTime dateTime = LocalDateTime.of(2020, 6, 1, 12, 1, 2, 1_000_000);
+		long priceMillis = 1591012862001L;
+		assertEquals(250_000_000L, FxTickMetrics.ageNanos(dateTime, priceMillis + 250));
+		assertTrue(FxTickMetrics.ageNanos(dateTime, priceMillis - 1) < 0);
+		// dates out of long nanos range are not aged - no overflow to positive age
+		assertTrue(FxTickMetrics.ageNanos(LocalDateTime.of(1000, 1, 1, 0, 0), priceMillis) < 0);
+		assertTrue(FxTickMetrics.ageNanos(LocalDateTime.of(1678, 1, 1, 0, 0), priceMillis) < 0);
+		assertTrue(FxTickMetrics.ageNanos(LocalDateTime.of(3000, 1, 1, 0, 0), priceMillis) < 0);
+	}
+
+	@Test
+	void testPrometheusEndpoint() throws Exception {
+		fxDataFeedService.onMessage("1, MTR/EUR, 1.x000,1.2000,01-06-2020 12:01:02:001");
+
+		mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isOk())
+				.andExpect(content().string(containsString("fx_ticks_rejected_total{reason=\"bid_format\"")))
+				.andExpect(content().string(containsString("fx_tick_stage_seconds_bucket{stage=\"parse\"")));
+	}
+
+	private double counter(String name, String reason) {
+		return reason == null ? meterRegistry.get(name).functionCounter().count()
+				: meterRegistry.get(name).tag("reason", reason).functionCounter().count();
+	}
+
+	private Timer stageTimer(String stage) {
+		return meterRegistry.get("fx.tick.stage").tag("stage", stage).timer();
+	}
+}
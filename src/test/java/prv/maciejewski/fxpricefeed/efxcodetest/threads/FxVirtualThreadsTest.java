@@ -0,0 +1,84 @@
+package prv.maciejewski.fxpricefeed.efxcodetest.threads;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import prv.maciejewski.fxpricefeed.efxcodetest.model.FxPrice;
+import prv.maciejewski.fxpricefeed.efxcodetest.pipeline.FxIngestionPipeline;
+import prv.maciejewski.fxpricefeed.efxcodetest.pipeline.FxWaitStrategy;
+
+@DisplayName("Testing virtual threads access.")
+public class FxVirtualThreadsTest {
+
+	private static final boolean JAVA_21 = Runtime.version().feature() >= 21;
+
+	private static boolean isVirtual(Thread thread) throws ReflectiveOperationException {
+		Method isVirtual = Thread.class.getMethod("isVirtual");
+		return (Boolean) isVirtual.invoke(thread);
+	}
+
+	@Test
+	void testAvailability() {
+		assertEquals(JAVA_21, FxVirtualThreads.isAvailable());
+		if (!JAVA_21) {
+			assertThrows(UnsupportedOperationException.class, () -> FxVirtualThreads.factory("fx-test-"));
+			assertThrows(UnsupportedOperationException.class, () -> FxVirtualThreads.newThreadPerTaskExecutor("fx-test-"));
+		}
+	}
+
+	@Test
+	void testVirtualThreadExecutor() throws Exception {
+		if (!JAVA_21) {
+			return;
+		}
+		ExecutorService executor = FxVirtualThreads.newThreadPerTaskExecutor("fx-test-");
+		try {
+			Future<Thread> thread = executor.submit(Thread::currentThread);
+			assertTrue(isVirtual(thread.get(10, TimeUnit.SECONDS)));
+			assertTrue(thread.get().getName().startsWith("fx-test-"));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testPipelineOnVirtualThreads() throws Exception {
+		if (!JAVA_21) {
+			return;
+		}
+		Set<Thread> writerThreads = ConcurrentHashMap.newKeySet();
+		FxIngestionPipeline pipeline = new FxIngestionPipeline(64, FxWaitStrategy.SLEEPING,
+				FxIngestionPipeline.Backpressure.BLOCK,
+				line -> new FxPrice(line, "EUR/USD", BigDecimal.ONE, BigDecimal.TEN, LocalDateTime.of(2023, 4, 25, 0, 0)),
+				price -> {
+					writerThreads.add(Thread.currentThread());
+					return true;
+				},
+				FxVirtualThreads.factory("fx-pipeline-"));
+		try {
+			for (int i = 0; i < 1000; i++) {
+				pipeline.publish(Integer.toString(i));
+			}
+			assertTrue(pipeline.awaitDrained(30, TimeUnit.SECONDS));
+			assertEquals(1000, pipeline.getStats().stored());
+			Thread writer = writerThreads.iterator().next();
+			assertTrue(isVirtual(writer));
+			assertEquals("fx-pipeline-writer", writer.getName());
+		} finally {
+			pipeline.stop();
+		}
+	}
+}